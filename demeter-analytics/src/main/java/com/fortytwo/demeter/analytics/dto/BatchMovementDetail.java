@@ -6,5 +6,6 @@ import java.util.UUID;
 public record BatchMovementDetail(
     UUID batchId,
     String batchCode,
-    BigDecimal quantity
+    BigDecimal quantity,
+    String direction
 ) {}
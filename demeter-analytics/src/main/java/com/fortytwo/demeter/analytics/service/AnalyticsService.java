@@ -126,7 +126,7 @@ public class AnalyticsService {
         LOG.debugf("Generating movement summary from %s to %s", from, to);
 
         List<StockMovement> movements = stockMovementRepository
-                .find("performedAt >= ?1 and performedAt <= ?2", from, to)
+                .find("performedAt >= ?1 and performedAt < ?2", from, to)
                 .list();
 
         Map<MovementType, List<StockMovement>> byType = movements.stream()
@@ -344,7 +344,7 @@ public class AnalyticsService {
             params.add(from);
         }
         if (to != null) {
-            query.append(" and performedAt <= ?").append(paramIndex++);
+            query.append(" and performedAt < ?").append(paramIndex++);
             params.add(to);
         }
 
@@ -376,7 +376,8 @@ public class AnalyticsService {
                     return new BatchMovementDetail(
                             batch != null ? batch.getId() : null,
                             batchCode,
-                            bm.getQuantity()
+                            bm.getQuantity(),
+                            bm.getDirection().name()
                     );
                 })
                 .toList();
@@ -440,7 +441,7 @@ public class AnalyticsService {
         LOG.debugf("Generating stock history from %s to %s", from, to);
 
         List<StockMovement> movements = stockMovementRepository
-                .find("performedAt >= ?1 and performedAt <= ?2 order by performedAt asc", from, to)
+                .find("performedAt >= ?1 and performedAt < ?2 order by performedAt asc", from, to)
                 .list();
 
         Map<String, BigDecimal> quantityByDate = new LinkedHashMap<>();
@@ -449,7 +450,7 @@ public class AnalyticsService {
             BigDecimal change = switch (m.getMovementType()) {
                 case ENTRADA -> m.getQuantity();
                 case MUERTE, VENTA -> m.getQuantity().negate();
-                case TRASPLANTE -> BigDecimal.ZERO;
+                case TRASPLANTE, VENCIMIENTO, CAMBIO_ESTADO -> BigDecimal.ZERO;
                 case AJUSTE -> m.getQuantity();
             };
             quantityByDate.merge(date, change, BigDecimal::add);
@@ -54,6 +54,7 @@ dependencies {
 
     implementation("io.quarkus:quarkus-arc")
     implementation("io.quarkus:quarkus-smallrye-health")
+    implementation("io.quarkus:quarkus-micrometer-registry-prometheus")
 
     testImplementation("io.quarkus:quarkus-junit5")
     testImplementation("io.quarkus:quarkus-test-security")
@@ -63,6 +64,11 @@ dependencies {
     testImplementation("org.testcontainers:junit-jupiter:${testcontainersVersion}")
 }
 
+// Opt-in benchmarks (e.g. UuidKeyTest): ./gradlew :demeter-app:test -Pdemeter.benchmarks=true
+tasks.withType<Test> {
+    systemProperty("demeter.benchmarks", providers.gradleProperty("demeter.benchmarks").orElse("false").get())
+}
+
 tasks.register("printDemeterModules") {
     group = "help"
     description = "Print the modules selected for demeter-app."
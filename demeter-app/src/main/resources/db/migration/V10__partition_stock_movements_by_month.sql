@@ -0,0 +1,112 @@
+-- =============================================
+-- V10: Monthly range partitioning of stock_movements
+-- stock_movements is append-only and always read by performed_at range,
+-- so it is rebuilt as a declarative RANGE partitioned table (one partition
+-- per calendar month, UTC). A DEFAULT partition catches rows outside the
+-- provisioned months; ensure_stock_movement_partitions() moves them into
+-- proper partitions and keeps months ahead of now() provisioned.
+-- =============================================
+
+-- The primary key of a partitioned table must include the partition key, so
+-- movement ids are no longer unique on their own at the schema level. The FK
+-- from stock_batch_movements is dropped; both rows are always written in the
+-- same transaction by StockMovementService.
+ALTER TABLE stock_batch_movements DROP CONSTRAINT IF EXISTS stock_batch_movements_movement_id_fkey;
+CREATE INDEX idx_stock_batch_movements_movement ON stock_batch_movements(movement_id);
+
+ALTER TABLE stock_movements RENAME TO stock_movements_legacy;
+ALTER TABLE stock_movements_legacy RENAME CONSTRAINT stock_movements_pkey TO stock_movements_legacy_pkey;
+ALTER INDEX idx_stock_movements_tenant RENAME TO idx_stock_movements_legacy_tenant;
+ALTER INDEX idx_stock_movements_type RENAME TO idx_stock_movements_legacy_type;
+
+CREATE TABLE stock_movements (
+    id UUID NOT NULL DEFAULT gen_random_uuid(),
+    tenant_id VARCHAR(64) NOT NULL,
+    movement_type VARCHAR(50) NOT NULL,
+    quantity DECIMAL(12,2) NOT NULL,
+    unit VARCHAR(50),
+    reference_id UUID,
+    reference_type VARCHAR(100),
+    notes TEXT,
+    performed_by UUID REFERENCES users(id),
+    performed_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT now(),
+    PRIMARY KEY (id, performed_at)
+) PARTITION BY RANGE (performed_at);
+
+-- Declared on the parent so every partition gets its own local copy
+CREATE INDEX idx_stock_movements_tenant_performed ON stock_movements(tenant_id, performed_at);
+CREATE INDEX idx_stock_movements_reference ON stock_movements(reference_id);
+CREATE INDEX idx_stock_movements_type ON stock_movements(movement_type);
+
+CREATE TABLE stock_movements_default PARTITION OF stock_movements DEFAULT;
+
+-- Creates the partition for the month containing month_start (if missing),
+-- moving any rows for that month out of the DEFAULT partition first so the
+-- ATTACH does not fail on overlapping data.
+CREATE OR REPLACE FUNCTION create_stock_movement_partition(month_start DATE) RETURNS BOOLEAN AS $$
+DECLARE
+    first_day DATE := month_start - (EXTRACT(DAY FROM month_start)::INT - 1);
+    from_ts   TIMESTAMP WITH TIME ZONE := first_day::timestamp AT TIME ZONE 'UTC';
+    to_ts     TIMESTAMP WITH TIME ZONE := (first_day + INTERVAL '1 month') AT TIME ZONE 'UTC';
+    part      TEXT := format('stock_movements_p%s', to_char(first_day, 'YYYY_MM'));
+BEGIN
+    IF to_regclass(part) IS NOT NULL THEN
+        RETURN false;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE stock_movements INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', part);
+    EXECUTE format(
+        'WITH moved AS (DELETE FROM stock_movements_default WHERE performed_at >= %L AND performed_at < %L RETURNING *) '
+        'INSERT INTO %I SELECT * FROM moved', from_ts, to_ts, part);
+    EXECUTE format('ALTER TABLE stock_movements ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   part, from_ts, to_ts);
+    RETURN true;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Provisions the current month plus months_ahead future months, and gives any
+-- month that has landed in the DEFAULT partition its own partition.
+-- Returns the number of partitions created.
+CREATE OR REPLACE FUNCTION ensure_stock_movement_partitions(months_ahead INT) RETURNS INT AS $$
+DECLARE
+    created INT := 0;
+    m DATE;
+BEGIN
+    -- Serialize concurrent callers (several app instances run the maintenance job)
+    PERFORM pg_advisory_xact_lock(hashtext('ensure_stock_movement_partitions'));
+
+    FOR m IN
+        SELECT generate_series(date_trunc('month', now() AT TIME ZONE 'UTC'),
+                               date_trunc('month', now() AT TIME ZONE 'UTC') + make_interval(months => months_ahead),
+                               INTERVAL '1 month')::date
+        UNION
+        SELECT DISTINCT date_trunc('month', performed_at AT TIME ZONE 'UTC')::date
+          FROM stock_movements_default
+        ORDER BY 1
+    LOOP
+        IF create_stock_movement_partition(m) THEN
+            created := created + 1;
+        END IF;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Move existing history: it lands in DEFAULT first and is then split into months
+INSERT INTO stock_movements
+    (id, tenant_id, movement_type, quantity, unit, reference_id, reference_type, notes,
+     performed_by, performed_at, created_at, updated_at)
+SELECT id, tenant_id, movement_type, quantity, unit, reference_id, reference_type, notes,
+       performed_by, performed_at, created_at, updated_at
+  FROM stock_movements_legacy;
+
+SELECT ensure_stock_movement_partitions(3);
+
+DROP TABLE stock_movements_legacy;
+
+-- RLS applies through the parent; partitions are never queried directly
+ALTER TABLE stock_movements ENABLE ROW LEVEL SECURITY;
+CREATE POLICY tenant_isolation_stock_movements ON stock_movements
+    USING (tenant_id = current_tenant_id());
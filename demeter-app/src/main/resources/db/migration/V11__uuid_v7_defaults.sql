@@ -0,0 +1,28 @@
+-- =============================================
+-- V11: Time-ordered UUIDv7 id defaults
+-- Entities generate UUIDv7 ids in the application (GeneratedUuidV7); this
+-- gives rows inserted by SQL (COPY import, migrations, manual fixes) the
+-- same time-ordered layout instead of random gen_random_uuid() v4 ids.
+-- =============================================
+
+-- Unix epoch millis in the first 48 bits of a random v4, then version bits
+-- flipped from 0100 to 0111. PostgreSQL 18 ships uuidv7(); this keeps 17 working.
+CREATE OR REPLACE FUNCTION uuid_generate_v7() RETURNS UUID AS $$
+    SELECT encode(
+        set_bit(
+            set_bit(
+                overlay(uuid_send(gen_random_uuid())
+                        PLACING substring(int8send(floor(extract(epoch FROM clock_timestamp()) * 1000)::BIGINT) FROM 3)
+                        FROM 1 FOR 6),
+                52, 1),
+            53, 1),
+        'hex')::UUID;
+$$ LANGUAGE sql VOLATILE;
+
+ALTER TABLE stock_batches ALTER COLUMN id SET DEFAULT uuid_generate_v7();
+ALTER TABLE stock_movements ALTER COLUMN id SET DEFAULT uuid_generate_v7();
+ALTER TABLE stock_batch_movements ALTER COLUMN id SET DEFAULT uuid_generate_v7();
+ALTER TABLE detections ALTER COLUMN id SET DEFAULT uuid_generate_v7();
+ALTER TABLE classifications ALTER COLUMN id SET DEFAULT uuid_generate_v7();
+ALTER TABLE estimations ALTER COLUMN id SET DEFAULT uuid_generate_v7();
+ALTER TABLE chat_messages ALTER COLUMN id SET DEFAULT uuid_generate_v7();
@@ -0,0 +1,7 @@
+-- =============================================
+-- V12: GIN index for custom attribute filtering on stock_batches
+-- jsonb_path_ops only supports @>, @? and @@ but is smaller and faster than
+-- the default jsonb_ops for the containment lookups the batch list API issues.
+-- =============================================
+
+CREATE INDEX idx_stock_batches_custom_attributes ON stock_batches USING GIN (custom_attributes jsonb_path_ops);
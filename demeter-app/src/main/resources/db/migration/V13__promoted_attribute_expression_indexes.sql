@@ -0,0 +1,42 @@
+-- =============================================
+-- V13: Promoted custom attributes on stock_batches
+-- Tenants can declare hot custom_attributes keys as "promoted" (tenant
+-- settings.promotedAttributes). Each declared (key, type) pair is backed by
+-- a partial expression index covering only that tenant's rows, built with
+-- CREATE INDEX CONCURRENTLY by PromotedAttributeService and dropped when the
+-- tenant stops declaring the pair. The shared table is never altered.
+-- The typed expression generates NULL for values of another JSON type, so
+-- it matches exactly what the JSONB predicates would.
+--
+-- This migration builds the indexes for declarations already present in
+-- tenant settings, with the name and expression PromotedAttributeService
+-- derives. It takes a SHARE lock on stock_batches while the builds run.
+-- =============================================
+
+DO $$
+DECLARE
+    decl RECORD;
+    expr TEXT;
+BEGIN
+    FOR decl IN SELECT t.id AS tenant_id, a ->> 'key' AS attr_key, lower(a ->> 'type') AS attr_type
+                  FROM tenants t, jsonb_array_elements(t.settings -> 'promotedAttributes') a
+                 WHERE jsonb_typeof(t.settings -> 'promotedAttributes') = 'array'
+                   AND a ->> 'key' ~ '^[a-z][a-z0-9_]{0,29}$' LOOP
+        -- Same expressions as PromotedAttributeType.expression
+        expr := CASE decl.attr_type
+            WHEN 'text'    THEN format('CASE WHEN jsonb_typeof(custom_attributes -> %L) = ''string'' '
+                                       'THEN custom_attributes ->> %L END', decl.attr_key, decl.attr_key)
+            WHEN 'numeric' THEN format('CASE WHEN jsonb_typeof(custom_attributes -> %L) = ''number'' '
+                                       'THEN (custom_attributes -> %L)::numeric END', decl.attr_key, decl.attr_key)
+            WHEN 'boolean' THEN format('CASE WHEN jsonb_typeof(custom_attributes -> %L) = ''boolean'' '
+                                       'THEN (custom_attributes -> %L)::boolean END', decl.attr_key, decl.attr_key)
+        END;
+        CONTINUE WHEN expr IS NULL;
+        EXECUTE format('CREATE INDEX IF NOT EXISTS %I ON stock_batches (tenant_id, (%s)) WHERE tenant_id = %L',
+                       'idx_stock_batches_attr_'
+                           || left(encode(sha256(convert_to(decl.tenant_id || ':' || decl.attr_key || ':'
+                                                            || decl.attr_type, 'UTF8')), 'hex'), 24),
+                       expr, decl.tenant_id);
+    END LOOP;
+END;
+$$;
@@ -0,0 +1,11 @@
+-- =============================================
+-- V14: FEFO allocation index on stock_batches
+-- Sale completion allocates un-batched items across a product's ACTIVE
+-- batches ordered by expiry (NULLs last), then entry date. The partial
+-- index matches that predicate and order, so the locking query reads the
+-- first few candidates without sorting the product's whole batch history.
+-- =============================================
+
+CREATE INDEX idx_stock_batches_fefo
+    ON stock_batches (tenant_id, product_id, expiry_date ASC NULLS LAST, entry_date, id)
+    WHERE status = 'ACTIVE';
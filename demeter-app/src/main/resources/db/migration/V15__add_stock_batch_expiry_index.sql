@@ -0,0 +1,10 @@
+-- =============================================
+-- V15: Expiry index on ACTIVE stock_batches
+-- Serves the expiring-within-N-days listing and the expiry sweeper, which
+-- both look only at ACTIVE batches of one tenant by expiry_date. Batches
+-- without an expiry never qualify and are left out of the index.
+-- =============================================
+
+CREATE INDEX idx_stock_batches_active_expiry
+    ON stock_batches (tenant_id, expiry_date)
+    WHERE status = 'ACTIVE' AND expiry_date IS NOT NULL;
@@ -0,0 +1,11 @@
+-- =============================================
+-- V16: Initial quantity of stock_batches
+-- Batches are created with a quantity but without a movement, so the
+-- ledger alone cannot say what a batch should hold. initial_quantity is
+-- the quantity the ledger starts from; reconciliation compares
+-- initial_quantity (or the last AJUSTE) plus later movements against
+-- quantity. Existing batches and batches whose quantity was overwritten
+-- outside the ledger (CSV re-import) keep NULL until their next AJUSTE.
+-- =============================================
+
+ALTER TABLE stock_batches ADD COLUMN initial_quantity DECIMAL(12,2);
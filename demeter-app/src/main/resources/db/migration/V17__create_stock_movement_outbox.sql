@@ -0,0 +1,51 @@
+-- =============================================
+-- V17: Transactional outbox for stock movements
+-- Every stock_movements insert appends an outbox row in the same
+-- transaction (trigger on the partitioned parent, cloned to every
+-- partition), whatever path wrote the movement: JPA, bulk CTEs or the
+-- JDBC background jobs.
+--
+-- Consumers read in (xact_id, id) order and keep their position in
+-- outbox_consumer_offsets. Only rows written by transactions older than
+-- every running transaction are read, so a long transaction committing
+-- late can never land behind a consumer's offset.
+--
+-- Both tables are drained by a background poller across tenants and are
+-- not exposed through the API, so they carry no RLS policy.
+-- =============================================
+
+CREATE TABLE stock_movement_outbox (
+    id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    xact_id XID8 NOT NULL DEFAULT pg_current_xact_id(),
+    tenant_id VARCHAR(64) NOT NULL,
+    movement_id UUID NOT NULL,
+    movement_type VARCHAR(50) NOT NULL,
+    quantity DECIMAL(12,2) NOT NULL,
+    reference_id UUID,
+    reference_type VARCHAR(100),
+    performed_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_stock_movement_outbox_position ON stock_movement_outbox (xact_id, id);
+
+CREATE TABLE outbox_consumer_offsets (
+    consumer VARCHAR(100) PRIMARY KEY,
+    last_xact_id XID8 NOT NULL DEFAULT '0',
+    last_id BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+CREATE OR REPLACE FUNCTION append_stock_movement_outbox() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO stock_movement_outbox
+           (tenant_id, movement_id, movement_type, quantity, reference_id, reference_type, performed_at)
+    VALUES (NEW.tenant_id, NEW.id, NEW.movement_type, NEW.quantity, NEW.reference_id, NEW.reference_type,
+            NEW.performed_at);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_stock_movements_outbox
+    AFTER INSERT ON stock_movements
+    FOR EACH ROW EXECUTE FUNCTION append_stock_movement_outbox();
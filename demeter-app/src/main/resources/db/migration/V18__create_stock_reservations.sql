@@ -0,0 +1,35 @@
+-- =============================================
+-- V18: Stock reservations (available-to-promise)
+-- A reservation holds quantity of one batch for a line of a pending
+-- document (today: items of PENDING sales, unbatched ones split over
+-- batches first-expiry-first-out, one row per batch) until it is
+-- released or expires_at passes. Available stock of a batch is its
+-- quantity minus its unexpired reservations; expired rows stop counting
+-- immediately and are deleted by a periodic purge.
+--
+-- References are generic (reference_type / reference_id / line id), as on
+-- stock_movements, so there is no FK to sales; the owning service
+-- releases its rows on cancel, completion and delete.
+-- =============================================
+
+CREATE TABLE stock_reservations (
+    id UUID PRIMARY KEY DEFAULT uuid_generate_v7(),
+    tenant_id VARCHAR(64) NOT NULL,
+    batch_id UUID NOT NULL REFERENCES stock_batches(id) ON DELETE CASCADE,
+    reference_type VARCHAR(100) NOT NULL,
+    reference_id UUID NOT NULL,
+    reference_line_id UUID,
+    quantity DECIMAL(12,2) NOT NULL CHECK (quantity > 0),
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT now()
+);
+
+-- Availability sums a batch's unexpired rows without visiting the heap
+CREATE INDEX idx_stock_reservations_batch ON stock_reservations (batch_id, expires_at) INCLUDE (quantity);
+CREATE INDEX idx_stock_reservations_reference ON stock_reservations (reference_id, reference_type);
+CREATE INDEX idx_stock_reservations_expiry ON stock_reservations (expires_at);
+
+ALTER TABLE stock_reservations ENABLE ROW LEVEL SECURITY;
+CREATE POLICY tenant_isolation_stock_reservations ON stock_reservations
+    USING (tenant_id = current_tenant_id());
@@ -0,0 +1,35 @@
+-- =============================================
+-- V19: Batch genealogy
+-- Every TRASPLANTE links each source batch (parent) to each destination
+-- batch (child) under the movement that moved the stock. Lineage queries
+-- walk the links both ways with a recursive CTE: ancestors through
+-- (child_batch_id), descendants through the primary key.
+--
+-- Transplants recorded before this migration are backfilled from their
+-- movement lines: sources are the negative lines, destinations the
+-- positive ones.
+-- =============================================
+
+CREATE TABLE stock_batch_lineage (
+    parent_batch_id UUID NOT NULL REFERENCES stock_batches(id) ON DELETE CASCADE,
+    child_batch_id UUID NOT NULL REFERENCES stock_batches(id) ON DELETE CASCADE,
+    movement_id UUID NOT NULL,
+    tenant_id VARCHAR(64) NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    PRIMARY KEY (parent_batch_id, child_batch_id, movement_id),
+    CHECK (parent_batch_id <> child_batch_id)
+);
+
+CREATE INDEX idx_stock_batch_lineage_child ON stock_batch_lineage (child_batch_id, parent_batch_id);
+
+INSERT INTO stock_batch_lineage (parent_batch_id, child_batch_id, movement_id, tenant_id, created_at)
+SELECT DISTINCT src.batch_id, dst.batch_id, m.id, m.tenant_id, m.performed_at
+  FROM stock_movements m
+  JOIN stock_batch_movements src ON src.movement_id = m.id AND src.quantity < 0
+  JOIN stock_batch_movements dst ON dst.movement_id = m.id AND dst.quantity > 0
+ WHERE m.movement_type = 'TRASPLANTE'
+   AND src.batch_id <> dst.batch_id;
+
+ALTER TABLE stock_batch_lineage ENABLE ROW LEVEL SECURITY;
+CREATE POLICY tenant_isolation_stock_batch_lineage ON stock_batch_lineage
+    USING (tenant_id = current_tenant_id());
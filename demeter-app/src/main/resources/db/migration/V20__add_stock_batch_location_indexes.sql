@@ -0,0 +1,21 @@
+-- =============================================
+-- V20: Bin and warehouse lookup indexes on stock_batches
+-- Pickers scan a bin (or pick a warehouse) and list what is in it. Both
+-- lookups are by tenant first; the warehouse one also filters by status,
+-- almost always ACTIVE. Batches without a bin never match a bin lookup
+-- and are left out of that index.
+--
+-- quantity is deliberately not INCLUDEd. No index on stock_batches covers
+-- quantity, updated_at or version, so a movement that leaves the status
+-- alone can be a HOT update; including quantity would make every movement
+-- write to every index. Movements that flip the status (ACTIVE <-> DEPLETED)
+-- are non-HOT either way, as status is indexed here and in the partial
+-- predicates of V14 and V15.
+-- =============================================
+
+CREATE INDEX idx_stock_batches_bin
+    ON stock_batches (tenant_id, bin_id)
+    WHERE bin_id IS NOT NULL;
+
+CREATE INDEX idx_stock_batches_warehouse_status
+    ON stock_batches (tenant_id, warehouse_id, status);
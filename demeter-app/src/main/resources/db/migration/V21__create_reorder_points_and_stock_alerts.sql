@@ -0,0 +1,50 @@
+-- =============================================
+-- V21: Reorder points and low-stock alerts
+-- A reorder point watches the ACTIVE quantity of a product in one
+-- warehouse, or across all warehouses when warehouse_id is NULL.
+--
+-- Alerts are evaluated incrementally from the stock movement outbox
+-- (V17): only products touched by new movements are re-totalled. A rule
+-- has at most one OPEN alert, which later movements update in place
+-- until the total climbs back above the reorder point and the alert is
+-- RESOLVED.
+-- =============================================
+
+CREATE TABLE reorder_points (
+    id UUID PRIMARY KEY DEFAULT uuid_generate_v7(),
+    tenant_id VARCHAR(64) NOT NULL,
+    product_id UUID NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+    warehouse_id UUID REFERENCES warehouses(id) ON DELETE CASCADE,
+    reorder_point DECIMAL(12,2) NOT NULL CHECK (reorder_point >= 0),
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT now(),
+    UNIQUE NULLS NOT DISTINCT (tenant_id, product_id, warehouse_id)
+);
+
+CREATE TABLE stock_alerts (
+    id UUID PRIMARY KEY DEFAULT uuid_generate_v7(),
+    tenant_id VARCHAR(64) NOT NULL,
+    reorder_point_id UUID NOT NULL REFERENCES reorder_points(id) ON DELETE CASCADE,
+    product_id UUID NOT NULL,
+    warehouse_id UUID,
+    reorder_point DECIMAL(12,2) NOT NULL,
+    quantity DECIMAL(12,2) NOT NULL,
+    status VARCHAR(50) NOT NULL DEFAULT 'OPEN',
+    raised_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    resolved_at TIMESTAMP WITH TIME ZONE,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT now()
+);
+
+-- Deduplication: one open alert per reorder point
+CREATE UNIQUE INDEX idx_stock_alerts_open ON stock_alerts (reorder_point_id) WHERE status = 'OPEN';
+-- Feed: newest alerts of a tenant by (time-ordered) id
+CREATE INDEX idx_stock_alerts_feed ON stock_alerts (tenant_id, id);
+
+ALTER TABLE reorder_points ENABLE ROW LEVEL SECURITY;
+CREATE POLICY tenant_isolation_reorder_points ON reorder_points
+    USING (tenant_id = current_tenant_id());
+
+ALTER TABLE stock_alerts ENABLE ROW LEVEL SECURITY;
+CREATE POLICY tenant_isolation_stock_alerts ON stock_alerts
+    USING (tenant_id = current_tenant_id());
@@ -0,0 +1,25 @@
+-- =============================================
+-- V22: Per-product demand forecasts
+-- Exponentially smoothed daily demand, maintained as sales complete so that
+-- forecasts and days of cover are one row lookup per product.
+--
+-- Sales accumulate in open_day_quantity until a sale arrives on a later
+-- day; that folds the open day into level (and decays it once per day
+-- without sales in between). level is NULL until the first day closes.
+-- =============================================
+
+CREATE TABLE product_demand_forecasts (
+    id UUID PRIMARY KEY DEFAULT uuid_generate_v7(),
+    tenant_id VARCHAR(64) NOT NULL,
+    product_id UUID NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+    level DECIMAL(14,4),
+    open_day DATE NOT NULL,
+    open_day_quantity DECIMAL(12,2) NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT now(),
+    UNIQUE (tenant_id, product_id)
+);
+
+ALTER TABLE product_demand_forecasts ENABLE ROW LEVEL SECURITY;
+CREATE POLICY tenant_isolation_product_demand_forecasts ON product_demand_forecasts
+    USING (tenant_id = current_tenant_id());
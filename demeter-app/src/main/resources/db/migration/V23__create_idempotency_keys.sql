@@ -0,0 +1,25 @@
+-- =============================================
+-- V23: Idempotency keys
+-- Responses of write requests sent with an Idempotency-Key header, so that
+-- a client retry is answered from here instead of being applied again.
+-- status_code is NULL while the first request is still running. Rows are
+-- purged once expires_at passes; an expired key may be claimed again.
+-- =============================================
+
+CREATE TABLE idempotency_keys (
+    tenant_id VARCHAR(64) NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    request_method VARCHAR(10) NOT NULL,
+    request_path VARCHAR(1024) NOT NULL,
+    status_code INTEGER,
+    response_body TEXT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (tenant_id, idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_keys_expires ON idempotency_keys (expires_at);
+
+ALTER TABLE idempotency_keys ENABLE ROW LEVEL SECURITY;
+CREATE POLICY tenant_isolation_idempotency_keys ON idempotency_keys
+    USING (tenant_id = current_tenant_id());
@@ -0,0 +1,16 @@
+-- =============================================
+-- V24: Per-tenant sale number counters
+-- Instances reserve blocks of sale numbers by advancing next_value and
+-- hand them out from memory, so numbers are unique per tenant and mostly
+-- ascending. Blocks unused when an instance stops are skipped.
+-- =============================================
+
+CREATE TABLE sale_number_counters (
+    tenant_id VARCHAR(64) PRIMARY KEY,
+    next_value BIGINT NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT now()
+);
+
+ALTER TABLE sale_number_counters ENABLE ROW LEVEL SECURITY;
+CREATE POLICY tenant_isolation_sale_number_counters ON sale_number_counters
+    USING (tenant_id = current_tenant_id());
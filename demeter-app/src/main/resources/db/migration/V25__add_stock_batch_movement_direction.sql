@@ -0,0 +1,39 @@
+-- =============================================
+-- V25: Explicit direction on stock movement lines
+-- Line quantities are unsigned and direction says what the line did to its
+-- batch: IN adds the quantity, OUT takes it away, SET overwrites the batch
+-- quantity with it (AJUSTE, the only kind that may be negative) and NONE
+-- leaves it unchanged (expiry and status changes record the stock they
+-- concern).
+--
+-- Before this, TRASPLANTE lines written by the transplant endpoint were
+-- signed (negative sources, positive destinations) while those written by
+-- the movement endpoints were unsigned debits. Existing lines are backfilled
+-- from that convention: a TRASPLANTE line is IN only when it is positive in
+-- a movement that also has negative lines. V19's lineage backfill already
+-- relied on exactly those signed movements, so its links stand.
+-- =============================================
+
+ALTER TABLE stock_batch_movements ADD COLUMN direction VARCHAR(8);
+
+UPDATE stock_batch_movements sbm
+   SET direction = CASE
+           WHEN m.movement_type = 'ENTRADA' THEN 'IN'
+           WHEN m.movement_type = 'AJUSTE' THEN 'SET'
+           WHEN m.movement_type IN ('VENCIMIENTO', 'CAMBIO_ESTADO') THEN 'NONE'
+           WHEN m.movement_type = 'TRASPLANTE' AND sbm.quantity > 0 AND EXISTS (
+                    SELECT 1 FROM stock_batch_movements o
+                     WHERE o.movement_id = sbm.movement_id AND o.quantity < 0) THEN 'IN'
+           ELSE 'OUT'
+       END,
+       quantity = CASE WHEN m.movement_type = 'AJUSTE' THEN sbm.quantity ELSE abs(sbm.quantity) END
+  FROM stock_movements m
+ WHERE m.id = sbm.movement_id;
+
+-- Lines whose movement is gone cannot be classified; treat them as debits
+UPDATE stock_batch_movements SET direction = 'OUT', quantity = abs(quantity) WHERE direction IS NULL;
+
+ALTER TABLE stock_batch_movements
+    ALTER COLUMN direction SET NOT NULL,
+    ADD CONSTRAINT stock_batch_movements_direction_check CHECK (direction IN ('IN', 'OUT', 'SET', 'NONE')),
+    ADD CONSTRAINT stock_batch_movements_quantity_check CHECK (quantity >= 0 OR direction = 'SET');
@@ -0,0 +1,12 @@
+-- =============================================
+-- V26: Batch version on stock movement lines
+-- Each line records the version its batch reached when the line was applied.
+-- Versions are bumped under the batch's row lock, so they order a batch's
+-- lines as they actually took effect; movement created_at is taken before
+-- the lock and can run the other way when two movements contend for a batch.
+--
+-- Existing lines cannot be ordered after the fact and start at 0; readers
+-- fall back to creation order among lines with the same version.
+-- =============================================
+
+ALTER TABLE stock_batch_movements ADD COLUMN batch_version BIGINT NOT NULL DEFAULT 0;
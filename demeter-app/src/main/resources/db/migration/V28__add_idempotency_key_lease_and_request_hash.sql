@@ -0,0 +1,14 @@
+-- =============================================
+-- V28: Idempotency key leases and request fingerprints
+-- A key in flight now expires after a short lease instead of the full TTL,
+-- so a claim abandoned by a crashed instance can be taken over; claim_id
+-- tells the owner of the current claim from the one whose lease ran out.
+-- request_hash fingerprints the request body so a key reused with another
+-- payload is refused, and response_location keeps the Location header of
+-- the stored response for replays.
+-- =============================================
+
+ALTER TABLE idempotency_keys
+    ADD COLUMN claim_id UUID,
+    ADD COLUMN request_hash VARCHAR(64),
+    ADD COLUMN response_location VARCHAR(2048);
@@ -0,0 +1,75 @@
+-- =============================================
+-- V29: Partition key on stock movement lines
+-- stock_movements is partitioned by performed_at (V10) and its primary key
+-- is (id, performed_at). Lines joined to their movement on movement_id alone
+-- make every probe search the index of every monthly partition. Each line
+-- now carries its movement's performed_at, which never changes after the
+-- movement is written, so the join covers the whole primary key: a nested
+-- loop probe is pruned at run time to the one partition holding the month.
+-- The same pair restores the foreign key to the movement that V10 had to
+-- drop: a partitioned table can be referenced through its primary key.
+-- =============================================
+
+ALTER TABLE stock_batch_movements ADD COLUMN movement_performed_at TIMESTAMP WITH TIME ZONE;
+
+UPDATE stock_batch_movements sbm
+   SET movement_performed_at = m.performed_at
+  FROM stock_movements m
+ WHERE m.id = sbm.movement_id;
+
+-- Lines whose movement is gone join nothing; keep them ordered by creation
+UPDATE stock_batch_movements SET movement_performed_at = created_at WHERE movement_performed_at IS NULL;
+
+ALTER TABLE stock_batch_movements ALTER COLUMN movement_performed_at SET NOT NULL;
+
+-- Batch ledgers read lines in movement order
+CREATE INDEX idx_stock_batch_movements_batch_performed
+    ON stock_batch_movements(batch_id, movement_performed_at, id);
+
+-- NOT VALID leaves lines whose movement is gone as they are; every line
+-- written from here on must point at an existing movement. Writers insert
+-- the movement row before its lines.
+ALTER TABLE stock_batch_movements
+    ADD CONSTRAINT stock_batch_movements_movement_fkey
+    FOREIGN KEY (movement_id, movement_performed_at) REFERENCES stock_movements(id, performed_at)
+    NOT VALID;
+
+-- Moving a month's rows out of DEFAULT deletes them from stock_movements
+-- before the new partition holding them is attached, which the foreign key
+-- rejects. That only happens when provisioning fell behind, so the key is
+-- dropped around such a move and restored afterwards; the moved rows keep
+-- their (id, performed_at), so no line loses its movement.
+CREATE OR REPLACE FUNCTION create_stock_movement_partition(month_start DATE) RETURNS BOOLEAN AS $$
+DECLARE
+    first_day DATE := month_start - (EXTRACT(DAY FROM month_start)::INT - 1);
+    from_ts   TIMESTAMP WITH TIME ZONE := first_day::timestamp AT TIME ZONE 'UTC';
+    to_ts     TIMESTAMP WITH TIME ZONE := (first_day + INTERVAL '1 month') AT TIME ZONE 'UTC';
+    part      TEXT := format('stock_movements_p%s', to_char(first_day, 'YYYY_MM'));
+    stranded  BOOLEAN;
+BEGIN
+    IF to_regclass(part) IS NOT NULL THEN
+        RETURN false;
+    END IF;
+
+    SELECT EXISTS (SELECT 1 FROM stock_movements_default WHERE performed_at >= from_ts AND performed_at < to_ts)
+      INTO stranded;
+    IF stranded THEN
+        ALTER TABLE stock_batch_movements DROP CONSTRAINT stock_batch_movements_movement_fkey;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE stock_movements INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', part);
+    EXECUTE format(
+        'WITH moved AS (DELETE FROM stock_movements_default WHERE performed_at >= %L AND performed_at < %L RETURNING *) '
+        'INSERT INTO %I SELECT * FROM moved', from_ts, to_ts, part);
+    EXECUTE format('ALTER TABLE stock_movements ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   part, from_ts, to_ts);
+
+    IF stranded THEN
+        ALTER TABLE stock_batch_movements
+            ADD CONSTRAINT stock_batch_movements_movement_fkey
+            FOREIGN KEY (movement_id, movement_performed_at) REFERENCES stock_movements(id, performed_at)
+            NOT VALID;
+    END IF;
+    RETURN true;
+END;
+$$ LANGUAGE plpgsql;
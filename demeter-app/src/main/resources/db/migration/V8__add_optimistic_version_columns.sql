@@ -0,0 +1,9 @@
+-- =============================================
+-- V8: Optimistic locking version columns
+-- Entities holding mutable counters are guarded by JPA @Version so that
+-- concurrent read-modify-write cycles fail fast instead of overwriting.
+-- =============================================
+
+ALTER TABLE stock_batches ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE sales ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE photo_processing_sessions ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,27 @@
+-- =============================================
+-- V9: Stock batch CSV import jobs
+-- Tracks COPY-based bulk loads into stock_batches; rows themselves are
+-- staged in a per-transaction temp table and never persisted here.
+-- =============================================
+
+CREATE TABLE stock_batch_import_jobs (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    tenant_id VARCHAR(64) NOT NULL,
+    status VARCHAR(50) NOT NULL DEFAULT 'PENDING',
+    rows_read BIGINT NOT NULL DEFAULT 0,
+    rows_rejected BIGINT NOT NULL DEFAULT 0,
+    rows_inserted BIGINT NOT NULL DEFAULT 0,
+    rows_updated BIGINT NOT NULL DEFAULT 0,
+    errors JSONB,
+    error_message TEXT,
+    started_at TIMESTAMP WITH TIME ZONE,
+    finished_at TIMESTAMP WITH TIME ZONE,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT now()
+);
+
+CREATE INDEX idx_stock_batch_import_jobs_tenant ON stock_batch_import_jobs(tenant_id, created_at DESC);
+
+ALTER TABLE stock_batch_import_jobs ENABLE ROW LEVEL SECURITY;
+CREATE POLICY tenant_isolation_stock_batch_import_jobs ON stock_batch_import_jobs
+    USING (tenant_id = current_tenant_id());
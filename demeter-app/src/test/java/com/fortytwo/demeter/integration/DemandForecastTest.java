@@ -0,0 +1,151 @@
+package com.fortytwo.demeter.integration;
+
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Completing sales keeps each product's smoothed daily demand current, and forecasts
+ * report it with the days of cover left in stock.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class DemandForecastTest {
+
+    private static final String TENANT = "tenant-demand-forecast";
+
+    private static String productId;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Test
+    @Order(1)
+    void setup_createProductAndStock() {
+        productId = post("/api/v1/products", """
+                {"sku": "FORECAST-PROD-001", "name": "Forecast Product"}
+                """);
+        post("/api/v1/stock-batches", """
+                {"productId": "%s", "batchCode": "FORECAST-001", "quantity": 100, "unit": "units"}
+                """.formatted(productId));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("productId", productId)
+                .when()
+                .get("/api/v1/demand-forecasts")
+                .then()
+                .statusCode(200)
+                .body("$", empty());
+    }
+
+    @Test
+    @Order(2)
+    void completedSales_shouldAccumulateTodaysDemand() {
+        completeSale(10);
+        completeSale(5);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("productId", productId)
+                .when()
+                .get("/api/v1/demand-forecasts")
+                .then()
+                .statusCode(200)
+                .body("productId", contains(productId))
+                .body("[0].dailyDemand", equalTo(15.0f))
+                .body("[0].onHand", equalTo(85.0f))
+                .body("[0].daysOfCover", equalTo(5.7f));
+    }
+
+    @Test
+    @Order(3)
+    void laterDay_shouldSmoothAndDecayDemand() throws Exception {
+        // Pretend the sales above happened two days ago, with no sales yesterday
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE product_demand_forecasts SET open_day = open_day - 2 WHERE product_id = ?")) {
+            ps.setObject(1, UUID.fromString(productId));
+            assertEquals(1, ps.executeUpdate());
+        }
+
+        // 15 seeds the level, decayed by 1 - alpha for the idle day: 15 * 0.7
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("productId", productId)
+                .when()
+                .get("/api/v1/demand-forecasts")
+                .then()
+                .statusCode(200)
+                .body("[0].dailyDemand", equalTo(10.5f))
+                .body("[0].daysOfCover", equalTo(8.1f));
+
+        completeSale(4);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("productId", productId)
+                .when()
+                .get("/api/v1/demand-forecasts")
+                .then()
+                .statusCode(200)
+                .body("[0].dailyDemand", equalTo(10.5f))
+                .body("[0].onHand", equalTo(81.0f));
+    }
+
+    @Test
+    @Order(4)
+    void missingProductIds_shouldReturn400() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/demand-forecasts")
+                .then()
+                .statusCode(400);
+    }
+
+    private String post(String path, String body) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body(body)
+                .when()
+                .post(path)
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    private void completeSale(int quantity) {
+        String saleId = post("/api/v1/sales", """
+                {
+                    "customerName": "Forecast Customer",
+                    "items": [{"productId": "%s", "quantity": %d, "unitPrice": 10.00}]
+                }
+                """.formatted(productId, quantity));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .post("/api/v1/sales/" + saleId + "/complete")
+                .then()
+                .statusCode(200);
+    }
+}
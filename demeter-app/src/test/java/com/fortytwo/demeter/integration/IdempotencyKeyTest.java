@@ -0,0 +1,261 @@
+package com.fortytwo.demeter.integration;
+
+import com.fortytwo.demeter.common.idempotency.IdempotencyStore;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import io.restassured.response.ExtractableResponse;
+import io.restassured.response.Response;
+import io.restassured.response.ValidatableResponse;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Retries carrying the same Idempotency-Key get the first response back and apply
+ * nothing a second time.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class IdempotencyKeyTest {
+
+    private static final String TENANT = "tenant-idempotency";
+
+    private static final String MOVEMENT_KEY = "movement-" + UUID.randomUUID();
+    private static final String SALE_KEY = "sale-" + UUID.randomUUID();
+    private static final String COMPLETE_KEY = "complete-" + UUID.randomUUID();
+    private static final String BODY_KEY = "body-" + UUID.randomUUID();
+    private static final String LEASE_KEY = "lease-" + UUID.randomUUID();
+
+    private static String productId;
+    private static String batchId;
+    private static String movementId;
+    private static String saleId;
+
+    @Inject
+    IdempotencyStore idempotencyStore;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Test
+    @Order(1)
+    void setup_createProductAndBatch() {
+        productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "IDEMP-PROD-001", "name": "Idempotency Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        batchId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"productId": "%s", "batchCode": "IDEMP-001", "quantity": 20, "unit": "units"}
+                        """.formatted(productId))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    @Test
+    @Order(2)
+    void retriedMovement_shouldReplayFirstResponse() {
+        ExtractableResponse<Response> first = postMovement(MOVEMENT_KEY, 2)
+                .statusCode(201)
+                .header("Idempotent-Replayed", nullValue())
+                .extract();
+        movementId = first.path("id");
+        assertTrue(first.header("Location").endsWith("/api/v1/stock-movements/" + movementId));
+
+        postMovement(MOVEMENT_KEY, 2)
+                .statusCode(201)
+                .header("Idempotent-Replayed", equalTo("true"))
+                .header("Location", equalTo(first.header("Location")))
+                .body("id", equalTo(movementId));
+
+        assertBatchQuantity(18.0f);
+    }
+
+    @Test
+    @Order(3)
+    void keyReusedOnAnotherEndpoint_shouldReturn422() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .header("Idempotency-Key", MOVEMENT_KEY)
+                .contentType(ContentType.JSON)
+                .body(saleBody())
+                .when()
+                .post("/api/v1/sales")
+                .then()
+                .statusCode(422);
+    }
+
+    @Test
+    @Order(4)
+    void retriedSaleAndCompletion_shouldApplyOnce() {
+        saleId = postSale().statusCode(201).extract().path("id");
+        postSale().statusCode(201).body("id", equalTo(saleId));
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            given()
+                    .header("X-Tenant-ID", TENANT)
+                    .header("Idempotency-Key", COMPLETE_KEY)
+                    .when()
+                    .post("/api/v1/sales/" + saleId + "/complete")
+                    .then()
+                    .statusCode(200)
+                    .body("status", equalTo("COMPLETED"));
+        }
+
+        assertBatchQuantity(15.0f);
+    }
+
+    @Test
+    @Order(5)
+    void expiredKeys_shouldBePurged() throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("""
+                     UPDATE idempotency_keys SET expires_at = now() - interval '1 minute'
+                      WHERE tenant_id = ? AND idempotency_key = ?
+                     """)) {
+            ps.setString(1, TENANT);
+            ps.setString(2, MOVEMENT_KEY);
+            assertEquals(1, ps.executeUpdate());
+        }
+
+        assertTrue(idempotencyStore.purgeExpired() >= 1);
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT count(*) FROM idempotency_keys WHERE tenant_id = ? AND idempotency_key = ?")) {
+            ps.setString(1, TENANT);
+            ps.setString(2, MOVEMENT_KEY);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                assertEquals(0, rs.getInt(1));
+            }
+        }
+    }
+
+    private ValidatableResponse postMovement(String key, int quantity) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .header("Idempotency-Key", key)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movementType": "MUERTE",
+                            "quantity": %d,
+                            "batchQuantities": [{"batchId": "%s", "quantity": %d}]
+                        }
+                        """.formatted(quantity, batchId, quantity))
+                .when()
+                .post("/api/v1/stock-movements")
+                .then();
+    }
+
+    @Test
+    @Order(6)
+    void keyReusedWithAnotherBody_shouldReturn422() {
+        postMovement(BODY_KEY, 1).statusCode(201);
+
+        postMovement(BODY_KEY, 2)
+                .statusCode(422)
+                .body("detail", containsString("different request body"));
+
+        assertBatchQuantity(14.0f);
+    }
+
+    @Test
+    @Order(7)
+    void abandonedClaim_shouldBeTakenOverOnceItsLeaseEnds() throws Exception {
+        // A claim left behind by an instance that died before answering
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("""
+                     INSERT INTO idempotency_keys (tenant_id, idempotency_key, request_method, request_path,
+                                                   claim_id, expires_at)
+                     VALUES (?, ?, 'POST', '/api/v1/stock-movements', ?, now() + interval '1 minute')
+                     """)) {
+            ps.setString(1, TENANT);
+            ps.setString(2, LEASE_KEY);
+            ps.setObject(3, UUID.randomUUID());
+            ps.executeUpdate();
+        }
+
+        postMovement(LEASE_KEY, 1).statusCode(409);
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("""
+                     UPDATE idempotency_keys SET expires_at = now() - interval '1 second'
+                      WHERE tenant_id = ? AND idempotency_key = ?
+                     """)) {
+            ps.setString(1, TENANT);
+            ps.setString(2, LEASE_KEY);
+            assertEquals(1, ps.executeUpdate());
+        }
+
+        postMovement(LEASE_KEY, 1)
+                .statusCode(201)
+                .header("Idempotent-Replayed", nullValue());
+        postMovement(LEASE_KEY, 1)
+                .statusCode(201)
+                .header("Idempotent-Replayed", equalTo("true"));
+
+        assertBatchQuantity(13.0f);
+    }
+
+    private ValidatableResponse postSale() {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .header("Idempotency-Key", SALE_KEY)
+                .contentType(ContentType.JSON)
+                .body(saleBody())
+                .when()
+                .post("/api/v1/sales")
+                .then();
+    }
+
+    private String saleBody() {
+        return """
+                {
+                    "customerName": "Idempotency Customer",
+                    "items": [{"productId": "%s", "batchId": "%s", "quantity": 3, "unitPrice": 10.00}]
+                }
+                """.formatted(productId, batchId);
+    }
+
+    private void assertBatchQuantity(float quantity) {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId)
+                .then()
+                .statusCode(200)
+                .body("quantity", equalTo(quantity));
+    }
+}
@@ -216,6 +216,20 @@ class MultiTenantIsolationTest {
                 .statusCode(201)
                 .extract().path("id");
 
+        // Stock each product, since a new sale holds its items' units
+        for (String[] stock : new String[][] {{tenantA, productAId}, {tenantB, productBId}}) {
+            given()
+                    .header("X-Tenant-ID", stock[0])
+                    .contentType(ContentType.JSON)
+                    .body("""
+                            {"productId": "%s", "batchCode": "SALE-ISO-B1", "quantity": 10, "unit": "units"}
+                            """.formatted(stock[1]))
+                    .when()
+                    .post("/api/v1/stock-batches")
+                    .then()
+                    .statusCode(201);
+        }
+
         // Create sale for tenant A
         String saleAId = given()
                 .header("X-Tenant-ID", tenantA)
@@ -0,0 +1,265 @@
+package com.fortytwo.demeter.integration;
+
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Promoted custom attributes: declaring them builds per-tenant expression indexes,
+ * and the batch list filters and sorts through those expressions with the same
+ * results the JSONB predicates give.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class PromotedAttributeTest {
+
+    private static final String TENANT = "tenant-promoted-attrs";
+
+    private static String productId;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Test
+    @Order(1)
+    void setup_createTenantProductAndBatches() {
+        given()
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"id": "%s", "name": "Promoted Attrs", "industry": "VIVERO"}
+                        """.formatted(TENANT))
+                .when()
+                .post("/api/v1/tenants")
+                .then()
+                .statusCode(201);
+
+        productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "PROMO-PROD-001", "name": "Promoted Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        createBatch("PROMO-BATCH-ROMA", """
+                {"variety": "Roma", "pot_size": 12}""");
+        createBatch("PROMO-BATCH-CHERRY", """
+                {"variety": "Cherry", "pot_size": 20}""");
+        // pot_size stored as a string never matches the numeric column
+        createBatch("PROMO-BATCH-BEEF", """
+                {"variety": "Beef", "pot_size": "large"}""");
+    }
+
+    @Test
+    @Order(2)
+    void promoteAttributes_shouldCreateTenantIndexesAndStoreSettings() throws Exception {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"attributes": [
+                            {"key": "variety", "type": "TEXT"},
+                            {"key": "pot_size", "type": "NUMERIC"}
+                        ]}
+                        """)
+                .when()
+                .put("/api/v1/stock-batches/promoted-attributes")
+                .then()
+                .statusCode(200)
+                .body("size()", equalTo(2));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/tenants/" + TENANT + "/config")
+                .then()
+                .statusCode(200)
+                .body("settings.promotedAttributes.key", contains("variety", "pot_size"));
+
+        assertEquals(2, tenantIndexCount());
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("""
+                     SELECT count(*) FROM pg_attribute
+                      WHERE attrelid = 'stock_batches'::regclass AND attname LIKE 'attr\\_%' AND NOT attisdropped
+                     """);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            assertEquals(0, rs.getLong(1), "promotion must not add columns to stock_batches");
+        }
+    }
+
+    @Test
+    @Order(3)
+    void filterOnPromotedAttributes_shouldMatchJsonSemantics() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("attr", "variety:Cherry")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(200)
+                .body("totalElements", equalTo(1))
+                .body("content[0].batchCode", equalTo("PROMO-BATCH-CHERRY"));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("attrRange", "pot_size:10..15")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(200)
+                .body("content.batchCode", contains("PROMO-BATCH-ROMA"));
+
+        // A numeric value on a text column falls back to JSONB containment
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("attr", "variety:12")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(200)
+                .body("totalElements", equalTo(0));
+    }
+
+    @Test
+    @Order(4)
+    void sortOnPromotedAttribute_shouldOrderByColumn() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("sort", "attr.variety")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(200)
+                .body("content.batchCode", contains("PROMO-BATCH-BEEF", "PROMO-BATCH-CHERRY", "PROMO-BATCH-ROMA"));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("sort", "-attr.pot_size")
+                .queryParam("attrRange", "pot_size:0..")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(200)
+                .body("content.batchCode", contains("PROMO-BATCH-CHERRY", "PROMO-BATCH-ROMA"));
+    }
+
+    @Test
+    @Order(5)
+    void invalidPromotions_shouldReturn400() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"attributes": [{"key": "Bad-Key", "type": "TEXT"}]}
+                        """)
+                .when()
+                .put("/api/v1/stock-batches/promoted-attributes")
+                .then()
+                .statusCode(400);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"attributes": [
+                            {"key": "variety", "type": "TEXT"},
+                            {"key": "variety", "type": "NUMERIC"}
+                        ]}
+                        """)
+                .when()
+                .put("/api/v1/stock-batches/promoted-attributes")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(6)
+    void unpromoteAttribute_shouldDropItsIndex() throws Exception {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"attributes": [{"key": "variety", "type": "TEXT"}]}
+                        """)
+                .when()
+                .put("/api/v1/stock-batches/promoted-attributes")
+                .then()
+                .statusCode(200);
+
+        assertEquals(1, tenantIndexCount());
+
+        // Still filtered correctly through JSONB once the index is gone
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("attr", "pot_size:12")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(200)
+                .body("content.batchCode", contains("PROMO-BATCH-ROMA"));
+
+        // but ranges need the numeric declaration
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("attrRange", "pot_size:10..15")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(400);
+    }
+
+    private long tenantIndexCount() throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("""
+                     SELECT count(*) FROM pg_indexes
+                      WHERE tablename = 'stock_batches' AND indexname LIKE 'idx_stock_batches_attr\\_%'
+                        AND indexdef LIKE '%' || ? || '%'
+                     """)) {
+            ps.setString(1, "'" + TENANT + "'");
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private void createBatch(String batchCode, String customAttributes) {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "productId": "%s",
+                            "batchCode": "%s",
+                            "quantity": 10,
+                            "unit": "units",
+                            "customAttributes": %s
+                        }
+                        """.formatted(productId, batchCode, customAttributes))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201);
+    }
+}
@@ -0,0 +1,433 @@
+package com.fortytwo.demeter.integration;
+
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sale items without a batch are allocated first-expiry-first-out at completion and
+ * split across batches when one is not enough. Batches locked by another transaction
+ * are waited on for a bounded time, and sales sharing batches do not deadlock.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class SaleFefoAllocationTest {
+
+    private static final String TENANT = "tenant-sale-fefo";
+
+    private static String productId;
+    private static String earlyBatchId;
+    private static String lateBatchId;
+    private static String noExpiryBatchId;
+    private static String expiredBatchId;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Test
+    @Order(1)
+    void setup_createProductAndBatches() {
+        productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "FEFO-PROD-001", "name": "FEFO Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        Instant now = Instant.now();
+        lateBatchId = createBatch("FEFO-LATE", 5, now.plus(Duration.ofDays(60)));
+        earlyBatchId = createBatch("FEFO-EARLY", 4, now.plus(Duration.ofDays(10)));
+        noExpiryBatchId = createBatch("FEFO-NO-EXPIRY", 100, null);
+        expiredBatchId = createBatch("FEFO-EXPIRED", 50, now.minus(Duration.ofDays(1)));
+    }
+
+    @Test
+    @Order(2)
+    void completeSale_shouldSplitAcrossBatchesInExpiryOrder() {
+        String saleId = createSale(6);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .post("/api/v1/sales/" + saleId + "/complete")
+                .then()
+                .statusCode(200)
+                .body("status", equalTo("COMPLETED"))
+                .body("items[0].batchId", nullValue());
+
+        assertBatchQuantity(earlyBatchId, 0.0f, "DEPLETED");
+        assertBatchQuantity(lateBatchId, 3.0f, "ACTIVE");
+        assertBatchQuantity(noExpiryBatchId, 100.0f, "ACTIVE");
+        assertBatchQuantity(expiredBatchId, 50.0f, "ACTIVE");
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-movements/by-reference/" + saleId)
+                .then()
+                .statusCode(200)
+                .body("size()", equalTo(1))
+                .body("[0].movementType", equalTo("VENTA"))
+                .body("[0].batchMovements.size()", equalTo(2));
+    }
+
+    @Test
+    @Order(3)
+    void completeSale_coveredByOneBatch_shouldAssignIt() {
+        String saleId = createSale(2);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .post("/api/v1/sales/" + saleId + "/complete")
+                .then()
+                .statusCode(200)
+                .body("items[0].batchId", equalTo(lateBatchId));
+
+        assertBatchQuantity(lateBatchId, 1.0f, "ACTIVE");
+    }
+
+    @Test
+    @Order(4)
+    void completeSale_withInsufficientStock_shouldListEveryShortItemAndStayPending() throws Exception {
+        String shortProductId = createProduct("FEFO-PROD-003", "FEFO Short Product");
+        String soonBatchId = createBatch(shortProductId, "FEFO-SHORT-SOON", 3, Instant.now().plus(Duration.ofDays(30)));
+        String openBatchId = createBatch(shortProductId, "FEFO-SHORT-OPEN", 2, null);
+        // Pins 2 of the soon batch and leaves 3 to FEFO
+        String saleId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "customerName": "FEFO Customer",
+                            "items": [
+                                {"productId": "%1$s", "batchId": "%2$s", "quantity": 2, "unitPrice": 10.00},
+                                {"productId": "%1$s", "quantity": 3, "unitPrice": 10.00}
+                            ]
+                        }
+                        """.formatted(shortProductId, soonBatchId))
+                .when()
+                .post("/api/v1/sales")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        // Once the sale's holds lapse, losses leave 1 unit in each batch
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE stock_reservations SET expires_at = now() - interval '1 minute' WHERE reference_id = ?")) {
+            ps.setObject(1, UUID.fromString(saleId));
+            ps.executeUpdate();
+        }
+        recordLoss(soonBatchId, 2);
+        recordLoss(openBatchId, 1);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .post("/api/v1/sales/" + saleId + "/complete")
+                .then()
+                .statusCode(409)
+                .body("message", equalTo("Insufficient Stock"))
+                .body("detail", containsString("batch " + soonBatchId + ", batch short by 1"))
+                .body("detail", containsString("product " + shortProductId + ", short by 2"));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/sales/" + saleId)
+                .then()
+                .statusCode(200)
+                .body("status", equalTo("PENDING"));
+
+        assertBatchQuantity(soonBatchId, 1.0f, "ACTIVE");
+        assertBatchQuantity(openBatchId, 1.0f, "ACTIVE");
+        assertBatchQuantity(lateBatchId, 1.0f, "ACTIVE");
+        assertBatchQuantity(noExpiryBatchId, 100.0f, "ACTIVE");
+    }
+
+    @Test
+    @Order(5)
+    void completeSale_concurrentSalesSharingBatches_shouldBothComplete() throws Exception {
+        // Each sale pins one batch and leaves a line to FEFO that may draw from the
+        // other's pinned batch; taking every lock up front in id order keeps them from
+        // waiting on each other
+        String otherProductId = createProduct("FEFO-PROD-002", "FEFO Shared Product");
+        String soonBatchId = createBatch(otherProductId, "FEFO-SHARED-SOON", 5, Instant.now().plus(Duration.ofDays(5)));
+        String openBatchId = createBatch(otherProductId, "FEFO-SHARED-OPEN", 5, null);
+
+        String saleA = createSale(otherProductId, openBatchId);
+        String saleB = createSale(otherProductId, soonBatchId);
+        CompletableFuture<Integer> completeA = CompletableFuture.supplyAsync(() -> completeSale(saleA));
+        CompletableFuture<Integer> completeB = CompletableFuture.supplyAsync(() -> completeSale(saleB));
+
+        assertEquals(200, completeA.get());
+        assertEquals(200, completeB.get());
+        assertEquals(4.0f, batchQuantity(soonBatchId) + batchQuantity(openBatchId));
+    }
+
+    @Test
+    @Order(6)
+    void completeSale_withSeveralItems_shouldNotAllocateTheSameStockTwice() {
+        // The pinned line takes the last unit of the late batch; the unbatched lines
+        // must allocate around it and around each other
+        String saleId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "customerName": "FEFO Customer",
+                            "items": [
+                                {"productId": "%1$s", "quantity": 2, "unitPrice": 10.00},
+                                {"productId": "%1$s", "batchId": "%2$s", "quantity": 1, "unitPrice": 10.00},
+                                {"productId": "%1$s", "quantity": 3, "unitPrice": 10.00}
+                            ]
+                        }
+                        """.formatted(productId, lateBatchId))
+                .when()
+                .post("/api/v1/sales")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .post("/api/v1/sales/" + saleId + "/complete")
+                .then()
+                .statusCode(200)
+                .body("status", equalTo("COMPLETED"));
+
+        assertBatchQuantity(lateBatchId, 0.0f, "DEPLETED");
+        assertBatchQuantity(noExpiryBatchId, 95.0f, "ACTIVE");
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-movements/by-reference/" + saleId)
+                .then()
+                .statusCode(200)
+                .body("size()", equalTo(3));
+    }
+
+    @Test
+    @Order(7)
+    void completeSale_whenOnlyCandidateIsBrieflyLocked_shouldWaitForIt() throws Exception {
+        String saleId = createSale(1);
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            lockBatch(conn, noExpiryBatchId);
+            CompletableFuture<Void> release = CompletableFuture.runAsync(() -> {
+                try {
+                    Thread.sleep(200);
+                    conn.rollback();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            given()
+                    .header("X-Tenant-ID", TENANT)
+                    .when()
+                    .post("/api/v1/sales/" + saleId + "/complete")
+                    .then()
+                    .statusCode(200)
+                    .body("items[0].batchId", equalTo(noExpiryBatchId));
+
+            release.join();
+        }
+
+        assertBatchQuantity(noExpiryBatchId, 94.0f, "ACTIVE");
+    }
+
+    @Test
+    @Order(8)
+    void completeSale_whenOnlyCandidateStaysLocked_shouldReturn503AndStayPending() throws Exception {
+        String saleId = createSale(1);
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            lockBatch(conn, noExpiryBatchId);
+
+            given()
+                    .header("X-Tenant-ID", TENANT)
+                    .when()
+                    .post("/api/v1/sales/" + saleId + "/complete")
+                    .then()
+                    .statusCode(503);
+
+            conn.rollback();
+        }
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/sales/" + saleId)
+                .then()
+                .statusCode(200)
+                .body("status", equalTo("PENDING"));
+
+        assertBatchQuantity(noExpiryBatchId, 94.0f, "ACTIVE");
+    }
+
+    private static void lockBatch(Connection conn, String batchId) throws Exception {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT id FROM stock_batches WHERE id = ? FOR UPDATE")) {
+            ps.setObject(1, UUID.fromString(batchId));
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+            }
+        }
+    }
+
+    private String createProduct(String sku, String name) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "%s", "name": "%s"}
+                        """.formatted(sku, name))
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    private void recordLoss(String batchId, int quantity) {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movementType": "MUERTE",
+                            "quantity": %d,
+                            "batchQuantities": [{"batchId": "%s", "quantity": %d}]
+                        }
+                        """.formatted(quantity, batchId, quantity))
+                .when()
+                .post("/api/v1/stock-movements")
+                .then()
+                .statusCode(201);
+    }
+
+    private String createBatch(String batchCode, int quantity, Instant expiryDate) {
+        return createBatch(productId, batchCode, quantity, expiryDate);
+    }
+
+    private String createBatch(String productId, String batchCode, int quantity, Instant expiryDate) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "productId": "%s",
+                            "batchCode": "%s",
+                            "quantity": %d,
+                            "unit": "units",
+                            "expiryDate": %s
+                        }
+                        """.formatted(productId, batchCode, quantity,
+                        expiryDate != null ? "\"" + expiryDate + "\"" : "null"))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    private String createSale(int quantity) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "customerName": "FEFO Customer",
+                            "items": [{"productId": "%s", "quantity": %d, "unitPrice": 10.00}]
+                        }
+                        """.formatted(productId, quantity))
+                .when()
+                .post("/api/v1/sales")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    /** A sale of the product with one line pinned to {@code batchId} and one left to FEFO. */
+    private String createSale(String productId, String batchId) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "customerName": "FEFO Customer",
+                            "items": [
+                                {"productId": "%1$s", "batchId": "%2$s", "quantity": 1, "unitPrice": 10.00},
+                                {"productId": "%1$s", "quantity": 2, "unitPrice": 10.00}
+                            ]
+                        }
+                        """.formatted(productId, batchId))
+                .when()
+                .post("/api/v1/sales")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    private int completeSale(String saleId) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .post("/api/v1/sales/" + saleId + "/complete")
+                .then()
+                .extract().statusCode();
+    }
+
+    private float batchQuantity(String batchId) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId)
+                .then()
+                .statusCode(200)
+                .extract().path("quantity");
+    }
+
+    private void assertBatchQuantity(String batchId, float quantity, String status) {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId)
+                .then()
+                .statusCode(200)
+                .body("quantity", equalTo(quantity))
+                .body("status", equalTo(status));
+    }
+}
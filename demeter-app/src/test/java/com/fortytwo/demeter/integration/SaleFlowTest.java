@@ -1,17 +1,26 @@
 package com.fortytwo.demeter.integration;
 
+import io.agroal.api.AgroalDataSource;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.security.TestSecurity;
 import io.restassured.http.ContentType;
+import io.restassured.response.ValidatableResponse;
+import jakarta.inject.Inject;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.UUID;
+
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
  * End-to-end sale flow test.
@@ -30,6 +39,9 @@ class SaleFlowTest {
     private static String saleId;
     private static String cancelTestSaleId;
 
+    @Inject
+    AgroalDataSource dataSource;
+
     @Test
     @Order(1)
     void setup_createProduct() {
@@ -333,4 +345,78 @@ class SaleFlowTest {
                 .then()
                 .statusCode(404);
     }
+
+    @Test
+    @Order(15)
+    void completeSale_beyondBatchQuantity_shouldReturn409AndApplyNothing() throws Exception {
+        String shortSaleId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "customerName": "Short Stock Customer",
+                            "items": [
+                                {"productId": "%s", "batchId": "%s", "quantity": 30, "unitPrice": 10.00}
+                            ]
+                        }
+                        """.formatted(productId, batchId))
+                .when()
+                .post("/api/v1/sales")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        // While the sale's hold stands, only the 60 units it does not cover can be lost
+        recordLoss(80).statusCode(409);
+
+        // Once the hold has lapsed, losses can leave the batch with 10 of 90
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE stock_reservations SET expires_at = now() - interval '1 minute' WHERE reference_id = ?")) {
+            ps.setObject(1, UUID.fromString(shortSaleId));
+            assertEquals(1, ps.executeUpdate());
+        }
+        recordLoss(80).statusCode(201);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .post("/api/v1/sales/" + shortSaleId + "/complete")
+                .then()
+                .statusCode(409)
+                .body("detail", containsString("batch short by 20"));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/sales/" + shortSaleId)
+                .then()
+                .statusCode(200)
+                .body("status", equalTo("PENDING"));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId)
+                .then()
+                .statusCode(200)
+                .body("quantity", equalTo(10.0f))
+                .body("status", equalTo("ACTIVE"));
+    }
+
+    private ValidatableResponse recordLoss(int quantity) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movementType": "MUERTE",
+                            "quantity": %d,
+                            "batchQuantities": [{"batchId": "%s", "quantity": %d}]
+                        }
+                        """.formatted(quantity, batchId, quantity))
+                .when()
+                .post("/api/v1/stock-movements")
+                .then();
+    }
 }
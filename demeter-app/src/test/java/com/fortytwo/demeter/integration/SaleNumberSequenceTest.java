@@ -0,0 +1,118 @@
+package com.fortytwo.demeter.integration;
+
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sale numbers are sequential per tenant and reserved from the counter a block at a
+ * time rather than once per sale.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class SaleNumberSequenceTest {
+
+    private static final String TENANT = "tenant-sale-numbers";
+    private static final String OTHER_TENANT = "tenant-sale-numbers-other";
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Test
+    @Order(1)
+    void newTenant_shouldNumberSalesFromOne() throws Exception {
+        String productId = createProduct(TENANT);
+
+        assertEquals("SALE-000001", createSale(TENANT, productId));
+        assertEquals("SALE-000002", createSale(TENANT, productId));
+        assertEquals("SALE-000003", createSale(TENANT, productId));
+
+        // One block of 50 covers all three
+        assertEquals(51L, counterValue(TENANT));
+    }
+
+    @Test
+    @Order(2)
+    void tenants_shouldHaveIndependentSequences() throws Exception {
+        String productId = createProduct(OTHER_TENANT);
+
+        assertEquals("SALE-000001", createSale(OTHER_TENANT, productId));
+        assertEquals("SALE-000004", createSale(TENANT, createProduct(TENANT, "SEQ-PROD-002")));
+        assertTrue(counterValue(OTHER_TENANT) > 1);
+    }
+
+    private String createProduct(String tenant) {
+        return createProduct(tenant, "SEQ-PROD-001");
+    }
+
+    /** Creates a product with stock on hand, since a new sale holds its items' units. */
+    private String createProduct(String tenant, String sku) {
+        String productId = given()
+                .header("X-Tenant-ID", tenant)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "%s", "name": "Sequence Product"}
+                        """.formatted(sku))
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        given()
+                .header("X-Tenant-ID", tenant)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"productId": "%s", "batchCode": "%s-B1", "quantity": 10, "unit": "units"}
+                        """.formatted(productId, sku))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201);
+        return productId;
+    }
+
+    private String createSale(String tenant, String productId) {
+        return given()
+                .header("X-Tenant-ID", tenant)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "customerName": "Sequence Customer",
+                            "items": [{"productId": "%s", "quantity": 1, "unitPrice": 10.00}]
+                        }
+                        """.formatted(productId))
+                .when()
+                .post("/api/v1/sales")
+                .then()
+                .statusCode(201)
+                .extract().path("saleNumber");
+    }
+
+    private long counterValue(String tenant) throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT next_value FROM sale_number_counters WHERE tenant_id = ?")) {
+            ps.setString(1, tenant);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getLong(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.fortytwo.demeter.integration;
+
+import com.fortytwo.demeter.inventario.service.StockReservationService;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pending sales hold their quantity, pinned items of their batch and unbatched ones of
+ * the batches FEFO would pick: a second sale cannot be promised the same units, and
+ * holds end on cancel, completion or expiry.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class SaleReservationTest {
+
+    private static final String TENANT = "tenant-sale-reservation";
+
+    private static String productId;
+    private static String batchId;
+    private static String firstSaleId;
+    private static String secondSaleId;
+
+    @Inject
+    StockReservationService stockReservationService;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Test
+    @Order(1)
+    void setup_createProductAndBatch() {
+        productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "RESV-PROD-001", "name": "Reservation Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        batchId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"productId": "%s", "batchCode": "RESV-001", "quantity": 10, "unit": "trays"}
+                        """.formatted(productId))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    @Test
+    @Order(2)
+    void createSale_shouldReserveBatchQuantity() {
+        firstSaleId = createSale(8, 201);
+
+        assertAvailability(10.0f, 8.0f, 2.0f);
+    }
+
+    @Test
+    @Order(3)
+    void createSale_beyondAvailable_shouldReturn409() {
+        createSale(5, 409);
+
+        assertAvailability(10.0f, 8.0f, 2.0f);
+    }
+
+    @Test
+    @Order(4)
+    void cancelSale_shouldReleaseReservation() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .post("/api/v1/sales/" + firstSaleId + "/cancel")
+                .then()
+                .statusCode(200);
+
+        assertAvailability(10.0f, 0.0f, 10.0f);
+        secondSaleId = createSale(5, 201);
+    }
+
+    @Test
+    @Order(5)
+    void completeSale_shouldConsumeReservation() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .post("/api/v1/sales/" + secondSaleId + "/complete")
+                .then()
+                .statusCode(200)
+                .body("status", equalTo("COMPLETED"));
+
+        assertAvailability(5.0f, 0.0f, 5.0f);
+    }
+
+    @Test
+    @Order(6)
+    void expiredReservation_shouldStopCountingAndBePurged() throws Exception {
+        String saleId = createSale(5, 201);
+        assertAvailability(5.0f, 5.0f, 0.0f);
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE stock_reservations SET expires_at = now() - interval '1 minute' WHERE reference_id = ?")) {
+            ps.setObject(1, UUID.fromString(saleId));
+            assertEquals(1, ps.executeUpdate());
+        }
+
+        assertEquals(1, stockReservationService.purgeExpired());
+        assertAvailability(5.0f, 0.0f, 5.0f);
+    }
+
+    @Test
+    @Order(7)
+    void createUnbatchedSale_shouldHoldStockAgainstLaterSales() {
+        createUnbatchedSale(4, 201);
+        assertAvailability(5.0f, 4.0f, 1.0f);
+
+        createUnbatchedSale(2, 409);
+        createSale(2, 409);
+        assertAvailability(5.0f, 4.0f, 1.0f);
+    }
+
+    @Test
+    @Order(8)
+    void availability_withoutBatchId_shouldReturn400() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/availability")
+                .then()
+                .statusCode(400);
+    }
+
+    private String createSale(int quantity, int expectedStatus) {
+        var response = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "customerName": "Reservation Customer",
+                            "items": [{"productId": "%s", "batchId": "%s", "quantity": %d, "unitPrice": 10.00}]
+                        }
+                        """.formatted(productId, batchId, quantity))
+                .when()
+                .post("/api/v1/sales")
+                .then()
+                .statusCode(expectedStatus);
+        return expectedStatus == 201 ? response.extract().path("id") : null;
+    }
+
+    private void createUnbatchedSale(int quantity, int expectedStatus) {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "customerName": "Reservation Customer",
+                            "items": [{"productId": "%s", "quantity": %d, "unitPrice": 10.00}]
+                        }
+                        """.formatted(productId, quantity))
+                .when()
+                .post("/api/v1/sales")
+                .then()
+                .statusCode(expectedStatus);
+    }
+
+    private void assertAvailability(float quantity, float reserved, float available) {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("batchId", batchId)
+                .when()
+                .get("/api/v1/stock-batches/availability")
+                .then()
+                .statusCode(200)
+                .body("size()", equalTo(1))
+                .body("[0].quantity", equalTo(quantity))
+                .body("[0].reserved", equalTo(reserved))
+                .body("[0].available", equalTo(available));
+    }
+}
@@ -0,0 +1,188 @@
+package com.fortytwo.demeter.integration;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Product × warehouse availability grid: dense rows per product, one column per
+ * warehouse (unassigned last), non-ACTIVE batches left out, and 304 on a matching ETag
+ * until batches, reservations, products or warehouses change.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class StockAvailabilityMatrixTest {
+
+    private static final String TENANT = "tenant-availability-matrix";
+
+    private static String categoryId;
+    private static String productA;
+    private static String productB;
+    private static String northId;
+    private static String southId;
+    private static String etag;
+
+    @Test
+    @Order(1)
+    void setup_createProductsWarehousesAndBatches() {
+        categoryId = post("/api/v1/categories", """
+                {"name": "Matrix Succulents"}
+                """);
+        productA = post("/api/v1/products", """
+                {"sku": "MATRIX-A", "name": "Matrix Product A", "categoryId": "%s"}
+                """.formatted(categoryId));
+        productB = post("/api/v1/products", """
+                {"sku": "MATRIX-B", "name": "Matrix Product B"}
+                """);
+        northId = post("/api/v1/warehouses", """
+                {"name": "Matrix North"}
+                """);
+        southId = post("/api/v1/warehouses", """
+                {"name": "Matrix South"}
+                """);
+
+        createBatch(productA, "MATRIX-A-N1", 10, northId);
+        createBatch(productA, "MATRIX-A-N2", 5, northId);
+        createBatch(productA, "MATRIX-A-NONE", 3, null);
+        createBatch(productB, "MATRIX-B-S1", 7, southId);
+        String cancelled = createBatch(productB, "MATRIX-B-N1", 40, northId);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"status": "CANCELLED", "batchIds": ["%s"]}
+                        """.formatted(cancelled))
+                .when()
+                .post("/api/v1/stock-batches/status-transitions")
+                .then()
+                .statusCode(200);
+    }
+
+    @Test
+    @Order(2)
+    void matrix_shouldSumPerProductAndWarehouse() {
+        etag = given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/availability-matrix")
+                .then()
+                .statusCode(200)
+                .header("ETag", notNullValue())
+                .body("products.sku", contains("MATRIX-A", "MATRIX-B"))
+                .body("warehouses.id", contains(northId, southId, null))
+                .body("warehouses[2].name", nullValue())
+                .body("available[0]", contains(15.0f, 0.0f, 3.0f))
+                .body("available[1]", contains(0.0f, 7.0f, 0.0f))
+                .extract().header("ETag");
+    }
+
+    @Test
+    @Order(3)
+    void matrix_withMatchingEtag_shouldReturn304() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .header("If-None-Match", etag)
+                .when()
+                .get("/api/v1/stock-batches/availability-matrix")
+                .then()
+                .statusCode(304);
+    }
+
+    @Test
+    @Order(4)
+    void matrix_afterStockChange_shouldReturnNewEtag() {
+        createBatch(productB, "MATRIX-B-S2", 1, southId);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .header("If-None-Match", etag)
+                .when()
+                .get("/api/v1/stock-batches/availability-matrix")
+                .then()
+                .statusCode(200)
+                .body("available[1][1]", equalTo(8.0f));
+    }
+
+    @Test
+    @Order(5)
+    void matrix_filteredByCategory_shouldKeepOnlyItsProducts() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("categoryId", categoryId)
+                .when()
+                .get("/api/v1/stock-batches/availability-matrix")
+                .then()
+                .statusCode(200)
+                .body("products.id", contains(productA))
+                .body("warehouses.id", contains(northId, null))
+                .body("available[0]", contains(15.0f, 3.0f));
+    }
+
+    @Test
+    @Order(6)
+    void matrix_afterReservation_shouldReturnNewEtag() {
+        String current = given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/availability-matrix")
+                .then()
+                .statusCode(200)
+                .extract().header("ETag");
+
+        // A pending sale holds stock without touching any batch row
+        post("/api/v1/sales", """
+                {
+                    "customerName": "Matrix Customer",
+                    "items": [{"productId": "%s", "quantity": 2, "unitPrice": 10.00}]
+                }
+                """.formatted(productB));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .header("If-None-Match", current)
+                .when()
+                .get("/api/v1/stock-batches/availability-matrix")
+                .then()
+                .statusCode(200)
+                .header("ETag", not(equalTo(current)))
+                .body("available[1][1]", equalTo(6.0f));
+    }
+
+    private String post(String path, String body) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body(body)
+                .when()
+                .post(path)
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    private String createBatch(String productId, String batchCode, int quantity, String warehouseId) {
+        return post("/api/v1/stock-batches", """
+                {
+                    "productId": "%s",
+                    "batchCode": "%s",
+                    "quantity": %d,
+                    "unit": "units",
+                    "warehouseId": %s
+                }
+                """.formatted(productId, batchCode, quantity,
+                warehouseId != null ? "\"" + warehouseId + "\"" : "null"));
+    }
+}
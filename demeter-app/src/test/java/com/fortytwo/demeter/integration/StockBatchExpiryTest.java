@@ -0,0 +1,163 @@
+package com.fortytwo.demeter.integration;
+
+import com.fortytwo.demeter.inventario.service.StockBatchExpirySweeper;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Expiry sweep and the expiring-within-N-days listing. The sweep is run for this
+ * tenant only so other test classes' batches are left alone.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class StockBatchExpiryTest {
+
+    private static final String TENANT = "tenant-batch-expiry";
+
+    private static String productId;
+    private static String pastBatchId;
+
+    @Inject
+    StockBatchExpirySweeper expirySweeper;
+
+    @Test
+    @Order(1)
+    void setup_createProductAndBatches() {
+        productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "EXP-PROD-001", "name": "Expiry Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        Instant now = Instant.now();
+        pastBatchId = createBatch("EXP-PAST-2D", 10, now.minus(Duration.ofDays(2)));
+        createBatch("EXP-PAST-1D", 5, now.minus(Duration.ofDays(1)));
+        createBatch("EXP-SOON", 20, now.plus(Duration.ofDays(3)));
+        createBatch("EXP-LATER", 30, now.plus(Duration.ofDays(30)));
+        createBatch("EXP-NONE", 40, null);
+    }
+
+    @Test
+    @Order(2)
+    void expiring_shouldListActiveBatchesSoonestFirst() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("days", 7)
+                .when()
+                .get("/api/v1/stock-batches/expiring")
+                .then()
+                .statusCode(200)
+                .body("totalElements", equalTo(3))
+                .body("content.batchCode", contains("EXP-PAST-2D", "EXP-PAST-1D", "EXP-SOON"));
+    }
+
+    @Test
+    @Order(3)
+    void sweep_shouldExpireDueBatchesAndRecordOneMovement() throws Exception {
+        assertEquals(2, expirySweeper.sweepTenant(TENANT));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + pastBatchId)
+                .then()
+                .statusCode(200)
+                .body("status", equalTo("EXPIRED"))
+                .body("quantity", equalTo(10.0f));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("type", "VENCIMIENTO")
+                .when()
+                .get("/api/v1/stock-movements")
+                .then()
+                .statusCode(200)
+                .body("totalElements", equalTo(1))
+                .body("content[0].quantity", equalTo(15.0f))
+                .body("content[0].batchMovements.size()", equalTo(2));
+
+        assertEquals(0, expirySweeper.sweepTenant(TENANT));
+    }
+
+    @Test
+    @Order(4)
+    void expiring_afterSweep_shouldOnlyListUpcoming() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("days", 7)
+                .when()
+                .get("/api/v1/stock-batches/expiring")
+                .then()
+                .statusCode(200)
+                .body("content.batchCode", contains("EXP-SOON"));
+    }
+
+    @Test
+    @Order(5)
+    void invalidRequests_shouldReturn400() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("days", -1)
+                .when()
+                .get("/api/v1/stock-batches/expiring")
+                .then()
+                .statusCode(400);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movementType": "VENCIMIENTO",
+                            "quantity": 1,
+                            "batchQuantities": [{"batchId": "%s", "quantity": 1}]
+                        }
+                        """.formatted(pastBatchId))
+                .when()
+                .post("/api/v1/stock-movements")
+                .then()
+                .statusCode(400);
+    }
+
+    private String createBatch(String batchCode, int quantity, Instant expiryDate) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "productId": "%s",
+                            "batchCode": "%s",
+                            "quantity": %d,
+                            "unit": "units",
+                            "expiryDate": %s
+                        }
+                        """.formatted(productId, batchCode, quantity,
+                        expiryDate != null ? "\"" + expiryDate + "\"" : "null"))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+}
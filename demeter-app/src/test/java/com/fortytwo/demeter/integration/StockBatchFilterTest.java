@@ -193,4 +193,170 @@ class StockBatchFilterTest {
                 .statusCode(200)
                 .body("content.size()", greaterThanOrEqualTo(2));
     }
+
+    @Test
+    @Order(10)
+    void setup_customAttributes() {
+        given()
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"id": "%s", "name": "Batch Filters", "industry": "VIVERO"}
+                        """.formatted(TENANT))
+                .when()
+                .post("/api/v1/tenants")
+                .then()
+                .statusCode(201);
+
+        // Ranges are only offered on declared numeric keys
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"attributes": [{"key": "height", "type": "NUMERIC"}]}
+                        """)
+                .when()
+                .put("/api/v1/stock-batches/promoted-attributes")
+                .then()
+                .statusCode(200);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"customAttributes": {"color": "red", "height": 35, "tags": ["grafted", "organic"]}}
+                        """)
+                .when()
+                .put("/api/v1/stock-batches/" + batchIdA)
+                .then()
+                .statusCode(200);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"customAttributes": {"color": "green", "height": "12"}}
+                        """)
+                .when()
+                .put("/api/v1/stock-batches/" + batchIdB)
+                .then()
+                .statusCode(200);
+    }
+
+    @Test
+    @Order(11)
+    void filterByAttributeEquality_shouldReturnMatchingBatch() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("attr", "color:red")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(200)
+                .body("totalElements", equalTo(1))
+                .body("content[0].batchCode", equalTo("SBF-BATCH-A"));
+    }
+
+    @Test
+    @Order(12)
+    void filterByAttributeContainment_shouldMatchArrayElements() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("attrContains", "{\"tags\": [\"grafted\"]}")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(200)
+                .body("content.size()", equalTo(1))
+                .body("content[0].batchCode", equalTo("SBF-BATCH-A"));
+    }
+
+    @Test
+    @Order(13)
+    void filterByAttributeRange_shouldOnlyMatchNumericValuesInRange() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("attrRange", "height:30..40")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(200)
+                .body("content.size()", equalTo(1))
+                .body("content[0].batchCode", equalTo("SBF-BATCH-A"));
+
+        // Batch B stores height as a string, so numeric ranges never match it
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("attrRange", "height:..20")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(200)
+                .body("content.size()", equalTo(0));
+    }
+
+    @Test
+    @Order(14)
+    void filterByAttributeAndProduct_shouldCombineFilters() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("productId", productIdB)
+                .queryParam("attr", "color:green")
+                .queryParam("attr", "height:\"12\"")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(200)
+                .body("content.size()", equalTo(1))
+                .body("content[0].batchCode", equalTo("SBF-BATCH-B"));
+    }
+
+    @Test
+    @Order(15)
+    void malformedAttributeFilters_shouldReturn400() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("attrRange", "height:abc..5")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(400);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("attr", "bad key!:x")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(400);
+
+        // color is not a declared numeric attribute
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("attrRange", "color:1..2")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(16)
+    void unknownStatus_shouldReturn400() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("status", "BOGUS")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(400);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("status", "BOGUS")
+                .queryParam("attr", "color:red")
+                .when()
+                .get("/api/v1/stock-batches")
+                .then()
+                .statusCode(400);
+    }
 }
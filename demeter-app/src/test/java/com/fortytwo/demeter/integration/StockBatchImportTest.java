@@ -0,0 +1,195 @@
+package com.fortytwo.demeter.integration;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import io.restassured.response.ValidatableResponse;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class StockBatchImportTest {
+
+    private static final String TENANT = "tenant-batch-import";
+
+    private static String productId;
+    private static String jobId;
+
+    @Test
+    @Order(1)
+    void setup_createProductAndExistingBatch() {
+        productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "IMP-PROD-001", "name": "Import Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "productId": "%s",
+                            "batchCode": "IMP-EXIST",
+                            "quantity": 1,
+                            "unit": "trays"
+                        }
+                        """.formatted(productId))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201);
+    }
+
+    @Test
+    @Order(2)
+    void importCsv_shouldReturnAcceptedJob() {
+        jobId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType("text/csv")
+                .body("""
+                        sku,batch_code,quantity,unit,expiry_date
+                        IMP-PROD-001,IMP-001,100,units,2030-01-01
+                        IMP-PROD-001,IMP-002,"25.5","units, loose",
+                        IMP-PROD-001,IMP-EXIST,40,,
+                        UNKNOWN-SKU,IMP-003,10,units,
+                        IMP-PROD-001,IMP-004,-5,units,
+                        IMP-PROD-001,IMP-001,7,units,
+                        IMP-PROD-001,IMP-005,abc,units,
+                        """)
+                .when()
+                .post("/api/v1/stock-batches/import")
+                .then()
+                .statusCode(202)
+                .header("Location", containsString("/api/v1/stock-batches/import/"))
+                .body("status", equalTo("PENDING"))
+                .extract().path("id");
+    }
+
+    @Test
+    @Order(3)
+    void importJob_shouldCompleteWithRowCounts() throws InterruptedException {
+        awaitJob()
+                .body("status", equalTo("COMPLETED"))
+                .body("rowsRead", equalTo(7))
+                .body("rowsRejected", equalTo(4))
+                .body("rowsInserted", equalTo(2))
+                .body("rowsUpdated", equalTo(1))
+                .body("errors.row", hasItems(5, 6, 7, 8))
+                .body("errors.find { it.row == 5 }.error", containsString("UNKNOWN-SKU"))
+                .body("errors.find { it.row == 7 }.error", containsString("duplicate of row 2"));
+    }
+
+    @Test
+    @Order(4)
+    void importedBatches_shouldBeMerged() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/by-product/" + productId)
+                .then()
+                .statusCode(200)
+                .body("size()", equalTo(3))
+                .body("find { it.batchCode == 'IMP-001' }.quantity", equalTo(100.0f))
+                .body("find { it.batchCode == 'IMP-002' }.unit", equalTo("units, loose"))
+                .body("find { it.batchCode == 'IMP-EXIST' }.quantity", equalTo(40.0f))
+                // Blank optional columns keep the existing value on update
+                .body("find { it.batchCode == 'IMP-EXIST' }.unit", equalTo("trays"));
+    }
+
+    @Test
+    @Order(5)
+    void importedBatches_shouldBeRecordedInTheLedger() {
+        // One AJUSTE per written batch, the overwritten IMP-EXIST included
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-movements/by-reference/" + jobId)
+                .then()
+                .statusCode(200)
+                .body("size()", equalTo(3))
+                .body("movementType", everyItem(equalTo("AJUSTE")))
+                .body("find { it.notes == 'Overwritten by import' }.quantity", equalTo(40.0f));
+    }
+
+    @Test
+    @Order(6)
+    void importCsv_missingRequiredColumn_shouldFailJob() throws InterruptedException {
+        jobId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType("text/csv")
+                .body("""
+                        sku,quantity
+                        IMP-PROD-001,1
+                        """)
+                .when()
+                .post("/api/v1/stock-batches/import")
+                .then()
+                .statusCode(202)
+                .extract().path("id");
+
+        awaitJob()
+                .body("status", equalTo("FAILED"))
+                .body("errorMessage", containsString("batch_code"));
+    }
+
+    @Test
+    @Order(7)
+    void importJob_fromOtherTenant_shouldReturn404() {
+        given()
+                .header("X-Tenant-ID", "tenant-batch-import-other")
+                .when()
+                .get("/api/v1/stock-batches/import/" + jobId)
+                .then()
+                .statusCode(404);
+    }
+
+    @Test
+    @Order(8)
+    void largeBody_onOtherEndpoint_shouldReturn413() {
+        // Only the import takes bodies past demeter.http.max-body-size
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("{\"sku\": \"IMP-BIG\", \"name\": \"" + "x".repeat(11 * 1024 * 1024) + "\"}")
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(413);
+    }
+
+    private ValidatableResponse awaitJob() throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            String status = given()
+                    .header("X-Tenant-ID", TENANT)
+                    .when()
+                    .get("/api/v1/stock-batches/import/" + jobId)
+                    .then()
+                    .statusCode(200)
+                    .extract().path("status");
+            if (!"PENDING".equals(status) && !"PROCESSING".equals(status)) {
+                break;
+            }
+            Thread.sleep(200);
+        }
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/import/" + jobId)
+                .then()
+                .statusCode(200);
+    }
+}
@@ -0,0 +1,186 @@
+package com.fortytwo.demeter.integration;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Batch ledger: lines in performed_at order with running balances, paged by cursor.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class StockBatchLedgerTest {
+
+    private static final String TENANT = "tenant-batch-ledger";
+    private static final Instant START = Instant.now().minus(Duration.ofHours(10));
+
+    private static String batchId;
+    private static String nextCursor;
+
+    @Test
+    @Order(1)
+    void setup_createBatchAndMovements() {
+        String productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "LEDGER-PROD-001", "name": "Ledger Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        batchId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"productId": "%s", "batchCode": "LEDGER-001", "quantity": 10, "unit": "units"}
+                        """.formatted(productId))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        // Posted out of order: the ledger follows performed_at, not insertion order
+        createMovement("MUERTE", 2, 2);
+        createMovement("ENTRADA", 5, 1);
+        createMovement("VENTA", 3, 3);
+    }
+
+    @Test
+    @Order(2)
+    void ledger_firstPage_shouldStartFromDerivedOpeningBalance() {
+        nextCursor = given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("size", 2)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId + "/ledger")
+                .then()
+                .statusCode(200)
+                .body("entries.movementType", contains("ENTRADA", "MUERTE"))
+                .body("entries.change", contains(5.0f, -2.0f))
+                .body("entries.balance", contains(15.0f, 13.0f))
+                .body("nextCursor", notNullValue())
+                .extract().path("nextCursor");
+    }
+
+    @Test
+    @Order(3)
+    void ledger_nextPage_shouldContinueBalanceFromCursor() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("size", 2)
+                .queryParam("cursor", nextCursor)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId + "/ledger")
+                .then()
+                .statusCode(200)
+                .body("entries.movementType", contains("VENTA"))
+                .body("entries[0].balance", equalTo(10.0f))
+                .body("nextCursor", nullValue());
+    }
+
+    @Test
+    @Order(4)
+    void ledger_afterAjuste_shouldRestartBalanceFromAbsoluteValue() {
+        createMovement("AJUSTE", 7, 4);
+        createMovement("ENTRADA", 1, 5);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId + "/ledger")
+                .then()
+                .statusCode(200)
+                .body("entries.size()", equalTo(5))
+                .body("entries[2].balance", nullValue())
+                .body("entries[3].balance", equalTo(7.0f))
+                .body("entries[4].balance", equalTo(8.0f));
+    }
+
+    @Test
+    @Order(5)
+    void invalidRequests_shouldBeRejected() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("cursor", "not-a-cursor")
+                .when()
+                .get("/api/v1/stock-batches/" + batchId + "/ledger")
+                .then()
+                .statusCode(400);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("size", 0)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId + "/ledger")
+                .then()
+                .statusCode(400);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/00000000-0000-0000-0000-000000000000/ledger")
+                .then()
+                .statusCode(404);
+    }
+
+    @Test
+    @Order(6)
+    void ledger_pageAfterAjuste_shouldDeriveBalanceOnServer() {
+        String cursor = given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("size", 4)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId + "/ledger")
+                .then()
+                .statusCode(200)
+                .body("entries[3].movementType", equalTo("AJUSTE"))
+                .extract().path("nextCursor");
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("cursor", cursor)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId + "/ledger")
+                .then()
+                .statusCode(200)
+                .body("entries.movementType", contains("ENTRADA"))
+                .body("entries[0].balance", equalTo(8.0f));
+    }
+
+    private void createMovement(String type, int quantity, int hoursAfterStart) {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movementType": "%s",
+                            "quantity": %d,
+                            "performedAt": "%s",
+                            "batchQuantities": [{"batchId": "%s", "quantity": %d}]
+                        }
+                        """.formatted(type, quantity, START.plus(Duration.ofHours(hoursAfterStart)), batchId, quantity))
+                .when()
+                .post("/api/v1/stock-movements")
+                .then()
+                .statusCode(201);
+    }
+}
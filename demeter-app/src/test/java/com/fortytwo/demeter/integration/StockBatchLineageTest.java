@@ -0,0 +1,171 @@
+package com.fortytwo.demeter.integration;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Transplants link sources to destinations, and the lineage endpoint walks those links
+ * both ways within a depth limit, stopping at cycles.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class StockBatchLineageTest {
+
+    private static final String TENANT = "tenant-batch-lineage";
+
+    private static String warehouseId;
+    private static String rootId;
+    private static String childId;
+    private static String grandchildId;
+
+    @Test
+    @Order(1)
+    void setup_transplantTwoGenerations() {
+        String productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "LINEAGE-PROD-001", "name": "Lineage Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        warehouseId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"name": "Lineage Greenhouse"}
+                        """)
+                .when()
+                .post("/api/v1/warehouses")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        rootId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"productId": "%s", "batchCode": "LIN-ROOT", "quantity": 20, "unit": "units", "warehouseId": "%s"}
+                        """.formatted(productId, warehouseId))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        childId = transplant(rootId, 10, "{\"batchCode\": \"LIN-CHILD\", \"quantity\": 10}", "LIN-CHILD");
+        grandchildId = transplant(childId, 4, "{\"batchCode\": \"LIN-GRANDCHILD\", \"quantity\": 4}", "LIN-GRANDCHILD");
+    }
+
+    @Test
+    @Order(2)
+    void lineage_ofGrandchild_shouldReachBackToRoot() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + grandchildId + "/lineage")
+                .then()
+                .statusCode(200)
+                .body("truncated", equalTo(false))
+                .body("nodes.batchCode", contains("LIN-ROOT", "LIN-CHILD", "LIN-GRANDCHILD"))
+                .body("nodes.generation", contains(-2, -1, 0))
+                .body("edges.size()", equalTo(2))
+                .body("edges.find { it.childBatchId == '%s' }.parentBatchId".formatted(grandchildId), equalTo(childId));
+    }
+
+    @Test
+    @Order(3)
+    void lineage_ofRoot_shouldListDescendants() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + rootId + "/lineage")
+                .then()
+                .statusCode(200)
+                .body("nodes.batchCode", contains("LIN-ROOT", "LIN-CHILD", "LIN-GRANDCHILD"))
+                .body("nodes.generation", contains(0, 1, 2));
+    }
+
+    @Test
+    @Order(4)
+    void lineage_withDepth_shouldStopAtLimit() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("depth", 1)
+                .when()
+                .get("/api/v1/stock-batches/" + grandchildId + "/lineage")
+                .then()
+                .statusCode(200)
+                .body("nodes.batchCode", contains("LIN-CHILD", "LIN-GRANDCHILD"));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("depth", 0)
+                .when()
+                .get("/api/v1/stock-batches/" + grandchildId + "/lineage")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(5)
+    void lineage_withCycle_shouldTerminate() {
+        // Moving stock from the grandchild back into the root closes a loop
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "sources": [{"batchId": "%s", "quantity": 1}],
+                            "warehouseId": "%s",
+                            "destinations": [{"batchId": "%s", "quantity": 1}]
+                        }
+                        """.formatted(grandchildId, warehouseId, rootId))
+                .when()
+                .post("/api/v1/stock-movements/transplant")
+                .then()
+                .statusCode(201);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + rootId + "/lineage")
+                .then()
+                .statusCode(200)
+                .body("nodes.size()", equalTo(3))
+                .body("edges.size()", equalTo(3))
+                .body("nodes.find { it.batchId == '%s' }.generation".formatted(grandchildId), equalTo(-1));
+    }
+
+    private String transplant(String sourceId, int quantity, String destination, String newBatchCode) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "sources": [{"batchId": "%s", "quantity": %d}],
+                            "warehouseId": "%s",
+                            "destinations": [%s]
+                        }
+                        """.formatted(sourceId, quantity, warehouseId, destination))
+                .when()
+                .post("/api/v1/stock-movements/transplant")
+                .then()
+                .statusCode(201)
+                .extract().path("batchMovements.find { it.batchCode == '%s' }.batchId".formatted(newBatchCode));
+    }
+}
@@ -0,0 +1,160 @@
+package com.fortytwo.demeter.integration;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Bin and warehouse lookups return lean batch rows, with product names only on request.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class StockBatchLocationLookupTest {
+
+    private static final String TENANT = "tenant-location-lookup";
+
+    private static String productId;
+    private static String warehouseId;
+    private static String binId;
+
+    @Test
+    @Order(1)
+    void setup_createBinAndBatches() {
+        productId = post("/api/v1/products", """
+                {"sku": "LOOKUP-PROD-001", "name": "Lookup Product"}
+                """);
+        warehouseId = post("/api/v1/warehouses", """
+                {"name": "Lookup Warehouse"}
+                """);
+        String areaId = post("/api/v1/warehouses/" + warehouseId + "/areas", """
+                {"name": "Lookup Area"}
+                """);
+        String locationId = post("/api/v1/areas/" + areaId + "/locations", """
+                {"name": "Lookup Row"}
+                """);
+        binId = post("/api/v1/locations/" + locationId + "/bins", """
+                {"code": "LOOKUP-BIN-01"}
+                """);
+
+        createBatch("LOOKUP-B", 4, binId);
+        createBatch("LOOKUP-A", 6, binId);
+        String loose = createBatch("LOOKUP-C", 9, null);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"status": "QUARANTINED", "batchIds": ["%s"]}
+                        """.formatted(loose))
+                .when()
+                .post("/api/v1/stock-batches/status-transitions")
+                .then()
+                .statusCode(200);
+    }
+
+    @Test
+    @Order(2)
+    void byBin_shouldListBinContentsWithoutProductName() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/by-bin/" + binId)
+                .then()
+                .statusCode(200)
+                .body("batchCode", contains("LOOKUP-A", "LOOKUP-B"))
+                .body("quantity", contains(6.0f, 4.0f))
+                .body("binId", everyItem(equalTo(binId)))
+                .body("productName", everyItem(nullValue()));
+    }
+
+    @Test
+    @Order(3)
+    void byBin_withIncludeProduct_shouldJoinProductName() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("includeProduct", true)
+                .when()
+                .get("/api/v1/stock-batches/by-bin/" + binId)
+                .then()
+                .statusCode(200)
+                .body("productName", everyItem(equalTo("Lookup Product")));
+    }
+
+    @Test
+    @Order(4)
+    void byLocation_shouldDefaultToActiveBatches() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/by-location/" + warehouseId)
+                .then()
+                .statusCode(200)
+                .body("batchCode", contains("LOOKUP-A", "LOOKUP-B"));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("status", "QUARANTINED")
+                .when()
+                .get("/api/v1/stock-batches/by-location/" + warehouseId)
+                .then()
+                .statusCode(200)
+                .body("batchCode", contains("LOOKUP-C"));
+    }
+
+    @Test
+    @Order(5)
+    void invalidLookups_shouldReturn400() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("limit", 0)
+                .when()
+                .get("/api/v1/stock-batches/by-bin/" + binId)
+                .then()
+                .statusCode(400);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("status", "MISPLACED")
+                .when()
+                .get("/api/v1/stock-batches/by-location/" + warehouseId)
+                .then()
+                .statusCode(400);
+    }
+
+    private String post(String path, String body) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body(body)
+                .when()
+                .post(path)
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    private String createBatch(String batchCode, int quantity, String bin) {
+        return post("/api/v1/stock-batches", """
+                {
+                    "productId": "%s",
+                    "batchCode": "%s",
+                    "quantity": %d,
+                    "unit": "units",
+                    "warehouseId": "%s",
+                    "binId": %s
+                }
+                """.formatted(productId, batchCode, quantity, warehouseId,
+                bin != null ? "\"" + bin + "\"" : "null"));
+    }
+}
@@ -0,0 +1,177 @@
+package com.fortytwo.demeter.integration;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+
+/**
+ * Bulk batch status transitions: one statement for the whole selection, an audit
+ * movement per batch, and disallowed transitions skipped.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class StockBatchStatusTransitionTest {
+
+    private static final String TENANT = "tenant-batch-transition";
+    private static final String UNKNOWN_ID = "00000000-0000-0000-0000-000000000000";
+
+    private static String productId;
+    private static String batchA;
+    private static String batchB;
+
+    @Test
+    @Order(1)
+    void setup_createProductAndBatches() {
+        productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "TRANS-PROD-001", "name": "Transition Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        batchA = createBatch("TRANS-A", 10);
+        batchB = createBatch("TRANS-B", 20);
+        createBatch("TRANS-C", 30);
+    }
+
+    @Test
+    @Order(2)
+    void quarantineByProduct_shouldTransitionAllAndAudit() {
+        String transitionId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"status": "QUARANTINED", "productId": "%s", "notes": "Pest inspection"}
+                        """.formatted(productId))
+                .when()
+                .post("/api/v1/stock-batches/status-transitions")
+                .then()
+                .statusCode(200)
+                .body("status", equalTo("QUARANTINED"))
+                .body("transitioned", equalTo(3))
+                .extract().path("transitionId");
+
+        assertStatus(batchA, "QUARANTINED");
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-movements/by-reference/" + transitionId)
+                .then()
+                .statusCode(200)
+                .body("size()", equalTo(3))
+                .body("movementType", everyItem(equalTo("CAMBIO_ESTADO")))
+                .body("notes", everyItem(equalTo("ACTIVE -> QUARANTINED: Pest inspection")));
+    }
+
+    @Test
+    @Order(3)
+    void cancelByIds_shouldReportUnknownIdsAsSkipped() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"status": "CANCELLED", "batchIds": ["%s", "%s"]}
+                        """.formatted(batchA, UNKNOWN_ID))
+                .when()
+                .post("/api/v1/stock-batches/status-transitions")
+                .then()
+                .statusCode(200)
+                .body("transitioned", equalTo(1))
+                .body("batchIds", contains(batchA))
+                .body("skippedIds", contains(UNKNOWN_ID));
+
+        assertStatus(batchA, "CANCELLED");
+    }
+
+    @Test
+    @Order(4)
+    void release_shouldSkipBatchesWhoseStatusDisallowsIt() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"status": "ACTIVE", "batchIds": ["%s", "%s"]}
+                        """.formatted(batchA, batchB))
+                .when()
+                .post("/api/v1/stock-batches/status-transitions")
+                .then()
+                .statusCode(200)
+                .body("batchIds", contains(batchB))
+                .body("skippedIds", contains(batchA));
+
+        assertStatus(batchA, "CANCELLED");
+        assertStatus(batchB, "ACTIVE");
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + batchB)
+                .then()
+                .body("quantity", equalTo(20.0f));
+    }
+
+    @Test
+    @Order(5)
+    void invalidRequests_shouldReturn400() {
+        postTransition("""
+                {"status": "DEPLETED", "productId": "%s"}
+                """.formatted(productId), 400);
+        postTransition("""
+                {"status": "QUARANTINED"}
+                """, 400);
+        postTransition("""
+                {"status": "ARCHIVED", "productId": "%s"}
+                """.formatted(productId), 400);
+    }
+
+    private void postTransition(String body, int expectedStatus) {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body(body)
+                .when()
+                .post("/api/v1/stock-batches/status-transitions")
+                .then()
+                .statusCode(expectedStatus);
+    }
+
+    private String createBatch(String batchCode, int quantity) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"productId": "%s", "batchCode": "%s", "quantity": %d, "unit": "units"}
+                        """.formatted(productId, batchCode, quantity))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    private void assertStatus(String batchId, String status) {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId)
+                .then()
+                .statusCode(200)
+                .body("status", equalTo(status));
+    }
+}
@@ -0,0 +1,167 @@
+package com.fortytwo.demeter.integration;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class StockMovementBulkTest {
+
+    private static final String TENANT = "tenant-mvmt-bulk";
+
+    private static String productId;
+    private static String batchA;
+    private static String batchB;
+
+    @Test
+    @Order(1)
+    void setup_createProductAndBatches() {
+        productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "BULK-PROD-001", "name": "Bulk Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        batchA = createBatch("BULK-BATCH-A", 100);
+        batchB = createBatch("BULK-BATCH-B", 50);
+    }
+
+    @Test
+    @Order(2)
+    void bulk_shouldApplyValidItemsAndReportInvalidOnes() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movements": [
+                                {"movementType": "ENTRADA", "quantity": 10,
+                                 "batchQuantities": [{"batchId": "%1$s", "quantity": 10}]},
+                                {"movementType": "MUERTE", "quantity": 5,
+                                 "batchQuantities": [{"batchId": "%1$s", "quantity": 5}]},
+                                {"movementType": "AJUSTE", "quantity": 20,
+                                 "batchQuantities": [{"batchId": "%2$s", "quantity": 20}]},
+                                {"movementType": "MUERTE", "quantity": 3,
+                                 "batchQuantities": [{"batchId": "%2$s", "quantity": 3}]},
+                                {"movementType": "ENTRADA", "quantity": 1,
+                                 "batchQuantities": [{"batchId": "00000000-0000-0000-0000-000000000000", "quantity": 1}]},
+                                {"movementType": "TELEPORT", "quantity": 1,
+                                 "batchQuantities": [{"batchId": "%1$s", "quantity": 1}]},
+                                {"movementType": "ENTRADA", "quantity": 0,
+                                 "batchQuantities": [{"batchId": "%1$s", "quantity": 1}]}
+                            ]
+                        }
+                        """.formatted(batchA, batchB))
+                .when()
+                .post("/api/v1/stock-movements/bulk")
+                .then()
+                .statusCode(200)
+                .body("total", equalTo(7))
+                .body("succeeded", equalTo(4))
+                .body("failed", equalTo(3))
+                .body("items[0].movementId", notNullValue())
+                .body("items[3].error", nullValue())
+                .body("items[4].error", containsString("StockBatch not found"))
+                .body("items[5].error", containsString("movementType"))
+                .body("items[6].error", containsString("quantity"));
+
+        // 100 + 10 - 5
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + batchA)
+                .then()
+                .statusCode(200)
+                .body("quantity", equalTo(105.0f));
+
+        // AJUSTE to 20, then MUERTE 3
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + batchB)
+                .then()
+                .statusCode(200)
+                .body("quantity", equalTo(17.0f));
+    }
+
+    @Test
+    @Order(3)
+    void bulk_shouldDepleteBatchDrainedToZero() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movements": [
+                                {"movementType": "VENTA", "quantity": 10,
+                                 "batchQuantities": [{"batchId": "%1$s", "quantity": 10}]},
+                                {"movementType": "VENTA", "quantity": 7,
+                                 "batchQuantities": [{"batchId": "%1$s", "quantity": 7}]}
+                            ]
+                        }
+                        """.formatted(batchB))
+                .when()
+                .post("/api/v1/stock-movements/bulk")
+                .then()
+                .statusCode(200)
+                .body("succeeded", equalTo(2));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + batchB)
+                .then()
+                .statusCode(200)
+                .body("quantity", equalTo(0.0f))
+                .body("status", equalTo("DEPLETED"));
+    }
+
+    @Test
+    @Order(4)
+    void bulk_emptyList_shouldReturn400() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"movements": []}
+                        """)
+                .when()
+                .post("/api/v1/stock-movements/bulk")
+                .then()
+                .statusCode(400);
+    }
+
+    private String createBatch(String code, int quantity) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "productId": "%s",
+                            "batchCode": "%s",
+                            "quantity": %d,
+                            "unit": "units"
+                        }
+                        """.formatted(productId, code, quantity))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+}
@@ -0,0 +1,223 @@
+package com.fortytwo.demeter.integration;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Fires concurrent movements at a single hot batch and verifies that every
+ * quantity delta lands — i.e. no lost updates from read-modify-write races.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class StockMovementConcurrencyTest {
+
+    private static final String TENANT = "tenant-mvmt-concurrency";
+    private static final int THREADS = 8;
+    private static final int ENTRADAS = 60;
+    private static final int MUERTES = 30;
+
+    private static String productId;
+    private static String batchId;
+
+    @Test
+    @Order(1)
+    void setup_createProductAndBatch() {
+        productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "CONC-PROD-001", "name": "Concurrency Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        batchId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "productId": "%s",
+                            "batchCode": "CONC-BATCH-001",
+                            "quantity": 100,
+                            "unit": "units"
+                        }
+                        """.formatted(productId))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    @Test
+    @Order(2)
+    void concurrentMovements_shouldNotLoseUpdates() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < ENTRADAS + MUERTES; i++) {
+                String type = i < ENTRADAS ? "ENTRADA" : "MUERTE";
+                results.add(executor.submit(() -> postMovement(type)));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(201, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId)
+                .then()
+                .statusCode(200)
+                .body("quantity", equalTo((float) (100 + ENTRADAS - MUERTES)))
+                .body("status", equalTo("ACTIVE"));
+    }
+
+    @Test
+    @Order(3)
+    void drainToZero_shouldDepleteInSameStatement() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movementType": "MUERTE",
+                            "quantity": %d,
+                            "batchQuantities": [{"batchId": "%s", "quantity": %d}]
+                        }
+                        """.formatted(100 + ENTRADAS - MUERTES, batchId, 100 + ENTRADAS - MUERTES))
+                .when()
+                .post("/api/v1/stock-movements")
+                .then()
+                .statusCode(201);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId)
+                .then()
+                .statusCode(200)
+                .body("quantity", equalTo(0.0f))
+                .body("status", equalTo("DEPLETED"));
+    }
+
+    @Test
+    @Order(4)
+    void movementOnUnknownBatch_shouldReturn404() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movementType": "ENTRADA",
+                            "quantity": 1,
+                            "batchQuantities": [{"batchId": "00000000-0000-0000-0000-000000000000", "quantity": 1}]
+                        }
+                        """)
+                .when()
+                .post("/api/v1/stock-movements")
+                .then()
+                .statusCode(404);
+    }
+
+    @Test
+    @Order(5)
+    void concurrentBatchEditsAndMovements_shouldKeepQuantity() throws Exception {
+        String hotBatchId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "productId": "%s",
+                            "batchCode": "CONC-BATCH-002",
+                            "quantity": 10,
+                            "unit": "units"
+                        }
+                        """.formatted(productId))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                int round = i;
+                results.add(executor.submit(() -> postMovement("ENTRADA", hotBatchId)));
+                results.add(executor.submit(() -> given()
+                        .header("X-Tenant-ID", TENANT)
+                        .contentType(ContentType.JSON)
+                        .body("""
+                                {"customAttributes": {"round": %d}}
+                                """.formatted(round))
+                        .when()
+                        .put("/api/v1/stock-batches/" + hotBatchId)
+                        .then()
+                        .extract().statusCode()));
+            }
+            for (Future<Integer> result : results) {
+                int status = result.get();
+                // Edits either succeed (possibly after retries) or report an explicit conflict
+                if (status != 201 && status != 200) {
+                    assertEquals(409, status);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Entity-based edits must never write a stale quantity back over the atomic deltas
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + hotBatchId)
+                .then()
+                .statusCode(200)
+                .body("quantity", equalTo(30.0f));
+    }
+
+    private int postMovement(String type) {
+        return postMovement(type, batchId);
+    }
+
+    private int postMovement(String type, String targetBatchId) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movementType": "%s",
+                            "quantity": 1,
+                            "batchQuantities": [{"batchId": "%s", "quantity": 1}]
+                        }
+                        """.formatted(type, targetBatchId))
+                .when()
+                .post("/api/v1/stock-movements")
+                .then()
+                .extract().statusCode();
+    }
+}
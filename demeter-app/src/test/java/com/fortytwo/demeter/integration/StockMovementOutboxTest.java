@@ -0,0 +1,150 @@
+package com.fortytwo.demeter.integration;
+
+import com.fortytwo.demeter.inventario.event.OutboxConsumer;
+import com.fortytwo.demeter.inventario.event.OutboxConsumerRegistration;
+import com.fortytwo.demeter.inventario.event.StockMovementEvent;
+import com.fortytwo.demeter.inventario.event.StockMovementEventBatch;
+import com.fortytwo.demeter.inventario.service.StockMovementOutboxPoller;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Movements reach outbox observers after commit, once per consumer offset, and a
+ * batch whose observer fails is delivered again.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class StockMovementOutboxTest {
+
+    private static final String TENANT = "tenant-outbox";
+
+    private static String batchId;
+    private static String entradaId;
+
+    @Inject
+    StockMovementOutboxPoller poller;
+
+    @Inject
+    Recorder recorder;
+
+    @ApplicationScoped
+    static class Recorder {
+
+        @Produces
+        static final OutboxConsumerRegistration REGISTRATION = new OutboxConsumerRegistration("test-recorder");
+
+        final List<StockMovementEvent> received = new CopyOnWriteArrayList<>();
+        final AtomicBoolean failNext = new AtomicBoolean();
+
+        void onMovements(@Observes @OutboxConsumer("test-recorder") StockMovementEventBatch batch) {
+            if (failNext.compareAndSet(true, false)) {
+                throw new IllegalStateException("Simulated consumer failure");
+            }
+            received.addAll(batch.events());
+        }
+
+        List<StockMovementEvent> forTenant(String tenantId) {
+            return received.stream().filter(e -> tenantId.equals(e.tenantId())).toList();
+        }
+    }
+
+    @Test
+    @Order(0)
+    void registeredConsumers_shouldBeDrained() {
+        assertEquals(List.of("availability-index", "reorder-alerts", "test-recorder"), poller.consumers());
+    }
+
+    @Test
+    @Order(1)
+    void setup_createBatchAndMovement() {
+        String productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "OUTBOX-PROD-001", "name": "Outbox Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        batchId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"productId": "%s", "batchCode": "OUTBOX-001", "quantity": 10, "unit": "units"}
+                        """.formatted(productId))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        entradaId = createMovement("ENTRADA");
+    }
+
+    @Test
+    @Order(2)
+    void drain_shouldDeliverCommittedMovementOnce() throws Exception {
+        poller.drain();
+
+        List<StockMovementEvent> events = recorder.forTenant(TENANT);
+        assertEquals(1, events.size());
+        assertEquals(entradaId, events.getFirst().movementId().toString());
+        assertEquals("ENTRADA", events.getFirst().movementType());
+
+        poller.drain();
+        assertEquals(1, recorder.forTenant(TENANT).size());
+    }
+
+    @Test
+    @Order(3)
+    void drain_afterObserverFailure_shouldRedeliver() throws Exception {
+        createMovement("MUERTE");
+        recorder.failNext.set(true);
+
+        poller.drain();
+        assertEquals(1, recorder.forTenant(TENANT).size());
+
+        poller.drain();
+        List<StockMovementEvent> events = recorder.forTenant(TENANT);
+        assertEquals(2, events.size());
+        assertEquals("MUERTE", events.getLast().movementType());
+    }
+
+    private String createMovement(String type) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movementType": "%s",
+                            "quantity": 1,
+                            "batchQuantities": [{"batchId": "%s", "quantity": 1}]
+                        }
+                        """.formatted(type, batchId))
+                .when()
+                .post("/api/v1/stock-movements")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+}
@@ -0,0 +1,240 @@
+package com.fortytwo.demeter.integration;
+
+import com.fortytwo.demeter.inventario.service.StockMovementPartitionMaintenance;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.hibernate.orm.PersistenceUnitExtension;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the monthly partitioning of stock_movements: backdated rows are moved out
+ * of the DEFAULT partition by the maintenance job, and the SQL that
+ * StockMovementRepository.findByDateRange and the analytics date-range queries send
+ * only touches the partitions for the requested months.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class StockMovementPartitioningTest {
+
+    private static final String TENANT = "tenant-mvmt-partitions";
+
+    private static final Pattern PARAMETER =
+            Pattern.compile("((?:\\w+\\.)?(tenant_id|performed_at))\\s*(>=|<=|=|<|>)\\s*\\?");
+
+    private static String batchId;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    StockMovementPartitionMaintenance partitionMaintenance;
+
+    @Inject
+    StatementRecorder recorder;
+
+    @Test
+    @Order(1)
+    void setup_createProductAndBatch() {
+        String productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "PART-PROD-001", "name": "Partition Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        batchId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "productId": "%s",
+                            "batchCode": "PART-BATCH-001",
+                            "quantity": 100,
+                            "unit": "units"
+                        }
+                        """.formatted(productId))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    @Test
+    @Order(2)
+    void backdatedMovement_shouldBeMovedIntoItsOwnPartition() throws Exception {
+        postMovement("2015-03-10T10:00:00Z");
+        postMovement(Instant.now().toString());
+
+        assertTrue(partitionMaintenance.ensurePartitions() >= 1);
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("""
+                     SELECT to_regclass('stock_movements_p2015_03') IS NOT NULL,
+                            (SELECT count(*) FROM stock_movements_default WHERE tenant_id = ?),
+                            EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'stock_batch_movements_movement_fkey')
+                     """)) {
+            ps.setString(1, TENANT);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                assertTrue(rs.getBoolean(1));
+                assertEquals(0, rs.getLong(2));
+                // The foreign key dropped around the move is back
+                assertTrue(rs.getBoolean(3));
+            }
+        }
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-movements/by-date-range?from=2015-03-01&to=2015-03-31")
+                .then()
+                .statusCode(200)
+                .body("size()", equalTo(1));
+    }
+
+    @Test
+    @Order(3)
+    void dateRangeQueries_shouldPruneToRequestedMonth() throws Exception {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        String range = "from=%s&to=%s".formatted(current.atDay(1), current.atEndOfMonth());
+        // The endpoints read the requested days up to the start of the following day
+        Instant from = current.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant to = current.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+
+        for (String endpoint : List.of(
+                "/api/v1/stock-movements/by-date-range",
+                "/api/v1/analytics/movements",
+                "/api/v1/analytics/stock-history")) {
+            String sql = recorder.movementQuery(() -> given()
+                    .header("X-Tenant-ID", TENANT)
+                    .when()
+                    .get(endpoint + "?" + range)
+                    .then()
+                    .statusCode(200));
+
+            String plan = explain(bind(sql, from, to));
+
+            assertTrue(plan.contains(partition(current)), endpoint + "\n" + plan);
+            assertFalse(plan.contains(partition(current.plusMonths(1))), endpoint + "\n" + plan);
+            assertFalse(plan.contains("stock_movements_p2015_03"), endpoint + "\n" + plan);
+            assertFalse(plan.contains("stock_movements_default"), endpoint + "\n" + plan);
+        }
+    }
+
+    /**
+     * Records the SQL Hibernate sends while {@code request} runs, so the plans checked
+     * are those of the queries the application actually issues.
+     */
+    @PersistenceUnitExtension
+    @ApplicationScoped
+    static class StatementRecorder implements StatementInspector {
+
+        private final List<String> statements = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean recording = new AtomicBoolean();
+
+        @Override
+        public String inspect(String sql) {
+            if (recording.get()) {
+                statements.add(sql);
+            }
+            return sql;
+        }
+
+        String movementQuery(Runnable request) {
+            statements.clear();
+            recording.set(true);
+            try {
+                request.run();
+            } finally {
+                recording.set(false);
+            }
+            return statements.stream()
+                    .filter(sql -> sql.contains("from stock_movements"))
+                    .findFirst()
+                    .orElseThrow(() -> new AssertionError("No stock_movements query in " + statements));
+        }
+    }
+
+    /** Inlines the tenant and date bounds, as the custom plan for the bound values would see them. */
+    private static String bind(String sql, Instant from, Instant to) {
+        Matcher parameter = PARAMETER.matcher(sql);
+        StringBuilder bound = new StringBuilder();
+        while (parameter.find()) {
+            String value = switch (parameter.group(2)) {
+                case "tenant_id" -> "'" + TENANT + "'";
+                default -> "'" + (parameter.group(3).startsWith(">") ? from : to) + "'::timestamptz";
+            };
+            parameter.appendReplacement(bound, Matcher.quoteReplacement(
+                    parameter.group(1) + " " + parameter.group(3) + " " + value));
+        }
+        parameter.appendTail(bound);
+        assertFalse(bound.toString().contains("?"), "Unbound parameter in " + sql);
+        return bound.toString();
+    }
+
+    private static String partition(YearMonth month) {
+        return "stock_movements_p%d_%02d".formatted(month.getYear(), month.getMonthValue());
+    }
+
+    private String explain(String sql) throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN " + sql)) {
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append(rs.getString(1)).append('\n');
+            }
+            return plan.toString();
+        }
+    }
+
+    private void postMovement(String performedAt) {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movementType": "ENTRADA",
+                            "quantity": 1,
+                            "performedAt": "%s",
+                            "batchQuantities": [{"batchId": "%s", "quantity": 1}]
+                        }
+                        """.formatted(performedAt, batchId))
+                .when()
+                .post("/api/v1/stock-movements")
+                .then()
+                .statusCode(201);
+    }
+}
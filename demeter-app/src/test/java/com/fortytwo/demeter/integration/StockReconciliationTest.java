@@ -0,0 +1,203 @@
+package com.fortytwo.demeter.integration;
+
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ledger reconciliation: batch quantities are compared with initial quantity plus
+ * movements, drift is streamed as NDJSON and optionally corrected with an AJUSTE.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class StockReconciliationTest {
+
+    private static final String TENANT = "tenant-reconciliation";
+
+    private static String productId;
+    private static String batchId;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Test
+    @Order(1)
+    void setup_createBatchesAndMovement() {
+        productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "RECON-PROD-001", "name": "Reconciliation Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        batchId = createBatch("RECON-A", 10);
+        createBatch("RECON-B", 8);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movementType": "ENTRADA",
+                            "quantity": 5,
+                            "batchQuantities": [{"batchId": "%s", "quantity": 5}]
+                        }
+                        """.formatted(batchId))
+                .when()
+                .post("/api/v1/stock-movements")
+                .then()
+                .statusCode(201);
+    }
+
+    @Test
+    @Order(2)
+    void reconcile_consistentBatches_shouldReportNoDrift() {
+        List<JsonPath> lines = reconcile(false);
+
+        assertEquals(1, lines.size());
+        assertEquals(2, lines.getFirst().getInt("checked"));
+        assertEquals(0, lines.getFirst().getInt("drifted"));
+    }
+
+    @Test
+    @Order(3)
+    void reconcile_shouldReportDriftWithoutChangingBatch() throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("UPDATE stock_batches SET quantity = 12 WHERE id = ?")) {
+            ps.setObject(1, UUID.fromString(batchId));
+            assertEquals(1, ps.executeUpdate());
+        }
+
+        List<JsonPath> lines = reconcile(false);
+
+        assertEquals(2, lines.size());
+        JsonPath drift = lines.getFirst();
+        assertEquals(batchId, drift.getString("batchId"));
+        assertEquals(12.0f, drift.getFloat("quantity"));
+        assertEquals(15.0f, drift.getFloat("expected"));
+        assertEquals(-3.0f, drift.getFloat("drift"));
+        assertFalse(drift.getBoolean("corrected"));
+        assertEquals(1, lines.getLast().getInt("drifted"));
+        assertEquals(0, lines.getLast().getInt("corrected"));
+
+        assertBatchQuantity(12.0f);
+    }
+
+    @Test
+    @Order(4)
+    void reconcile_withCorrect_shouldRestoreLedgerQuantity() {
+        List<JsonPath> lines = reconcile(true);
+
+        assertTrue(lines.getFirst().getBoolean("corrected"));
+        assertEquals(1, lines.getLast().getInt("corrected"));
+        assertBatchQuantity(15.0f);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("type", "AJUSTE")
+                .when()
+                .get("/api/v1/stock-movements")
+                .then()
+                .statusCode(200)
+                .body("totalElements", equalTo(1))
+                .body("content[0].referenceType", equalTo("RECONCILIATION"));
+
+        assertEquals(0, reconcile(false).getLast().getInt("drifted"));
+    }
+
+    @Test
+    @Order(5)
+    void reconcile_adjustmentThatWaitedOnTheLock_shouldApplyAfterTheMovementItWaitedFor() throws Exception {
+        String adjustment = createMovement("AJUSTE", 20);
+        createMovement("MUERTE", 5);
+        assertBatchQuantity(15.0f);
+
+        // As if the AJUSTE had been created first and then queued behind the MUERTE's row lock
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE stock_movements SET created_at = created_at + interval '1 minute' WHERE id = ?")) {
+            ps.setObject(1, UUID.fromString(adjustment));
+            assertEquals(1, ps.executeUpdate());
+        }
+
+        assertEquals(0, reconcile(false).getLast().getInt("drifted"));
+    }
+
+    private String createMovement(String movementType, int quantity) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movementType": "%s",
+                            "quantity": %d,
+                            "batchQuantities": [{"batchId": "%s", "quantity": %d}]
+                        }
+                        """.formatted(movementType, quantity, batchId, quantity))
+                .when()
+                .post("/api/v1/stock-movements")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    private List<JsonPath> reconcile(boolean correct) {
+        String body = given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("correct", correct)
+                .when()
+                .post("/api/v1/stock-batches/reconciliation")
+                .then()
+                .statusCode(200)
+                .extract().asString();
+        return body.lines().filter(line -> !line.isBlank()).map(JsonPath::from).toList();
+    }
+
+    private String createBatch(String batchCode, int quantity) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"productId": "%s", "batchCode": "%s", "quantity": %d, "unit": "units"}
+                        """.formatted(productId, batchCode, quantity))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    private void assertBatchQuantity(float quantity) {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId)
+                .then()
+                .statusCode(200)
+                .body("quantity", equalTo(quantity));
+    }
+}
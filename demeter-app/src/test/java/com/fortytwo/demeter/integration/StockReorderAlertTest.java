@@ -0,0 +1,220 @@
+package com.fortytwo.demeter.integration;
+
+import com.fortytwo.demeter.inventario.service.StockMovementOutboxPoller;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Movements that take a product to its reorder point raise one alert, later movements
+ * refresh it in place, and restocking resolves it.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class StockReorderAlertTest {
+
+    private static final String TENANT = "tenant-reorder-alerts";
+
+    private static String productId;
+    private static String warehouseId;
+    private static String batchId;
+    private static String alertId;
+
+    @Inject
+    StockMovementOutboxPoller poller;
+
+    @Test
+    @Order(1)
+    void setup_createBatchAndReorderPoint() {
+        productId = post("/api/v1/products", """
+                {"sku": "REORDER-PROD-001", "name": "Reorder Product"}
+                """);
+        warehouseId = post("/api/v1/warehouses", """
+                {"name": "Reorder Warehouse"}
+                """);
+        batchId = post("/api/v1/stock-batches", """
+                {"productId": "%s", "batchCode": "REORDER-001", "quantity": 10, "unit": "units", "warehouseId": "%s"}
+                """.formatted(productId, warehouseId));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"productId": "%s", "warehouseId": "%s", "reorderPoint": 5}
+                        """.formatted(productId, warehouseId))
+                .when()
+                .put("/api/v1/reorder-points")
+                .then()
+                .statusCode(200)
+                .body("reorderPoint", equalTo(5.0f));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-alerts")
+                .then()
+                .statusCode(200)
+                .body("$", empty());
+    }
+
+    @Test
+    @Order(2)
+    void movementBelowReorderPoint_shouldRaiseAlert() throws Exception {
+        createMovement("MUERTE", 6);
+        poller.drain();
+
+        alertId = given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-alerts")
+                .then()
+                .statusCode(200)
+                .body("status", contains("OPEN"))
+                .body("quantity", contains(4.0f))
+                .body("warehouseId", contains(warehouseId))
+                .extract().path("[0].id");
+    }
+
+    @Test
+    @Order(3)
+    void furtherMovement_shouldRefreshOpenAlert() throws Exception {
+        createMovement("MUERTE", 1);
+        poller.drain();
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-alerts")
+                .then()
+                .statusCode(200)
+                .body("id", contains(alertId))
+                .body("quantity", contains(3.0f));
+    }
+
+    @Test
+    @Order(4)
+    void restock_shouldResolveAlert() throws Exception {
+        createMovement("ENTRADA", 10);
+        poller.drain();
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-alerts")
+                .then()
+                .statusCode(200)
+                .body("status", contains("RESOLVED"))
+                .body("quantity", contains(13.0f));
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("status", "OPEN")
+                .when()
+                .get("/api/v1/stock-alerts")
+                .then()
+                .statusCode(200)
+                .body("$", empty());
+    }
+
+    @Test
+    @Order(5)
+    void newRuleAlreadyReached_shouldAlertWithoutMovement() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"productId": "%s", "reorderPoint": 20}
+                        """.formatted(productId))
+                .when()
+                .put("/api/v1/reorder-points")
+                .then()
+                .statusCode(200);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("afterId", alertId)
+                .when()
+                .get("/api/v1/stock-alerts")
+                .then()
+                .statusCode(200)
+                .body("status", contains("OPEN"))
+                .body("warehouseId", contains((String) null))
+                .body("quantity", contains(13.0f));
+    }
+
+    @Test
+    @Order(6)
+    void invalidRequests_shouldBeRejected() {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"productId": "%s", "reorderPoint": -1}
+                        """.formatted(productId))
+                .when()
+                .put("/api/v1/reorder-points")
+                .then()
+                .statusCode(400);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"productId": "%s", "warehouseId": "%s", "reorderPoint": 1}
+                        """.formatted(productId, UUID.randomUUID()))
+                .when()
+                .put("/api/v1/reorder-points")
+                .then()
+                .statusCode(404);
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .queryParam("limit", 0)
+                .when()
+                .get("/api/v1/stock-alerts")
+                .then()
+                .statusCode(400);
+    }
+
+    private String post(String path, String body) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body(body)
+                .when()
+                .post(path)
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    private void createMovement(String type, int quantity) {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "movementType": "%s",
+                            "quantity": %d,
+                            "batchQuantities": [{"batchId": "%s", "quantity": %d}]
+                        }
+                        """.formatted(type, quantity, batchId, quantity))
+                .when()
+                .post("/api/v1/stock-movements")
+                .then()
+                .statusCode(201);
+    }
+}
@@ -0,0 +1,201 @@
+package com.fortytwo.demeter.integration;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import io.restassured.response.ValidatableResponse;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+
+/**
+ * Multi-batch TRASPLANTE: sources are debited, destinations credited or created at the
+ * target warehouse, all under one movement; invalid transfers change nothing.
+ */
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class StockTransplantTest {
+
+    private static final String TENANT = "tenant-transplant";
+
+    private static String productId;
+    private static String warehouseId;
+    private static String sourceA;
+    private static String sourceB;
+    private static String destination;
+    private static String createdBatchId;
+
+    @Test
+    @Order(1)
+    void setup_createProductWarehouseAndBatches() {
+        productId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "TRP-PROD-001", "name": "Transplant Product"}
+                        """)
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        warehouseId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"name": "Transplant Greenhouse", "address": "1 Nursery Rd"}
+                        """)
+                .when()
+                .post("/api/v1/warehouses")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        Instant now = Instant.now();
+        sourceA = createBatch("TRP-SRC-A", 30, null, now.plus(Duration.ofDays(20)));
+        sourceB = createBatch("TRP-SRC-B", 20, null, now.plus(Duration.ofDays(10)));
+        destination = createBatch("TRP-DST-1", 5, warehouseId, null);
+    }
+
+    @Test
+    @Order(2)
+    void transplant_shouldDebitSourcesAndCreditOrCreateDestinations() {
+        createdBatchId = given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "sources": [
+                                {"batchId": "%s", "quantity": 25},
+                                {"batchId": "%s", "quantity": 20}
+                            ],
+                            "warehouseId": "%s",
+                            "destinations": [
+                                {"batchId": "%s", "quantity": 15},
+                                {"batchCode": "TRP-NEW-001", "quantity": 30}
+                            ],
+                            "notes": "Potting up"
+                        }
+                        """.formatted(sourceA, sourceB, warehouseId, destination))
+                .when()
+                .post("/api/v1/stock-movements/transplant")
+                .then()
+                .statusCode(201)
+                .body("movementType", equalTo("TRASPLANTE"))
+                .body("quantity", equalTo(45))
+                .body("batchMovements.size()", equalTo(4))
+                .body("batchMovements.find { it.batchId == '%s' }.quantity".formatted(sourceA), equalTo(25))
+                .body("batchMovements.find { it.batchId == '%s' }.direction".formatted(sourceA), equalTo("OUT"))
+                .body("batchMovements.find { it.batchCode == 'TRP-NEW-001' }.direction", equalTo("IN"))
+                .extract().path("batchMovements.find { it.batchCode == 'TRP-NEW-001' }.batchId");
+
+        assertBatch(sourceA, 5.0f, "ACTIVE");
+        assertBatch(sourceB, 0.0f, "DEPLETED");
+        assertBatch(destination, 20.0f, "ACTIVE");
+
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + createdBatchId)
+                .then()
+                .statusCode(200)
+                .body("quantity", equalTo(30.0f))
+                .body("warehouseId", equalTo(warehouseId))
+                .body("productId", equalTo(productId))
+                .body("expiryDate", notNullValue());
+    }
+
+    @Test
+    @Order(3)
+    void unbalancedTransplant_shouldReturn400() {
+        postTransplant(sourceA, 5, "{\"batchId\": \"%s\", \"quantity\": 4}".formatted(destination), warehouseId)
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(4)
+    void insufficientSource_shouldReturn409AndChangeNothing() {
+        postTransplant(sourceA, 6, "{\"batchId\": \"%s\", \"quantity\": 6}".formatted(destination), warehouseId)
+                .statusCode(409);
+
+        assertBatch(sourceA, 5.0f, "ACTIVE");
+        assertBatch(destination, 20.0f, "ACTIVE");
+    }
+
+    @Test
+    @Order(5)
+    void destinationOutsideTargetLocation_shouldReturn400() {
+        postTransplant(sourceA, 1, "{\"batchId\": \"%s\", \"quantity\": 1}".formatted(destination),
+                UUID.randomUUID().toString())
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(6)
+    void existingBatchCode_shouldReturn409() {
+        postTransplant(sourceA, 1, "{\"batchCode\": \"TRP-SRC-B\", \"quantity\": 1}", warehouseId)
+                .statusCode(409);
+    }
+
+    private ValidatableResponse postTransplant(String sourceId, int quantity, String destinationJson,
+                                               String targetWarehouseId) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "sources": [{"batchId": "%s", "quantity": %d}],
+                            "warehouseId": "%s",
+                            "destinations": [%s]
+                        }
+                        """.formatted(sourceId, quantity, targetWarehouseId, destinationJson))
+                .when()
+                .post("/api/v1/stock-movements/transplant")
+                .then();
+    }
+
+    private String createBatch(String batchCode, int quantity, String warehouse, Instant expiryDate) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                            "productId": "%s",
+                            "batchCode": "%s",
+                            "quantity": %d,
+                            "unit": "plants",
+                            "warehouseId": %s,
+                            "expiryDate": %s
+                        }
+                        """.formatted(productId, batchCode, quantity,
+                        warehouse != null ? "\"" + warehouse + "\"" : "null",
+                        expiryDate != null ? "\"" + expiryDate + "\"" : "null"))
+                .when()
+                .post("/api/v1/stock-batches")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    private void assertBatch(String batchId, float quantity, String status) {
+        given()
+                .header("X-Tenant-ID", TENANT)
+                .when()
+                .get("/api/v1/stock-batches/" + batchId)
+                .then()
+                .statusCode(200)
+                .body("quantity", equalTo(quantity))
+                .body("status", equalTo(status));
+    }
+}
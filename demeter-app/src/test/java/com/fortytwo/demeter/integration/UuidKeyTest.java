@@ -0,0 +1,159 @@
+package com.fortytwo.demeter.integration;
+
+import com.fortytwo.demeter.common.model.UuidV7Generator;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Entity ids are time-ordered UUIDv7. The insert benchmark compares random v4 against
+ * v7 keys on a stock_movements-shaped table and only runs with
+ * {@code -Pdemeter.benchmarks=true}.
+ */
+@QuarkusTest
+@TestSecurity(user = "test-user", roles = {"ADMIN"})
+class UuidKeyTest {
+
+    private static final Logger log = Logger.getLogger(UuidKeyTest.class);
+
+    private static final String TENANT = "tenant-uuid-keys";
+    private static final int BENCHMARK_ROWS = 200_000;
+    private static final int BENCHMARK_BATCH = 1_000;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Test
+    void createdEntities_shouldHaveIncreasingV7Ids() {
+        UUID first = UUID.fromString(createProduct("UUID-PROD-001"));
+        UUID second = UUID.fromString(createProduct("UUID-PROD-002"));
+
+        assertEquals(7, first.version());
+        assertEquals(2, first.variant());
+        assertTrue(first.compareTo(second) < 0, first + " should sort before " + second);
+    }
+
+    @Test
+    void generator_shouldBeMonotonicWithinOneMillisecondBurst() {
+        UUID previous = UuidV7Generator.next();
+        for (int i = 0; i < 100_000; i++) {
+            UUID current = UuidV7Generator.next();
+            assertTrue(Long.compareUnsigned(previous.getMostSignificantBits(), current.getMostSignificantBits()) < 0);
+            previous = current;
+        }
+    }
+
+    @Test
+    void sqlDefault_shouldProduceV7Ids() throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT uuid_generate_v7()")) {
+            rs.next();
+            assertEquals(7, UUID.fromString(rs.getString(1)).version());
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "demeter.benchmarks", matches = "true")
+    void benchmark_insertThroughputV4VersusV7() throws Exception {
+        // Warm up the connection and JIT on both paths before measuring
+        runInsertBenchmark("uuid_bench_warmup", UUID::randomUUID, BENCHMARK_ROWS / 10);
+        runInsertBenchmark("uuid_bench_warmup", UuidV7Generator::next, BENCHMARK_ROWS / 10);
+
+        BenchmarkResult v4 = runInsertBenchmark("uuid_bench_v4", UUID::randomUUID, BENCHMARK_ROWS);
+        BenchmarkResult v7 = runInsertBenchmark("uuid_bench_v7", UuidV7Generator::next, BENCHMARK_ROWS);
+
+        log.infof("UUID insert benchmark (%d rows): v4 %.0f rows/s, pkey %d kB, WAL %d kB | "
+                        + "v7 %.0f rows/s, pkey %d kB, WAL %d kB",
+                BENCHMARK_ROWS,
+                v4.rowsPerSecond(), v4.indexBytes() / 1024, v4.walBytes() / 1024,
+                v7.rowsPerSecond(), v7.indexBytes() / 1024, v7.walBytes() / 1024);
+
+        // Appending at the right edge leaves leaf pages full; random keys split them half-empty
+        assertTrue(v7.indexBytes() <= v4.indexBytes(), "v7 primary key should not be larger than v4");
+    }
+
+    private BenchmarkResult runInsertBenchmark(String table, Supplier<UUID> ids, int rows) throws Exception {
+        try (Connection conn = dataSource.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS " + table);
+                stmt.execute("""
+                        CREATE TABLE %s (
+                            id UUID PRIMARY KEY,
+                            tenant_id VARCHAR(64) NOT NULL,
+                            movement_type VARCHAR(50) NOT NULL,
+                            quantity DECIMAL(12,2) NOT NULL,
+                            performed_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+                        )
+                        """.formatted(table));
+            }
+
+            long walBefore = currentWalLsn(conn);
+            long start = System.nanoTime();
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO " + table + " (id, tenant_id, movement_type, quantity) VALUES (?, ?, 'ENTRADA', 1)")) {
+                for (int i = 1; i <= rows; i++) {
+                    ps.setObject(1, ids.get());
+                    ps.setString(2, TENANT);
+                    ps.addBatch();
+                    if (i % BENCHMARK_BATCH == 0) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            long walBytes = currentWalLsn(conn) - walBefore;
+
+            long indexBytes;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT pg_relation_size('" + table + "_pkey')")) {
+                rs.next();
+                indexBytes = rs.getLong(1);
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP TABLE " + table);
+            }
+            return new BenchmarkResult(rows / seconds, indexBytes, walBytes);
+        }
+    }
+
+    private static long currentWalLsn(Connection conn) throws Exception {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT pg_current_wal_lsn() - '0/0'::pg_lsn")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private String createProduct(String sku) {
+        return given()
+                .header("X-Tenant-ID", TENANT)
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"sku": "%s", "name": "UUID Product"}
+                        """.formatted(sku))
+                .when()
+                .post("/api/v1/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+    }
+
+    private record BenchmarkResult(double rowsPerSecond, long indexBytes, long walBytes) {}
+}
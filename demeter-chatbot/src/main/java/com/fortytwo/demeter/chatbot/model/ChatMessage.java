@@ -1,5 +1,6 @@
 package com.fortytwo.demeter.chatbot.model;
 
+import com.fortytwo.demeter.common.model.GeneratedUuidV7;
 import jakarta.persistence.*;
 import org.hibernate.annotations.TenantId;
 import java.time.Instant;
@@ -12,7 +13,7 @@ import java.util.UUID;
 public class ChatMessage {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     private UUID id;
 
     @TenantId
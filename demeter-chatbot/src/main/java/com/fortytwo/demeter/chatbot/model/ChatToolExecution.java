@@ -1,5 +1,6 @@
 package com.fortytwo.demeter.chatbot.model;
 
+import com.fortytwo.demeter.common.model.GeneratedUuidV7;
 import jakarta.persistence.*;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.TenantId;
@@ -13,7 +14,7 @@ import java.util.UUID;
 public class ChatToolExecution {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     private UUID id;
 
     @TenantId
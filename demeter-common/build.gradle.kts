@@ -11,6 +11,8 @@ dependencies {
     api("io.quarkus:quarkus-hibernate-validator")
     api("io.quarkus:quarkus-smallrye-openapi")
     api("io.quarkus:quarkus-flyway")
+    api("io.quarkus:quarkus-micrometer")
+    implementation("io.quarkus:quarkus-scheduler")
 
     // Cloud SQL Socket Factory for Cloud Run deployment
     api("com.google.cloud.sql:postgres-socket-factory:1.21.0")
@@ -0,0 +1,12 @@
+package com.fortytwo.demeter.common.exception;
+
+/**
+ * A request that is well formed but clashes with the current state, such as a code
+ * that is already taken.
+ */
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
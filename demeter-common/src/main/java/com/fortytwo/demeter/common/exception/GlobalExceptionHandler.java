@@ -24,6 +24,36 @@ public class GlobalExceptionHandler implements ExceptionMapper<Exception> {
                     .build();
         }
 
+        if (exception instanceof InsufficientStockException e) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(new ErrorResponse(409, "Insufficient Stock", e.getMessage()))
+                    .build();
+        }
+
+        if (exception instanceof InvalidRequestException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse(400, "Bad Request", e.getMessage()))
+                    .build();
+        }
+
+        if (exception instanceof ConflictException e) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(new ErrorResponse(409, "Conflict", e.getMessage()))
+                    .build();
+        }
+
+        if (exception instanceof StockLockTimeoutException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .entity(new ErrorResponse(503, "Service Unavailable", e.getMessage()))
+                    .build();
+        }
+
+        if (exception instanceof jakarta.persistence.OptimisticLockException) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(new ErrorResponse(409, "Conflict", "The resource was modified concurrently, please retry"))
+                    .build();
+        }
+
         if (exception instanceof jakarta.validation.ConstraintViolationException e) {
             String details = e.getConstraintViolations().stream()
                     .map(v -> v.getPropertyPath() + ": " + v.getMessage())
@@ -39,8 +69,11 @@ public class GlobalExceptionHandler implements ExceptionMapper<Exception> {
             int status = wae.getResponse().getStatus();
             String reason = wae.getMessage() != null ? wae.getMessage() : "Request error";
             LOG.debugf("WebApplicationException [%d]: %s", status, reason);
+            // Statuses outside Response.Status (422) have no reason phrase of their own
+            Response.Status known = Response.Status.fromStatusCode(status);
+            String error = known != null ? known.getReasonPhrase() : wae.getResponse().getStatusInfo().getReasonPhrase();
             return Response.status(status)
-                    .entity(new ErrorResponse(status, Response.Status.fromStatusCode(status).getReasonPhrase(), reason))
+                    .entity(new ErrorResponse(status, error, reason))
                     .build();
         }
 
@@ -0,0 +1,23 @@
+package com.fortytwo.demeter.common.exception;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+
+public class InsufficientStockException extends RuntimeException {
+
+    private final Map<UUID, BigDecimal> shortfalls;
+
+    /**
+     * @param shortfalls quantity missing per stock batch, or per product where the batches
+     *                   were left to first-expiry-first-out allocation
+     */
+    public InsufficientStockException(String message, Map<UUID, BigDecimal> shortfalls) {
+        super(message);
+        this.shortfalls = Map.copyOf(shortfalls);
+    }
+
+    public Map<UUID, BigDecimal> getShortfalls() {
+        return shortfalls;
+    }
+}
@@ -0,0 +1,12 @@
+package com.fortytwo.demeter.common.exception;
+
+/**
+ * A request the service cannot act on as given: a malformed filter, an out-of-range
+ * parameter, or values that contradict each other.
+ */
+public class InvalidRequestException extends RuntimeException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
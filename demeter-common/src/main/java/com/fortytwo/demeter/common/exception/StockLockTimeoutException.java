@@ -0,0 +1,12 @@
+package com.fortytwo.demeter.common.exception;
+
+/**
+ * Stock rows an operation needs stayed locked by concurrent transactions for longer than
+ * it may wait. Nothing was changed, so the same request may succeed on a retry.
+ */
+public class StockLockTimeoutException extends RuntimeException {
+
+    public StockLockTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
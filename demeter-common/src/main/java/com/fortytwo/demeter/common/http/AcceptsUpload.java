@@ -0,0 +1,18 @@
+package com.fortytwo.demeter.common.http;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an endpoint that streams its request body (typically spooling a file upload to
+ * disk) and may therefore take bodies up to {@code quarkus.http.limits.max-body-size}.
+ * Every other endpoint is held to {@code demeter.http.max-body-size}.
+ *
+ * @see RequestBodyLimitFilter
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface AcceptsUpload {
+}
@@ -0,0 +1,96 @@
+package com.fortytwo.demeter.common.http;
+
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Holds request bodies to {@code demeter.http.max-body-size} on every endpoint not
+ * marked {@link AcceptsUpload}. The HTTP layer's own limit has to admit the largest
+ * upload, so without this every endpoint would accept bodies that size.
+ *
+ * <p>A declared {@code Content-Length} over the limit is refused before anything is
+ * read; a chunked body is counted as the endpoint reads it and refused once it passes
+ * the limit. Runs ahead of {@code IdempotencyFilter}, which buffers the body.
+ */
+@Provider
+@Priority(Priorities.USER - 100)
+public class RequestBodyLimitFilter implements ContainerRequestFilter {
+
+    @Context
+    ResourceInfo resourceInfo;
+
+    @ConfigProperty(name = "demeter.http.max-body-size", defaultValue = "10M")
+    MemorySize maxBodySize;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        if (!request.hasEntity() || resourceInfo.getResourceMethod() == null
+                || resourceInfo.getResourceMethod().isAnnotationPresent(AcceptsUpload.class)) {
+            return;
+        }
+        long limit = maxBodySize.asLongValue();
+        String contentLength = request.getHeaderString(HttpHeaders.CONTENT_LENGTH);
+        if (contentLength != null) {
+            if (Long.parseLong(contentLength) > limit) {
+                throw tooLarge(limit);
+            }
+            return;
+        }
+        request.setEntityStream(new LimitedInputStream(request.getEntityStream(), limit));
+    }
+
+    private static WebApplicationException tooLarge(long limit) {
+        return new WebApplicationException("Request body exceeds " + limit + " bytes",
+                Response.Status.REQUEST_ENTITY_TOO_LARGE);
+    }
+
+    /** Fails the read that takes the body past {@code limit} bytes. */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long read;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) {
+            read += n;
+            if (read > limit) {
+                throw tooLarge(limit);
+            }
+        }
+    }
+}
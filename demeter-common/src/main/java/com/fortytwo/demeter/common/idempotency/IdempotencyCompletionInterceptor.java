@@ -0,0 +1,81 @@
+package com.fortytwo.demeter.common.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.arc.Arc;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.Transactional;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Stores the response of an {@link Idempotent} request in the transaction that applies
+ * it. When the outermost {@code @Transactional} call of a request holding a claim
+ * returns, its result is written to the key before the transaction commits, so the
+ * effect and its record commit or roll back together: a retry can no longer find the
+ * effect applied but the key still in flight.
+ *
+ * <p>Runs inside the transactional interceptor, and so inside every attempt of a
+ * {@code @RetryOnConflict} method; an attempt that rolls back takes its record with it.
+ */
+@Transactional
+@Interceptor
+@Priority(Interceptor.Priority.PLATFORM_BEFORE + 300)
+public class IdempotencyCompletionInterceptor {
+
+    @Inject
+    IdempotentRequest idempotentRequest;
+
+    @Inject
+    IdempotencyStore store;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    @AroundInvoke
+    Object completeInTransaction(InvocationContext context) throws Exception {
+        if (!Arc.container().requestContext().isActive() || !idempotentRequest.pending()) {
+            return context.proceed();
+        }
+        boolean outermost = idempotentRequest.enter();
+        try {
+            Object result = context.proceed();
+            if (outermost) {
+                complete(result);
+            }
+            return result;
+        } finally {
+            idempotentRequest.leave();
+        }
+    }
+
+    private void complete(Object result) throws Exception {
+        String body = result != null ? objectMapper.writeValueAsString(result) : null;
+        String location = idempotentRequest.creates()
+                ? idempotentRequest.locationOf(objectMapper.valueToTree(result).path("id").asText())
+                : null;
+        int status = (location != null ? Response.Status.CREATED : Response.Status.OK).getStatusCode();
+        store.completeInTransaction(idempotentRequest.claim(), status, body, location);
+
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int txStatus) {
+                if (txStatus == Status.STATUS_COMMITTED) {
+                    idempotentRequest.completed();
+                }
+            }
+        });
+    }
+}
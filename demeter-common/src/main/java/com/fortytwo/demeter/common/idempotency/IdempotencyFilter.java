@@ -0,0 +1,165 @@
+package com.fortytwo.demeter.common.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fortytwo.demeter.common.idempotency.IdempotencyStore.Claim;
+import com.fortytwo.demeter.common.idempotency.IdempotencyStore.StoredResponse;
+import com.fortytwo.demeter.common.tenant.DemeterTenantResolver;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.ClientErrorException;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+import org.jboss.logging.Logger;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.HexFormat;
+
+/**
+ * Applies {@link Idempotent} to endpoints. Before the endpoint runs, the request's
+ * {@code Idempotency-Key} is claimed in the {@link IdempotencyStore}; a key that was
+ * already answered gets the stored response back, {@code Location} included (marked
+ * {@code Idempotent-Replayed}), and the endpoint, its transaction and its row locks are
+ * skipped entirely.
+ *
+ * <ul>
+ *   <li>A key still in flight answers 409; the client should retry later. If its
+ *       request never finishes, the key is free again once its lease runs out.</li>
+ *   <li>A key used for a different method, path or request body answers 422.</li>
+ *   <li>5xx and 409 responses are not stored: nothing was applied, and the cause
+ *       (a failure, a lock conflict, short stock) may be gone on the next try.</li>
+ * </ul>
+ *
+ * <p>Successful responses are stored by {@link IdempotencyCompletionInterceptor} in the
+ * transaction that applied them; this filter only stores the responses of requests that
+ * applied nothing, such as a rejected body.
+ */
+@Provider
+@Idempotent
+@Priority(Priorities.USER)
+public class IdempotencyFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Logger log = Logger.getLogger(IdempotencyFilter.class);
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String CLAIM_PROPERTY = IdempotencyFilter.class.getName() + ".claim";
+
+    @Inject
+    IdempotencyStore store;
+
+    @Inject
+    DemeterTenantResolver tenantResolver;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    IdempotentRequest idempotentRequest;
+
+    @Context
+    ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        String key = request.getHeaderString(HEADER);
+        if (key == null) {
+            return;
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException(HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String tenantId = tenantResolver.resolveTenantId();
+        String method = request.getMethod();
+        String path = request.getUriInfo().getPath();
+        String requestHash = hashBody(request);
+        Claim claim = Claim.of(tenantId, key);
+        StoredResponse stored;
+        try {
+            stored = store.claim(claim, method, path, requestHash);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not claim idempotency key", e);
+        }
+
+        if (stored == null) {
+            request.setProperty(CLAIM_PROPERTY, claim);
+            idempotentRequest.claimed(claim, bindingLocation(), request.getUriInfo().getBaseUri());
+            return;
+        }
+        if (!stored.matches(method, path)) {
+            throw new ClientErrorException(HEADER + " was already used for " + stored.method() + " " + stored.path(), 422);
+        }
+        if (!stored.matchesBody(requestHash)) {
+            throw new ClientErrorException(HEADER + " was already used with a different request body", 422);
+        }
+        if (stored.inProgress()) {
+            throw new ClientErrorException("A request with this " + HEADER + " is still in progress",
+                    Response.Status.CONFLICT);
+        }
+        Response.ResponseBuilder replay = Response.status(stored.status())
+                .entity(stored.body())
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .header(REPLAYED_HEADER, "true");
+        if (stored.location() != null) {
+            replay.header(HttpHeaders.LOCATION, stored.location());
+        }
+        request.abortWith(replay.build());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        if (!(request.getProperty(CLAIM_PROPERTY) instanceof Claim claim) || idempotentRequest.isCompleted()) {
+            return;
+        }
+        int status = response.getStatus();
+        try {
+            if (status >= 500 || status == Response.Status.CONFLICT.getStatusCode()) {
+                store.release(claim);
+                return;
+            }
+            String body = response.hasEntity() ? objectMapper.writeValueAsString(response.getEntity()) : null;
+            store.complete(claim, status, body, response.getHeaderString(HttpHeaders.LOCATION));
+        } catch (SQLException | JsonProcessingException e) {
+            // The key stays in flight until its lease ends; retries get 409 until then
+            log.errorf(e, "Could not store the response for idempotency key %s of tenant %s",
+                    claim.key(), claim.tenantId());
+        }
+    }
+
+    private String bindingLocation() {
+        Idempotent binding = resourceInfo.getResourceMethod().getAnnotation(Idempotent.class);
+        if (binding == null) {
+            binding = resourceInfo.getResourceClass().getAnnotation(Idempotent.class);
+        }
+        return binding.location();
+    }
+
+    /** SHA-256 of the raw request body; the stream is replaced so the endpoint can still read it. */
+    private static String hashBody(ContainerRequestContext request) {
+        try {
+            byte[] body = request.hasEntity() ? request.getEntityStream().readAllBytes() : new byte[0];
+            request.setEntityStream(new ByteArrayInputStream(body));
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the request body", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.fortytwo.demeter.common.idempotency;
+
+import com.fortytwo.demeter.common.exception.ConflictException;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Idempotency keys and the responses stored for them, per tenant. The
+ * {@code idempotency_keys} table (V23) is the source of truth and arbitrates between
+ * instances; completed responses are also kept in a small LRU cache per tenant
+ * ({@code cache-size} entries) so that retries hitting the same instance are answered
+ * without a query.
+ *
+ * <p>A claimed key only lives for {@code lease} until its response is stored, which
+ * extends it to {@code ttl}. A claim left behind by an instance that died mid-request
+ * can therefore be taken over once the lease ends; the stale owner's later
+ * {@link #complete} or {@link #release} no longer matches its claim id and is ignored.
+ *
+ * <p>Responses of requests that applied something are stored by
+ * {@link #completeInTransaction}, in the same transaction as their effect.
+ */
+@ApplicationScoped
+public class IdempotencyStore {
+
+    private static final Logger log = Logger.getLogger(IdempotencyStore.class);
+
+    private final Map<String, Map<String, StoredResponse>> tenants = new ConcurrentHashMap<>();
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    @ConfigProperty(name = "demeter.idempotency.ttl", defaultValue = "24h")
+    Duration ttl;
+
+    @ConfigProperty(name = "demeter.idempotency.lease", defaultValue = "1m")
+    Duration lease;
+
+    @ConfigProperty(name = "demeter.idempotency.cache-size", defaultValue = "1000")
+    int cacheSize;
+
+    /**
+     * Claims a key for a request, unless it is already claimed and unexpired.
+     *
+     * @param requestHash fingerprint of the request body, compared on every later use of the key
+     * @return null when the caller now owns the key and must {@link #complete} or
+     *         {@link #release} it; otherwise what the key holds
+     */
+    public StoredResponse claim(Claim claim, String method, String path, String requestHash) throws SQLException {
+        String tenantId = claim.tenantId();
+        String key = claim.key();
+        StoredResponse cached = cacheOf(tenantId).get(key);
+        if (cached != null && cached.expiresAt().isAfter(Instant.now())) {
+            return cached;
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            // A missing row may have been purged between the two statements; try once more
+            for (int attempt = 0; attempt < 2; attempt++) {
+                try (PreparedStatement ps = conn.prepareStatement("""
+                        INSERT INTO idempotency_keys (tenant_id, idempotency_key, request_method, request_path,
+                                                      request_hash, claim_id, expires_at)
+                        VALUES (?, ?, ?, ?, ?, ?, ?)
+                        ON CONFLICT (tenant_id, idempotency_key) DO UPDATE
+                           SET request_method = EXCLUDED.request_method, request_path = EXCLUDED.request_path,
+                               request_hash = EXCLUDED.request_hash, claim_id = EXCLUDED.claim_id,
+                               status_code = NULL, response_body = NULL, response_location = NULL,
+                               created_at = now(), expires_at = EXCLUDED.expires_at
+                         WHERE idempotency_keys.expires_at <= now()
+                        """)) {
+                    ps.setString(1, tenantId);
+                    ps.setString(2, key);
+                    ps.setString(3, method);
+                    ps.setString(4, path);
+                    ps.setString(5, requestHash);
+                    ps.setObject(6, claim.claimId());
+                    ps.setObject(7, OffsetDateTime.now(ZoneOffset.UTC).plus(lease));
+                    if (ps.executeUpdate() == 1) {
+                        return null;
+                    }
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement("""
+                        SELECT request_method, request_path, request_hash, status_code, response_body,
+                               response_location, expires_at
+                          FROM idempotency_keys
+                         WHERE tenant_id = ? AND idempotency_key = ?
+                        """)) {
+                    ps.setString(1, tenantId);
+                    ps.setString(2, key);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            StoredResponse stored = new StoredResponse(rs.getString(1), rs.getString(2),
+                                    rs.getString(3), rs.getObject(4, Integer.class), rs.getString(5),
+                                    rs.getString(6), rs.getObject(7, OffsetDateTime.class).toInstant());
+                            if (!stored.inProgress()) {
+                                cacheOf(tenantId).put(key, stored);
+                            }
+                            return stored;
+                        }
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("Could not claim idempotency key " + key);
+    }
+
+    /**
+     * Stores the response of a claimed key and keeps it for the full TTL. Used for
+     * responses that applied nothing; see {@link #completeInTransaction}.
+     */
+    public void complete(Claim claim, int status, String body, String location) throws SQLException {
+        StoredResponse stored;
+        try (Connection conn = dataSource.getConnection()) {
+            stored = update(conn, claim, status, body, location);
+        }
+        if (stored != null) {
+            cacheOf(claim.tenantId()).put(claim.key(), stored);
+        } else {
+            log.warnf("Idempotency key %s of tenant %s was claimed again after its lease ran out; "
+                    + "the response was not stored", claim.key(), claim.tenantId());
+        }
+    }
+
+    /**
+     * Stores the response of a claimed key in the caller's transaction, so it commits or
+     * rolls back with the effect it describes; the cache only sees it once committed.
+     *
+     * @throws ConflictException when the key was claimed again after its lease ran out;
+     *         the effect must then roll back, as the new owner applies it instead
+     */
+    public void completeInTransaction(Claim claim, int status, String body, String location) throws SQLException {
+        StoredResponse stored;
+        try (Connection conn = dataSource.getConnection()) {
+            stored = update(conn, claim, status, body, location);
+        }
+        if (stored == null) {
+            throw new ConflictException("Idempotency key " + claim.key()
+                    + " was claimed again after its lease ran out");
+        }
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int txStatus) {
+                if (txStatus == Status.STATUS_COMMITTED) {
+                    cacheOf(claim.tenantId()).put(claim.key(), stored);
+                }
+            }
+        });
+    }
+
+    private StoredResponse update(Connection conn, Claim claim, int status, String body, String location)
+            throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("""
+                UPDATE idempotency_keys
+                   SET status_code = ?, response_body = ?, response_location = ?, expires_at = ?
+                 WHERE tenant_id = ? AND idempotency_key = ? AND claim_id = ?
+                RETURNING request_method, request_path, request_hash, expires_at
+                """)) {
+            ps.setInt(1, status);
+            ps.setString(2, body);
+            ps.setString(3, location);
+            ps.setObject(4, OffsetDateTime.now(ZoneOffset.UTC).plus(ttl));
+            ps.setString(5, claim.tenantId());
+            ps.setString(6, claim.key());
+            ps.setObject(7, claim.claimId());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next()
+                        ? new StoredResponse(rs.getString(1), rs.getString(2), rs.getString(3), status, body,
+                                location, rs.getObject(4, OffsetDateTime.class).toInstant())
+                        : null;
+            }
+        }
+    }
+
+    /** Gives up a claimed key without storing a response, so a retry runs again. */
+    public void release(Claim claim) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("""
+                     DELETE FROM idempotency_keys
+                      WHERE tenant_id = ? AND idempotency_key = ? AND claim_id = ? AND status_code IS NULL
+                     """)) {
+            ps.setString(1, claim.tenantId());
+            ps.setString(2, claim.key());
+            ps.setObject(3, claim.claimId());
+            ps.executeUpdate();
+        }
+    }
+
+    @Scheduled(identity = "idempotency-key-purge",
+            every = "{demeter.idempotency.purge-interval}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledPurge() {
+        try {
+            purgeExpired();
+        } catch (SQLException e) {
+            log.error("Idempotency key purge failed", e);
+        }
+    }
+
+    /**
+     * @return the number of expired keys deleted across all tenants
+     */
+    public int purgeExpired() throws SQLException {
+        int purged;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM idempotency_keys WHERE expires_at <= now()")) {
+            purged = ps.executeUpdate();
+        }
+        if (purged > 0) {
+            log.infof("Purged %d expired idempotency key(s)", purged);
+        }
+        return purged;
+    }
+
+    private Map<String, StoredResponse> cacheOf(String tenantId) {
+        return tenants.computeIfAbsent(tenantId, t -> Collections.synchronizedMap(
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                        return size() > cacheSize;
+                    }
+                }));
+    }
+
+    /** One attempt at owning a key; see {@link #claim}. */
+    public record Claim(String tenantId, String key, UUID claimId) {
+
+        public static Claim of(String tenantId, String key) {
+            return new Claim(tenantId, key, UUID.randomUUID());
+        }
+    }
+
+    /**
+     * What an idempotency key holds; {@code status} is null while the first request
+     * is still running.
+     */
+    public record StoredResponse(String method, String path, String requestHash, Integer status, String body,
+                                 String location, Instant expiresAt) {
+
+        public boolean inProgress() {
+            return status == null;
+        }
+
+        public boolean matches(String method, String path) {
+            return this.method.equals(method) && this.path.equals(path);
+        }
+
+        /** Keys stored before V28 have no fingerprint and match any body. */
+        public boolean matchesBody(String requestHash) {
+            return this.requestHash == null || Objects.equals(this.requestHash, requestHash);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.fortytwo.demeter.common.idempotency;
+
+import jakarta.ws.rs.NameBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lets clients retry the annotated endpoint safely by sending an
+ * {@code Idempotency-Key} header: the first response for a key is stored per tenant
+ * and returned for every retry with that key, without running the endpoint again.
+ * Requests without the header are not affected.
+ *
+ * <p>The response is stored from the result of the first {@code @Transactional} call the
+ * endpoint makes, in that call's transaction, so the endpoint must answer with that
+ * result as its entity.
+ *
+ * @see IdempotencyFilter
+ * @see IdempotencyCompletionInterceptor
+ */
+@NameBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface Idempotent {
+
+    /**
+     * Path of the resource the endpoint creates, {@code {id}} standing for the id of
+     * the result; the endpoint then answers 201 with it as {@code Location}, otherwise 200.
+     */
+    String location() default "";
+}
@@ -0,0 +1,68 @@
+package com.fortytwo.demeter.common.idempotency;
+
+import com.fortytwo.demeter.common.idempotency.IdempotencyStore.Claim;
+import jakarta.enterprise.context.RequestScoped;
+import java.net.URI;
+
+/**
+ * The idempotency claim held by the current request, handed from
+ * {@link IdempotencyFilter} to {@link IdempotencyCompletionInterceptor}.
+ */
+@RequestScoped
+class IdempotentRequest {
+
+    private Claim claim;
+    private String location;
+    private URI baseUri;
+    private int depth;
+    private boolean completed;
+
+    void claimed(Claim claim, String location, URI baseUri) {
+        this.claim = claim;
+        this.location = location;
+        this.baseUri = baseUri;
+    }
+
+    /** Whether a response still has to be stored for the claim. */
+    boolean pending() {
+        return claim != null && !completed;
+    }
+
+    /**
+     * Enters a transactional call.
+     *
+     * @return true for the outermost call, the one whose result is the response
+     */
+    boolean enter() {
+        return ++depth == 1;
+    }
+
+    void leave() {
+        depth--;
+    }
+
+    /** Set once the transaction that stored the response has committed. */
+    void completed() {
+        completed = true;
+    }
+
+    boolean isCompleted() {
+        return completed;
+    }
+
+    Claim claim() {
+        return claim;
+    }
+
+    /**
+     * @return the absolute {@code Location} of the created resource, or null when the
+     *         endpoint does not create one
+     */
+    String locationOf(String id) {
+        return location.isEmpty() ? null : baseUri.resolve(location.replace("{id}", id)).toString();
+    }
+
+    boolean creates() {
+        return !location.isEmpty();
+    }
+}
@@ -0,0 +1,18 @@
+package com.fortytwo.demeter.common.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates the annotated {@code UUID} id as a time-ordered UUIDv7 (RFC 9562) on the
+ * application side, so inserts land at the right-hand edge of the primary key B-tree
+ * instead of being scattered like random v4 ids.
+ */
+@IdGeneratorType(UuidV7Generator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface GeneratedUuidV7 {
+}
@@ -0,0 +1,34 @@
+package com.fortytwo.demeter.common.retry;
+
+import jakarta.enterprise.util.Nonbinding;
+import jakarta.interceptor.InterceptorBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Re-runs the annotated method when its transaction fails an optimistic lock check.
+ *
+ * <p>Only place this on methods that are safe to execute again from scratch — the
+ * interceptor runs outside {@code @Transactional}, so every attempt gets a fresh
+ * transaction and persistence context.
+ */
+@InterceptorBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface RetryOnConflict {
+
+    /**
+     * Total number of attempts, including the first one.
+     */
+    @Nonbinding
+    int maxAttempts() default 3;
+
+    /**
+     * Base backoff between attempts in milliseconds; a random jitter of up to the
+     * same amount is added to spread out competing writers.
+     */
+    @Nonbinding
+    long backoffMillis() default 10;
+}
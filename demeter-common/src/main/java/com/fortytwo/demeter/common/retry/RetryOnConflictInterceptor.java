@@ -0,0 +1,96 @@
+package com.fortytwo.demeter.common.retry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+import jakarta.persistence.OptimisticLockException;
+import org.hibernate.StaleStateException;
+import org.jboss.logging.Logger;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries {@link RetryOnConflict} methods on optimistic lock failures and records
+ * contention metrics.
+ *
+ * <p>Metrics (tagged with {@code method}):
+ * <pre>
+ * demeter.optimistic_lock.conflicts   every conflict observed
+ * demeter.optimistic_lock.retries     attempts re-run after a conflict
+ * demeter.optimistic_lock.exhausted   calls that still failed after the last attempt
+ * </pre>
+ *
+ * <p>Runs before the transactional interceptor so each attempt starts a new transaction.
+ */
+@RetryOnConflict
+@Interceptor
+@Priority(Interceptor.Priority.PLATFORM_BEFORE + 100)
+public class RetryOnConflictInterceptor {
+
+    private static final Logger log = Logger.getLogger(RetryOnConflictInterceptor.class);
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_BACKOFF_MILLIS = 10;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @AroundInvoke
+    Object retry(InvocationContext context) throws Exception {
+        RetryOnConflict binding = bindingOf(context);
+        int maxAttempts = binding != null ? binding.maxAttempts() : DEFAULT_MAX_ATTEMPTS;
+        long backoffMillis = binding != null ? binding.backoffMillis() : DEFAULT_BACKOFF_MILLIS;
+        String method = context.getMethod().getDeclaringClass().getSimpleName() + "." + context.getMethod().getName();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return context.proceed();
+            } catch (Exception e) {
+                OptimisticLockException conflict = findConflict(e);
+                if (conflict == null) {
+                    throw e;
+                }
+                meterRegistry.counter("demeter.optimistic_lock.conflicts", "method", method).increment();
+
+                if (attempt >= maxAttempts) {
+                    meterRegistry.counter("demeter.optimistic_lock.exhausted", "method", method).increment();
+                    log.warnf("Optimistic lock conflict in %s not resolved after %d attempts", method, attempt);
+                    throw conflict;
+                }
+
+                meterRegistry.counter("demeter.optimistic_lock.retries", "method", method).increment();
+                log.debugf("Optimistic lock conflict in %s (attempt %d), retrying", method, attempt);
+                backoff(backoffMillis);
+            }
+        }
+    }
+
+    private static RetryOnConflict bindingOf(InvocationContext context) {
+        RetryOnConflict binding = context.getMethod().getAnnotation(RetryOnConflict.class);
+        return binding != null ? binding : context.getMethod().getDeclaringClass().getAnnotation(RetryOnConflict.class);
+    }
+
+    /**
+     * Walks the cause chain: depending on whether the conflict surfaced on an explicit
+     * flush or during commit, it may be wrapped by Hibernate or the transaction manager.
+     */
+    private static OptimisticLockException findConflict(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof OptimisticLockException ole) {
+                return ole;
+            }
+            if (t instanceof StaleStateException sse) {
+                return new OptimisticLockException(sse.getMessage(), sse);
+            }
+        }
+        return null;
+    }
+
+    private static void backoff(long baseMillis) throws InterruptedException {
+        if (baseMillis <= 0) {
+            return;
+        }
+        Thread.sleep(baseMillis + ThreadLocalRandom.current().nextLong(baseMillis + 1));
+    }
+}
@@ -24,9 +24,8 @@ public class RlsConnectionCustomizer implements AgroalPoolInterceptor {
         }
 
         if (tenantId != null && !tenantId.isBlank()) {
-            try (var stmt = connection.prepareStatement("SELECT set_config('app.current_tenant', ?, true)")) {
-                stmt.setString(1, tenantId);
-                stmt.execute();
+            try {
+                TenantConnections.bind(connection, tenantId);
             } catch (SQLException e) {
                 throw new RuntimeException("Failed to set tenant context on connection", e);
             }
@@ -35,8 +34,8 @@ public class RlsConnectionCustomizer implements AgroalPoolInterceptor {
 
     @Override
     public void onConnectionReturn(Connection connection) {
-        try (var stmt = connection.prepareStatement("SELECT set_config('app.current_tenant', '', true)")) {
-            stmt.execute();
+        try {
+            TenantConnections.clear(connection);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to reset tenant context on connection", e);
         }
@@ -0,0 +1,29 @@
+package com.fortytwo.demeter.common.tenant;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds a tenant to a JDBC connection for the row-level security policies, which
+ * read {@code app.current_tenant}. The setting is transaction-local: request
+ * connections are bound by {@link RlsConnectionCustomizer}, while background jobs
+ * working outside a request bind each transaction they open themselves.
+ */
+public final class TenantConnections {
+
+    private TenantConnections() {
+    }
+
+    /** Binds {@code tenantId} until the current transaction ends. */
+    public static void bind(Connection connection, String tenantId) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT set_config('app.current_tenant', ?, true)")) {
+            ps.setString(1, tenantId);
+            ps.execute();
+        }
+    }
+
+    public static void clear(Connection connection) throws SQLException {
+        bind(connection, "");
+    }
+}
@@ -1,5 +1,6 @@
 package com.fortytwo.demeter.fotos.model;
 
+import com.fortytwo.demeter.common.model.GeneratedUuidV7;
 import jakarta.persistence.*;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.TenantId;
@@ -14,7 +15,7 @@ import java.util.UUID;
 public class Estimation {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     private UUID id;
 
     @TenantId
@@ -29,6 +29,10 @@ public class PhotoProcessingSession extends BaseEntity {
     @Column(name = "processed_images", nullable = false)
     private int processedImages;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     @OneToMany(mappedBy = "session", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Image> images = new ArrayList<>();
 
@@ -42,6 +46,7 @@ public class PhotoProcessingSession extends BaseEntity {
     public UUID getUploadedBy() { return uploadedBy; }
     public int getTotalImages() { return totalImages; }
     public int getProcessedImages() { return processedImages; }
+    public long getVersion() { return version; }
     public List<Image> getImages() { return images; }
     public List<Estimation> getEstimations() { return estimations; }
 
@@ -1,6 +1,7 @@
 package com.fortytwo.demeter.fotos.service;
 
 import com.fortytwo.demeter.common.exception.EntityNotFoundException;
+import com.fortytwo.demeter.common.retry.RetryOnConflict;
 import com.fortytwo.demeter.fotos.dto.ProcessingResultRequest;
 import com.fortytwo.demeter.fotos.dto.ProcessingResultRequest.ClassificationResultItem;
 import com.fortytwo.demeter.fotos.dto.ProcessingResultRequest.DetectionResultItem;
@@ -59,6 +60,7 @@ public class ProcessingResultService {
      * @return Updated session status
      */
     @Transactional
+    @RetryOnConflict
     public SessionStatusDTO processResults(ProcessingResultRequest request) {
         PhotoProcessingSession session = sessionRepository.findByIdOptional(request.sessionId())
                 .orElseThrow(() -> new EntityNotFoundException("PhotoProcessingSession", request.sessionId()));
@@ -127,6 +129,7 @@ public class ProcessingResultService {
      * @return Updated session status
      */
     @Transactional
+    @RetryOnConflict
     public SessionStatusDTO markFailed(UUID sessionId, UUID imageId, String errorMessage) {
         PhotoProcessingSession session = sessionRepository.findByIdOptional(sessionId)
                 .orElseThrow(() -> new EntityNotFoundException("PhotoProcessingSession", sessionId));
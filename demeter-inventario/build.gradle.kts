@@ -1,4 +1,5 @@
 dependencies {
     implementation(project(":demeter-common"))
     implementation(project(":demeter-productos"))
+    implementation("io.quarkus:quarkus-scheduler")
 }
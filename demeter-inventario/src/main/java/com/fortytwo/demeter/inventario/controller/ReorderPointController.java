@@ -0,0 +1,47 @@
+package com.fortytwo.demeter.inventario.controller;
+
+import com.fortytwo.demeter.common.auth.RoleConstants;
+import com.fortytwo.demeter.inventario.dto.ReorderPointDTO;
+import com.fortytwo.demeter.inventario.dto.UpsertReorderPointRequest;
+import com.fortytwo.demeter.inventario.service.ReorderPointService;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.validation.Valid;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import java.util.List;
+import java.util.UUID;
+
+@Path("/api/v1/reorder-points")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class ReorderPointController {
+
+    @Inject
+    ReorderPointService reorderPointService;
+
+    @GET
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
+    public List<ReorderPointDTO> list(@QueryParam("productId") UUID productId) {
+        return reorderPointService.findAll(productId);
+    }
+
+    /**
+     * Sets the reorder point of a product in a warehouse (or across all warehouses),
+     * replacing any previous one for the same scope.
+     */
+    @PUT
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR})
+    public ReorderPointDTO upsert(@Valid UpsertReorderPointRequest request) {
+        return reorderPointService.upsert(request);
+    }
+
+    @DELETE
+    @Path("/{id}")
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR})
+    public Response delete(@PathParam("id") UUID id) {
+        reorderPointService.delete(id);
+        return Response.noContent().build();
+    }
+}
@@ -0,0 +1,33 @@
+package com.fortytwo.demeter.inventario.controller;
+
+import com.fortytwo.demeter.common.auth.RoleConstants;
+import com.fortytwo.demeter.inventario.dto.StockAlertDTO;
+import com.fortytwo.demeter.inventario.service.StockAlertService;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import java.util.List;
+import java.util.UUID;
+
+@Path("/api/v1/stock-alerts")
+@Produces(MediaType.APPLICATION_JSON)
+public class StockAlertController {
+
+    @Inject
+    StockAlertService stockAlertService;
+
+    /**
+     * Low-stock alerts in the order they were raised. Poll with {@code afterId} set to
+     * the last alert received to get only newer ones.
+     */
+    @GET
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
+    public List<StockAlertDTO> feed(
+            @QueryParam("afterId") UUID afterId,
+            @QueryParam("status") String status,
+            @QueryParam("productId") UUID productId,
+            @QueryParam("limit") @DefaultValue("100") int limit) {
+        return stockAlertService.findFeed(afterId, status, productId, limit);
+    }
+}
@@ -1,18 +1,49 @@
 package com.fortytwo.demeter.inventario.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fortytwo.demeter.common.auth.RoleConstants;
 import com.fortytwo.demeter.common.dto.PagedResponse;
+import com.fortytwo.demeter.common.http.AcceptsUpload;
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.inventario.dto.AttributeFilter;
+import com.fortytwo.demeter.inventario.dto.AvailabilityMatrix;
+import com.fortytwo.demeter.inventario.dto.BatchAvailability;
+import com.fortytwo.demeter.inventario.dto.BatchLedgerPage;
+import com.fortytwo.demeter.inventario.dto.BatchLineage;
+import com.fortytwo.demeter.inventario.dto.BatchLocationEntry;
+import com.fortytwo.demeter.inventario.dto.BatchStatusTransitionRequest;
+import com.fortytwo.demeter.inventario.dto.BatchStatusTransitionResult;
 import com.fortytwo.demeter.inventario.dto.CreateStockBatchRequest;
+import com.fortytwo.demeter.inventario.dto.PromotedAttribute;
+import com.fortytwo.demeter.inventario.dto.PromotedAttributesRequest;
 import com.fortytwo.demeter.inventario.dto.StockBatchDTO;
+import com.fortytwo.demeter.inventario.dto.StockBatchImportJobDTO;
 import com.fortytwo.demeter.inventario.dto.UpdateStockBatchRequest;
 import com.fortytwo.demeter.inventario.model.BatchStatus;
+import com.fortytwo.demeter.inventario.service.PromotedAttributeService;
+import com.fortytwo.demeter.inventario.service.StockAvailabilityMatrixService;
+import com.fortytwo.demeter.inventario.service.StockBatchImportService;
+import com.fortytwo.demeter.inventario.service.StockBatchLineageService;
+import com.fortytwo.demeter.inventario.service.StockBatchLocationService;
 import com.fortytwo.demeter.inventario.service.StockBatchService;
+import com.fortytwo.demeter.inventario.service.StockReconciliationService;
+import com.fortytwo.demeter.inventario.service.StockReservationService;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.util.List;
 import java.util.UUID;
 
@@ -21,9 +52,38 @@ import java.util.UUID;
 @Consumes(MediaType.APPLICATION_JSON)
 public class StockBatchController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     @Inject
     StockBatchService stockBatchService;
 
+    @Inject
+    StockBatchLineageService stockBatchLineageService;
+
+    @Inject
+    StockBatchLocationService stockBatchLocationService;
+
+    @Inject
+    StockAvailabilityMatrixService stockAvailabilityMatrixService;
+
+    @Inject
+    StockBatchImportService stockBatchImportService;
+
+    @Inject
+    PromotedAttributeService promotedAttributeService;
+
+    @Inject
+    StockReconciliationService stockReconciliationService;
+
+    @Inject
+    StockReservationService stockReservationService;
+
+    @Inject
+    TenantContext tenantContext;
+
+    @Inject
+    ObjectMapper objectMapper;
+
     @GET
     @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
     public PagedResponse<StockBatchDTO> list(
@@ -31,8 +91,85 @@ public class StockBatchController {
             @QueryParam("size") @DefaultValue("20") int size,
             @QueryParam("productId") UUID productId,
             @QueryParam("locationId") UUID locationId,
-            @QueryParam("status") String status) {
-        return stockBatchService.findAll(page, size, productId, locationId, status);
+            @QueryParam("status") String status,
+            @QueryParam("attr") List<String> attr,
+            @QueryParam("attrContains") String attrContains,
+            @QueryParam("attrRange") List<String> attrRange,
+            @QueryParam("sort") String sort) {
+        AttributeFilter attributes = AttributeFilter.parse(attr, attrContains, attrRange, objectMapper);
+        return stockBatchService.findAll(page, size, productId, locationId, status, attributes, sort);
+    }
+
+    @GET
+    @Path("/expiring")
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
+    public PagedResponse<StockBatchDTO> getExpiring(
+            @QueryParam("days") @DefaultValue("7") int days,
+            @QueryParam("page") @DefaultValue("0") int page,
+            @QueryParam("size") @DefaultValue("20") int size) {
+        return stockBatchService.findExpiringWithin(days, page, size);
+    }
+
+    @GET
+    @Path("/promoted-attributes")
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
+    public List<PromotedAttribute> getPromotedAttributes() {
+        return promotedAttributeService.findForCurrentTenant();
+    }
+
+    @PUT
+    @Path("/promoted-attributes")
+    @RolesAllowed({RoleConstants.ADMIN})
+    public List<PromotedAttribute> replacePromotedAttributes(@Valid PromotedAttributesRequest request) {
+        return promotedAttributeService.replace(request.attributes());
+    }
+
+    /**
+     * Quantity, reserved and available-to-promise stock of each {@code batchId}
+     * (repeatable). Unknown ids are left out.
+     */
+    @GET
+    @Path("/availability")
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
+    public List<BatchAvailability> getAvailability(@QueryParam("batchId") List<UUID> batchIds) {
+        return stockReservationService.findAvailability(batchIds);
+    }
+
+    /**
+     * Available stock per product (rows) and warehouse (columns) of ACTIVE batches,
+     * optionally limited to some {@code productId}s (repeatable) or a category. A
+     * client polling the grid with the ETag it last got answers 304, without the grid
+     * being computed, until something it is built from changes.
+     */
+    @GET
+    @Path("/availability-matrix")
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
+    public Response getAvailabilityMatrix(
+            @QueryParam("productId") List<UUID> productIds,
+            @QueryParam("categoryId") UUID categoryId,
+            @Context Request request) {
+        EntityTag etag = new EntityTag(stockAvailabilityMatrixService.etag(productIds, categoryId));
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setPrivate(true);
+        cacheControl.setNoCache(true);
+
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.cacheControl(cacheControl).build();
+        }
+        AvailabilityMatrix matrix = stockAvailabilityMatrixService.findAvailabilityMatrix(productIds, categoryId);
+        return Response.ok(matrix).tag(etag).cacheControl(cacheControl).build();
+    }
+
+    /**
+     * Quarantines, releases or cancels many batches at once and answers 200 with the
+     * transitioned and skipped ids.
+     */
+    @POST
+    @Path("/status-transitions")
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR})
+    public BatchStatusTransitionResult transitionStatus(@Valid BatchStatusTransitionRequest request) {
+        return stockBatchService.transitionStatus(request);
     }
 
     @GET
@@ -42,6 +179,25 @@ public class StockBatchController {
         return stockBatchService.findById(id);
     }
 
+    @GET
+    @Path("/{id}/ledger")
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
+    public BatchLedgerPage getLedger(
+            @PathParam("id") UUID id,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("size") @DefaultValue("50") int size) {
+        return stockBatchService.findLedger(id, cursor, size);
+    }
+
+    @GET
+    @Path("/{id}/lineage")
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
+    public BatchLineage getLineage(
+            @PathParam("id") UUID id,
+            @QueryParam("depth") @DefaultValue("10") int depth) {
+        return stockBatchLineageService.findLineage(id, depth);
+    }
+
     @GET
     @Path("/by-product/{productId}")
     @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
@@ -56,6 +212,34 @@ public class StockBatchController {
         return stockBatchService.findByWarehouseId(warehouseId);
     }
 
+    /**
+     * What a scanned bin holds, as lean rows; {@code includeProduct} adds product names.
+     */
+    @GET
+    @Path("/by-bin/{binId}")
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
+    public List<BatchLocationEntry> getByBin(
+            @PathParam("binId") UUID binId,
+            @QueryParam("status") String status,
+            @QueryParam("includeProduct") @DefaultValue("false") boolean includeProduct,
+            @QueryParam("limit") @DefaultValue("200") int limit) {
+        return stockBatchLocationService.findInBin(binId, status, includeProduct, limit);
+    }
+
+    /**
+     * Lean rows of a warehouse's batches, ACTIVE unless another {@code status} is given.
+     */
+    @GET
+    @Path("/by-location/{locationId}")
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
+    public List<BatchLocationEntry> getByLocation(
+            @PathParam("locationId") UUID locationId,
+            @QueryParam("status") @DefaultValue("ACTIVE") String status,
+            @QueryParam("includeProduct") @DefaultValue("false") boolean includeProduct,
+            @QueryParam("limit") @DefaultValue("200") int limit) {
+        return stockBatchLocationService.findInLocation(locationId, status, includeProduct, limit);
+    }
+
     @GET
     @Path("/by-status/{status}")
     @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
@@ -84,4 +268,63 @@ public class StockBatchController {
         stockBatchService.delete(id);
         return Response.noContent().build();
     }
+
+    /**
+     * Starts a CSV bulk import. Columns are taken from the header row:
+     * {@code sku, batch_code, quantity} are required, {@code unit, warehouse_id, bin_id,
+     * entry_date, expiry_date} optional. Existing batch codes are updated in place.
+     * The body is streamed to disk, up to {@code demeter.inventory.import.max-body-size}.
+     */
+    @POST
+    @Path("/import")
+    @AcceptsUpload
+    @Consumes({"text/csv", MediaType.TEXT_PLAIN})
+    @RolesAllowed({RoleConstants.ADMIN})
+    public Response importCsv(InputStream csv) {
+        StockBatchImportJobDTO job = stockBatchImportService.start(csv);
+        return Response.accepted(job)
+                .location(URI.create("/api/v1/stock-batches/import/" + job.id()))
+                .build();
+    }
+
+    @GET
+    @Path("/import/{jobId}")
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR})
+    public StockBatchImportJobDTO getImportJob(@PathParam("jobId") UUID jobId) {
+        return stockBatchImportService.findJob(jobId);
+    }
+
+    /**
+     * Reconciles the tenant's batch quantities against the movement ledger and streams
+     * one NDJSON line per drifted batch as chunks finish, then a summary line. With
+     * {@code correct=true} drifted batches are set to the ledger value by AJUSTE.
+     */
+    @POST
+    @Path("/reconciliation")
+    @Produces(NDJSON)
+    @RolesAllowed({RoleConstants.ADMIN})
+    public Response reconcile(@QueryParam("correct") @DefaultValue("false") boolean correct) {
+        String tenantId = tenantContext.getCurrentTenantId();
+        StreamingOutput body = out -> {
+            try {
+                var summary = stockReconciliationService.reconcile(tenantId, correct, drift -> writeLine(out, drift));
+                writeLine(out, summary);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (Exception e) {
+                throw new IOException("Reconciliation failed", e);
+            }
+        };
+        return Response.ok(body, NDJSON).build();
+    }
+
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
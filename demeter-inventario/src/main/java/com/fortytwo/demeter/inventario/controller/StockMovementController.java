@@ -2,16 +2,22 @@ package com.fortytwo.demeter.inventario.controller;
 
 import com.fortytwo.demeter.common.auth.RoleConstants;
 import com.fortytwo.demeter.common.dto.PagedResponse;
+import com.fortytwo.demeter.common.idempotency.Idempotent;
+import com.fortytwo.demeter.inventario.dto.BulkStockMovementRequest;
+import com.fortytwo.demeter.inventario.dto.BulkStockMovementResult;
 import com.fortytwo.demeter.inventario.dto.CreateStockMovementRequest;
 import com.fortytwo.demeter.inventario.dto.StockMovementDTO;
+import com.fortytwo.demeter.inventario.dto.TransplantRequest;
 import com.fortytwo.demeter.inventario.model.MovementType;
 import com.fortytwo.demeter.inventario.service.StockMovementService;
+import com.fortytwo.demeter.inventario.service.StockTransplantService;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import java.net.URI;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
@@ -26,6 +32,9 @@ public class StockMovementController {
     @Inject
     StockMovementService stockMovementService;
 
+    @Inject
+    StockTransplantService stockTransplantService;
+
     @GET
     @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
     public PagedResponse<StockMovementDTO> list(
@@ -81,9 +90,35 @@ public class StockMovementController {
     }
 
     @POST
+    @Idempotent(location = "/api/v1/stock-movements/{id}")
     @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR})
     public Response create(@Valid CreateStockMovementRequest request) {
         StockMovementDTO created = stockMovementService.create(request);
-        return Response.status(Response.Status.CREATED).entity(created).build();
+        return Response.created(URI.create("/api/v1/stock-movements/" + created.id())).entity(created).build();
+    }
+
+    /**
+     * Accepts up to {@value BulkStockMovementRequest#MAX_ITEMS} movements and always answers
+     * 200 with a per-item report; rejected items carry an error and are not applied.
+     */
+    @POST
+    @Path("/bulk")
+    @Idempotent
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR})
+    public BulkStockMovementResult createBulk(@Valid BulkStockMovementRequest request) {
+        return stockMovementService.createBulk(request.movements());
+    }
+
+    /**
+     * Moves stock between batches in one transaction and answers 201 with the linking
+     * TRASPLANTE movement; source lines are OUT and destination lines IN, with unsigned quantities.
+     */
+    @POST
+    @Path("/transplant")
+    @Idempotent(location = "/api/v1/stock-movements/{id}")
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR})
+    public Response transplant(@Valid TransplantRequest request) {
+        StockMovementDTO created = stockTransplantService.transplant(request);
+        return Response.created(URI.create("/api/v1/stock-movements/" + created.id())).entity(created).build();
     }
 }
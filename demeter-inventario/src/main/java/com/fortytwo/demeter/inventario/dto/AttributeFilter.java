@@ -0,0 +1,112 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import com.fortytwo.demeter.common.exception.InvalidRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Predicates on {@code StockBatch.customAttributes}, parsed from list query parameters:
+ * <ul>
+ *   <li>{@code attr=key:value} (repeatable) — equality; {@code true}/{@code false} and
+ *       numbers match JSON booleans/numbers, {@code "quoted"} values force a string,</li>
+ *   <li>{@code attrContains={json object}} — JSON containment, e.g. {@code {"tags":["grafted"]}},</li>
+ *   <li>{@code attrRange=key:min..max} (repeatable, either bound optional) — numeric range
+ *       on a key the tenant declares as a NUMERIC promoted attribute; only JSON numbers match.</li>
+ * </ul>
+ * Equality and containment are folded into a single {@code @>} document.
+ */
+public record AttributeFilter(
+    Map<String, Object> contains,
+    List<Range> ranges
+) {
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+
+    public record Range(String key, BigDecimal min, BigDecimal max) {}
+
+    public boolean isEmpty() {
+        return contains.isEmpty() && ranges.isEmpty();
+    }
+
+    public static AttributeFilter parse(List<String> equals, String containsJson, List<String> ranges,
+                                        ObjectMapper objectMapper) {
+        Map<String, Object> contains = new LinkedHashMap<>();
+        if (containsJson != null && !containsJson.isBlank()) {
+            try {
+                contains.putAll(objectMapper.readValue(containsJson, new TypeReference<Map<String, Object>>() {}));
+            } catch (JsonProcessingException e) {
+                throw new InvalidRequestException("attrContains must be a JSON object");
+            }
+        }
+
+        for (String predicate : nullToEmpty(equals)) {
+            String[] parts = split(predicate, "attr", ":");
+            if (contains.putIfAbsent(key(parts[0]), scalar(parts[1])) != null) {
+                throw new InvalidRequestException("attr: key '" + parts[0] + "' is filtered more than once");
+            }
+        }
+
+        List<Range> parsedRanges = new ArrayList<>();
+        for (String predicate : nullToEmpty(ranges)) {
+            String[] parts = split(predicate, "attrRange", ":");
+            String[] bounds = split(parts[1], "attrRange", "\\.\\.");
+            BigDecimal min = bound(bounds[0]);
+            BigDecimal max = bound(bounds[1]);
+            if (min == null && max == null) {
+                throw new InvalidRequestException("attrRange: '" + predicate + "' needs a lower or upper bound");
+            }
+            parsedRanges.add(new Range(key(parts[0]), min, max));
+        }
+
+        return new AttributeFilter(contains, parsedRanges);
+    }
+
+    private static String[] split(String predicate, String param, String separator) {
+        String[] parts = predicate.split(separator, 2);
+        if (parts.length != 2) {
+            throw new InvalidRequestException(param + ": malformed predicate '" + predicate + "'");
+        }
+        return parts;
+    }
+
+    private static String key(String key) {
+        if (!KEY.matcher(key).matches()) {
+            throw new InvalidRequestException("Attribute keys may only contain letters, digits, '_' and '-': " + key);
+        }
+        return key;
+    }
+
+    private static Object scalar(String raw) {
+        if (raw.length() >= 2 && raw.startsWith("\"") && raw.endsWith("\"")) {
+            return raw.substring(1, raw.length() - 1);
+        }
+        if (raw.equals("true") || raw.equals("false")) {
+            return Boolean.valueOf(raw);
+        }
+        if (NUMBER.matcher(raw).matches()) {
+            return new BigDecimal(raw);
+        }
+        return raw;
+    }
+
+    private static BigDecimal bound(String raw) {
+        if (raw.isEmpty()) {
+            return null;
+        }
+        if (!NUMBER.matcher(raw).matches()) {
+            throw new InvalidRequestException("attrRange: bound '" + raw + "' is not a number");
+        }
+        return new BigDecimal(raw);
+    }
+
+    private static List<String> nullToEmpty(List<String> values) {
+        return values != null ? values : List.of();
+    }
+}
@@ -0,0 +1,21 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Available quantity of ACTIVE batches per product and warehouse.
+ * {@code available.get(i).get(j)} is product {@code products[i]} in warehouse
+ * {@code warehouses[j]}; cells without stock are zero. Batches not assigned to a
+ * warehouse share a column whose id and name are null.
+ */
+public record AvailabilityMatrix(
+    List<Product> products,
+    List<Warehouse> warehouses,
+    List<List<BigDecimal>> available
+) {
+    public record Product(UUID id, String sku, String name) {}
+
+    public record Warehouse(UUID id, String name) {}
+}
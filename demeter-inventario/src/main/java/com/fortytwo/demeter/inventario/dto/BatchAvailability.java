@@ -0,0 +1,15 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Stock of a batch that can still be promised: {@code quantity} minus unexpired
+ * reservations, or zero when the batch is not ACTIVE.
+ */
+public record BatchAvailability(
+    UUID batchId,
+    BigDecimal quantity,
+    BigDecimal reserved,
+    BigDecimal available
+) {}
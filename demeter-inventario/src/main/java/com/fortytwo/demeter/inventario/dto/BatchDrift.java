@@ -0,0 +1,17 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * A batch whose quantity differs from what its movement ledger implies.
+ * {@code corrected} is true when an AJUSTE set the batch to {@code expected}.
+ */
+public record BatchDrift(
+    UUID batchId,
+    String batchCode,
+    BigDecimal quantity,
+    BigDecimal expected,
+    BigDecimal drift,
+    boolean corrected
+) {}
@@ -0,0 +1,26 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One movement line of a batch with the batch quantity after it. {@code change} is the
+ * signed effect of the unsigned {@code quantity} in {@code direction} (for SET, the
+ * absolute value the batch was set to);
+ * {@code balance} is null where it cannot be derived (lines before an AJUSTE).
+ */
+public record BatchLedgerEntry(
+    UUID lineId,
+    UUID movementId,
+    String movementType,
+    BigDecimal quantity,
+    String direction,
+    BigDecimal change,
+    BigDecimal balance,
+    UUID referenceId,
+    String referenceType,
+    String notes,
+    UUID performedBy,
+    Instant performedAt
+) {}
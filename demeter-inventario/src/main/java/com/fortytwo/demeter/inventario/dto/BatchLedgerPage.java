@@ -0,0 +1,12 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import java.util.List;
+
+/**
+ * A page of a batch ledger, oldest first. Pass {@code nextCursor} back as
+ * {@code cursor} to read the following page; it is null on the last page.
+ */
+public record BatchLedgerPage(
+    List<BatchLedgerEntry> entries,
+    String nextCursor
+) {}
@@ -0,0 +1,33 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Transplant genealogy around {@code batchId}. Nodes carry their generation relative
+ * to it: negative for ancestors, positive for descendants, 0 for the batch itself.
+ * {@code truncated} is true when the walk hit its row limit before finishing.
+ */
+public record BatchLineage(
+    UUID batchId,
+    List<Node> nodes,
+    List<Edge> edges,
+    boolean truncated
+) {
+    public record Node(
+        UUID batchId,
+        String batchCode,
+        UUID productId,
+        String status,
+        BigDecimal quantity,
+        int generation
+    ) {}
+
+    /** {@code childBatchId} received stock from {@code parentBatchId} in TRASPLANTE {@code movementId}. */
+    public record Edge(
+        UUID parentBatchId,
+        UUID childBatchId,
+        UUID movementId
+    ) {}
+}
@@ -0,0 +1,22 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Lean view of a batch for bin and warehouse lookups. {@code productName} is only
+ * filled when the product was asked for.
+ */
+public record BatchLocationEntry(
+    UUID batchId,
+    String batchCode,
+    UUID productId,
+    String productName,
+    BigDecimal quantity,
+    String unit,
+    String status,
+    UUID warehouseId,
+    UUID binId,
+    Instant expiryDate
+) {}
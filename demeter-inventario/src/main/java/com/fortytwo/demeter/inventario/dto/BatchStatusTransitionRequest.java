@@ -0,0 +1,23 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Moves every batch selected by {@code batchIds} and/or the filter fields to
+ * {@code status}. Selected batches whose current status does not allow the
+ * transition are left untouched.
+ */
+public record BatchStatusTransitionRequest(
+    @NotNull String status,
+    @Size(max = BatchStatusTransitionRequest.MAX_BATCH_IDS) List<UUID> batchIds,
+    UUID productId,
+    UUID locationId,
+    String fromStatus,
+    String notes,
+    UUID performedBy
+) {
+    public static final int MAX_BATCH_IDS = 5000;
+}
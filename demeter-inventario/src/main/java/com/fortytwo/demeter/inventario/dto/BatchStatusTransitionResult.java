@@ -0,0 +1,17 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * {@code transitionId} is the reference id of the CAMBIO_ESTADO audit movements.
+ * {@code skippedIds} lists requested ids that were not transitioned (only filled
+ * when the request named batches explicitly).
+ */
+public record BatchStatusTransitionResult(
+    UUID transitionId,
+    String status,
+    int transitioned,
+    List<UUID> batchIds,
+    List<UUID> skippedIds
+) {}
@@ -0,0 +1,15 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * Items are validated individually by the service so that one malformed entry
+ * is reported in the result instead of rejecting the whole upload.
+ */
+public record BulkStockMovementRequest(
+    @NotEmpty @Size(max = BulkStockMovementRequest.MAX_ITEMS) List<CreateStockMovementRequest> movements
+) {
+    public static final int MAX_ITEMS = 5000;
+}
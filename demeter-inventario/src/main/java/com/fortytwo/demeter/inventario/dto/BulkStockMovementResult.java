@@ -0,0 +1,30 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+public record BulkStockMovementResult(
+    int total,
+    int succeeded,
+    int failed,
+    List<ItemResult> items
+) {
+    public record ItemResult(
+        int index,
+        UUID movementId,
+        String error
+    ) {
+        public static ItemResult ok(int index, UUID movementId) {
+            return new ItemResult(index, movementId, null);
+        }
+
+        public static ItemResult failed(int index, String error) {
+            return new ItemResult(index, null, error);
+        }
+    }
+
+    public static BulkStockMovementResult of(List<ItemResult> items) {
+        int failed = (int) items.stream().filter(i -> i.error() != null).count();
+        return new BulkStockMovementResult(items.size(), items.size() - failed, failed, items);
+    }
+}
@@ -0,0 +1,30 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fortytwo.demeter.inventario.model.PromotedAttributeType;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+
+/**
+ * A custom attribute key a tenant filters/sorts on often enough to keep its own
+ * expression index. Keys are limited to a pattern that is safe to inline as a SQL
+ * string literal, which the index expression requires.
+ */
+public record PromotedAttribute(
+    @NotNull @Pattern(regexp = PromotedAttribute.KEY_PATTERN) String key,
+    @NotNull PromotedAttributeType type
+) {
+    public static final String KEY_PATTERN = "[a-z][a-z0-9_]{0,29}";
+
+    /** Typed value of the attribute on stock_batches row {@code alias}; matches the index expression. */
+    @JsonIgnore
+    public String expression(String alias) {
+        return type.expression(alias + ".custom_attributes", key);
+    }
+
+    /** Whether the key can be inlined; declarations written straight into tenant settings are not validated. */
+    @JsonIgnore
+    public boolean isValid() {
+        return key != null && type != null && key.matches(KEY_PATTERN);
+    }
+}
@@ -0,0 +1,14 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+/** Replaces the tenant's promoted attributes; an empty list turns promotion off. */
+public record PromotedAttributesRequest(
+    @NotNull @Size(max = PromotedAttributesRequest.MAX_ATTRIBUTES) @Valid List<PromotedAttribute> attributes
+) {
+    /** Every promoted pair adds an index that each write to the tenant's batches maintains. */
+    public static final int MAX_ATTRIBUTES = 5;
+}
@@ -0,0 +1,15 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import java.util.UUID;
+
+/**
+ * Totals of one reconciliation run. {@code unverifiable} batches have neither an
+ * initial quantity nor an AJUSTE to start the ledger from.
+ */
+public record ReconciliationSummary(
+    UUID runId,
+    long checked,
+    long drifted,
+    long corrected,
+    long unverifiable
+) {}
@@ -0,0 +1,26 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import com.fortytwo.demeter.inventario.model.ReorderPoint;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+public record ReorderPointDTO(
+    UUID id,
+    UUID productId,
+    UUID warehouseId,
+    BigDecimal reorderPoint,
+    Instant createdAt,
+    Instant updatedAt
+) {
+    public static ReorderPointDTO from(ReorderPoint r) {
+        return new ReorderPointDTO(
+            r.getId(),
+            r.getProductId(),
+            r.getWarehouseId(),
+            r.getReorderPoint(),
+            r.getCreatedAt(),
+            r.getUpdatedAt()
+        );
+    }
+}
@@ -0,0 +1,15 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * One line of a document to hold {@code quantity} for: of {@code batchId}, or when that
+ * is null, of {@code productId}'s sellable batches in first-expiry-first-out order.
+ */
+public record ReservationLine(
+    UUID lineId,
+    UUID productId,
+    UUID batchId,
+    BigDecimal quantity
+) {}
@@ -0,0 +1,34 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import com.fortytwo.demeter.inventario.model.StockAlert;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+public record StockAlertDTO(
+    UUID id,
+    UUID reorderPointId,
+    UUID productId,
+    UUID warehouseId,
+    BigDecimal reorderPoint,
+    BigDecimal quantity,
+    String status,
+    Instant raisedAt,
+    Instant resolvedAt,
+    Instant updatedAt
+) {
+    public static StockAlertDTO from(StockAlert a) {
+        return new StockAlertDTO(
+            a.getId(),
+            a.getReorderPointId(),
+            a.getProductId(),
+            a.getWarehouseId(),
+            a.getReorderPoint(),
+            a.getQuantity(),
+            a.getStatus().name(),
+            a.getRaisedAt(),
+            a.getResolvedAt(),
+            a.getUpdatedAt()
+        );
+    }
+}
@@ -0,0 +1,37 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import com.fortytwo.demeter.inventario.model.StockBatchImportJob;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public record StockBatchImportJobDTO(
+    UUID id,
+    String status,
+    long rowsRead,
+    long rowsRejected,
+    long rowsInserted,
+    long rowsUpdated,
+    List<Map<String, Object>> errors,
+    String errorMessage,
+    Instant startedAt,
+    Instant finishedAt,
+    Instant createdAt
+) {
+    public static StockBatchImportJobDTO from(StockBatchImportJob job) {
+        return new StockBatchImportJobDTO(
+            job.getId(),
+            job.getStatus().name(),
+            job.getRowsRead(),
+            job.getRowsRejected(),
+            job.getRowsInserted(),
+            job.getRowsUpdated(),
+            job.getErrors() != null ? job.getErrors() : List.of(),
+            job.getErrorMessage(),
+            job.getStartedAt(),
+            job.getFinishedAt(),
+            job.getCreatedAt()
+        );
+    }
+}
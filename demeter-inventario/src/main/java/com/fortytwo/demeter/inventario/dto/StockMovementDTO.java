@@ -26,6 +26,7 @@ public record StockMovementDTO(
         UUID batchId,
         String batchCode,
         BigDecimal quantity,
+        String direction,
         Instant createdAt
     ) {
         public static BatchMovementDetail from(StockBatchMovement bm) {
@@ -34,6 +35,7 @@ public record StockMovementDTO(
                 bm.getBatch() != null ? bm.getBatch().getId() : null,
                 bm.getBatch() != null ? bm.getBatch().getBatchCode() : null,
                 bm.getQuantity(),
+                bm.getDirection() != null ? bm.getDirection().name() : null,
                 bm.getCreatedAt()
             );
         }
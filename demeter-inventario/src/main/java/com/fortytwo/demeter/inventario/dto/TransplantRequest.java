@@ -0,0 +1,37 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Moves stock out of one or more source batches into destination batches at
+ * {@code warehouseId}/{@code binId}. Each destination either credits an existing batch
+ * ({@code batchId}) or creates a new one ({@code batchCode}, optionally for another
+ * {@code productId}). The quantities moved out and in must balance.
+ */
+public record TransplantRequest(
+    @NotEmpty @Size(max = TransplantRequest.MAX_BATCHES) @Valid List<CreateStockMovementRequest.BatchQuantity> sources,
+    @NotNull UUID warehouseId,
+    UUID binId,
+    @NotEmpty @Size(max = TransplantRequest.MAX_BATCHES) @Valid List<Destination> destinations,
+    @Size(max = 50) String unit,
+    String notes,
+    UUID performedBy,
+    Instant performedAt
+) {
+    public static final int MAX_BATCHES = 500;
+
+    public record Destination(
+        UUID batchId,
+        @Size(max = 100) String batchCode,
+        UUID productId,
+        @NotNull @DecimalMin("0.01") BigDecimal quantity
+    ) {}
+}
@@ -0,0 +1,16 @@
+package com.fortytwo.demeter.inventario.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Sets the reorder point of a product in a warehouse, or across all warehouses when
+ * {@code warehouseId} is omitted.
+ */
+public record UpsertReorderPointRequest(
+    @NotNull UUID productId,
+    UUID warehouseId,
+    @NotNull @DecimalMin("0") BigDecimal reorderPoint
+) {}
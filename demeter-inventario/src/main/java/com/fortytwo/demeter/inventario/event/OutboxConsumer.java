@@ -0,0 +1,47 @@
+package com.fortytwo.demeter.inventario.event;
+
+import jakarta.enterprise.util.AnnotationLiteral;
+import jakarta.inject.Qualifier;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Names an observer of {@link StockMovementEventBatch}. Each name is a separate
+ * outbox consumer with its own offset:
+ *
+ * <pre>
+ * void onMovements(&#64;Observes &#64;OutboxConsumer("alerts") StockMovementEventBatch batch)
+ * </pre>
+ *
+ * Observers without this qualifier would receive every consumer's batches. The name
+ * must also be declared as an {@link OutboxConsumerRegistration}, or it is never drained.
+ */
+@Qualifier
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.PARAMETER, ElementType.FIELD, ElementType.METHOD, ElementType.TYPE})
+public @interface OutboxConsumer {
+
+    String value();
+
+    final class Literal extends AnnotationLiteral<OutboxConsumer> implements OutboxConsumer {
+
+        private final String value;
+
+        private Literal(String value) {
+            this.value = value;
+        }
+
+        public static Literal of(String value) {
+            return new Literal(value);
+        }
+
+        @Override
+        public String value() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.fortytwo.demeter.inventario.event;
+
+/**
+ * Registers an outbox consumer with the poller, which only drains (and only prunes
+ * past) the names registered this way. Declare one next to each
+ * {@link OutboxConsumer} observer, with the same name:
+ *
+ * <pre>
+ * &#64;Produces
+ * static final OutboxConsumerRegistration REGISTRATION = new OutboxConsumerRegistration("alerts");
+ * </pre>
+ */
+public record OutboxConsumerRegistration(String name) {
+}
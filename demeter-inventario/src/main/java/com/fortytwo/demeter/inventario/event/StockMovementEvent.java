@@ -0,0 +1,20 @@
+package com.fortytwo.demeter.inventario.event;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A committed stock movement, as recorded in the outbox. Batch lines are not
+ * included; load them by {@code movementId} when needed.
+ */
+public record StockMovementEvent(
+    long sequence,
+    String tenantId,
+    UUID movementId,
+    String movementType,
+    BigDecimal quantity,
+    UUID referenceId,
+    String referenceType,
+    Instant performedAt
+) {}
@@ -0,0 +1,13 @@
+package com.fortytwo.demeter.inventario.event;
+
+import java.util.List;
+
+/**
+ * Events delivered together to one outbox consumer, in commit order. Delivery is
+ * at-least-once: a batch whose observer throws is delivered again, so observers
+ * must tolerate duplicates (e.g. by {@link StockMovementEvent#movementId()}).
+ */
+public record StockMovementEventBatch(
+    String consumer,
+    List<StockMovementEvent> events
+) {}
@@ -1,5 +1,21 @@
 package com.fortytwo.demeter.inventario.model;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum BatchStatus {
-    ACTIVE, DEPLETED, EXPIRED, QUARANTINED, CANCELLED
+    ACTIVE, DEPLETED, EXPIRED, QUARANTINED, CANCELLED;
+
+    /**
+     * Statuses a batch may be moved from into this one by a manual transition. DEPLETED
+     * and EXPIRED are only ever set by the system, so nothing transitions into them.
+     */
+    public Set<BatchStatus> allowedFrom() {
+        return switch (this) {
+            case ACTIVE -> EnumSet.of(QUARANTINED);
+            case QUARANTINED -> EnumSet.of(ACTIVE, EXPIRED);
+            case CANCELLED -> EnumSet.of(ACTIVE, QUARANTINED, EXPIRED, DEPLETED);
+            case DEPLETED, EXPIRED -> EnumSet.noneOf(BatchStatus.class);
+        };
+    }
 }
@@ -0,0 +1,5 @@
+package com.fortytwo.demeter.inventario.model;
+
+public enum ImportJobStatus {
+    PENDING, PROCESSING, COMPLETED, FAILED
+}
@@ -0,0 +1,16 @@
+package com.fortytwo.demeter.inventario.model;
+
+/**
+ * What a stock movement line did to its batch. Line quantities are unsigned; the
+ * direction alone says how to apply them.
+ */
+public enum LineDirection {
+    /** The quantity was added to the batch. */
+    IN,
+    /** The quantity was taken from the batch. */
+    OUT,
+    /** The batch quantity was overwritten with the quantity (AJUSTE). */
+    SET,
+    /** The batch quantity was left unchanged; the line records the stock concerned. */
+    NONE
+}
@@ -1,5 +1,27 @@
 package com.fortytwo.demeter.inventario.model;
 
 public enum MovementType {
-    ENTRADA, MUERTE, TRASPLANTE, VENTA, AJUSTE
+    ENTRADA, MUERTE, TRASPLANTE, VENTA, AJUSTE,
+    /** Batches swept to EXPIRED; records the stock written off, quantities are left as they were. */
+    VENCIMIENTO,
+    /** Manual batch status change (quarantine, release, cancel); quantities are left as they were. */
+    CAMBIO_ESTADO;
+
+    /** Types only the system records; the movement API rejects them. */
+    public boolean isSystemOnly() {
+        return this == VENCIMIENTO || this == CAMBIO_ESTADO;
+    }
+
+    /**
+     * Direction of this type's lines. TRASPLANTE lines are debits here; the transplant
+     * endpoint also records the credited destinations as {@link LineDirection#IN}.
+     */
+    public LineDirection lineDirection() {
+        return switch (this) {
+            case ENTRADA -> LineDirection.IN;
+            case AJUSTE -> LineDirection.SET;
+            case VENCIMIENTO, CAMBIO_ESTADO -> LineDirection.NONE;
+            case MUERTE, VENTA, TRASPLANTE -> LineDirection.OUT;
+        };
+    }
 }
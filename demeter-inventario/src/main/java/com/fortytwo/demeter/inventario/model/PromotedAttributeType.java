@@ -0,0 +1,43 @@
+package com.fortytwo.demeter.inventario.model;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/** SQL type a promoted custom attribute is indexed as; see {@code PromotedAttributeService}. */
+public enum PromotedAttributeType {
+    TEXT, NUMERIC, BOOLEAN;
+
+    public String sqlName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Typed value of {@code key} in the {@code attributes} JSONB column, or NULL when the
+     * stored value has another JSON type, so predicates on it agree with JSONB matching.
+     * V13 writes the same expression for declarations that predate it; keep them in step.
+     */
+    public String expression(String attributes, String key) {
+        return switch (this) {
+            case TEXT -> "CASE WHEN jsonb_typeof(%1$s -> '%2$s') = 'string' THEN %1$s ->> '%2$s' END"
+                    .formatted(attributes, key);
+            case NUMERIC -> "CASE WHEN jsonb_typeof(%1$s -> '%2$s') = 'number' THEN (%1$s -> '%2$s')::numeric END"
+                    .formatted(attributes, key);
+            case BOOLEAN -> "CASE WHEN jsonb_typeof(%1$s -> '%2$s') = 'boolean' THEN (%1$s -> '%2$s')::boolean END"
+                    .formatted(attributes, key);
+        };
+    }
+
+    /** Whether a parsed filter value has the JSON type this expression extracts. */
+    public boolean accepts(Object value) {
+        return switch (this) {
+            case TEXT -> value instanceof String;
+            case NUMERIC -> value instanceof Number;
+            case BOOLEAN -> value instanceof Boolean;
+        };
+    }
+
+    /** Converts an accepted value into the JDBC bind value for this expression. */
+    public Object bindValue(Object value) {
+        return this == NUMERIC && !(value instanceof BigDecimal) ? new BigDecimal(value.toString()) : value;
+    }
+}
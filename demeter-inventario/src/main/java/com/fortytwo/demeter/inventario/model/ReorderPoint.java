@@ -0,0 +1,34 @@
+package com.fortytwo.demeter.inventario.model;
+
+import com.fortytwo.demeter.common.model.BaseEntity;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Low-stock threshold for the ACTIVE quantity of a product in one warehouse, or across
+ * all warehouses when {@code warehouseId} is null. See V21.
+ */
+@Entity
+@Table(name = "reorder_points")
+public class ReorderPoint extends BaseEntity {
+
+    @Column(name = "product_id", nullable = false, updatable = false)
+    private UUID productId;
+
+    @Column(name = "warehouse_id", updatable = false)
+    private UUID warehouseId;
+
+    @Column(name = "reorder_point", nullable = false, precision = 12, scale = 2)
+    private BigDecimal reorderPoint;
+
+    // Getters
+    public UUID getProductId() { return productId; }
+    public UUID getWarehouseId() { return warehouseId; }
+    public BigDecimal getReorderPoint() { return reorderPoint; }
+
+    // Setters
+    public void setProductId(UUID productId) { this.productId = productId; }
+    public void setWarehouseId(UUID warehouseId) { this.warehouseId = warehouseId; }
+    public void setReorderPoint(BigDecimal reorderPoint) { this.reorderPoint = reorderPoint; }
+}
@@ -0,0 +1,52 @@
+package com.fortytwo.demeter.inventario.model;
+
+import com.fortytwo.demeter.common.model.BaseEntity;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A reorder point that was reached. While OPEN it tracks the latest quantity; it is
+ * RESOLVED once stock climbs back above the reorder point. Written only by
+ * {@code StockAlertEvaluator}. See V21.
+ */
+@Entity
+@Table(name = "stock_alerts")
+public class StockAlert extends BaseEntity {
+
+    @Column(name = "reorder_point_id", nullable = false, updatable = false)
+    private UUID reorderPointId;
+
+    @Column(name = "product_id", nullable = false, updatable = false)
+    private UUID productId;
+
+    @Column(name = "warehouse_id", updatable = false)
+    private UUID warehouseId;
+
+    @Column(name = "reorder_point", nullable = false, precision = 12, scale = 2)
+    private BigDecimal reorderPoint;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 50)
+    private StockAlertStatus status;
+
+    @Column(name = "raised_at", nullable = false, updatable = false)
+    private Instant raisedAt;
+
+    @Column(name = "resolved_at")
+    private Instant resolvedAt;
+
+    // Getters
+    public UUID getReorderPointId() { return reorderPointId; }
+    public UUID getProductId() { return productId; }
+    public UUID getWarehouseId() { return warehouseId; }
+    public BigDecimal getReorderPoint() { return reorderPoint; }
+    public BigDecimal getQuantity() { return quantity; }
+    public StockAlertStatus getStatus() { return status; }
+    public Instant getRaisedAt() { return raisedAt; }
+    public Instant getResolvedAt() { return resolvedAt; }
+}
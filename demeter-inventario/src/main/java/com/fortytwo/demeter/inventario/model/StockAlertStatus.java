@@ -0,0 +1,5 @@
+package com.fortytwo.demeter.inventario.model;
+
+public enum StockAlertStatus {
+    OPEN, RESOLVED
+}
@@ -24,6 +24,10 @@ public class StockBatch extends BaseEntity {
     @Column(nullable = false, precision = 12, scale = 2)
     private BigDecimal quantity = BigDecimal.ZERO;
 
+    /** Quantity the movement ledger starts from; null when unknown. */
+    @Column(name = "initial_quantity", precision = 12, scale = 2, updatable = false)
+    private BigDecimal initialQuantity;
+
     @Column(length = 50)
     private String unit;
 
@@ -47,10 +51,15 @@ public class StockBatch extends BaseEntity {
     @Column(name = "expiry_date")
     private Instant expiryDate;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     // Getters
     public Product getProduct() { return product; }
     public String getBatchCode() { return batchCode; }
     public BigDecimal getQuantity() { return quantity; }
+    public BigDecimal getInitialQuantity() { return initialQuantity; }
     public String getUnit() { return unit; }
     public UUID getWarehouseId() { return warehouseId; }
     public UUID getBinId() { return binId; }
@@ -58,11 +67,13 @@ public class StockBatch extends BaseEntity {
     public Map<String, Object> getCustomAttributes() { return customAttributes; }
     public Instant getEntryDate() { return entryDate; }
     public Instant getExpiryDate() { return expiryDate; }
+    public long getVersion() { return version; }
 
     // Setters
     public void setProduct(Product product) { this.product = product; }
     public void setBatchCode(String batchCode) { this.batchCode = batchCode; }
     public void setQuantity(BigDecimal quantity) { this.quantity = quantity; }
+    public void setInitialQuantity(BigDecimal initialQuantity) { this.initialQuantity = initialQuantity; }
     public void setUnit(String unit) { this.unit = unit; }
     public void setWarehouseId(UUID warehouseId) { this.warehouseId = warehouseId; }
     public void setBinId(UUID binId) { this.binId = binId; }
@@ -0,0 +1,61 @@
+package com.fortytwo.demeter.inventario.model;
+
+import com.fortytwo.demeter.common.model.BaseEntity;
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Status record for a CSV import. Created through Hibernate when the upload is
+ * accepted; progress is then written by the import worker over plain JDBC.
+ */
+@Entity
+@Table(name = "stock_batch_import_jobs")
+public class StockBatchImportJob extends BaseEntity {
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 50)
+    private ImportJobStatus status = ImportJobStatus.PENDING;
+
+    @Column(name = "rows_read", nullable = false)
+    private long rowsRead;
+
+    @Column(name = "rows_rejected", nullable = false)
+    private long rowsRejected;
+
+    @Column(name = "rows_inserted", nullable = false)
+    private long rowsInserted;
+
+    @Column(name = "rows_updated", nullable = false)
+    private long rowsUpdated;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
+    private List<Map<String, Object>> errors;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "started_at")
+    private Instant startedAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    // Getters
+    public ImportJobStatus getStatus() { return status; }
+    public long getRowsRead() { return rowsRead; }
+    public long getRowsRejected() { return rowsRejected; }
+    public long getRowsInserted() { return rowsInserted; }
+    public long getRowsUpdated() { return rowsUpdated; }
+    public List<Map<String, Object>> getErrors() { return errors; }
+    public String getErrorMessage() { return errorMessage; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+
+    // Setters
+    public void setStatus(ImportJobStatus status) { this.status = status; }
+}
@@ -1,5 +1,6 @@
 package com.fortytwo.demeter.inventario.model;
 
+import com.fortytwo.demeter.common.model.GeneratedUuidV7;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -10,7 +11,7 @@ import java.util.UUID;
 public class StockBatchMovement {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     private UUID id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -24,12 +25,25 @@ public class StockBatchMovement {
     @Column(nullable = false, precision = 12, scale = 2)
     private BigDecimal quantity;
 
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private LineDirection direction;
+
+    /** Version the batch reached with this line, assigned under its row lock. */
+    @Column(name = "batch_version", nullable = false)
+    private long batchVersion;
+
+    /** The movement's partition key, so joins to stock_movements cover its primary key (V29). */
+    @Column(name = "movement_performed_at", nullable = false, updatable = false)
+    private Instant movementPerformedAt;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
     @PrePersist
     void prePersist() {
         this.createdAt = Instant.now();
+        this.movementPerformedAt = movement.getPerformedAt();
     }
 
     // Getters
@@ -37,10 +51,15 @@ public class StockBatchMovement {
     public StockBatch getBatch() { return batch; }
     public StockMovement getMovement() { return movement; }
     public BigDecimal getQuantity() { return quantity; }
+    public LineDirection getDirection() { return direction; }
+    public long getBatchVersion() { return batchVersion; }
+    public Instant getMovementPerformedAt() { return movementPerformedAt; }
     public Instant getCreatedAt() { return createdAt; }
 
     // Setters
     public void setBatch(StockBatch batch) { this.batch = batch; }
     public void setMovement(StockMovement movement) { this.movement = movement; }
     public void setQuantity(BigDecimal quantity) { this.quantity = quantity; }
+    public void setDirection(LineDirection direction) { this.direction = direction; }
+    public void setBatchVersion(long batchVersion) { this.batchVersion = batchVersion; }
 }
@@ -0,0 +1,50 @@
+package com.fortytwo.demeter.inventario.model;
+
+import com.fortytwo.demeter.common.model.BaseEntity;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Quantity of one batch held for a line of a pending document until it is released
+ * or {@code expiresAt} passes. See V18.
+ */
+@Entity
+@Table(name = "stock_reservations")
+public class StockReservation extends BaseEntity {
+
+    @Column(name = "batch_id", nullable = false, updatable = false)
+    private UUID batchId;
+
+    @Column(name = "reference_type", nullable = false, length = 100, updatable = false)
+    private String referenceType;
+
+    @Column(name = "reference_id", nullable = false, updatable = false)
+    private UUID referenceId;
+
+    @Column(name = "reference_line_id", updatable = false)
+    private UUID referenceLineId;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal quantity;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    // Getters
+    public UUID getBatchId() { return batchId; }
+    public String getReferenceType() { return referenceType; }
+    public UUID getReferenceId() { return referenceId; }
+    public UUID getReferenceLineId() { return referenceLineId; }
+    public BigDecimal getQuantity() { return quantity; }
+    public Instant getExpiresAt() { return expiresAt; }
+
+    // Setters
+    public void setBatchId(UUID batchId) { this.batchId = batchId; }
+    public void setReferenceType(String referenceType) { this.referenceType = referenceType; }
+    public void setReferenceId(UUID referenceId) { this.referenceId = referenceId; }
+    public void setReferenceLineId(UUID referenceLineId) { this.referenceLineId = referenceLineId; }
+    public void setQuantity(BigDecimal quantity) { this.quantity = quantity; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -0,0 +1,51 @@
+package com.fortytwo.demeter.inventario.repository;
+
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.inventario.model.ReorderPoint;
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+@ApplicationScoped
+public class ReorderPointRepository implements PanacheRepositoryBase<ReorderPoint, UUID> {
+
+    @Inject
+    TenantContext tenantContext;
+
+    public List<ReorderPoint> findByProductId(UUID productId) {
+        return find("productId", productId).list();
+    }
+
+    /**
+     * Creates the reorder point of the product and warehouse, or moves the existing one.
+     *
+     * @return the id of the reorder point
+     */
+    public UUID upsert(UUID productId, UUID warehouseId, BigDecimal reorderPoint) {
+        var query = getEntityManager().createNativeQuery("""
+                INSERT INTO reorder_points (tenant_id, product_id, warehouse_id, reorder_point)
+                VALUES (:tenantId, :productId, CAST(:warehouseId AS uuid), :reorderPoint)
+                ON CONFLICT (tenant_id, product_id, warehouse_id)
+                DO UPDATE SET reorder_point = EXCLUDED.reorder_point, updated_at = now()
+                RETURNING id
+                """);
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("productId", productId);
+        query.setParameter("warehouseId", warehouseId);
+        query.setParameter("reorderPoint", reorderPoint);
+        return (UUID) query.getSingleResult();
+    }
+
+    public boolean warehouseExists(UUID warehouseId) {
+        var query = getEntityManager().createNativeQuery("""
+                SELECT count(*) FROM warehouses
+                 WHERE tenant_id = :tenantId AND id = :id AND deleted_at IS NULL
+                """);
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("id", warehouseId);
+        return ((Number) query.getSingleResult()).longValue() > 0;
+    }
+}
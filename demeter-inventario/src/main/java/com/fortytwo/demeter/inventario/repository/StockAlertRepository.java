@@ -0,0 +1,35 @@
+package com.fortytwo.demeter.inventario.repository;
+
+import com.fortytwo.demeter.inventario.model.StockAlert;
+import com.fortytwo.demeter.inventario.model.StockAlertStatus;
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@ApplicationScoped
+public class StockAlertRepository implements PanacheRepositoryBase<StockAlert, UUID> {
+
+    /**
+     * Alerts raised after {@code afterId} in raise order (ids are time-ordered UUIDv7).
+     */
+    public List<StockAlert> findFeed(UUID afterId, StockAlertStatus status, UUID productId, int limit) {
+        StringBuilder query = new StringBuilder("1=1");
+        List<Object> params = new ArrayList<>();
+        int paramIndex = 1;
+        if (afterId != null) {
+            query.append(" and id > ?").append(paramIndex++);
+            params.add(afterId);
+        }
+        if (status != null) {
+            query.append(" and status = ?").append(paramIndex++);
+            params.add(status);
+        }
+        if (productId != null) {
+            query.append(" and productId = ?").append(paramIndex++);
+            params.add(productId);
+        }
+        return find(query + " order by id", params.toArray()).range(0, limit - 1).list();
+    }
+}
@@ -0,0 +1,93 @@
+package com.fortytwo.demeter.inventario.repository;
+
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.inventario.model.StockBatch;
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@ApplicationScoped
+public class StockAvailabilityMatrixRepository implements PanacheRepositoryBase<StockBatch, UUID> {
+
+    @Inject
+    TenantContext tenantContext;
+
+    /**
+     * Available quantity of ACTIVE batches summed per product and warehouse in one
+     * {@code GROUP BY}, ordered by SKU then warehouse name (unassigned last).
+     *
+     * @param productIds restricts to these products when not empty
+     * @param categoryId restricts to products of this category when not null
+     */
+    public List<AvailabilityCell> sumAvailableByProductAndWarehouse(Collection<UUID> productIds, UUID categoryId) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT b.product_id, p.sku, p.name, b.warehouse_id, w.name, sum(%s)
+                  FROM stock_batches b
+                  JOIN products p ON p.id = b.product_id
+                  LEFT JOIN warehouses w ON w.id = b.warehouse_id
+                  %s
+                 WHERE b.tenant_id = :tenantId AND b.status = 'ACTIVE'
+                """.formatted(StockReservationRepository.AVAILABLE, StockReservationRepository.RESERVED));
+        if (!productIds.isEmpty()) {
+            sql.append(" AND b.product_id IN (:productIds)");
+        }
+        if (categoryId != null) {
+            sql.append(" AND p.category_id = :categoryId");
+        }
+        sql.append("""
+                 GROUP BY b.product_id, p.sku, p.name, b.warehouse_id, w.name
+                 ORDER BY p.sku, b.product_id, w.name NULLS LAST, b.warehouse_id NULLS LAST
+                """);
+        var query = getEntityManager().createNativeQuery(sql.toString());
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        if (!productIds.isEmpty()) {
+            query.setParameter("productIds", productIds);
+        }
+        if (categoryId != null) {
+            query.setParameter("categoryId", categoryId);
+        }
+        List<AvailabilityCell> cells = new ArrayList<>();
+        for (Object row : query.getResultList()) {
+            Object[] cols = (Object[]) row;
+            cells.add(new AvailabilityCell((UUID) cols[0], (String) cols[1], (String) cols[2],
+                    (UUID) cols[3], (String) cols[4], (BigDecimal) cols[5]));
+        }
+        return cells;
+    }
+
+    /**
+     * Fingerprint of everything the tenant's grid is built from: its ACTIVE batches with
+     * their versions, its unexpired reservations, and its products and warehouses with
+     * their update times. Each part is a row count and an order-independent sum of row
+     * hashes, so it moves with any insert, update, delete or lapsed hold whatever order
+     * the writers commit in, and is read without joining or grouping anything.
+     */
+    public String changeMarker() {
+        return (String) getEntityManager().createNativeQuery("""
+                SELECT concat_ws('/',
+                       (SELECT count(*) || ':' || coalesce(sum(hashtextextended(concat(b.id, ':', b.version), 0)), 0)
+                          FROM stock_batches b
+                         WHERE b.tenant_id = :tenantId AND b.status = 'ACTIVE'),
+                       (SELECT count(*) || ':' || coalesce(sum(hashtextextended(r.id::text, 0)), 0)
+                          FROM stock_reservations r
+                         WHERE r.tenant_id = :tenantId AND r.expires_at > now()),
+                       (SELECT count(*) || ':' || coalesce(sum(hashtextextended(concat(p.id, ':', p.updated_at), 0)), 0)
+                          FROM products p
+                         WHERE p.tenant_id = :tenantId),
+                       (SELECT count(*) || ':' || coalesce(sum(hashtextextended(concat(w.id, ':', w.updated_at), 0)), 0)
+                          FROM warehouses w
+                         WHERE w.tenant_id = :tenantId))
+                """)
+                .setParameter("tenantId", tenantContext.getCurrentTenantId())
+                .getSingleResult();
+    }
+
+    /** One product × warehouse sum of {@link #sumAvailableByProductAndWarehouse}. */
+    public record AvailabilityCell(UUID productId, String sku, String productName,
+                                   UUID warehouseId, String warehouseName, BigDecimal available) {}
+}
@@ -0,0 +1,10 @@
+package com.fortytwo.demeter.inventario.repository;
+
+import com.fortytwo.demeter.inventario.model.StockBatchImportJob;
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import java.util.UUID;
+
+@ApplicationScoped
+public class StockBatchImportJobRepository implements PanacheRepositoryBase<StockBatchImportJob, UUID> {
+}
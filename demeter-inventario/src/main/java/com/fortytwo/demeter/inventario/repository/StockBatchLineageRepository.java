@@ -0,0 +1,97 @@
+package com.fortytwo.demeter.inventario.repository;
+
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.inventario.model.StockBatch;
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Transplant genealogy of stock batches: the V19 {@code stock_batch_lineage} links and
+ * the batches they connect.
+ */
+@ApplicationScoped
+public class StockBatchLineageRepository implements PanacheRepositoryBase<StockBatch, UUID> {
+
+    @Inject
+    TenantContext tenantContext;
+
+    /**
+     * Records that every child received stock from every parent in {@code movementId}
+     * (V19). All batches must already be flushed.
+     */
+    public int linkLineage(Collection<UUID> parentIds, Collection<UUID> childIds, UUID movementId) {
+        var query = getEntityManager().createNativeQuery("""
+                INSERT INTO stock_batch_lineage (parent_batch_id, child_batch_id, movement_id, tenant_id)
+                SELECT p.id, c.id, :movementId, :tenantId
+                  FROM stock_batches p
+                 CROSS JOIN stock_batches c
+                 WHERE p.id IN (:parentIds) AND c.id IN (:childIds) AND p.id <> c.id
+                   AND p.tenant_id = :tenantId AND c.tenant_id = :tenantId
+                ON CONFLICT DO NOTHING
+                """);
+        query.setParameter("movementId", movementId);
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("parentIds", parentIds);
+        query.setParameter("childIds", childIds);
+        return query.executeUpdate();
+    }
+
+    /**
+     * Walks the lineage of a batch up (direction -1) and down (direction 1) in one
+     * recursive query, at most {@code maxDepth} links each way. Each row is one link
+     * reached and the batch at its far end. A link back to a batch already on the path
+     * is returned but not followed, so cycles end the walk. Paths are not merged, so
+     * heavily re-joined genealogies are cut off at {@code limit} rows.
+     */
+    public List<LineageStep> findLineage(UUID batchId, int maxDepth, int limit) {
+        var query = getEntityManager().createNativeQuery("""
+                WITH RECURSIVE walk (batch_id, parent_id, child_id, movement_id, direction, depth, path, cycle) AS (
+                    SELECT CAST(:batchId AS uuid), CAST(NULL AS uuid), CAST(NULL AS uuid), CAST(NULL AS uuid),
+                           d.direction, 0, ARRAY[CAST(:batchId AS uuid)], false
+                      FROM (VALUES (-1), (1)) AS d(direction)
+                    UNION ALL
+                    SELECT step.next_id, step.parent_batch_id, step.child_batch_id, step.movement_id,
+                           w.direction, w.depth + 1, w.path || step.next_id, step.next_id = ANY(w.path)
+                      FROM walk w
+                     CROSS JOIN LATERAL (
+                           SELECT l.parent_batch_id AS next_id, l.parent_batch_id, l.child_batch_id, l.movement_id
+                             FROM stock_batch_lineage l
+                            WHERE w.direction < 0 AND l.child_batch_id = w.batch_id AND l.tenant_id = :tenantId
+                           UNION ALL
+                           SELECT l.child_batch_id, l.parent_batch_id, l.child_batch_id, l.movement_id
+                             FROM stock_batch_lineage l
+                            WHERE w.direction > 0 AND l.parent_batch_id = w.batch_id AND l.tenant_id = :tenantId
+                     ) step
+                     WHERE w.depth < :maxDepth AND NOT w.cycle
+                )
+                SELECT w.direction, w.depth, w.parent_id, w.child_id, w.movement_id,
+                       b.id, b.batch_code, b.product_id, b.status, b.quantity
+                  FROM walk w
+                  JOIN stock_batches b ON b.id = w.batch_id
+                 WHERE w.depth > 0
+                 LIMIT :limit
+                """);
+        query.setParameter("batchId", batchId);
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("maxDepth", maxDepth);
+        query.setParameter("limit", limit);
+        List<LineageStep> steps = new ArrayList<>();
+        for (Object row : query.getResultList()) {
+            Object[] cols = (Object[]) row;
+            steps.add(new LineageStep(((Number) cols[0]).intValue(), ((Number) cols[1]).intValue(),
+                    (UUID) cols[2], (UUID) cols[3], (UUID) cols[4],
+                    (UUID) cols[5], (String) cols[6], (UUID) cols[7], (String) cols[8], (BigDecimal) cols[9]));
+        }
+        return steps;
+    }
+
+    /** One link reached by {@link #findLineage} and the batch it leads to. */
+    public record LineageStep(int direction, int depth, UUID parentBatchId, UUID childBatchId, UUID movementId,
+                              UUID batchId, String batchCode, UUID productId, String status, BigDecimal quantity) {}
+}
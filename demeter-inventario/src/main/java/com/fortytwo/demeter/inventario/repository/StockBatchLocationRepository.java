@@ -0,0 +1,89 @@
+package com.fortytwo.demeter.inventario.repository;
+
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.inventario.dto.BatchLocationEntry;
+import com.fortytwo.demeter.inventario.model.BatchStatus;
+import com.fortytwo.demeter.inventario.model.StockBatch;
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Lean bin and warehouse listings of stock batches for scan-driven picking, served by
+ * the V20 location indexes.
+ */
+@ApplicationScoped
+public class StockBatchLocationRepository implements PanacheRepositoryBase<StockBatch, UUID> {
+
+    @Inject
+    TenantContext tenantContext;
+
+    /**
+     * Batches in a bin, served by the V20 bin index.
+     *
+     * @param status         restricts to this status when not null
+     * @param includeProduct joins products once to fill the product name
+     */
+    public List<BatchLocationEntry> findInBin(UUID binId, BatchStatus status, boolean includeProduct, int limit) {
+        return findAtLocation("b.bin_id = :locationId", binId, status, includeProduct, limit);
+    }
+
+    /**
+     * Batches in a warehouse, served by the V20 (tenant, warehouse, status) index.
+     *
+     * @param status         restricts to this status when not null
+     * @param includeProduct joins products once to fill the product name
+     */
+    public List<BatchLocationEntry> findInWarehouse(UUID warehouseId, BatchStatus status, boolean includeProduct,
+                                                    int limit) {
+        return findAtLocation("b.warehouse_id = :locationId", warehouseId, status, includeProduct, limit);
+    }
+
+    private List<BatchLocationEntry> findAtLocation(String locationPredicate, UUID locationId, BatchStatus status,
+                                                    boolean includeProduct, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT b.id, b.batch_code, b.product_id, ")
+                .append(includeProduct ? "p.name" : "CAST(NULL AS varchar)")
+                .append(", b.quantity, b.unit, b.status, b.warehouse_id, b.bin_id, b.expiry_date FROM stock_batches b");
+        if (includeProduct) {
+            sql.append(" JOIN products p ON p.id = b.product_id");
+        }
+        sql.append(" WHERE b.tenant_id = :tenantId AND ").append(locationPredicate);
+        if (status != null) {
+            sql.append(" AND b.status = :status");
+        }
+        sql.append(" ORDER BY b.batch_code LIMIT :limit");
+
+        var query = getEntityManager().createNativeQuery(sql.toString());
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("locationId", locationId);
+        query.setParameter("limit", limit);
+        if (status != null) {
+            query.setParameter("status", status.name());
+        }
+        List<BatchLocationEntry> entries = new ArrayList<>();
+        for (Object row : query.getResultList()) {
+            Object[] cols = (Object[]) row;
+            entries.add(new BatchLocationEntry((UUID) cols[0], (String) cols[1], (UUID) cols[2], (String) cols[3],
+                    (BigDecimal) cols[4], (String) cols[5], (String) cols[6], (UUID) cols[7], (UUID) cols[8],
+                    toInstant(cols[9])));
+        }
+        return entries;
+    }
+
+    private static Instant toInstant(Object value) {
+        return switch (value) {
+            case null -> null;
+            case Instant instant -> instant;
+            case OffsetDateTime dateTime -> dateTime.toInstant();
+            case Timestamp timestamp -> timestamp.toInstant();
+            default -> throw new IllegalStateException("Unexpected timestamp type " + value.getClass());
+        };
+    }
+}
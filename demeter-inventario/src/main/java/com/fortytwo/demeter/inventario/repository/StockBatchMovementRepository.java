@@ -1,14 +1,37 @@
 package com.fortytwo.demeter.inventario.repository;
 
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.inventario.dto.BatchLedgerEntry;
 import com.fortytwo.demeter.inventario.model.StockBatchMovement;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 @ApplicationScoped
 public class StockBatchMovementRepository implements PanacheRepositoryBase<StockBatchMovement, UUID> {
 
+    /**
+     * Signed effect of line {@code sbm} on its batch, from its {@code direction}: SET
+     * (AJUSTE) yields the absolute value the batch was set to.
+     */
+    public static final String LINE_CHANGE = """
+            CASE sbm.direction
+                WHEN 'IN' THEN sbm.quantity
+                WHEN 'OUT' THEN -sbm.quantity
+                WHEN 'SET' THEN sbm.quantity
+                ELSE 0
+            END""";
+
+    @Inject
+    TenantContext tenantContext;
+
     public List<StockBatchMovement> findByBatchId(UUID batchId) {
         return find("batch.id", batchId).list();
     }
@@ -16,4 +39,145 @@ public class StockBatchMovementRepository implements PanacheRepositoryBase<Stock
     public List<StockBatchMovement> findByMovementId(UUID movementId) {
         return find("movement.id", movementId).list();
     }
+
+    /**
+     * Quantity of the batch before its first movement, derived backwards from its
+     * current quantity; null when the batch is missing or an AJUSTE has overwritten the
+     * history needed to derive it.
+     */
+    public BigDecimal ledgerOpeningBalance(UUID batchId) {
+        var rows = getEntityManager().createNativeQuery("""
+                SELECT b.quantity - coalesce(l.net, 0), coalesce(l.adjusted, false)
+                  FROM stock_batches b
+                  LEFT JOIN LATERAL (
+                        SELECT sum(%s) AS net, bool_or(sbm.direction = 'SET') AS adjusted
+                          FROM stock_batch_movements sbm
+                          JOIN stock_movements m ON m.id = sbm.movement_id AND m.performed_at = sbm.movement_performed_at
+                         WHERE sbm.batch_id = b.id AND m.tenant_id = b.tenant_id
+                  ) l ON true
+                 WHERE b.id = :batchId AND b.tenant_id = :tenantId
+                """.formatted(LINE_CHANGE))
+                .setParameter("batchId", batchId)
+                .setParameter("tenantId", tenantContext.getCurrentTenantId())
+                .getResultList();
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] cols = (Object[]) rows.getFirst();
+        return (Boolean) cols[1] ? null : (BigDecimal) cols[0];
+    }
+
+    /**
+     * Balance of a batch right after its ledger line ({@code performedAt}, {@code lineId}):
+     * the last SET line up to there plus the changes since, or the opening balance plus
+     * every change when there is none. Null when the balance cannot be derived (see
+     * {@link #ledgerOpeningBalance}).
+     */
+    public BigDecimal ledgerBalanceAfter(UUID batchId, Instant performedAt, UUID lineId) {
+        var rows = getEntityManager().createNativeQuery("""
+                WITH lines AS (
+                    SELECT sbm.id, sbm.movement_performed_at, sbm.direction, %s AS change
+                      FROM stock_batch_movements sbm
+                      JOIN stock_movements m ON m.id = sbm.movement_id AND m.performed_at = sbm.movement_performed_at
+                     WHERE sbm.batch_id = :batchId AND m.tenant_id = :tenantId
+                       AND (sbm.movement_performed_at, sbm.id) <= (:performedAt, :lineId)
+                ), last_set AS (
+                    SELECT id, movement_performed_at, change FROM lines
+                     WHERE direction = 'SET'
+                     ORDER BY movement_performed_at DESC, id DESC
+                     LIMIT 1
+                )
+                SELECT s.change,
+                       coalesce(sum(l.change) FILTER (WHERE s.id IS NULL
+                           OR (l.movement_performed_at, l.id) > (s.movement_performed_at, s.id)), 0)
+                  FROM lines l
+                  LEFT JOIN last_set s ON true
+                 GROUP BY s.change
+                """.formatted(LINE_CHANGE))
+                .setParameter("batchId", batchId)
+                .setParameter("tenantId", tenantContext.getCurrentTenantId())
+                .setParameter("performedAt", performedAt)
+                .setParameter("lineId", lineId)
+                .getResultList();
+        Object[] cols = rows.isEmpty() ? new Object[] {null, BigDecimal.ZERO} : (Object[]) rows.getFirst();
+        BigDecimal net = (BigDecimal) cols[1];
+        if (cols[0] != null) {
+            return ((BigDecimal) cols[0]).add(net);
+        }
+        BigDecimal opening = ledgerOpeningBalance(batchId);
+        return opening != null ? opening.add(net) : null;
+    }
+
+    /**
+     * Up to {@code limit} ledger lines of a batch after the keyset
+     * ({@code afterPerformedAt}, {@code afterLineId}), oldest first, with movement
+     * metadata joined in and the running balance computed by a window sum. Only the
+     * requested page is read: {@code openingBalance} is the balance before its first
+     * line (null if unknown), and each SET line restarts the sum from its absolute value.
+     */
+    public List<BatchLedgerEntry> findLedgerPage(UUID batchId, Instant afterPerformedAt, UUID afterLineId,
+                                                 BigDecimal openingBalance, int limit) {
+        boolean keyset = afterPerformedAt != null && afterLineId != null;
+        var query = getEntityManager().createNativeQuery("""
+                WITH page AS (
+                    SELECT sbm.id AS line_id, m.id AS movement_id, m.movement_type, sbm.quantity,
+                           sbm.direction, %s AS change,
+                           m.reference_id, m.reference_type, m.notes, m.performed_by, m.performed_at
+                      FROM stock_batch_movements sbm
+                      JOIN stock_movements m ON m.id = sbm.movement_id AND m.performed_at = sbm.movement_performed_at
+                     WHERE sbm.batch_id = :batchId AND m.tenant_id = :tenantId
+                       %s
+                     ORDER BY sbm.movement_performed_at, sbm.id
+                     LIMIT :limit
+                ), segmented AS (
+                    SELECT page.*, count(*) FILTER (WHERE direction = 'SET')
+                                       OVER (ORDER BY performed_at, line_id) AS segment
+                      FROM page
+                )
+                SELECT line_id, movement_id, movement_type, quantity, direction, change,
+                       CASE WHEN segment > 0 THEN 0 WHEN :openingKnown THEN CAST(:opening AS numeric) END
+                           + sum(change) OVER (PARTITION BY segment ORDER BY performed_at, line_id),
+                       reference_id, reference_type, notes, performed_by, performed_at
+                  FROM segmented
+                 ORDER BY performed_at, line_id
+                """.formatted(LINE_CHANGE,
+                keyset ? "AND (sbm.movement_performed_at, sbm.id) > (:afterPerformedAt, :afterLineId)" : ""));
+        query.setParameter("batchId", batchId);
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("limit", limit);
+        query.setParameter("openingKnown", openingBalance != null);
+        query.setParameter("opening", openingBalance != null ? openingBalance : BigDecimal.ZERO);
+        if (keyset) {
+            query.setParameter("afterPerformedAt", afterPerformedAt);
+            query.setParameter("afterLineId", afterLineId);
+        }
+
+        List<BatchLedgerEntry> entries = new ArrayList<>();
+        for (Object row : query.getResultList()) {
+            Object[] cols = (Object[]) row;
+            entries.add(new BatchLedgerEntry(
+                    (UUID) cols[0],
+                    (UUID) cols[1],
+                    (String) cols[2],
+                    (BigDecimal) cols[3],
+                    (String) cols[4],
+                    (BigDecimal) cols[5],
+                    (BigDecimal) cols[6],
+                    (UUID) cols[7],
+                    (String) cols[8],
+                    (String) cols[9],
+                    (UUID) cols[10],
+                    toInstant(cols[11])));
+        }
+        return entries;
+    }
+
+    private static Instant toInstant(Object value) {
+        return switch (value) {
+            case Instant instant -> instant;
+            case OffsetDateTime dateTime -> dateTime.toInstant();
+            case Timestamp timestamp -> timestamp.toInstant();
+            default -> throw new IllegalStateException("Unexpected timestamp type " + value.getClass());
+        };
+    }
 }
@@ -1,16 +1,54 @@
 package com.fortytwo.demeter.inventario.repository;
 
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.inventario.dto.AttributeFilter;
+import com.fortytwo.demeter.inventario.dto.PromotedAttribute;
 import com.fortytwo.demeter.inventario.model.BatchStatus;
+import com.fortytwo.demeter.inventario.model.PromotedAttributeType;
 import com.fortytwo.demeter.inventario.model.StockBatch;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.function.BiConsumer;
 
 @ApplicationScoped
 public class StockBatchRepository implements PanacheRepositoryBase<StockBatch, UUID> {
 
+    /** Rows per {@code UPDATE ... FROM (VALUES ...)} statement; 4 bind params per row. */
+    private static final int SET_UPDATE_CHUNK = 1000;
+
+    /** Sellable batches, their unexpired reservations, and FEFO order. */
+    private static final String FEFO_SELLABLE = """
+            (b.status = 'ACTIVE' AND b.quantity > 0 AND (b.expiry_date IS NULL OR b.expiry_date > now()))""";
+
+    private static final String FEFO_RESERVED = """
+            SELECT coalesce(sum(r.quantity), 0) AS reserved
+              FROM stock_reservations r
+             WHERE r.batch_id = b.id AND r.expires_at > now()""";
+
+    private static final String FEFO_ORDER = "b.expiry_date ASC NULLS LAST, b.entry_date ASC, b.id";
+
+    @Inject
+    TenantContext tenantContext;
+
+    @Inject
+    ObjectMapper objectMapper;
+
     public Optional<StockBatch> findByBatchCode(String code) {
         return find("batchCode", code).firstResultOptional();
     }
@@ -26,4 +64,517 @@ public class StockBatchRepository implements PanacheRepositoryBase<StockBatch, U
     public List<StockBatch> findByStatus(BatchStatus status) {
         return find("status", status).list();
     }
+
+    /**
+     * ACTIVE batches whose expiry falls before {@code now() + days}, soonest first. This
+     * includes batches already past expiry that the sweeper has not reached yet. The status
+     * is a literal rather than a bind parameter so generic plans can still use the V15
+     * partial index.
+     */
+    public List<StockBatch> findExpiringWithin(int days, int page, int size) {
+        var query = getEntityManager().createNativeQuery("""
+                SELECT * FROM stock_batches b
+                 WHERE b.tenant_id = :tenantId AND b.status = 'ACTIVE'
+                   AND b.expiry_date < now() + make_interval(days => :days)
+                 ORDER BY b.expiry_date, b.id
+                 LIMIT :limit OFFSET :offset
+                """, StockBatch.class);
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("days", days);
+        query.setParameter("limit", size);
+        query.setParameter("offset", (long) page * size);
+        @SuppressWarnings("unchecked")
+        List<StockBatch> batches = query.getResultList();
+        return batches;
+    }
+
+    public long countExpiringWithin(int days) {
+        var query = getEntityManager().createNativeQuery("""
+                SELECT count(*) FROM stock_batches b
+                 WHERE b.tenant_id = :tenantId AND b.status = 'ACTIVE'
+                   AND b.expiry_date < now() + make_interval(days => :days)
+                """);
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("days", days);
+        return ((Number) query.getSingleResult()).longValue();
+    }
+
+    /**
+     * A batch's quantity and version right after an update. Versions only move under the
+     * row lock, so they order the batch's movement lines as they were applied.
+     */
+    public record QuantityUpdate(BigDecimal quantity, long version) {
+        static QuantityUpdate of(Object[] cols, int first) {
+            return new QuantityUpdate((BigDecimal) cols[first], ((Number) cols[first + 1]).longValue());
+        }
+    }
+
+    /**
+     * Lists batches matching the regular list filters plus custom attribute predicates.
+     * Predicates on the tenant's promoted attributes compare the typed expression its
+     * partial expression index is built on (B-tree); the remaining equality/containment becomes one {@code custom_attributes @> :doc}
+     * test served by the GIN {@code jsonb_path_ops} index, and remaining numeric ranges become
+     * jsonpath {@code @@} predicates evaluated on the rows the other predicates select.
+     *
+     * @param promoted the tenant's indexed promoted attributes, by key
+     * @param orderBy  a whitelisted order expression over {@code b}
+     */
+    public List<StockBatch> findByAttributes(UUID productId, UUID warehouseId, BatchStatus status,
+                                             AttributeFilter attributes, Map<String, PromotedAttribute> promoted,
+                                             String orderBy, int page, int size) {
+        AttributeQuery where = attributeWhere(productId, warehouseId, status, attributes, promoted);
+        var query = getEntityManager().createNativeQuery(
+                "SELECT * FROM stock_batches b WHERE " + where.sql()
+                        + " ORDER BY " + orderBy + " LIMIT :limit OFFSET :offset", StockBatch.class);
+        where.bind(query::setParameter);
+        query.setParameter("limit", size);
+        query.setParameter("offset", (long) page * size);
+        @SuppressWarnings("unchecked")
+        List<StockBatch> batches = query.getResultList();
+        return batches;
+    }
+
+    public long countByAttributes(UUID productId, UUID warehouseId, BatchStatus status, AttributeFilter attributes,
+                                  Map<String, PromotedAttribute> promoted) {
+        AttributeQuery where = attributeWhere(productId, warehouseId, status, attributes, promoted);
+        var query = getEntityManager().createNativeQuery("SELECT count(*) FROM stock_batches b WHERE " + where.sql());
+        where.bind(query::setParameter);
+        return ((Number) query.getSingleResult()).longValue();
+    }
+
+    private AttributeQuery attributeWhere(UUID productId, UUID warehouseId, BatchStatus status,
+                                          AttributeFilter attributes, Map<String, PromotedAttribute> promoted) {
+        StringBuilder sql = new StringBuilder("b.tenant_id = :tenantId");
+        Map<String, Object> params = new HashMap<>();
+        params.put("tenantId", tenantContext.getCurrentTenantId());
+        if (productId != null) {
+            sql.append(" AND b.product_id = :productId");
+            params.put("productId", productId);
+        }
+        if (warehouseId != null) {
+            sql.append(" AND b.warehouse_id = :warehouseId");
+            params.put("warehouseId", warehouseId);
+        }
+        if (status != null) {
+            sql.append(" AND b.status = :status");
+            params.put("status", status.name());
+        }
+
+        // Expressions inline PromotedAttribute keys, which are pattern-validated
+        Map<String, Object> contains = new LinkedHashMap<>();
+        int column = 0;
+        for (Map.Entry<String, Object> entry : attributes.contains().entrySet()) {
+            PromotedAttribute attribute = promoted.get(entry.getKey());
+            if (attribute != null && attribute.type().accepts(entry.getValue())) {
+                sql.append(" AND ").append(attribute.expression("b")).append(" = :attrCol").append(column);
+                params.put("attrCol" + column++, attribute.type().bindValue(entry.getValue()));
+            } else {
+                contains.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (!contains.isEmpty()) {
+            sql.append(" AND b.custom_attributes @> CAST(:attrDoc AS jsonb)");
+            try {
+                params.put("attrDoc", objectMapper.writeValueAsString(contains));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to serialize attribute filter", e);
+            }
+        }
+        for (int i = 0; i < attributes.ranges().size(); i++) {
+            AttributeFilter.Range range = attributes.ranges().get(i);
+            PromotedAttribute attribute = promoted.get(range.key());
+            if (attribute != null && attribute.type() == PromotedAttributeType.NUMERIC) {
+                if (range.min() != null) {
+                    sql.append(" AND ").append(attribute.expression("b")).append(" >= :attrCol").append(column);
+                    params.put("attrCol" + column++, range.min());
+                }
+                if (range.max() != null) {
+                    sql.append(" AND ").append(attribute.expression("b")).append(" <= :attrCol").append(column);
+                    params.put("attrCol" + column++, range.max());
+                }
+            } else {
+                sql.append(" AND b.custom_attributes @@ CAST(:attrPath").append(i).append(" AS jsonpath)");
+                params.put("attrPath" + i, rangePath(range));
+            }
+        }
+        return new AttributeQuery(sql.toString(), params);
+    }
+
+    /** Keys are restricted to {@code [A-Za-z0-9_-]} and bounds are parsed numbers, so inlining is safe. */
+    private static String rangePath(AttributeFilter.Range range) {
+        String value = "$.\"" + range.key() + "\"";
+        List<String> conditions = new ArrayList<>(3);
+        conditions.add(value + ".type() == \"number\"");
+        if (range.min() != null) {
+            conditions.add(value + " >= " + range.min().toPlainString());
+        }
+        if (range.max() != null) {
+            conditions.add(value + " <= " + range.max().toPlainString());
+        }
+        return String.join(" && ", conditions);
+    }
+
+    private record AttributeQuery(String sql, Map<String, Object> params) {
+        void bind(BiConsumer<String, Object> setter) {
+            params.forEach(setter);
+        }
+    }
+
+    /**
+     * Atomically adds {@code delta} to the batch quantity in a single statement and
+     * marks the batch DEPLETED when the result drops to zero or below.
+     *
+     * <p>The row lock is taken by the UPDATE itself, so concurrent movements on the
+     * same batch serialize only for the duration of this statement's transaction tail
+     * instead of a read-modify-write cycle. The version is bumped so that entity-based
+     * writers holding a stale copy fail their optimistic check rather than overwrite.
+     *
+     * @return the quantity and version after the update, or empty if the batch does not exist
+     */
+    public Optional<QuantityUpdate> applyQuantityDelta(UUID batchId, BigDecimal delta) {
+        var query = getEntityManager().createNativeQuery("""
+                UPDATE stock_batches
+                   SET quantity = quantity + :delta,
+                       status = CASE WHEN quantity + :delta <= 0 THEN 'DEPLETED' ELSE status END,
+                       updated_at = now(),
+                       version = version + 1
+                 WHERE id = :id AND tenant_id = :tenantId
+                RETURNING quantity, version
+                """);
+        query.setParameter("delta", delta);
+        query.setParameter("id", batchId);
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        return singleUpdate(query.getResultList());
+    }
+
+    /**
+     * Atomically overwrites the batch quantity (AJUSTE semantics), applying the same
+     * DEPLETED transition as {@link #applyQuantityDelta(UUID, BigDecimal)}.
+     *
+     * @return the quantity and version after the update, or empty if the batch does not exist
+     */
+    public Optional<QuantityUpdate> overwriteQuantity(UUID batchId, BigDecimal quantity) {
+        var query = getEntityManager().createNativeQuery("""
+                UPDATE stock_batches
+                   SET quantity = :quantity,
+                       status = CASE WHEN :quantity <= 0 THEN 'DEPLETED' ELSE status END,
+                       updated_at = now(),
+                       version = version + 1
+                 WHERE id = :id AND tenant_id = :tenantId
+                RETURNING quantity, version
+                """);
+        query.setParameter("quantity", quantity);
+        query.setParameter("id", batchId);
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        return singleUpdate(query.getResultList());
+    }
+
+    /**
+     * Loads and row-locks the given batches in one query. Rows are locked in id order,
+     * the same order {@code StockMovementService} uses, so bulk and single movements
+     * touching overlapping batches cannot deadlock.
+     */
+    public List<StockBatch> lockAllById(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return find("id in ?1 order by id", ids)
+                .withLock(LockModeType.PESSIMISTIC_WRITE)
+                .list();
+    }
+
+    /**
+     * Locks, with a single {@code ORDER BY id ... FOR UPDATE}, the given batches and every
+     * sellable batch of the given products, waiting up to {@code lockWait} for rows held
+     * by concurrent transactions. A document that takes all its locks in one id-ordered
+     * statement before writing cannot deadlock with any other id-ordered locker
+     * ({@link #lockAllById}, {@link #decrementIfAvailable}), as it holds nothing while it
+     * waits.
+     *
+     * <p>What each locked batch can still give is read by a second statement, so it
+     * reflects what the previous holders committed. Quantity held by unexpired
+     * reservations (V18) is not available.
+     *
+     * @return the locked batches in first-expiry-first-out order (no expiry last, then
+     *         oldest entry)
+     * @throws jakarta.persistence.PessimisticLockException or
+     *         {@link jakarta.persistence.LockTimeoutException} when a row stays locked past
+     *         {@code lockWait}; the transaction is then aborted
+     */
+    public List<AllocatableBatch> lockForAllocation(Collection<UUID> batchIds, Collection<UUID> productIds,
+                                                    Duration lockWait) {
+        if (batchIds.isEmpty() && productIds.isEmpty()) {
+            return List.of();
+        }
+        List<String> selected = new ArrayList<>(2);
+        if (!batchIds.isEmpty()) {
+            selected.add("b.id IN (:batchIds)");
+        }
+        if (!productIds.isEmpty()) {
+            selected.add("(b.product_id IN (:productIds) AND " + FEFO_SELLABLE + ")");
+        }
+
+        var em = getEntityManager();
+        String previous = (String) em.createNativeQuery("SELECT current_setting('lock_timeout')").getSingleResult();
+        em.createNativeQuery("SELECT set_config('lock_timeout', :timeout, true)")
+                .setParameter("timeout", lockWait.toMillis() + "ms")
+                .getSingleResult();
+        var lock = em.createNativeQuery("""
+                SELECT b.id FROM stock_batches b
+                 WHERE b.tenant_id = :tenantId AND (%s)
+                 ORDER BY b.id
+                   FOR UPDATE OF b
+                """.formatted(String.join(" OR ", selected)));
+        lock.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        if (!batchIds.isEmpty()) {
+            lock.setParameter("batchIds", batchIds);
+        }
+        if (!productIds.isEmpty()) {
+            lock.setParameter("productIds", productIds);
+        }
+        List<?> locked = lock.getResultList();
+        em.createNativeQuery("SELECT set_config('lock_timeout', :previous, true)")
+                .setParameter("previous", previous)
+                .getSingleResult();
+        if (locked.isEmpty()) {
+            return List.of();
+        }
+
+        var query = em.createNativeQuery("""
+                SELECT b.id, b.product_id, b.quantity - res.reserved, %s FROM stock_batches b
+                 CROSS JOIN LATERAL (%s) res
+                 WHERE b.tenant_id = :tenantId AND b.id IN (:ids)
+                 ORDER BY %s
+                """.formatted(FEFO_SELLABLE, FEFO_RESERVED, FEFO_ORDER));
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("ids", locked);
+        List<AllocatableBatch> batches = new ArrayList<>(locked.size());
+        for (Object row : query.getResultList()) {
+            Object[] cols = (Object[]) row;
+            batches.add(new AllocatableBatch((UUID) cols[0], (UUID) cols[1], (BigDecimal) cols[2], (Boolean) cols[3]));
+        }
+        return batches;
+    }
+
+    /**
+     * A batch locked by {@link #lockForAllocation}: what no unexpired reservation holds of
+     * it, and whether FEFO allocation may draw from it.
+     */
+    public record AllocatableBatch(UUID id, UUID productId, BigDecimal available, boolean sellable) {}
+
+    /**
+     * Applies many quantity changes with one set-based {@code UPDATE} per chunk.
+     * A batch present in {@code overwrites} is first set to that absolute value (AJUSTE);
+     * its entry in {@code deltas}, if any, is then added on top. DEPLETED transitions
+     * and version bumps match {@link #applyQuantityDelta(UUID, BigDecimal)}.
+     *
+     * @return the new quantity and version per updated batch; batches that do not exist are absent
+     */
+    public Map<UUID, QuantityUpdate> applyQuantityChanges(Map<UUID, BigDecimal> deltas, Map<UUID, BigDecimal> overwrites) {
+        Set<UUID> ids = new TreeSet<>(deltas.keySet());
+        ids.addAll(overwrites.keySet());
+
+        Map<UUID, QuantityUpdate> result = new HashMap<>();
+        List<UUID> chunk = new ArrayList<>(SET_UPDATE_CHUNK);
+        for (UUID id : ids) {
+            chunk.add(id);
+            if (chunk.size() == SET_UPDATE_CHUNK) {
+                applyChunk(chunk, deltas, overwrites, result);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            applyChunk(chunk, deltas, overwrites, result);
+        }
+        return result;
+    }
+
+    private void applyChunk(List<UUID> ids, Map<UUID, BigDecimal> deltas, Map<UUID, BigDecimal> overwrites,
+                            Map<UUID, QuantityUpdate> result) {
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                values.append(", ");
+            }
+            values.append("(CAST(:id").append(i).append(" AS uuid), CAST(:overwrite").append(i)
+                    .append(" AS boolean), CAST(:base").append(i).append(" AS numeric), CAST(:delta")
+                    .append(i).append(" AS numeric))");
+        }
+        var query = getEntityManager().createNativeQuery("""
+                UPDATE stock_batches b
+                   SET quantity = CASE WHEN v.overwrite THEN v.base ELSE b.quantity END + v.delta,
+                       status = CASE WHEN (CASE WHEN v.overwrite THEN v.base ELSE b.quantity END) + v.delta <= 0
+                                     THEN 'DEPLETED' ELSE b.status END,
+                       updated_at = now(),
+                       version = b.version + 1
+                  FROM (VALUES %s) AS v(id, overwrite, base, delta)
+                 WHERE b.id = v.id AND b.tenant_id = :tenantId
+                RETURNING b.id, b.quantity, b.version
+                """.formatted(values));
+        for (int i = 0; i < ids.size(); i++) {
+            UUID id = ids.get(i);
+            query.setParameter("id" + i, id);
+            query.setParameter("overwrite" + i, overwrites.containsKey(id));
+            query.setParameter("base" + i, overwrites.getOrDefault(id, BigDecimal.ZERO));
+            query.setParameter("delta" + i, deltas.getOrDefault(id, BigDecimal.ZERO));
+        }
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        for (Object row : query.getResultList()) {
+            Object[] cols = (Object[]) row;
+            result.put((UUID) cols[0], QuantityUpdate.of(cols, 1));
+        }
+    }
+
+    /**
+     * Takes each quantity off its batch only if the batch still has at least that much
+     * that no unexpired reservation (V18) holds:
+     * {@code SET quantity = quantity - q WHERE quantity - reserved >= q}, for all batches
+     * in one statement per chunk. Callers release their own reservations first. Rows are
+     * locked in id order by a statement of their own, so the check runs on a snapshot
+     * taken after the lock and sees every committed decrement and reservation; batches
+     * can never go below zero or below what others hold. DEPLETED transitions and
+     * version bumps match {@link #applyQuantityChanges}.
+     *
+     * @param quantities positive quantity to take per batch
+     * @return quantity and version of the batches that were decremented; the others do
+     *         not exist or are short
+     */
+    public Map<UUID, QuantityUpdate> decrementIfAvailable(Map<UUID, BigDecimal> quantities) {
+        Map<UUID, QuantityUpdate> decremented = new HashMap<>();
+        List<UUID> chunk = new ArrayList<>(SET_UPDATE_CHUNK);
+        for (UUID id : new TreeSet<>(quantities.keySet())) {
+            chunk.add(id);
+            if (chunk.size() == SET_UPDATE_CHUNK) {
+                decrementChunk(chunk, quantities, decremented);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            decrementChunk(chunk, quantities, decremented);
+        }
+        return decremented;
+    }
+
+    private void decrementChunk(List<UUID> ids, Map<UUID, BigDecimal> quantities,
+                                Map<UUID, QuantityUpdate> decremented) {
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                values.append(", ");
+            }
+            values.append("(CAST(:id").append(i).append(" AS uuid), CAST(:quantity").append(i).append(" AS numeric))");
+        }
+        getEntityManager().createNativeQuery("""
+                        SELECT id FROM stock_batches
+                         WHERE tenant_id = :tenantId AND id IN (:ids)
+                         ORDER BY id
+                           FOR UPDATE
+                        """)
+                .setParameter("tenantId", tenantContext.getCurrentTenantId())
+                .setParameter("ids", ids)
+                .getResultList();
+        var query = getEntityManager().createNativeQuery("""
+                UPDATE stock_batches b
+                   SET quantity = b.quantity - t.quantity,
+                       status = CASE WHEN b.quantity - t.quantity <= 0 THEN 'DEPLETED' ELSE b.status END,
+                       updated_at = now(),
+                       version = b.version + 1
+                  FROM (VALUES %s) AS t(id, quantity)
+                 WHERE b.id = t.id AND b.tenant_id = :tenantId
+                   AND b.quantity - (SELECT coalesce(sum(r.quantity), 0)
+                                       FROM stock_reservations r
+                                      WHERE r.batch_id = b.id AND r.expires_at > now()) >= t.quantity
+                RETURNING b.id, b.quantity, b.version
+                """.formatted(values));
+        for (int i = 0; i < ids.size(); i++) {
+            UUID id = ids.get(i);
+            query.setParameter("id" + i, id);
+            query.setParameter("quantity" + i, quantities.get(id));
+        }
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        for (Object row : query.getResultList()) {
+            Object[] cols = (Object[]) row;
+            decremented.put((UUID) cols[0], QuantityUpdate.of(cols, 1));
+        }
+    }
+
+    /**
+     * Moves every selected batch whose status is in {@code from} to {@code target} with one
+     * {@code UPDATE ... RETURNING}, and in the same statement inserts one CAMBIO_ESTADO
+     * movement and batch line per changed batch, all referencing {@code transitionId}.
+     * Rows are locked in id order; a batch whose status changed concurrently is
+     * re-checked against {@code from} after the lock.
+     *
+     * @return ids of the transitioned batches
+     */
+    public List<UUID> transitionStatus(Collection<UUID> ids, UUID productId, UUID locationId,
+                                       Set<BatchStatus> from, BatchStatus target,
+                                       UUID transitionId, String notes, UUID performedBy) {
+        StringBuilder where = new StringBuilder();
+        if (ids != null && !ids.isEmpty()) {
+            where.append(" AND id IN (:ids)");
+        }
+        if (productId != null) {
+            where.append(" AND product_id = :productId");
+        }
+        if (locationId != null) {
+            where.append(" AND warehouse_id = :locationId");
+        }
+        var query = getEntityManager().createNativeQuery("""
+                WITH target AS (
+                    SELECT id, status FROM stock_batches
+                     WHERE tenant_id = :tenantId AND status IN (:from)%s
+                     ORDER BY id
+                       FOR UPDATE
+                ), changed AS (
+                    UPDATE stock_batches b
+                       SET status = :target, updated_at = now(), version = b.version + 1
+                      FROM target
+                     WHERE b.id = target.id
+                    RETURNING b.id, b.quantity, b.unit, b.version, target.status AS from_status
+                ), audited AS (
+                    SELECT changed.*, uuid_generate_v7() AS movement_id FROM changed
+                ), movements AS (
+                    INSERT INTO stock_movements (id, tenant_id, movement_type, quantity, unit,
+                                                 reference_id, reference_type, notes, performed_by, performed_at)
+                    SELECT movement_id, :tenantId, 'CAMBIO_ESTADO', quantity, unit,
+                           :transitionId, 'STATUS_TRANSITION', from_status || ' -> ' || :target || :notes, %s, now()
+                      FROM audited
+                ), lines AS (
+                    INSERT INTO stock_batch_movements (batch_id, movement_id, movement_performed_at, quantity,
+                                                       direction, batch_version)
+                    SELECT id, movement_id, now(), quantity, 'NONE', version FROM audited
+                )
+                SELECT id FROM audited ORDER BY id
+                """.formatted(where, performedBy != null ? ":performedBy" : "NULL"));
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("from", from.stream().map(BatchStatus::name).toList());
+        query.setParameter("target", target.name());
+        query.setParameter("transitionId", transitionId);
+        query.setParameter("notes", notes != null && !notes.isBlank() ? ": " + notes : "");
+        if (ids != null && !ids.isEmpty()) {
+            query.setParameter("ids", ids);
+        }
+        if (productId != null) {
+            query.setParameter("productId", productId);
+        }
+        if (locationId != null) {
+            query.setParameter("locationId", locationId);
+        }
+        if (performedBy != null) {
+            query.setParameter("performedBy", performedBy);
+        }
+        List<UUID> transitioned = new ArrayList<>();
+        for (Object row : query.getResultList()) {
+            transitioned.add((UUID) row);
+        }
+        return transitioned;
+    }
+
+    private static Optional<QuantityUpdate> singleUpdate(List<?> rows) {
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(QuantityUpdate.of((Object[]) rows.getFirst(), 0));
+    }
 }
@@ -15,8 +15,13 @@ public class StockMovementRepository implements PanacheRepositoryBase<StockMovem
         return find("movementType", type).list();
     }
 
+    /**
+     * Movements performed in [{@code from}, {@code to}). A bounded range on the partition key,
+     * so only the covered monthly partitions are scanned; the exclusive end keeps a range
+     * ending at the start of a month out of that month's partition.
+     */
     public List<StockMovement> findByDateRange(Instant from, Instant to) {
-        return find("performedAt >= ?1 and performedAt <= ?2", from, to).list();
+        return find("performedAt >= ?1 and performedAt < ?2", from, to).list();
     }
 
     public List<StockMovement> findByReferenceId(UUID referenceId) {
@@ -0,0 +1,155 @@
+package com.fortytwo.demeter.inventario.repository;
+
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.inventario.dto.BatchAvailability;
+import com.fortytwo.demeter.inventario.model.StockReservation;
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@ApplicationScoped
+public class StockReservationRepository implements PanacheRepositoryBase<StockReservation, UUID> {
+
+    /** Unexpired reservations of batch {@code b}, as a lateral subquery yielding {@code res.reserved}. */
+    public static final String RESERVED = """
+            CROSS JOIN LATERAL (
+                SELECT coalesce(sum(r.quantity), 0.00) AS reserved
+                  FROM stock_reservations r
+                 WHERE r.batch_id = b.id AND r.expires_at > now()
+            ) res""";
+
+    /** Stock of batch {@code b} that can still be promised; needs {@link #RESERVED}. */
+    public static final String AVAILABLE =
+            "CASE WHEN b.status = 'ACTIVE' THEN greatest(b.quantity - res.reserved, 0.00) ELSE 0.00 END";
+
+    @Inject
+    TenantContext tenantContext;
+
+    /**
+     * Current availability of the given batches; batches that do not exist are absent.
+     */
+    public Map<UUID, BatchAvailability> findAvailability(Collection<UUID> batchIds) {
+        var query = getEntityManager().createNativeQuery("""
+                SELECT b.id, b.quantity, res.reserved, %s
+                  FROM stock_batches b
+                  %s
+                 WHERE b.tenant_id = :tenantId AND b.id IN (:ids)
+                """.formatted(AVAILABLE, RESERVED));
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("ids", batchIds);
+        Map<UUID, BatchAvailability> availability = new HashMap<>();
+        for (Object row : query.getResultList()) {
+            Object[] cols = (Object[]) row;
+            UUID id = (UUID) cols[0];
+            availability.put(id, new BatchAvailability(id, (BigDecimal) cols[1], (BigDecimal) cols[2], (BigDecimal) cols[3]));
+        }
+        return availability;
+    }
+
+    /**
+     * Locks the given batches {@code FOR UPDATE} in id order and returns what each can
+     * still promise. Reservations are only written while the batch row is held, so the
+     * value stays true until the caller's transaction ends. The lock is taken by a
+     * statement of its own: a single locking query would sum reservations on the
+     * snapshot it started with and miss one committed while it waited for the row.
+     *
+     * @return available quantity per batch; batches that do not exist are absent
+     */
+    public Map<UUID, BigDecimal> lockAvailable(Collection<UUID> batchIds) {
+        getEntityManager().createNativeQuery("""
+                        SELECT id FROM stock_batches
+                         WHERE tenant_id = :tenantId AND id IN (:ids)
+                         ORDER BY id
+                           FOR UPDATE
+                        """)
+                .setParameter("tenantId", tenantContext.getCurrentTenantId())
+                .setParameter("ids", batchIds)
+                .getResultList();
+        var query = getEntityManager().createNativeQuery("""
+                SELECT b.id, %s
+                  FROM stock_batches b
+                  %s
+                 WHERE b.tenant_id = :tenantId AND b.id IN (:ids)
+                """.formatted(AVAILABLE, RESERVED));
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("ids", batchIds);
+        Map<UUID, BigDecimal> available = new HashMap<>();
+        for (Object row : query.getResultList()) {
+            Object[] cols = (Object[]) row;
+            available.put((UUID) cols[0], (BigDecimal) cols[1]);
+        }
+        return available;
+    }
+
+    /**
+     * Unexpired reservations on the given batches, for checking a debit against them.
+     * Call with the batches already locked, from a later statement than the lock, so
+     * every reservation that can still matter is visible.
+     */
+    public BatchHolds findHolds(Collection<UUID> batchIds) {
+        if (batchIds.isEmpty()) {
+            return new BatchHolds(Map.of());
+        }
+        var query = getEntityManager().createNativeQuery("""
+                SELECT batch_id, reference_type, reference_id, sum(quantity)
+                  FROM stock_reservations
+                 WHERE tenant_id = :tenantId AND batch_id IN (:ids) AND expires_at > now()
+                 GROUP BY batch_id, reference_type, reference_id
+                """);
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("ids", batchIds);
+        Map<UUID, Map<BatchHolds.Holder, BigDecimal>> byBatch = new HashMap<>();
+        for (Object row : query.getResultList()) {
+            Object[] cols = (Object[]) row;
+            byBatch.computeIfAbsent((UUID) cols[0], id -> new HashMap<>())
+                    .put(new BatchHolds.Holder((String) cols[1], (UUID) cols[2]), (BigDecimal) cols[3]);
+        }
+        return new BatchHolds(byBatch);
+    }
+
+    /** Reserved quantity per batch and holder, as read by {@link #findHolds}. */
+    public record BatchHolds(Map<UUID, Map<Holder, BigDecimal>> byBatch) {
+
+        public record Holder(String referenceType, UUID referenceId) {}
+
+        /**
+         * What the batch holds for anyone but {@code referenceType/referenceId}; with a
+         * null reference, everything it holds.
+         */
+        public BigDecimal heldForOthers(UUID batchId, String referenceType, UUID referenceId) {
+            Holder self = new Holder(referenceType, referenceId);
+            return byBatch.getOrDefault(batchId, Map.of()).entrySet().stream()
+                    .filter(e -> referenceId == null || !e.getKey().equals(self))
+                    .map(Map.Entry::getValue)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
+    }
+
+    /**
+     * Deletes every reservation of the reference.
+     *
+     * @return the batches that were reserved
+     */
+    public List<UUID> deleteByReference(String referenceType, UUID referenceId) {
+        var query = getEntityManager().createNativeQuery("""
+                DELETE FROM stock_reservations
+                 WHERE tenant_id = :tenantId AND reference_type = :referenceType AND reference_id = :referenceId
+                RETURNING batch_id
+                """);
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("referenceType", referenceType);
+        query.setParameter("referenceId", referenceId);
+        List<UUID> batchIds = new ArrayList<>();
+        for (Object row : query.getResultList()) {
+            batchIds.add((UUID) row);
+        }
+        return batchIds;
+    }
+}
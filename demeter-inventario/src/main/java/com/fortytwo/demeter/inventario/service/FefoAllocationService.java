@@ -0,0 +1,138 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fortytwo.demeter.common.exception.EntityNotFoundException;
+import com.fortytwo.demeter.common.exception.StockLockTimeoutException;
+import com.fortytwo.demeter.inventario.dto.CreateStockMovementRequest;
+import com.fortytwo.demeter.inventario.repository.StockBatchRepository;
+import com.fortytwo.demeter.inventario.repository.StockBatchRepository.AllocatableBatch;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.PessimisticLockException;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * First-expiry-first-out allocation of product quantities across their ACTIVE batches.
+ *
+ * <p>A document locks everything it may draw from before drawing: the batches its lines
+ * name and every sellable batch of the products it leaves to FEFO, in one id-ordered
+ * statement. Locking a batch at a time while already holding others (for instance with
+ * {@code SKIP LOCKED} rounds per item followed by a wait) lets two sales that share
+ * batches each wait on the other, which PostgreSQL resolves by aborting one of them.
+ * Batches held by concurrent transactions are waited on for up to
+ * {@code demeter.inventory.fefo.lock-wait}.
+ */
+@ApplicationScoped
+public class FefoAllocationService {
+
+    private static final Logger log = LoggerFactory.getLogger(FefoAllocationService.class);
+
+    @Inject
+    StockBatchRepository stockBatchRepository;
+
+    @ConfigProperty(name = "demeter.inventory.fefo.lock-wait", defaultValue = "2s")
+    Duration lockWait;
+
+    /**
+     * Locks {@code batchIds} and the sellable batches of {@code productIds} until the
+     * surrounding transaction ends, so the caller must deduct in it.
+     *
+     * @throws StockLockTimeoutException when batches stay locked by concurrent
+     *         transactions past the lock wait
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public Allocation lock(Collection<UUID> batchIds, Collection<UUID> productIds) {
+        List<AllocatableBatch> batches;
+        try {
+            batches = stockBatchRepository.lockForAllocation(batchIds, productIds, lockWait);
+        } catch (PessimisticLockException | LockTimeoutException e) {
+            throw new StockLockTimeoutException("Stock of products " + productIds
+                    + " is locked by concurrent operations, please retry", e);
+        }
+        log.debug("Locked {} batch(es) for allocation over {} product(s)", batches.size(), productIds.size());
+        return new Allocation(batches);
+    }
+
+    /**
+     * Locked stock and what the caller has drawn from it so far. Nothing is written: the
+     * caller records the movements or reservations once every line is allocated.
+     */
+    public static final class Allocation {
+
+        private final Map<UUID, BigDecimal> available = new HashMap<>();
+        private final Map<UUID, List<UUID>> fefoOrder = new HashMap<>();
+
+        Allocation(List<AllocatableBatch> batches) {
+            for (AllocatableBatch batch : batches) {
+                available.put(batch.id(), batch.available());
+                if (batch.sellable()) {
+                    fefoOrder.computeIfAbsent(batch.productId(), p -> new ArrayList<>()).add(batch.id());
+                }
+            }
+        }
+
+        /**
+         * Takes {@code quantity} from a batch the caller named, even beyond what it has;
+         * see {@link #overdrawn}.
+         *
+         * @throws EntityNotFoundException when the batch was not locked because it does not exist
+         */
+        public void take(UUID batchId, BigDecimal quantity) {
+            BigDecimal left = available.get(batchId);
+            if (left == null) {
+                throw new EntityNotFoundException("StockBatch", batchId);
+            }
+            available.put(batchId, left.subtract(quantity));
+        }
+
+        /** How much more has been taken from the batch than it could give; zero when it covers it. */
+        public BigDecimal overdrawn(UUID batchId) {
+            return available.getOrDefault(batchId, BigDecimal.ZERO).negate().max(BigDecimal.ZERO);
+        }
+
+        /**
+         * Splits {@code quantity} over the product's sellable batches, soonest expiry
+         * first, net of what was already taken from them.
+         */
+        public Draw draw(UUID productId, BigDecimal quantity) {
+            List<CreateStockMovementRequest.BatchQuantity> batches = new ArrayList<>();
+            BigDecimal remaining = quantity;
+            for (UUID batchId : fefoOrder.getOrDefault(productId, List.of())) {
+                if (remaining.signum() == 0) {
+                    break;
+                }
+                BigDecimal left = available.get(batchId);
+                if (left.signum() <= 0) {
+                    continue;
+                }
+                BigDecimal take = remaining.min(left);
+                available.put(batchId, left.subtract(take));
+                batches.add(new CreateStockMovementRequest.BatchQuantity(batchId, take));
+                remaining = remaining.subtract(take);
+            }
+            return new Draw(batches, remaining);
+        }
+    }
+
+    /**
+     * Per-batch quantities in FEFO order, and how much of the requested quantity the
+     * product's sellable stock could not cover.
+     */
+    public record Draw(List<CreateStockMovementRequest.BatchQuantity> batches, BigDecimal shortBy) {
+
+        public boolean isShort() {
+            return shortBy.signum() > 0;
+        }
+    }
+}
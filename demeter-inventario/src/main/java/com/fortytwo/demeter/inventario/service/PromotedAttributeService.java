@@ -0,0 +1,269 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fortytwo.demeter.common.exception.EntityNotFoundException;
+import com.fortytwo.demeter.common.exception.InvalidRequestException;
+import com.fortytwo.demeter.common.tenant.Tenant;
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.common.tenant.TenantRepository;
+import com.fortytwo.demeter.inventario.dto.PromotedAttribute;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-tenant promoted custom attributes. The declaration lives in the tenant
+ * {@code settings.promotedAttributes}; behind each declared (key, type) pair is a
+ * partial expression index on stock_batches covering only that tenant's rows:
+ * <pre>
+ * CREATE INDEX CONCURRENTLY ... ON stock_batches (tenant_id, (&lt;typed expression&gt;))
+ *  WHERE tenant_id = '&lt;tenant&gt;'
+ * </pre>
+ * The table is never rewritten and writers are not blocked while the index builds.
+ * Queries repeat the expression and tenant predicate so the planner matches the index.
+ *
+ * <p>Indexes are dropped once the tenant no longer declares the pair. Queries only use
+ * the expression for declarations whose index is valid, so a declaration written
+ * straight into the tenant settings, or an interrupted build, falls back to JSONB
+ * matching.
+ */
+@ApplicationScoped
+public class PromotedAttributeService {
+
+    private static final Logger log = LoggerFactory.getLogger(PromotedAttributeService.class);
+
+    static final String SETTINGS_KEY = "promotedAttributes";
+
+    private static final String INDEX_PREFIX = "idx_stock_batches_attr_";
+
+    @Inject
+    TenantRepository tenantRepository;
+
+    @Inject
+    TenantContext tenantContext;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    /**
+     * Indexes known to be valid. An index is only dropped after its declaration is gone,
+     * so a cached name is never used for a pair the tenant still declares without it.
+     */
+    private final Set<String> validIndexes = ConcurrentHashMap.newKeySet();
+
+    public List<PromotedAttribute> findForCurrentTenant() {
+        return currentTenant().map(this::declared).orElse(List.of());
+    }
+
+    /**
+     * Builds the indexes for {@code attributes}, stores them as the tenant's promoted
+     * attributes and then drops the indexes of pairs no longer declared. Builds finish
+     * before the settings change, so the settings never reference an index that failed.
+     */
+    public List<PromotedAttribute> replace(List<PromotedAttribute> attributes) {
+        String tenantId = tenantContext.getCurrentTenantId();
+        Set<String> keys = new HashSet<>();
+        for (PromotedAttribute attribute : attributes) {
+            if (!keys.add(attribute.key())) {
+                throw new InvalidRequestException("Attribute '" + attribute.key() + "' is promoted more than once");
+            }
+        }
+        Tenant current = tenantRepository.findByIdOptional(tenantId)
+                .orElseThrow(() -> new EntityNotFoundException("Tenant", tenantId));
+        List<PromotedAttribute> previous = declared(current);
+
+        for (PromotedAttribute attribute : attributes) {
+            ensureIndex(tenantId, attribute);
+        }
+
+        QuarkusTransaction.requiringNew().run(() -> {
+            Tenant tenant = tenantRepository.findByIdOptional(tenantId)
+                    .orElseThrow(() -> new EntityNotFoundException("Tenant", tenantId));
+            Map<String, Object> settings = new LinkedHashMap<>(tenant.getSettings());
+            settings.put(SETTINGS_KEY, objectMapper.convertValue(attributes, new TypeReference<List<Map<String, Object>>>() {}));
+            tenant.setSettings(settings);
+        });
+
+        for (PromotedAttribute attribute : previous) {
+            if (attribute.isValid() && !attributes.contains(attribute)) {
+                dropIndex(tenantId, attribute);
+            }
+        }
+        return attributes;
+    }
+
+    /** The current tenant's promoted attributes whose index is valid, by attribute key. */
+    public Map<String, PromotedAttribute> resolveForCurrentTenant() {
+        String tenantId = tenantContext.getCurrentTenantId();
+        Map<String, PromotedAttribute> resolved = new HashMap<>();
+        for (PromotedAttribute attribute : findForCurrentTenant()) {
+            if (attribute.isValid() && isIndexed(indexName(tenantId, attribute))) {
+                resolved.put(attribute.key(), attribute);
+            }
+        }
+        return resolved;
+    }
+
+    private Optional<Tenant> currentTenant() {
+        return tenantRepository.findByIdOptional(tenantContext.getCurrentTenantId());
+    }
+
+    private List<PromotedAttribute> declared(Tenant tenant) {
+        Object raw = tenant.getSettings().get(SETTINGS_KEY);
+        if (raw == null) {
+            return List.of();
+        }
+        try {
+            return objectMapper.convertValue(raw, new TypeReference<List<PromotedAttribute>>() {});
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed settings.{} for tenant {}: {}", SETTINGS_KEY, tenant.getId(), e.getMessage());
+            return List.of();
+        }
+    }
+
+    private boolean isIndexed(String index) {
+        if (validIndexes.contains(index)) {
+            return true;
+        }
+        long found = ((Number) tenantRepository.getEntityManager().createNativeQuery("""
+                        SELECT count(*) FROM pg_class c JOIN pg_index i ON i.indexrelid = c.oid
+                         WHERE c.relname = :index AND i.indisvalid
+                        """)
+                .setParameter("index", index)
+                .getSingleResult()).longValue();
+        if (found > 0) {
+            validIndexes.add(index);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Builds the tenant's index for {@code attribute} unless a valid one exists. Runs in
+     * autocommit, as CREATE INDEX CONCURRENTLY requires, under a session advisory lock
+     * so two instances do not build the same index; an invalid index left by an
+     * interrupted build is dropped and rebuilt.
+     */
+    private void ensureIndex(String tenantId, PromotedAttribute attribute) {
+        String index = indexName(tenantId, attribute);
+        if (validIndexes.contains(index)) {
+            return;
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(true);
+            lockIndex(conn, index, true);
+            try {
+                Boolean valid = indexValidity(conn, index);
+                if (Boolean.FALSE.equals(valid)) {
+                    execute(conn, "DROP INDEX CONCURRENTLY IF EXISTS " + index);
+                }
+                if (!Boolean.TRUE.equals(valid)) {
+                    execute(conn, indexDdl(conn, tenantId, attribute, index));
+                    log.info("Created promoted attribute index {} ({} {}) for tenant {}",
+                            index, attribute.key(), attribute.type(), tenantId);
+                }
+            } finally {
+                lockIndex(conn, index, false);
+            }
+            validIndexes.add(index);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to promote attribute " + attribute.key(), e);
+        }
+    }
+
+    private void dropIndex(String tenantId, PromotedAttribute attribute) {
+        String index = indexName(tenantId, attribute);
+        validIndexes.remove(index);
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(true);
+            execute(conn, "DROP INDEX CONCURRENTLY IF EXISTS " + index);
+            log.info("Dropped promoted attribute index {} for tenant {}", index, tenantId);
+        } catch (SQLException e) {
+            // The declaration is already gone; the index only costs writes until the next attempt
+            log.warn("Failed to drop promoted attribute index {}: {}", index, e.getMessage());
+        }
+    }
+
+    /** Null when the index does not exist. */
+    private static Boolean indexValidity(Connection conn, String index) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("""
+                SELECT i.indisvalid FROM pg_class c JOIN pg_index i ON i.indexrelid = c.oid
+                 WHERE c.relname = ?
+                """)) {
+            ps.setString(1, index);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getBoolean(1) : null;
+            }
+        }
+    }
+
+    /** The tenant id is quoted by the server; the expression only inlines a pattern-validated key. */
+    private static String indexDdl(Connection conn, String tenantId, PromotedAttribute attribute, String index)
+            throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("""
+                SELECT format('CREATE INDEX CONCURRENTLY %I ON stock_batches (tenant_id, (%s)) WHERE tenant_id = %L',
+                              ?, ?, ?)
+                """)) {
+            ps.setString(1, index);
+            ps.setString(2, attribute.type().expression("custom_attributes", attribute.key()));
+            ps.setString(3, tenantId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
+        }
+    }
+
+    private static void lockIndex(Connection conn, String index, boolean lock) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                lock ? "SELECT pg_advisory_lock(hashtext(?))" : "SELECT pg_advisory_unlock(hashtext(?))")) {
+            ps.setString(1, index);
+            ps.execute();
+        }
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    /**
+     * One index per tenant and (key, type); hashed so any tenant id fits the 63-character
+     * identifier limit. V13 derives the same name for the indexes it builds.
+     */
+    static String indexName(String tenantId, PromotedAttribute attribute) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((tenantId + ":" + attribute.key() + ":" + attribute.type().sqlName())
+                    .getBytes(StandardCharsets.UTF_8));
+            return INDEX_PREFIX + HexFormat.of().formatHex(hash, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.fortytwo.demeter.inventario.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reorder points of each tenant, grouped by product, so that evaluating a movement
+ * only reads stock of products that have rules. Rule changes on this instance evict
+ * the tenant; changes made on other instances are picked up within {@code rules-ttl}.
+ */
+@ApplicationScoped
+public class ReorderPointCache {
+
+    private final Map<String, TenantRules> tenants = new ConcurrentHashMap<>();
+
+    /** Bumped by every eviction, so a load that raced with one is not stored. */
+    private final AtomicLong generation = new AtomicLong();
+
+    @ConfigProperty(name = "demeter.inventory.reorder-alerts.rules-ttl", defaultValue = "1m")
+    Duration ttl;
+
+    /**
+     * Rules of {@code tenantId} by product, loaded over {@code conn} when not cached.
+     */
+    Map<UUID, List<Rule>> rules(Connection conn, String tenantId) throws SQLException {
+        TenantRules cached = tenants.get(tenantId);
+        if (cached != null && cached.expiresAt() - System.nanoTime() > 0) {
+            return cached.byProduct();
+        }
+        long loadedUnder = generation.get();
+        Map<UUID, List<Rule>> byProduct = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT id, product_id, warehouse_id, reorder_point FROM reorder_points WHERE tenant_id = ?")) {
+            ps.setString(1, tenantId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Rule rule = new Rule(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class),
+                            rs.getObject(3, UUID.class), rs.getBigDecimal(4));
+                    byProduct.computeIfAbsent(rule.productId(), p -> new ArrayList<>()).add(rule);
+                }
+            }
+        }
+        synchronized (generation) {
+            if (generation.get() == loadedUnder) {
+                tenants.put(tenantId, new TenantRules(byProduct, System.nanoTime() + ttl.toNanos()));
+            }
+        }
+        return byProduct;
+    }
+
+    public void evict(String tenantId) {
+        synchronized (generation) {
+            generation.incrementAndGet();
+            tenants.remove(tenantId);
+        }
+    }
+
+    /** A reorder point; {@code warehouseId} null means all warehouses. */
+    record Rule(UUID id, UUID productId, UUID warehouseId, BigDecimal reorderPoint) {}
+
+    private record TenantRules(Map<UUID, List<Rule>> byProduct, long expiresAt) {}
+}
@@ -0,0 +1,86 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fortytwo.demeter.common.exception.EntityNotFoundException;
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.inventario.dto.ReorderPointDTO;
+import com.fortytwo.demeter.inventario.dto.UpsertReorderPointRequest;
+import com.fortytwo.demeter.inventario.model.ReorderPoint;
+import com.fortytwo.demeter.inventario.repository.ReorderPointRepository;
+import com.fortytwo.demeter.productos.repository.ProductRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reorder point definitions. Changes commit in their own transaction and then evict
+ * the tenant's cached rules, so the next evaluation reads them back.
+ */
+@ApplicationScoped
+public class ReorderPointService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReorderPointService.class);
+
+    @Inject
+    ReorderPointRepository reorderPointRepository;
+
+    @Inject
+    ProductRepository productRepository;
+
+    @Inject
+    ReorderPointCache reorderPointCache;
+
+    @Inject
+    StockAlertEvaluator stockAlertEvaluator;
+
+    @Inject
+    TenantContext tenantContext;
+
+    public List<ReorderPointDTO> findAll(UUID productId) {
+        var rules = productId != null
+                ? reorderPointRepository.findByProductId(productId)
+                : reorderPointRepository.listAll();
+        return rules.stream().map(ReorderPointDTO::from).toList();
+    }
+
+    /**
+     * Sets the reorder point and evaluates it against current stock at once, so a
+     * product that is already short is alerted without waiting for its next movement.
+     */
+    public ReorderPointDTO upsert(UpsertReorderPointRequest request) {
+        String tenantId = tenantContext.getCurrentTenantId();
+        ReorderPointDTO saved = QuarkusTransaction.requiringNew().call(() -> {
+            if (productRepository.findByIdOptional(request.productId()).isEmpty()) {
+                throw new EntityNotFoundException("Product", request.productId());
+            }
+            if (request.warehouseId() != null && !reorderPointRepository.warehouseExists(request.warehouseId())) {
+                throw new EntityNotFoundException("Warehouse", request.warehouseId());
+            }
+            UUID id = reorderPointRepository.upsert(request.productId(), request.warehouseId(), request.reorderPoint());
+            return ReorderPointDTO.from(reorderPointRepository.findById(id));
+        });
+        reorderPointCache.evict(tenantId);
+        try {
+            stockAlertEvaluator.evaluateProducts(tenantId, List.of(request.productId()));
+        } catch (SQLException e) {
+            // The rule is saved; the product's next movement evaluates it
+            log.warn("Could not evaluate reorder point {} of tenant {}", saved.id(), tenantId, e);
+        }
+        return saved;
+    }
+
+    /** Deletes the reorder point together with its alerts. */
+    public void delete(UUID id) {
+        String tenantId = tenantContext.getCurrentTenantId();
+        QuarkusTransaction.requiringNew().run(() -> {
+            ReorderPoint rule = reorderPointRepository.findByIdOptional(id)
+                    .orElseThrow(() -> new EntityNotFoundException("ReorderPoint", id));
+            reorderPointRepository.delete(rule);
+        });
+        reorderPointCache.evict(tenantId);
+    }
+}
@@ -0,0 +1,186 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fortytwo.demeter.common.tenant.TenantConnections;
+import com.fortytwo.demeter.inventario.event.OutboxConsumer;
+import com.fortytwo.demeter.inventario.event.OutboxConsumerRegistration;
+import com.fortytwo.demeter.inventario.event.StockMovementEvent;
+import com.fortytwo.demeter.inventario.event.StockMovementEventBatch;
+import com.fortytwo.demeter.inventario.service.ReorderPointCache.Rule;
+import io.agroal.api.AgroalDataSource;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Raises and resolves {@code stock_alerts} as movements commit. Only products touched
+ * by the movements and covered by a reorder point are re-totalled, with one grouped
+ * query per tenant, so the cost follows the traffic rather than the size of the stock.
+ *
+ * <p>An alert is upserted on the rule's single OPEN row, so repeated movements below
+ * the reorder point refresh its quantity instead of piling up alerts, and redelivered
+ * outbox batches are harmless.
+ *
+ * <p>Runs over plain JDBC with the tenant bound explicitly, like the other outbox
+ * consumers.
+ */
+@ApplicationScoped
+public class StockAlertEvaluator {
+
+    private static final Logger log = LoggerFactory.getLogger(StockAlertEvaluator.class);
+
+    static final String CONSUMER = "reorder-alerts";
+
+    @Produces
+    static final OutboxConsumerRegistration REGISTRATION = new OutboxConsumerRegistration(CONSUMER);
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    ReorderPointCache reorderPointCache;
+
+    void onMovements(@Observes @OutboxConsumer(CONSUMER) StockMovementEventBatch batch) throws SQLException {
+        Map<String, Set<UUID>> movementsByTenant = new HashMap<>();
+        for (StockMovementEvent event : batch.events()) {
+            movementsByTenant.computeIfAbsent(event.tenantId(), t -> new LinkedHashSet<>()).add(event.movementId());
+        }
+        for (Map.Entry<String, Set<UUID>> e : movementsByTenant.entrySet()) {
+            evaluate(e.getKey(), e.getValue(), null);
+        }
+    }
+
+    /**
+     * Evaluates the reorder points of {@code productIds} against current stock, e.g.
+     * right after a rule changes.
+     *
+     * @return the number of alerts raised, refreshed or resolved
+     */
+    public int evaluateProducts(String tenantId, Collection<UUID> productIds) throws SQLException {
+        return evaluate(tenantId, null, productIds);
+    }
+
+    /** Evaluates either the products moved by {@code movementIds} or {@code productIds}. */
+    private int evaluate(String tenantId, Collection<UUID> movementIds, Collection<UUID> productIds) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                TenantConnections.bind(conn, tenantId);
+
+                int changed = 0;
+                Map<UUID, List<Rule>> rules = reorderPointCache.rules(conn, tenantId);
+                if (!rules.isEmpty()) {
+                    Set<UUID> products = new HashSet<>(productIds != null
+                            ? productIds
+                            : movedProducts(conn, tenantId, movementIds));
+                    products.retainAll(rules.keySet());
+                    if (!products.isEmpty()) {
+                        changed = applyRules(conn, tenantId, products, rules);
+                    }
+                }
+                conn.commit();
+                if (changed > 0) {
+                    log.debug("Updated {} stock alert(s) for tenant {}", changed, tenantId);
+                }
+                return changed;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private Set<UUID> movedProducts(Connection conn, String tenantId, Collection<UUID> movementIds) throws SQLException {
+        Set<UUID> products = new HashSet<>();
+        try (PreparedStatement ps = conn.prepareStatement("""
+                SELECT DISTINCT b.product_id
+                  FROM stock_batch_movements sbm
+                  JOIN stock_batches b ON b.id = sbm.batch_id
+                 WHERE sbm.movement_id = ANY(?) AND b.tenant_id = ?
+                """)) {
+            ps.setArray(1, conn.createArrayOf("uuid", movementIds.toArray()));
+            ps.setString(2, tenantId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    products.add(rs.getObject(1, UUID.class));
+                }
+            }
+        }
+        return products;
+    }
+
+    private int applyRules(Connection conn, String tenantId, Set<UUID> products,
+                           Map<UUID, List<Rule>> rules) throws SQLException {
+        // ACTIVE stock per product and warehouse (null key: batches without one)
+        Map<UUID, Map<UUID, BigDecimal>> stock = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement("""
+                SELECT product_id, warehouse_id, sum(quantity)
+                  FROM stock_batches
+                 WHERE tenant_id = ? AND product_id = ANY(?) AND status = 'ACTIVE'
+                 GROUP BY product_id, warehouse_id
+                """)) {
+            ps.setString(1, tenantId);
+            ps.setArray(2, conn.createArrayOf("uuid", products.toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    stock.computeIfAbsent(rs.getObject(1, UUID.class), p -> new HashMap<>())
+                            .put(rs.getObject(2, UUID.class), rs.getBigDecimal(3));
+                }
+            }
+        }
+
+        // Rules deleted since they were cached match no reorder_points row and are skipped
+        try (PreparedStatement raise = conn.prepareStatement("""
+                INSERT INTO stock_alerts (tenant_id, reorder_point_id, product_id, warehouse_id, reorder_point, quantity)
+                SELECT tenant_id, id, product_id, warehouse_id, reorder_point, ?
+                  FROM reorder_points
+                 WHERE id = ?
+                ON CONFLICT (reorder_point_id) WHERE status = 'OPEN'
+                DO UPDATE SET quantity = EXCLUDED.quantity, reorder_point = EXCLUDED.reorder_point, updated_at = now()
+                 WHERE stock_alerts.quantity <> EXCLUDED.quantity
+                    OR stock_alerts.reorder_point <> EXCLUDED.reorder_point
+                """);
+             PreparedStatement resolve = conn.prepareStatement("""
+                     UPDATE stock_alerts
+                        SET status = 'RESOLVED', quantity = ?, resolved_at = now(), updated_at = now()
+                      WHERE reorder_point_id = ? AND status = 'OPEN'
+                     """)) {
+            for (UUID productId : products) {
+                Map<UUID, BigDecimal> byWarehouse = stock.getOrDefault(productId, Map.of());
+                for (Rule rule : rules.get(productId)) {
+                    BigDecimal quantity = rule.warehouseId() == null
+                            ? byWarehouse.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add)
+                            : byWarehouse.getOrDefault(rule.warehouseId(), BigDecimal.ZERO);
+                    PreparedStatement ps = quantity.compareTo(rule.reorderPoint()) <= 0 ? raise : resolve;
+                    ps.setBigDecimal(1, quantity);
+                    ps.setObject(2, rule.id());
+                    ps.addBatch();
+                }
+            }
+            return updated(raise.executeBatch()) + updated(resolve.executeBatch());
+        }
+    }
+
+    private static int updated(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += Math.max(count, 0);
+        }
+        return total;
+    }
+}
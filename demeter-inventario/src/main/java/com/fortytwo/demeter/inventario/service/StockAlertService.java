@@ -0,0 +1,39 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fortytwo.demeter.common.exception.InvalidRequestException;
+import com.fortytwo.demeter.inventario.dto.StockAlertDTO;
+import com.fortytwo.demeter.inventario.model.StockAlertStatus;
+import com.fortytwo.demeter.inventario.repository.StockAlertRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.util.List;
+import java.util.UUID;
+
+@ApplicationScoped
+public class StockAlertService {
+
+    private static final int MAX_FEED_LIMIT = 500;
+
+    @Inject
+    StockAlertRepository stockAlertRepository;
+
+    /**
+     * Alerts raised after {@code afterId}, oldest first; pass the last id seen to
+     * continue the feed.
+     */
+    public List<StockAlertDTO> findFeed(UUID afterId, String status, UUID productId, int limit) {
+        if (limit < 1 || limit > MAX_FEED_LIMIT) {
+            throw new InvalidRequestException("limit must be between 1 and " + MAX_FEED_LIMIT);
+        }
+        StockAlertStatus alertStatus = null;
+        if (status != null && !status.isBlank()) {
+            try {
+                alertStatus = StockAlertStatus.valueOf(status);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidRequestException("Unknown alert status: " + status);
+            }
+        }
+        return stockAlertRepository.findFeed(afterId, alertStatus, productId, limit)
+                .stream().map(StockAlertDTO::from).toList();
+    }
+}
@@ -0,0 +1,190 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fortytwo.demeter.inventario.dto.BatchAvailability;
+import com.fortytwo.demeter.inventario.event.OutboxConsumer;
+import com.fortytwo.demeter.inventario.event.OutboxConsumerRegistration;
+import com.fortytwo.demeter.inventario.event.StockMovementEvent;
+import com.fortytwo.demeter.inventario.event.StockMovementEventBatch;
+import io.agroal.api.AgroalDataSource;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory per-tenant cache of batch availability in front of the database, which
+ * stays the source of truth: a miss (or an entry older than {@code index-ttl}) is
+ * loaded from it, and anything that changes a batch's quantity or reservations evicts
+ * the batch. Reservations evict after their own commit; movements from any instance
+ * evict through the {@code availability-index} outbox consumer.
+ *
+ * <p>Keys are spread over {@value #STRIPES} lock stripes, each with a generation that
+ * eviction bumps. A load remembers the generation it started under and only stores its
+ * result if the stripe has not moved since, so a read racing with a commit can never
+ * put back the value the commit replaced. Hits take no lock at all.
+ */
+@ApplicationScoped
+public class StockAvailabilityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(StockAvailabilityIndex.class);
+
+    static final String CONSUMER = "availability-index";
+
+    @Produces
+    static final OutboxConsumerRegistration REGISTRATION = new OutboxConsumerRegistration(CONSUMER);
+
+    private static final int STRIPES = 64;
+
+    /** Past this many entries a tenant's expired entries are dropped before adding more. */
+    private static final int MAX_ENTRIES_PER_TENANT = 100_000;
+
+    private final Map<String, Map<UUID, Entry>> tenants = new ConcurrentHashMap<>();
+    private final Object[] stripes = new Object[STRIPES];
+    private final long[] generations = new long[STRIPES];
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    @ConfigProperty(name = "demeter.inventory.reservations.index-ttl", defaultValue = "5s")
+    Duration ttl;
+
+    public StockAvailabilityIndex() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Availability of {@code batchIds} for {@code tenantId}, loading the ones not cached
+     * with a single call to {@code loader}.
+     *
+     * @return availability per batch; batches the loader does not know are absent
+     */
+    public Map<UUID, BatchAvailability> get(String tenantId, Collection<UUID> batchIds,
+                                            Function<Collection<UUID>, Map<UUID, BatchAvailability>> loader) {
+        Map<UUID, Entry> entries = tenants.computeIfAbsent(tenantId, t -> new ConcurrentHashMap<>());
+        Map<UUID, BatchAvailability> result = new HashMap<>();
+        Map<UUID, Long> misses = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        for (UUID id : batchIds) {
+            Entry entry = entries.get(id);
+            if (entry != null && entry.expiresAt() - now > 0) {
+                result.put(id, entry.availability());
+            } else if (!misses.containsKey(id)) {
+                misses.put(id, generation(stripe(tenantId, id)));
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+
+        Map<UUID, BatchAvailability> loaded = loader.apply(misses.keySet());
+        if (entries.size() + loaded.size() > MAX_ENTRIES_PER_TENANT) {
+            long cutoff = System.nanoTime();
+            entries.values().removeIf(e -> e.expiresAt() - cutoff <= 0);
+        }
+        long expiresAt = System.nanoTime() + ttl.toNanos();
+        for (Map.Entry<UUID, BatchAvailability> e : loaded.entrySet()) {
+            int stripe = stripe(tenantId, e.getKey());
+            synchronized (stripes[stripe]) {
+                if (generations[stripe] == misses.get(e.getKey())) {
+                    entries.put(e.getKey(), new Entry(e.getValue(), expiresAt));
+                }
+            }
+            result.put(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    public void evict(String tenantId, Collection<UUID> batchIds) {
+        Map<UUID, Entry> entries = tenants.get(tenantId);
+        for (UUID id : batchIds) {
+            int stripe = stripe(tenantId, id);
+            synchronized (stripes[stripe]) {
+                generations[stripe]++;
+                if (entries != null) {
+                    entries.remove(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evicts once the current transaction ends, so no load can read the database
+     * between the eviction and the commit.
+     */
+    public void evictAfterCompletion(String tenantId, Collection<UUID> batchIds) {
+        if (batchIds.isEmpty()) {
+            return;
+        }
+        Set<UUID> ids = Set.copyOf(batchIds);
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                evict(tenantId, ids);
+            }
+        });
+    }
+
+    /** Evicts the batches touched by committed movements, whichever instance wrote them. */
+    void onMovements(@Observes @OutboxConsumer(CONSUMER) StockMovementEventBatch batch) throws SQLException {
+        Map<UUID, String> tenantByMovement = batch.events().stream()
+                .collect(Collectors.toMap(StockMovementEvent::movementId, StockMovementEvent::tenantId, (a, b) -> a));
+        Map<String, List<UUID>> batchesByTenant = new HashMap<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT movement_id, batch_id FROM stock_batch_movements WHERE movement_id = ANY(?)")) {
+            ps.setArray(1, conn.createArrayOf("uuid", tenantByMovement.keySet().toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String tenantId = tenantByMovement.get(rs.getObject(1, UUID.class));
+                    batchesByTenant.computeIfAbsent(tenantId, t -> new ArrayList<>()).add(rs.getObject(2, UUID.class));
+                }
+            }
+        }
+        batchesByTenant.forEach(this::evict);
+        log.debug("Evicted availability of batches in {} tenant(s) for {} movement(s)",
+                batchesByTenant.size(), tenantByMovement.size());
+    }
+
+    private long generation(int stripe) {
+        synchronized (stripes[stripe]) {
+            return generations[stripe];
+        }
+    }
+
+    private static int stripe(String tenantId, UUID batchId) {
+        int h = 31 * tenantId.hashCode() + batchId.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private record Entry(BatchAvailability availability, long expiresAt) {}
+}
@@ -0,0 +1,95 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fortytwo.demeter.common.exception.InvalidRequestException;
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.inventario.dto.AvailabilityMatrix;
+import com.fortytwo.demeter.inventario.repository.StockAvailabilityMatrixRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@ApplicationScoped
+public class StockAvailabilityMatrixService {
+
+    private static final int MAX_MATRIX_PRODUCTS = 500;
+
+    @Inject
+    StockAvailabilityMatrixRepository stockAvailabilityMatrixRepository;
+
+    @Inject
+    TenantContext tenantContext;
+
+    /**
+     * Validator for {@link #findAvailabilityMatrix} with the same arguments, taken from
+     * the tenant's change marker rather than the grid, so it can be checked before the
+     * grid is computed. Read first, it can only trail the grid served with it: a change
+     * landing in between makes the next request miss, never a stale 304.
+     */
+    public String etag(List<UUID> productIds, UUID categoryId) {
+        List<UUID> products = productIds != null ? productIds : List.of();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(tenantContext.getCurrentTenantId().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(stockAvailabilityMatrixRepository.changeMarker().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update((products + "|" + categoryId).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Product × warehouse grid of available stock, pivoted from one grouped query.
+     */
+    public AvailabilityMatrix findAvailabilityMatrix(List<UUID> productIds, UUID categoryId) {
+        List<UUID> products = productIds != null ? productIds : List.of();
+        if (products.size() > MAX_MATRIX_PRODUCTS) {
+            throw new InvalidRequestException("At most " + MAX_MATRIX_PRODUCTS + " productIds per request");
+        }
+        var cells = stockAvailabilityMatrixRepository.sumAvailableByProductAndWarehouse(products, categoryId);
+
+        Map<UUID, Integer> rowOf = new LinkedHashMap<>();
+        List<AvailabilityMatrix.Product> rows = new ArrayList<>();
+        Map<UUID, AvailabilityMatrix.Warehouse> warehouses = new HashMap<>();
+        for (var cell : cells) {
+            if (rowOf.putIfAbsent(cell.productId(), rows.size()) == null) {
+                rows.add(new AvailabilityMatrix.Product(cell.productId(), cell.sku(), cell.productName()));
+            }
+            warehouses.putIfAbsent(cell.warehouseId(), new AvailabilityMatrix.Warehouse(cell.warehouseId(), cell.warehouseName()));
+        }
+        List<AvailabilityMatrix.Warehouse> columns = warehouses.values().stream()
+                .sorted(Comparator.comparing(AvailabilityMatrix.Warehouse::name, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(AvailabilityMatrix.Warehouse::id, Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+        Map<UUID, Integer> columnOf = new HashMap<>();
+        for (int j = 0; j < columns.size(); j++) {
+            columnOf.put(columns.get(j).id(), j);
+        }
+
+        BigDecimal zero = BigDecimal.ZERO.setScale(2);
+        List<BigDecimal[]> grid = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            BigDecimal[] row = new BigDecimal[columns.size()];
+            Arrays.fill(row, zero);
+            grid.add(row);
+        }
+        for (var cell : cells) {
+            grid.get(rowOf.get(cell.productId()))[columnOf.get(cell.warehouseId())] = cell.available();
+        }
+        return new AvailabilityMatrix(rows, columns, grid.stream().map(Arrays::asList).toList());
+    }
+}
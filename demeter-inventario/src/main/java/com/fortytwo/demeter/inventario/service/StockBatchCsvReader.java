@@ -0,0 +1,116 @@
+package com.fortytwo.demeter.inventario.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming RFC 4180 reader: comma separated, double-quote enclosed fields,
+ * {@code ""} escapes and line breaks inside quotes. Only one record is held in memory.
+ */
+final class StockBatchCsvReader {
+
+    private final Reader in;
+    private int pushback = -2;
+    private long recordNumber;
+
+    StockBatchCsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /** 1-based number of the record last returned by {@link #next()}. */
+    long recordNumber() {
+        return recordNumber;
+    }
+
+    /**
+     * @return the fields of the next non-empty record, or {@code null} at end of input
+     */
+    List<String> next() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            if (c == '\r' || c == '\n') {
+                // Blank line between records
+                if (c == '\r') {
+                    skipLineFeed();
+                }
+                continue;
+            }
+            unread(c);
+            recordNumber++;
+            return readRecord();
+        }
+    }
+
+    private List<String> readRecord() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean afterQuote = false;
+
+        while (true) {
+            int c = read();
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field in record " + recordNumber);
+                }
+                if (c == '"') {
+                    int n = read();
+                    if (n == '"') {
+                        field.append('"');
+                    } else {
+                        unread(n);
+                        quoted = false;
+                        afterQuote = true;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+                continue;
+            }
+
+            if (c == -1 || c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    skipLineFeed();
+                }
+                fields.add(field.toString());
+                return fields;
+            }
+            if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                afterQuote = false;
+            } else if (c == '"' && field.isEmpty() && !afterQuote) {
+                quoted = true;
+            } else if (afterQuote) {
+                throw new IOException("Unexpected character after closing quote in record " + recordNumber);
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    private void skipLineFeed() throws IOException {
+        int n = read();
+        if (n != '\n') {
+            unread(n);
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushback != -2) {
+            int c = pushback;
+            pushback = -2;
+            return c;
+        }
+        return in.read();
+    }
+
+    private void unread(int c) {
+        pushback = c;
+    }
+}
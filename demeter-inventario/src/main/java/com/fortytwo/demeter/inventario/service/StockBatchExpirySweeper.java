@@ -0,0 +1,154 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fortytwo.demeter.common.model.UuidV7Generator;
+import com.fortytwo.demeter.common.tenant.TenantConnections;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Moves ACTIVE batches whose {@code expiry_date} has passed to EXPIRED. Each tenant is
+ * swept in chunks of {@code chunk-size} batches; every chunk is one short transaction
+ * that locks, updates and records a single VENCIMIENTO movement (with one batch line
+ * per expired batch) in one statement. Batches locked by in-flight transactions are
+ * skipped and picked up by the next run, so the sweep never waits on user traffic.
+ *
+ * <p>Runs over plain JDBC with the tenant bound explicitly: there is no request to
+ * resolve a tenant from.
+ */
+@ApplicationScoped
+public class StockBatchExpirySweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(StockBatchExpirySweeper.class);
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @ConfigProperty(name = "demeter.inventory.expiry-sweep.chunk-size", defaultValue = "500")
+    int chunkSize;
+
+    @Scheduled(identity = "stock-batch-expiry-sweep",
+            every = "{demeter.inventory.expiry-sweep.interval}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledSweep() {
+        try {
+            sweep();
+        } catch (SQLException e) {
+            log.error("Stock batch expiry sweep failed", e);
+        }
+    }
+
+    /**
+     * @return the number of batches expired across all tenants
+     */
+    public int sweep() throws SQLException {
+        int expired = 0;
+        for (String tenantId : tenantsWithExpiredBatches()) {
+            expired += sweepTenant(tenantId);
+        }
+        return expired;
+    }
+
+    /**
+     * @return the number of batches of {@code tenantId} expired
+     */
+    public int sweepTenant(String tenantId) throws SQLException {
+        int total = 0;
+        int chunks = 0;
+        int expired;
+        do {
+            expired = sweepChunk(tenantId);
+            total += expired;
+            chunks++;
+        } while (expired == chunkSize);
+        if (total > 0) {
+            log.info("Expired {} batch(es) for tenant {} in {} chunk(s)", total, tenantId, chunks);
+        }
+        return total;
+    }
+
+    private List<String> tenantsWithExpiredBatches() throws SQLException {
+        List<String> tenants = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("""
+                     SELECT DISTINCT tenant_id FROM stock_batches
+                      WHERE status = 'ACTIVE' AND expiry_date < now()
+                     """);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                tenants.add(rs.getString(1));
+            }
+        }
+        return tenants;
+    }
+
+    private int sweepChunk(String tenantId) throws SQLException {
+        UUID movementId = UuidV7Generator.next();
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                TenantConnections.bind(conn, tenantId);
+
+                int expired;
+                // The movement row goes in ahead of its lines, which reference it through
+                // (movement_id, movement_performed_at) (V29); it is only written when the
+                // chunk expired anything
+                try (PreparedStatement ps = conn.prepareStatement("""
+                        WITH due AS (
+                            SELECT id FROM stock_batches
+                             WHERE tenant_id = ? AND status = 'ACTIVE' AND expiry_date < now()
+                             ORDER BY expiry_date, id
+                             LIMIT ?
+                               FOR UPDATE SKIP LOCKED
+                        ), expired AS (
+                            UPDATE stock_batches b
+                               SET status = 'EXPIRED', updated_at = now(), version = b.version + 1
+                              FROM due
+                             WHERE b.id = due.id
+                            RETURNING b.id, b.quantity, b.version
+                        ), movement AS (
+                            INSERT INTO stock_movements
+                                   (id, tenant_id, movement_type, quantity, reference_type, notes, performed_at)
+                            SELECT ?, ?, 'VENCIMIENTO', sum(quantity), 'EXPIRY_SWEEP',
+                                   'Expired ' || count(*) || ' batch(es)', now()
+                              FROM expired
+                            HAVING count(*) > 0
+                            RETURNING id, performed_at
+                        ), lines AS (
+                            INSERT INTO stock_batch_movements (batch_id, movement_id, movement_performed_at, quantity,
+                                                               direction, batch_version)
+                            SELECT e.id, m.id, m.performed_at, e.quantity, 'NONE', e.version
+                              FROM expired e CROSS JOIN movement m
+                            RETURNING batch_id
+                        )
+                        SELECT count(*) FROM lines
+                        """)) {
+                    ps.setString(1, tenantId);
+                    ps.setInt(2, chunkSize);
+                    ps.setObject(3, movementId);
+                    ps.setString(4, tenantId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        expired = rs.getInt(1);
+                    }
+                }
+                conn.commit();
+                return expired;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+}
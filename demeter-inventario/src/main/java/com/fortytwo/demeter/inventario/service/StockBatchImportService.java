@@ -0,0 +1,579 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fortytwo.demeter.common.exception.EntityNotFoundException;
+import com.fortytwo.demeter.common.tenant.TenantConnections;
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.inventario.dto.StockBatchImportJobDTO;
+import com.fortytwo.demeter.inventario.model.StockBatchImportJob;
+import com.fortytwo.demeter.inventario.repository.StockBatchImportJobRepository;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bulk-loads stock batches from CSV.
+ *
+ * <p>The upload is spooled to a temp file and a job row is committed, then a worker
+ * streams the file through validation straight into PostgreSQL {@code COPY} targeting
+ * a transaction-scoped temp table. Product SKUs (and optional warehouse/bin ids) are
+ * resolved with a single join and the result is merged into {@code stock_batches}
+ * with {@code ON CONFLICT (tenant_id, batch_code) DO UPDATE}. Every batch the load
+ * writes gets an AJUSTE movement setting its quantity, so the ledger, the outbox and
+ * reconciliation account for imported stock like any other adjustment. The whole load
+ * commits or rolls back as one transaction; per-row problems are counted and sampled
+ * on the job.
+ *
+ * <p>The worker runs outside any request, so it uses plain JDBC with the tenant bound
+ * explicitly in every statement and in {@code app.current_tenant} for RLS.
+ */
+@ApplicationScoped
+public class StockBatchImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockBatchImportService.class);
+
+    /** Reference type of the AJUSTE movements an import records, referencing the job. */
+    static final String REFERENCE_TYPE = "STOCK_BATCH_IMPORT";
+
+    static final Set<String> REQUIRED_COLUMNS = Set.of("sku", "batch_code", "quantity");
+    static final Set<String> OPTIONAL_COLUMNS = Set.of("unit", "warehouse_id", "bin_id", "entry_date", "expiry_date");
+
+    /** Row errors kept on the job; the counters still cover every rejected row. */
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int PROGRESS_INTERVAL = 10_000;
+    private static final int COPY_BUFFER_BYTES = 1 << 16;
+
+    @Inject
+    StockBatchImportJobRepository jobRepository;
+
+    @Inject
+    TenantContext tenantContext;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @ConfigProperty(name = "demeter.inventory.import.max-concurrent-jobs", defaultValue = "2")
+    int maxConcurrentJobs;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newFixedThreadPool(maxConcurrentJobs,
+                Thread.ofVirtual().name("stock-batch-import-", 0).factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Spools the CSV body, records a PENDING job and schedules the load.
+     * Returns as soon as the upload has been received.
+     */
+    public StockBatchImportJobDTO start(InputStream csv) {
+        String tenantId = tenantContext.getCurrentTenantId();
+        Path spool = spool(csv);
+
+        StockBatchImportJob job = QuarkusTransaction.requiringNew().call(() -> {
+            StockBatchImportJob created = new StockBatchImportJob();
+            jobRepository.persist(created);
+            return created;
+        });
+
+        UUID jobId = job.getId();
+        executor.submit(() -> run(jobId, tenantId, spool));
+        log.info("Queued stock batch import job {} for tenant {}", jobId, tenantId);
+        return StockBatchImportJobDTO.from(job);
+    }
+
+    public StockBatchImportJobDTO findJob(UUID id) {
+        return jobRepository.findByIdOptional(id)
+                .map(StockBatchImportJobDTO::from)
+                .orElseThrow(() -> new EntityNotFoundException("StockBatchImportJob", id));
+    }
+
+    private Path spool(InputStream csv) {
+        try {
+            Path file = Files.createTempFile("stock-batch-import-", ".csv");
+            Files.copy(csv, file, StandardCopyOption.REPLACE_EXISTING);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to receive CSV upload", e);
+        }
+    }
+
+    private void run(UUID jobId, String tenantId, Path spool) {
+        ImportProgress progress = new ImportProgress();
+        try (Connection conn = dataSource.getConnection()) {
+            updateJob(jobId, tenantId, """
+                    UPDATE stock_batch_import_jobs
+                       SET status = 'PROCESSING', started_at = now(), updated_at = now()
+                     WHERE id = ? AND tenant_id = ?
+                    """, ps -> {});
+
+            conn.setAutoCommit(false);
+            try {
+                TenantConnections.bind(conn, tenantId);
+                createStaging(conn);
+                copyRows(conn, jobId, tenantId, spool, progress);
+                rejectUnresolved(conn, tenantId, progress);
+                merge(conn, jobId, tenantId, progress);
+                conn.commit();
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            }
+
+            String errors = errorsJson(progress);
+            updateJob(jobId, tenantId, """
+                    UPDATE stock_batch_import_jobs
+                       SET status = 'COMPLETED', rows_read = ?, rows_rejected = ?,
+                           rows_inserted = ?, rows_updated = ?, errors = CAST(? AS jsonb),
+                           finished_at = now(), updated_at = now()
+                     WHERE id = ? AND tenant_id = ?
+                    """, ps -> {
+                ps.setLong(1, progress.rowsRead);
+                ps.setLong(2, progress.rowsRejected);
+                ps.setLong(3, progress.rowsInserted);
+                ps.setLong(4, progress.rowsUpdated);
+                ps.setString(5, errors);
+            });
+            log.info("Stock batch import job {} completed: read={} rejected={} inserted={} updated={}",
+                    jobId, progress.rowsRead, progress.rowsRejected, progress.rowsInserted, progress.rowsUpdated);
+        } catch (Exception e) {
+            log.error("Stock batch import job {} failed", jobId, e);
+            markFailed(jobId, tenantId, progress, e);
+        } finally {
+            try {
+                Files.deleteIfExists(spool);
+            } catch (IOException e) {
+                log.warn("Could not delete import spool file {}", spool, e);
+            }
+        }
+    }
+
+    private void createStaging(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                    CREATE TEMP TABLE stock_batch_import_staging (
+                        row_no BIGINT NOT NULL,
+                        sku VARCHAR(100) NOT NULL,
+                        batch_code VARCHAR(100) NOT NULL,
+                        quantity NUMERIC(12,2) NOT NULL,
+                        unit VARCHAR(50),
+                        warehouse_id UUID,
+                        bin_id UUID,
+                        entry_date TIMESTAMPTZ,
+                        expiry_date TIMESTAMPTZ
+                    ) ON COMMIT DROP
+                    """);
+        }
+    }
+
+    /**
+     * Reads the spooled CSV record by record, validates each row and streams the
+     * accepted ones into the staging table through a single {@code COPY}.
+     */
+    private void copyRows(Connection conn, UUID jobId, String tenantId, Path spool, ImportProgress progress)
+            throws IOException, SQLException {
+        PGConnection pg = conn.unwrap(PGConnection.class);
+        try (BufferedReader reader = Files.newBufferedReader(spool, StandardCharsets.UTF_8);
+             Writer copy = new BufferedWriter(new OutputStreamWriter(new PGCopyOutputStream(pg, """
+                     COPY stock_batch_import_staging
+                          (row_no, sku, batch_code, quantity, unit, warehouse_id, bin_id, entry_date, expiry_date)
+                     FROM STDIN WITH (FORMAT csv)
+                     """, COPY_BUFFER_BYTES), StandardCharsets.UTF_8))) {
+
+            StockBatchCsvReader csv = new StockBatchCsvReader(reader);
+            Map<String, Integer> columns = readHeader(csv.next());
+            Map<String, Long> seenBatchCodes = new HashMap<>();
+
+            List<String> record;
+            while ((record = csv.next()) != null) {
+                long rowNo = csv.recordNumber();
+                progress.rowsRead++;
+                String error = stageRow(record, columns, rowNo, seenBatchCodes, copy);
+                if (error != null) {
+                    progress.reject(rowNo, error);
+                }
+                if (progress.rowsRead % PROGRESS_INTERVAL == 0) {
+                    reportProgress(jobId, tenantId, progress);
+                }
+            }
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            // Temp tables are invisible to autovacuum; give the planner real row counts for the joins
+            stmt.execute("ANALYZE stock_batch_import_staging");
+        }
+    }
+
+    private Map<String, Integer> readHeader(List<String> header) {
+        if (header == null) {
+            throw new IllegalArgumentException("CSV is empty");
+        }
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).replace("\uFEFF", "").trim().toLowerCase();
+            if (!REQUIRED_COLUMNS.contains(name) && !OPTIONAL_COLUMNS.contains(name)) {
+                throw new IllegalArgumentException("Unknown CSV column: " + name);
+            }
+            if (columns.put(name, i) != null) {
+                throw new IllegalArgumentException("Duplicate CSV column: " + name);
+            }
+        }
+        for (String required : REQUIRED_COLUMNS) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("Missing required CSV column: " + required);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Validates one record and, if valid, writes it to the COPY stream.
+     *
+     * @return the rejection reason, or {@code null} if the row was staged
+     */
+    private String stageRow(List<String> record, Map<String, Integer> columns, long rowNo,
+                            Map<String, Long> seenBatchCodes, Writer copy) throws IOException {
+        if (record.size() != columns.size()) {
+            return "expected " + columns.size() + " fields but found " + record.size();
+        }
+
+        String sku = field(record, columns, "sku");
+        String batchCode = field(record, columns, "batch_code");
+        String unit = field(record, columns, "unit");
+        if (sku == null || sku.length() > 100) {
+            return "sku: must be present and at most 100 characters";
+        }
+        if (batchCode == null || batchCode.length() > 100) {
+            return "batch_code: must be present and at most 100 characters";
+        }
+        if (unit != null && unit.length() > 50) {
+            return "unit: must be at most 50 characters";
+        }
+
+        BigDecimal quantity;
+        UUID warehouseId;
+        UUID binId;
+        Instant entryDate;
+        Instant expiryDate;
+        try {
+            String raw = field(record, columns, "quantity");
+            if (raw == null) {
+                return "quantity: must be present";
+            }
+            quantity = new BigDecimal(raw);
+        } catch (NumberFormatException e) {
+            return "quantity: not a number";
+        }
+        if (quantity.signum() < 0 || quantity.scale() > 2 || quantity.precision() - quantity.scale() > 10) {
+            return "quantity: must be >= 0 with at most 10 integer and 2 decimal digits";
+        }
+        try {
+            warehouseId = uuid(field(record, columns, "warehouse_id"));
+            binId = uuid(field(record, columns, "bin_id"));
+        } catch (IllegalArgumentException e) {
+            return "warehouse_id/bin_id: not a valid UUID";
+        }
+        try {
+            entryDate = instant(field(record, columns, "entry_date"));
+            expiryDate = instant(field(record, columns, "expiry_date"));
+        } catch (DateTimeParseException e) {
+            return "entry_date/expiry_date: expected ISO date (yyyy-MM-dd) or instant";
+        }
+
+        Long firstRow = seenBatchCodes.putIfAbsent(batchCode, rowNo);
+        if (firstRow != null) {
+            return "batch_code: duplicate of row " + firstRow;
+        }
+
+        copy.write(Long.toString(rowNo));
+        copy.write(',');
+        writeQuoted(copy, sku);
+        copy.write(',');
+        writeQuoted(copy, batchCode);
+        copy.write(',');
+        copy.write(quantity.toPlainString());
+        copy.write(',');
+        if (unit != null) {
+            writeQuoted(copy, unit);
+        }
+        copy.write(',');
+        writeNullable(copy, warehouseId);
+        copy.write(',');
+        writeNullable(copy, binId);
+        copy.write(',');
+        writeNullable(copy, entryDate);
+        copy.write(',');
+        writeNullable(copy, expiryDate);
+        copy.write('\n');
+        return null;
+    }
+
+    /** Records rows whose SKU, warehouse or bin does not resolve for this tenant. */
+    private void rejectUnresolved(Connection conn, String tenantId, ImportProgress progress) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("""
+                SELECT s.row_no,
+                       CASE WHEN p.id IS NULL THEN 'sku: no product with SKU ' || s.sku
+                            WHEN s.warehouse_id IS NOT NULL AND w.id IS NULL THEN 'warehouse_id: unknown warehouse'
+                            ELSE 'bin_id: unknown storage bin' END,
+                       count(*) OVER ()
+                  FROM stock_batch_import_staging s
+                  LEFT JOIN products p ON p.tenant_id = ? AND p.sku = s.sku
+                  LEFT JOIN warehouses w ON w.tenant_id = ? AND w.id = s.warehouse_id
+                  LEFT JOIN storage_bins b ON b.tenant_id = ? AND b.id = s.bin_id
+                 WHERE p.id IS NULL
+                    OR (s.warehouse_id IS NOT NULL AND w.id IS NULL)
+                    OR (s.bin_id IS NOT NULL AND b.id IS NULL)
+                 ORDER BY s.row_no
+                 LIMIT ?
+                """)) {
+            ps.setString(1, tenantId);
+            ps.setString(2, tenantId);
+            ps.setString(3, tenantId);
+            ps.setInt(4, MAX_REPORTED_ERRORS);
+            try (ResultSet rs = ps.executeQuery()) {
+                long total = 0;
+                while (rs.next()) {
+                    progress.sample(rs.getLong(1), rs.getString(2));
+                    total = rs.getLong(3);
+                }
+                progress.rowsRejected += total;
+            }
+        }
+    }
+
+    /**
+     * Upserts the staged rows and records one AJUSTE movement per written batch, with a
+     * SET line carrying the version the upsert gave it, in the same statement.
+     */
+    private void merge(Connection conn, UUID jobId, String tenantId, ImportProgress progress) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("""
+                WITH merged AS (
+                    INSERT INTO stock_batches
+                           (tenant_id, product_id, batch_code, quantity, initial_quantity, unit, warehouse_id, bin_id,
+                            status, entry_date, expiry_date)
+                    SELECT ?, p.id, s.batch_code, s.quantity, s.quantity, s.unit, s.warehouse_id, s.bin_id,
+                           CASE WHEN s.quantity <= 0 THEN 'DEPLETED' ELSE 'ACTIVE' END,
+                           COALESCE(s.entry_date, now()), s.expiry_date
+                      FROM stock_batch_import_staging s
+                      JOIN products p ON p.tenant_id = ? AND p.sku = s.sku
+                     WHERE (s.warehouse_id IS NULL
+                            OR EXISTS (SELECT 1 FROM warehouses w WHERE w.tenant_id = ? AND w.id = s.warehouse_id))
+                       AND (s.bin_id IS NULL
+                            OR EXISTS (SELECT 1 FROM storage_bins b WHERE b.tenant_id = ? AND b.id = s.bin_id))
+                    ON CONFLICT (tenant_id, batch_code) DO UPDATE
+                       SET product_id = EXCLUDED.product_id,
+                           quantity = EXCLUDED.quantity,
+                           unit = COALESCE(EXCLUDED.unit, stock_batches.unit),
+                           warehouse_id = COALESCE(EXCLUDED.warehouse_id, stock_batches.warehouse_id),
+                           bin_id = COALESCE(EXCLUDED.bin_id, stock_batches.bin_id),
+                           expiry_date = COALESCE(EXCLUDED.expiry_date, stock_batches.expiry_date),
+                           status = CASE WHEN EXCLUDED.quantity <= 0 THEN 'DEPLETED'
+                                         WHEN stock_batches.status = 'DEPLETED' THEN 'ACTIVE'
+                                         ELSE stock_batches.status END,
+                           updated_at = now(),
+                           version = stock_batches.version + 1
+                    RETURNING id, quantity, unit, version, (xmax = 0) AS inserted
+                ), audited AS (
+                    SELECT merged.*, uuid_generate_v7() AS movement_id FROM merged
+                ), movements AS (
+                    INSERT INTO stock_movements (id, tenant_id, movement_type, quantity, unit,
+                                                 reference_id, reference_type, notes, performed_at)
+                    SELECT movement_id, ?, 'AJUSTE', quantity, unit, ?, ?,
+                           CASE WHEN inserted THEN 'Imported' ELSE 'Overwritten by import' END, now()
+                      FROM audited
+                    RETURNING id, performed_at
+                ), lines AS (
+                    INSERT INTO stock_batch_movements (batch_id, movement_id, movement_performed_at, quantity,
+                                                       direction, batch_version)
+                    SELECT a.id, m.id, m.performed_at, a.quantity, 'SET', a.version
+                      FROM audited a
+                      JOIN movements m ON m.id = a.movement_id
+                )
+                SELECT count(*) FILTER (WHERE inserted), count(*) FILTER (WHERE NOT inserted) FROM audited
+                """)) {
+            ps.setString(1, tenantId);
+            ps.setString(2, tenantId);
+            ps.setString(3, tenantId);
+            ps.setString(4, tenantId);
+            ps.setString(5, tenantId);
+            ps.setObject(6, jobId);
+            ps.setString(7, REFERENCE_TYPE);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                progress.rowsInserted = rs.getLong(1);
+                progress.rowsUpdated = rs.getLong(2);
+            }
+        }
+    }
+
+    private void reportProgress(UUID jobId, String tenantId, ImportProgress progress) {
+        try {
+            updateJob(jobId, tenantId, """
+                    UPDATE stock_batch_import_jobs
+                       SET rows_read = ?, rows_rejected = ?, updated_at = now()
+                     WHERE id = ? AND tenant_id = ?
+                    """, ps -> {
+                ps.setLong(1, progress.rowsRead);
+                ps.setLong(2, progress.rowsRejected);
+            });
+        } catch (SQLException e) {
+            // Progress is best effort; the final status update is what matters
+            log.warn("Could not report progress for import job {}", jobId, e);
+        }
+    }
+
+    private void markFailed(UUID jobId, String tenantId, ImportProgress progress, Exception cause) {
+        try {
+            String errors = errorsJson(progress);
+            updateJob(jobId, tenantId, """
+                    UPDATE stock_batch_import_jobs
+                       SET status = 'FAILED', rows_read = ?, rows_rejected = ?, errors = CAST(? AS jsonb),
+                           error_message = ?, finished_at = now(), updated_at = now()
+                     WHERE id = ? AND tenant_id = ?
+                    """, ps -> {
+                ps.setLong(1, progress.rowsRead);
+                ps.setLong(2, progress.rowsRejected);
+                ps.setString(3, errors);
+                ps.setString(4, cause.getMessage());
+            });
+        } catch (Exception e) {
+            log.error("Could not mark import job {} as failed", jobId, e);
+        }
+    }
+
+    /**
+     * Runs a job-row update in its own short transaction so progress is visible
+     * to status polls while the load transaction is still open. The statement's
+     * last two parameters must be the job id and tenant id.
+     */
+    private void updateJob(UUID jobId, String tenantId, String sql, StatementBinder binder) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            TenantConnections.bind(conn, tenantId);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                binder.bind(ps);
+                int params = ps.getParameterMetaData().getParameterCount();
+                ps.setObject(params - 1, jobId);
+                ps.setString(params, tenantId);
+                ps.executeUpdate();
+            }
+            conn.commit();
+        }
+    }
+
+    private String errorsJson(ImportProgress progress) {
+        try {
+            return objectMapper.writeValueAsString(progress.errors);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize import errors", e);
+        }
+    }
+
+    private static String field(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static UUID uuid(String value) {
+        return value != null ? UUID.fromString(value) : null;
+    }
+
+    private static Instant instant(String value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.length() == 10) {
+            return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+        return Instant.parse(value);
+    }
+
+    private static void writeQuoted(Writer out, String value) throws IOException {
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    private static void writeNullable(Writer out, Object value) throws IOException {
+        if (value != null) {
+            out.write(value.toString());
+        }
+    }
+
+    @FunctionalInterface
+    private interface StatementBinder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    /** Mutable counters owned by a single worker thread. */
+    private static final class ImportProgress {
+        long rowsRead;
+        long rowsRejected;
+        long rowsInserted;
+        long rowsUpdated;
+        final List<Map<String, Object>> errors = new ArrayList<>();
+
+        void reject(long rowNo, String error) {
+            rowsRejected++;
+            sample(rowNo, error);
+        }
+
+        void sample(long rowNo, String error) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(Map.of("row", rowNo, "error", error));
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fortytwo.demeter.common.exception.EntityNotFoundException;
+import com.fortytwo.demeter.common.exception.InvalidRequestException;
+import com.fortytwo.demeter.inventario.dto.BatchLineage;
+import com.fortytwo.demeter.inventario.model.StockBatch;
+import com.fortytwo.demeter.inventario.repository.StockBatchLineageRepository;
+import com.fortytwo.demeter.inventario.repository.StockBatchRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+@ApplicationScoped
+public class StockBatchLineageService {
+
+    private static final int MAX_LINEAGE_DEPTH = 50;
+    /** Links returned per lineage query; the walk follows every path, so dense genealogies are capped. */
+    private static final int MAX_LINEAGE_STEPS = 5000;
+
+    @Inject
+    StockBatchRepository stockBatchRepository;
+
+    @Inject
+    StockBatchLineageRepository stockBatchLineageRepository;
+
+    /**
+     * Ancestors and descendants of a batch through transplants, up to {@code depth}
+     * generations each way.
+     */
+    public BatchLineage findLineage(UUID batchId, int depth) {
+        if (depth < 1 || depth > MAX_LINEAGE_DEPTH) {
+            throw new InvalidRequestException("depth must be between 1 and " + MAX_LINEAGE_DEPTH);
+        }
+        StockBatch root = stockBatchRepository.findByIdOptional(batchId)
+                .orElseThrow(() -> new EntityNotFoundException("StockBatch", batchId));
+
+        var steps = stockBatchLineageRepository.findLineage(batchId, depth, MAX_LINEAGE_STEPS + 1);
+        boolean truncated = steps.size() > MAX_LINEAGE_STEPS;
+        Map<UUID, BatchLineage.Node> nodes = new LinkedHashMap<>();
+        nodes.put(batchId, new BatchLineage.Node(batchId, root.getBatchCode(), root.getProduct().getId(),
+                root.getStatus().name(), root.getQuantity(), 0));
+        Set<BatchLineage.Edge> edges = new LinkedHashSet<>();
+        for (var step : steps.subList(0, Math.min(steps.size(), MAX_LINEAGE_STEPS))) {
+            edges.add(new BatchLineage.Edge(step.parentBatchId(), step.childBatchId(), step.movementId()));
+            int generation = step.direction() * step.depth();
+            nodes.merge(step.batchId(),
+                    new BatchLineage.Node(step.batchId(), step.batchCode(), step.productId(), step.status(),
+                            step.quantity(), generation),
+                    (known, found) -> Math.abs(found.generation()) < Math.abs(known.generation()) ? found : known);
+        }
+        List<BatchLineage.Node> ordered = nodes.values().stream()
+                .sorted(Comparator.comparingInt(BatchLineage.Node::generation).thenComparing(BatchLineage.Node::batchCode))
+                .toList();
+        return new BatchLineage(batchId, ordered, List.copyOf(edges), truncated);
+    }
+}
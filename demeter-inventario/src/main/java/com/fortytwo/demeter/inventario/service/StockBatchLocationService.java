@@ -0,0 +1,52 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fortytwo.demeter.common.exception.InvalidRequestException;
+import com.fortytwo.demeter.inventario.dto.BatchLocationEntry;
+import com.fortytwo.demeter.inventario.model.BatchStatus;
+import com.fortytwo.demeter.inventario.repository.StockBatchLocationRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Batch lookups by bin or warehouse, for handheld scanners.
+ */
+@ApplicationScoped
+public class StockBatchLocationService {
+
+    private static final int MAX_LOOKUP_LIMIT = 1000;
+
+    @Inject
+    StockBatchLocationRepository stockBatchLocationRepository;
+
+    /**
+     * Lean listing of what a bin holds, for scan-driven picking.
+     *
+     * @param status optional status filter; all statuses when blank
+     */
+    public List<BatchLocationEntry> findInBin(UUID binId, String status, boolean includeProduct, int limit) {
+        return stockBatchLocationRepository.findInBin(binId, optionalStatus(status), includeProduct, checkLookupLimit(limit));
+    }
+
+    /**
+     * Lean listing of a warehouse's batches.
+     *
+     * @param status optional status filter; all statuses when blank
+     */
+    public List<BatchLocationEntry> findInLocation(UUID warehouseId, String status, boolean includeProduct, int limit) {
+        return stockBatchLocationRepository.findInWarehouse(warehouseId, optionalStatus(status), includeProduct,
+                checkLookupLimit(limit));
+    }
+
+    private static BatchStatus optionalStatus(String status) {
+        return status == null || status.isBlank() ? null : StockBatchService.parseStatus(status, "status");
+    }
+
+    private static int checkLookupLimit(int limit) {
+        if (limit < 1 || limit > MAX_LOOKUP_LIMIT) {
+            throw new InvalidRequestException("limit must be between 1 and " + MAX_LOOKUP_LIMIT);
+        }
+        return limit;
+    }
+}
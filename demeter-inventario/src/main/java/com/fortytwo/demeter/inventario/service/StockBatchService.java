@@ -2,11 +2,22 @@ package com.fortytwo.demeter.inventario.service;
 
 import com.fortytwo.demeter.common.dto.PagedResponse;
 import com.fortytwo.demeter.common.exception.EntityNotFoundException;
+import com.fortytwo.demeter.common.exception.InvalidRequestException;
+import com.fortytwo.demeter.common.model.UuidV7Generator;
+import com.fortytwo.demeter.common.retry.RetryOnConflict;
+import com.fortytwo.demeter.inventario.dto.AttributeFilter;
+import com.fortytwo.demeter.inventario.dto.BatchLedgerEntry;
+import com.fortytwo.demeter.inventario.dto.BatchLedgerPage;
+import com.fortytwo.demeter.inventario.dto.BatchStatusTransitionRequest;
+import com.fortytwo.demeter.inventario.dto.BatchStatusTransitionResult;
 import com.fortytwo.demeter.inventario.dto.CreateStockBatchRequest;
+import com.fortytwo.demeter.inventario.dto.PromotedAttribute;
 import com.fortytwo.demeter.inventario.dto.StockBatchDTO;
 import com.fortytwo.demeter.inventario.dto.UpdateStockBatchRequest;
 import com.fortytwo.demeter.inventario.model.BatchStatus;
+import com.fortytwo.demeter.inventario.model.PromotedAttributeType;
 import com.fortytwo.demeter.inventario.model.StockBatch;
+import com.fortytwo.demeter.inventario.repository.StockBatchMovementRepository;
 import com.fortytwo.demeter.inventario.repository.StockBatchRepository;
 import com.fortytwo.demeter.productos.repository.ProductRepository;
 import io.quarkus.panache.common.Page;
@@ -14,21 +25,60 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @ApplicationScoped
 public class StockBatchService {
 
+    private static final String ATTRIBUTE_SORT_PREFIX = "attr.";
+    private static final int MAX_EXPIRING_WINDOW_DAYS = 365;
+    private static final int MAX_LEDGER_PAGE_SIZE = 200;
+
+    /** Sortable entity fields and their columns. */
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "createdAt", "created_at",
+            "batchCode", "batch_code",
+            "quantity", "quantity",
+            "entryDate", "entry_date",
+            "expiryDate", "expiry_date");
+
     @Inject
     StockBatchRepository stockBatchRepository;
 
+    @Inject
+    StockBatchMovementRepository stockBatchMovementRepository;
+
     @Inject
     ProductRepository productRepository;
 
-    public PagedResponse<StockBatchDTO> findAll(int page, int size, UUID productId, UUID locationId, String status) {
+    @Inject
+    PromotedAttributeService promotedAttributeService;
+
+    public PagedResponse<StockBatchDTO> findAll(int page, int size, UUID productId, UUID locationId, String status,
+                                                AttributeFilter attributes, String sort) {
+        boolean desc = sort != null && sort.startsWith("-");
+        String field = sort == null ? "" : desc ? sort.substring(1) : sort;
+
+        if ((attributes != null && !attributes.isEmpty()) || field.startsWith(ATTRIBUTE_SORT_PREFIX)) {
+            AttributeFilter filter = attributes != null ? attributes : new AttributeFilter(Map.of(), List.of());
+            checkRangeKeys(filter);
+            Map<String, PromotedAttribute> promoted = promotedAttributeService.resolveForCurrentTenant();
+            BatchStatus batchStatus = status != null && !status.isBlank() ? parseStatus(status, "status") : null;
+            long total = stockBatchRepository.countByAttributes(productId, locationId, batchStatus, filter, promoted);
+            var batches = stockBatchRepository.findByAttributes(productId, locationId, batchStatus, filter, promoted,
+                    nativeOrderBy(field, desc, promoted), page, size);
+            return PagedResponse.of(batches.stream().map(StockBatchDTO::from).toList(), page, size, total);
+        }
+
         StringBuilder query = new StringBuilder("1=1");
         List<Object> params = new ArrayList<>();
         int paramIndex = 1;
@@ -42,15 +92,101 @@ public class StockBatchService {
         }
         if (status != null && !status.isBlank()) {
             query.append(" and status = ?").append(paramIndex++);
-            params.add(BatchStatus.valueOf(status));
+            params.add(parseStatus(status, "status"));
         }
         String jpql = query.toString();
+        String orderBy = SORT_COLUMNS.containsKey(field) ? field + (desc ? " desc" : " asc") : "createdAt desc";
         long total = stockBatchRepository.count(jpql, params.toArray());
-        var batches = stockBatchRepository.find(jpql + " order by createdAt desc", params.toArray())
+        var batches = stockBatchRepository.find(jpql + " order by " + orderBy, params.toArray())
                 .page(Page.of(page, size)).list();
         return PagedResponse.of(batches.stream().map(StockBatchDTO::from).toList(), page, size, total);
     }
 
+    /**
+     * Ranges are only offered on keys the tenant declares as NUMERIC promoted attributes;
+     * the declaration counts even while its index is still building.
+     */
+    private void checkRangeKeys(AttributeFilter filter) {
+        if (filter.ranges().isEmpty()) {
+            return;
+        }
+        Set<String> numeric = new HashSet<>();
+        for (PromotedAttribute attribute : promotedAttributeService.findForCurrentTenant()) {
+            if (attribute.type() == PromotedAttributeType.NUMERIC) {
+                numeric.add(attribute.key());
+            }
+        }
+        for (AttributeFilter.Range range : filter.ranges()) {
+            if (!numeric.contains(range.key())) {
+                throw new InvalidRequestException("attrRange: '" + range.key() + "' is not a declared numeric attribute");
+            }
+        }
+    }
+
+    /** Only promoted attributes are sortable; anything unknown falls back to the default order. */
+    private static String nativeOrderBy(String field, boolean desc, Map<String, PromotedAttribute> promoted) {
+        String direction = desc ? " desc" : " asc";
+        if (field.startsWith(ATTRIBUTE_SORT_PREFIX)) {
+            PromotedAttribute attribute = promoted.get(field.substring(ATTRIBUTE_SORT_PREFIX.length()));
+            return attribute != null ? attribute.expression("b") + direction + ", b.id" : "b.created_at desc";
+        }
+        String column = SORT_COLUMNS.get(field);
+        return column != null ? "b." + column + direction : "b.created_at desc";
+    }
+
+    public PagedResponse<StockBatchDTO> findExpiringWithin(int days, int page, int size) {
+        if (days < 0 || days > MAX_EXPIRING_WINDOW_DAYS) {
+            throw new InvalidRequestException("days must be between 0 and " + MAX_EXPIRING_WINDOW_DAYS);
+        }
+        long total = stockBatchRepository.countExpiringWithin(days);
+        var batches = stockBatchRepository.findExpiringWithin(days, page, size);
+        return PagedResponse.of(batches.stream().map(StockBatchDTO::from).toList(), page, size, total);
+    }
+
+    /**
+     * Keyset-paginated movement ledger of a batch. The cursor only carries the position;
+     * the balance reached there is derived again from the batch's lines, so a client
+     * cannot make a page start from a balance of its choosing.
+     */
+    public BatchLedgerPage findLedger(UUID batchId, String cursor, int size) {
+        if (size < 1 || size > MAX_LEDGER_PAGE_SIZE) {
+            throw new InvalidRequestException("size must be between 1 and " + MAX_LEDGER_PAGE_SIZE);
+        }
+        if (stockBatchRepository.findByIdOptional(batchId).isEmpty()) {
+            throw new EntityNotFoundException("StockBatch", batchId);
+        }
+
+        List<BatchLedgerEntry> entries;
+        if (cursor == null || cursor.isBlank()) {
+            entries = stockBatchMovementRepository.findLedgerPage(batchId, null, null,
+                    stockBatchMovementRepository.ledgerOpeningBalance(batchId), size + 1);
+        } else {
+            LedgerCursor after = LedgerCursor.decode(cursor);
+            entries = stockBatchMovementRepository.findLedgerPage(batchId, after.performedAt(), after.lineId(),
+                    ledgerBalanceAfter(batchId, after), size + 1);
+        }
+
+        if (entries.size() <= size) {
+            return new BatchLedgerPage(entries, null);
+        }
+        List<BatchLedgerEntry> pageEntries = entries.subList(0, size);
+        BatchLedgerEntry last = pageEntries.getLast();
+        return new BatchLedgerPage(List.copyOf(pageEntries),
+                new LedgerCursor(last.performedAt(), last.lineId()).encode());
+    }
+
+    /** Null when the balance cannot be derived; a cursor off this batch's ledger is a 400. */
+    private BigDecimal ledgerBalanceAfter(UUID batchId, LedgerCursor after) {
+        boolean onLedger = stockBatchMovementRepository.findByIdOptional(after.lineId())
+                .filter(line -> line.getBatch().getId().equals(batchId)
+                        && line.getMovementPerformedAt().equals(after.performedAt()))
+                .isPresent();
+        if (!onLedger) {
+            throw new InvalidRequestException("Invalid ledger cursor");
+        }
+        return stockBatchMovementRepository.ledgerBalanceAfter(batchId, after.performedAt(), after.lineId());
+    }
+
     public StockBatchDTO findById(UUID id) {
         StockBatch batch = stockBatchRepository.findByIdOptional(id)
                 .orElseThrow(() -> new EntityNotFoundException("StockBatch", id));
@@ -79,6 +215,7 @@ public class StockBatchService {
                 .orElseThrow(() -> new EntityNotFoundException("Product", request.productId())));
         batch.setBatchCode(request.batchCode());
         batch.setQuantity(request.quantity());
+        batch.setInitialQuantity(request.quantity());
         batch.setUnit(request.unit());
         batch.setWarehouseId(request.warehouseId());
         batch.setBinId(request.binId());
@@ -91,6 +228,7 @@ public class StockBatchService {
     }
 
     @Transactional
+    @RetryOnConflict
     public StockBatchDTO update(UUID id, UpdateStockBatchRequest request) {
         StockBatch batch = stockBatchRepository.findByIdOptional(id)
                 .orElseThrow(() -> new EntityNotFoundException("StockBatch", id));
@@ -105,21 +243,80 @@ public class StockBatchService {
         return StockBatchDTO.from(batch);
     }
 
+    /**
+     * Moves all selected batches to the requested status in one statement. Batches whose
+     * current status does not allow the transition (see {@link BatchStatus#allowedFrom()})
+     * are left as they are and reported as skipped.
+     */
     @Transactional
-    public void updateQuantity(UUID id, BigDecimal newQuantity) {
-        StockBatch batch = stockBatchRepository.findByIdOptional(id)
-                .orElseThrow(() -> new EntityNotFoundException("StockBatch", id));
-        batch.setQuantity(newQuantity);
+    public BatchStatusTransitionResult transitionStatus(BatchStatusTransitionRequest request) {
+        BatchStatus target = parseStatus(request.status(), "status");
+        boolean byIds = request.batchIds() != null && !request.batchIds().isEmpty();
+        if (!byIds && request.productId() == null && request.locationId() == null) {
+            throw new InvalidRequestException("Select batches by batchIds, productId or locationId");
+        }
+        Set<BatchStatus> from = EnumSet.noneOf(BatchStatus.class);
+        from.addAll(target.allowedFrom());
+        if (from.isEmpty()) {
+            throw new InvalidRequestException("Batches cannot be moved to " + target + " manually");
+        }
+        if (request.fromStatus() != null && !request.fromStatus().isBlank()) {
+            from.retainAll(EnumSet.of(parseStatus(request.fromStatus(), "fromStatus")));
+        }
+
+        UUID transitionId = UuidV7Generator.next();
+        List<UUID> transitioned = from.isEmpty()
+                ? List.of()
+                : stockBatchRepository.transitionStatus(request.batchIds(), request.productId(), request.locationId(),
+                        from, target, transitionId, request.notes(), request.performedBy());
+
+        List<UUID> skipped = List.of();
+        if (byIds) {
+            Set<UUID> done = new HashSet<>(transitioned);
+            skipped = request.batchIds().stream().distinct().filter(id -> !done.contains(id)).toList();
+        }
+        return new BatchStatusTransitionResult(transitionId, target.name(), transitioned.size(), transitioned, skipped);
+    }
 
-        if (newQuantity.compareTo(BigDecimal.ZERO) <= 0) {
-            batch.setStatus(BatchStatus.DEPLETED);
+    static BatchStatus parseStatus(String value, String field) {
+        try {
+            return BatchStatus.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException(field + ": unknown batch status " + value);
         }
     }
 
+    @Transactional
+    public void updateQuantity(UUID id, BigDecimal newQuantity) {
+        stockBatchRepository.overwriteQuantity(id, newQuantity)
+                .orElseThrow(() -> new EntityNotFoundException("StockBatch", id));
+    }
+
     @Transactional
     public void delete(UUID id) {
         StockBatch batch = stockBatchRepository.findByIdOptional(id)
                 .orElseThrow(() -> new EntityNotFoundException("StockBatch", id));
         stockBatchRepository.delete(batch);
     }
+
+    /** Opaque ledger position: the last line returned. */
+    private record LedgerCursor(Instant performedAt, UUID lineId) {
+
+        String encode() {
+            String raw = performedAt + "|" + lineId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static LedgerCursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("expected 2 parts");
+                }
+                return new LedgerCursor(Instant.parse(parts[0]), UUID.fromString(parts[1]));
+            } catch (RuntimeException e) {
+                throw new InvalidRequestException("Invalid ledger cursor");
+            }
+        }
+    }
 }
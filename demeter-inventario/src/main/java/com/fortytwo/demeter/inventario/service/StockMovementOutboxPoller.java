@@ -0,0 +1,233 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fortytwo.demeter.inventario.event.OutboxConsumer;
+import com.fortytwo.demeter.inventario.event.OutboxConsumerRegistration;
+import com.fortytwo.demeter.inventario.event.StockMovementEvent;
+import com.fortytwo.demeter.inventario.event.StockMovementEventBatch;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Delivers the stock movement outbox (V17) to {@link OutboxConsumer} observers, one
+ * consumer per {@link OutboxConsumerRegistration}.
+ *
+ * <p>Each consumer drains on its own: its offset row is locked with
+ * {@code FOR UPDATE SKIP LOCKED}, the next batch after the offset is fired at its
+ * observers, and the offset is advanced in the same transaction. Instances therefore
+ * drain different consumers concurrently and never deliver one consumer's events out
+ * of order; an observer that throws rolls the offset back and gets the batch again on
+ * the next poll (at-least-once). Rows every consumer has passed are pruned.
+ *
+ * <p>Runs over plain JDBC: the outbox spans tenants and there is no request.
+ */
+@ApplicationScoped
+public class StockMovementOutboxPoller {
+
+    private static final Logger log = LoggerFactory.getLogger(StockMovementOutboxPoller.class);
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    Event<StockMovementEventBatch> events;
+
+    @Inject
+    @Any
+    Instance<OutboxConsumerRegistration> registrations;
+
+    @ConfigProperty(name = "demeter.inventory.outbox.batch-size", defaultValue = "200")
+    int batchSize;
+
+    private volatile List<String> consumers;
+
+    @Scheduled(identity = "stock-movement-outbox",
+            every = "{demeter.inventory.outbox.poll-interval}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledDrain() {
+        try {
+            drain();
+        } catch (SQLException e) {
+            log.error("Stock movement outbox drain failed", e);
+        }
+    }
+
+    /**
+     * @return the number of events delivered across all consumers
+     */
+    public int drain() throws SQLException {
+        int delivered = 0;
+        for (String consumer : consumers()) {
+            delivered += drainConsumer(consumer);
+        }
+        prune();
+        return delivered;
+    }
+
+    /** Consumer names declared by {@link OutboxConsumerRegistration} beans. */
+    public List<String> consumers() {
+        if (consumers == null) {
+            consumers = registrations.stream()
+                    .map(OutboxConsumerRegistration::name)
+                    .distinct()
+                    .sorted()
+                    .toList();
+            if (consumers.isEmpty()) {
+                log.warn("No stock movement outbox consumers are registered; the outbox will not be drained");
+            } else {
+                log.info("Stock movement outbox consumers: {}", consumers);
+            }
+        }
+        return consumers;
+    }
+
+    private int drainConsumer(String consumer) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO outbox_consumer_offsets (consumer) VALUES (?) ON CONFLICT DO NOTHING")) {
+                ps.setString(1, consumer);
+                ps.executeUpdate();
+            }
+
+            int delivered = 0;
+            int fetched;
+            do {
+                fetched = deliverBatch(conn, consumer);
+                delivered += Math.max(fetched, 0);
+            } while (fetched == batchSize);
+            return delivered;
+        }
+    }
+
+    /**
+     * @return events delivered, or -1 if another instance holds the consumer or the
+     *         observer failed
+     */
+    private int deliverBatch(Connection conn, String consumer) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            String lastXactId;
+            long lastId;
+            try (PreparedStatement ps = conn.prepareStatement("""
+                    SELECT last_xact_id::text, last_id FROM outbox_consumer_offsets
+                     WHERE consumer = ?
+                       FOR UPDATE SKIP LOCKED
+                    """)) {
+                ps.setString(1, consumer);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.rollback();
+                        return -1;
+                    }
+                    lastXactId = rs.getString(1);
+                    lastId = rs.getLong(2);
+                }
+            }
+
+            List<StockMovementEvent> batch = new ArrayList<>();
+            String batchXactId = lastXactId;
+            // Rows of transactions still running (or younger than the oldest one) are left
+            // for a later poll, so nothing can commit behind the offset
+            try (PreparedStatement ps = conn.prepareStatement("""
+                    SELECT id, xact_id::text, tenant_id, movement_id, movement_type, quantity,
+                           reference_id, reference_type, performed_at
+                      FROM stock_movement_outbox
+                     WHERE (xact_id, id) > (CAST(? AS xid8), ?)
+                       AND xact_id < pg_snapshot_xmin(pg_current_snapshot())
+                     ORDER BY xact_id, id
+                     LIMIT ?
+                    """)) {
+                ps.setString(1, lastXactId);
+                ps.setLong(2, lastId);
+                ps.setInt(3, batchSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        batchXactId = rs.getString(2);
+                        batch.add(new StockMovementEvent(
+                                rs.getLong(1),
+                                rs.getString(3),
+                                rs.getObject(4, UUID.class),
+                                rs.getString(5),
+                                rs.getBigDecimal(6),
+                                rs.getObject(7, UUID.class),
+                                rs.getString(8),
+                                rs.getObject(9, OffsetDateTime.class).toInstant()));
+                    }
+                }
+            }
+            if (batch.isEmpty()) {
+                conn.commit();
+                return 0;
+            }
+
+            try {
+                events.select(OutboxConsumer.Literal.of(consumer)).fire(new StockMovementEventBatch(consumer, batch));
+            } catch (RuntimeException e) {
+                conn.rollback();
+                log.error("Outbox consumer {} failed on {} event(s) from sequence {}; will retry",
+                        consumer, batch.size(), batch.getFirst().sequence(), e);
+                return -1;
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement("""
+                    UPDATE outbox_consumer_offsets
+                       SET last_xact_id = CAST(? AS xid8), last_id = ?, updated_at = now()
+                     WHERE consumer = ?
+                    """)) {
+                ps.setString(1, batchXactId);
+                ps.setLong(2, batch.getLast().sequence());
+                ps.setString(3, consumer);
+                ps.executeUpdate();
+            }
+            conn.commit();
+            return batch.size();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /** Deletes rows every known consumer has passed. */
+    private void prune() throws SQLException {
+        List<String> names = consumers();
+        if (names.isEmpty()) {
+            return;
+        }
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("""
+                     DELETE FROM stock_movement_outbox o
+                      USING (SELECT last_xact_id, last_id FROM outbox_consumer_offsets
+                              WHERE consumer = ANY(?)
+                              ORDER BY last_xact_id, last_id
+                              LIMIT 1) slowest
+                      WHERE (o.xact_id, o.id) <= (slowest.last_xact_id, slowest.last_id)
+                        AND (SELECT count(*) FROM outbox_consumer_offsets WHERE consumer = ANY(?)) = ?
+                     """)) {
+            var array = conn.createArrayOf("varchar", names.toArray());
+            ps.setArray(1, array);
+            ps.setArray(2, array);
+            ps.setInt(3, names.size());
+            int pruned = ps.executeUpdate();
+            if (pruned > 0) {
+                log.debug("Pruned {} delivered outbox row(s)", pruned);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.fortytwo.demeter.inventario.service;
+
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Keeps monthly {@code stock_movements} partitions provisioned ahead of time and
+ * splits any rows that fell into the DEFAULT partition (e.g. backdated movements)
+ * into their own month. The partitioning logic lives in the database function
+ * {@code ensure_stock_movement_partitions} (V10), which serializes concurrent callers,
+ * so every instance can run this job.
+ *
+ * <p>Runs over plain JDBC: the job is tenant-agnostic and has no request to resolve a
+ * tenant from.
+ */
+@ApplicationScoped
+public class StockMovementPartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(StockMovementPartitionMaintenance.class);
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @ConfigProperty(name = "demeter.inventory.movement-partitions.months-ahead", defaultValue = "3")
+    int monthsAhead;
+
+    @Scheduled(identity = "stock-movement-partitions",
+            every = "{demeter.inventory.movement-partitions.check-interval}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledCheck() {
+        try {
+            ensurePartitions();
+        } catch (SQLException e) {
+            log.error("stock_movements partition maintenance failed", e);
+        }
+    }
+
+    /**
+     * @return the number of partitions created
+     */
+    public int ensurePartitions() throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT ensure_stock_movement_partitions(?)")) {
+            ps.setInt(1, monthsAhead);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                int created = rs.getInt(1);
+                if (created > 0) {
+                    log.info("Created {} stock_movements partition(s)", created);
+                }
+                return created;
+            }
+        }
+    }
+}
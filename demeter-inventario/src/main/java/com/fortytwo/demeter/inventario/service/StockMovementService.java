@@ -2,33 +2,55 @@ package com.fortytwo.demeter.inventario.service;
 
 import com.fortytwo.demeter.common.dto.PagedResponse;
 import com.fortytwo.demeter.common.exception.EntityNotFoundException;
+import com.fortytwo.demeter.common.exception.InsufficientStockException;
+import com.fortytwo.demeter.common.exception.InvalidRequestException;
+import com.fortytwo.demeter.inventario.dto.BulkStockMovementResult;
 import com.fortytwo.demeter.inventario.dto.CreateStockMovementRequest;
 import com.fortytwo.demeter.inventario.dto.StockMovementDTO;
-import com.fortytwo.demeter.inventario.model.BatchStatus;
+import com.fortytwo.demeter.inventario.model.LineDirection;
 import com.fortytwo.demeter.inventario.model.MovementType;
 import com.fortytwo.demeter.inventario.model.StockBatch;
 import com.fortytwo.demeter.inventario.model.StockBatchMovement;
 import com.fortytwo.demeter.inventario.model.StockMovement;
 import com.fortytwo.demeter.inventario.repository.StockBatchMovementRepository;
 import com.fortytwo.demeter.inventario.repository.StockBatchRepository;
+import com.fortytwo.demeter.inventario.repository.StockBatchRepository.QuantityUpdate;
 import com.fortytwo.demeter.inventario.repository.StockMovementRepository;
+import com.fortytwo.demeter.inventario.repository.StockReservationRepository;
+import com.fortytwo.demeter.inventario.repository.StockReservationRepository.BatchHolds;
 import io.quarkus.panache.common.Page;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class StockMovementService {
 
     private static final Logger log = LoggerFactory.getLogger(StockMovementService.class);
 
+    /** Bulk inserts are flushed and the session cleared every this many movements. */
+    private static final int BULK_FLUSH_INTERVAL = 500;
+
     @Inject
     StockMovementRepository stockMovementRepository;
 
@@ -38,6 +60,12 @@ public class StockMovementService {
     @Inject
     StockBatchMovementRepository stockBatchMovementRepository;
 
+    @Inject
+    StockReservationRepository stockReservationRepository;
+
+    @Inject
+    Validator validator;
+
     public PagedResponse<StockMovementDTO> findAll(int page, int size, UUID batchId, String type, Instant startDate, Instant endDate) {
         StringBuilder query = new StringBuilder("1=1");
         List<Object> params = new ArrayList<>();
@@ -89,30 +117,26 @@ public class StockMovementService {
     @Transactional
     public StockMovementDTO create(CreateStockMovementRequest request) {
         MovementType movementType = MovementType.valueOf(request.movementType());
+        if (movementType.isSystemOnly()) {
+            throw new InvalidRequestException(movementType + " movements are recorded by the system");
+        }
+        if (movementType.lineDirection() == LineDirection.OUT) {
+            Map<UUID, BigDecimal> debits = new HashMap<>();
+            request.batchQuantities().forEach(bq -> debits.merge(bq.batchId(), bq.quantity(), BigDecimal::add));
+            requireAvailable(debits, request.referenceType(), request.referenceId());
+        }
 
-        StockMovement movement = new StockMovement();
-        movement.setMovementType(movementType);
-        movement.setQuantity(request.quantity());
-        movement.setUnit(request.unit());
-        movement.setReferenceId(request.referenceId());
-        movement.setReferenceType(request.referenceType());
-        movement.setNotes(request.notes());
-        movement.setPerformedBy(request.performedBy());
-        movement.setPerformedAt(request.performedAt() != null ? request.performedAt() : Instant.now());
-
+        StockMovement movement = newMovement(request, movementType);
         stockMovementRepository.persist(movement);
 
-        for (CreateStockMovementRequest.BatchQuantity bq : request.batchQuantities()) {
-            StockBatch batch = stockBatchRepository.findByIdOptional(bq.batchId())
-                    .orElseThrow(() -> new EntityNotFoundException("StockBatch", bq.batchId()));
-
-            StockBatchMovement batchMovement = new StockBatchMovement();
-            batchMovement.setBatch(batch);
-            batchMovement.setMovement(movement);
-            batchMovement.setQuantity(bq.quantity());
-            stockBatchMovementRepository.persist(batchMovement);
+        // Lock rows in a stable order so multi-batch movements cannot deadlock each other
+        List<CreateStockMovementRequest.BatchQuantity> ordered = request.batchQuantities().stream()
+                .sorted(Comparator.comparing(CreateStockMovementRequest.BatchQuantity::batchId))
+                .toList();
 
-            applyQuantityChange(batch, movementType, bq.quantity());
+        for (CreateStockMovementRequest.BatchQuantity bq : ordered) {
+            QuantityUpdate update = applyQuantityChange(bq.batchId(), movementType, bq.quantity());
+            persistBatchMovement(movement, bq, update.version());
         }
 
         log.info("Created stock movement type={} with {} batch entries",
@@ -121,23 +145,328 @@ public class StockMovementService {
         return StockMovementDTO.from(movement);
     }
 
-    private void applyQuantityChange(StockBatch batch, MovementType movementType, BigDecimal movementQuantity) {
-        BigDecimal currentQuantity = batch.getQuantity();
-        BigDecimal newQuantity;
+    /**
+     * Applies the movement to the batch with a single {@code UPDATE ... RETURNING} so
+     * concurrent movements on the same batch never lose updates.
+     */
+    private QuantityUpdate applyQuantityChange(UUID batchId, MovementType movementType, BigDecimal movementQuantity) {
+        Optional<QuantityUpdate> newQuantity = movementType == MovementType.AJUSTE
+                ? stockBatchRepository.overwriteQuantity(batchId, movementQuantity)
+                : stockBatchRepository.applyQuantityDelta(batchId, signedDelta(movementType, movementQuantity));
+
+        QuantityUpdate update = newQuantity.orElseThrow(() -> new EntityNotFoundException("StockBatch", batchId));
+        if (update.quantity().compareTo(BigDecimal.ZERO) <= 0) {
+            log.info("Batch {} depleted after movement", batchId);
+        }
+        return update;
+    }
+
+    /**
+     * Locks the batches a debit takes from and refuses it if any batch has less than
+     * that left once other documents' unexpired reservations are set aside; holds of
+     * {@code referenceType/referenceId} itself do not count against it.
+     *
+     * @throws InsufficientStockException listing every short batch
+     */
+    private void requireAvailable(Map<UUID, BigDecimal> debits, String referenceType, UUID referenceId) {
+        Map<UUID, BigDecimal> onHand = stockBatchRepository.lockAllById(debits.keySet()).stream()
+                .collect(Collectors.toMap(StockBatch::getId, StockBatch::getQuantity));
+        BatchHolds holds = stockReservationRepository.findHolds(onHand.keySet());
+        Map<UUID, BigDecimal> shortfalls = new TreeMap<>();
+        for (Map.Entry<UUID, BigDecimal> debit : debits.entrySet()) {
+            BigDecimal quantity = onHand.get(debit.getKey());
+            if (quantity == null) {
+                throw new EntityNotFoundException("StockBatch", debit.getKey());
+            }
+            BigDecimal available = quantity.subtract(holds.heldForOthers(debit.getKey(), referenceType, referenceId));
+            if (available.compareTo(debit.getValue()) < 0) {
+                shortfalls.put(debit.getKey(), debit.getValue().subtract(available.max(BigDecimal.ZERO)));
+            }
+        }
+        if (!shortfalls.isEmpty()) {
+            throw insufficient(shortfalls);
+        }
+    }
+
+    /**
+     * Creates many movements in one transaction. Each item is validated on its own and
+     * rejected items are reported by index without affecting the rest; accepted items
+     * are applied together:
+     * <ul>
+     *   <li>all referenced batches are loaded and row-locked with a single query,</li>
+     *   <li>debits are checked against each batch's quantity so far in the upload, less
+     *       what other documents hold, and items that do not fit are rejected,</li>
+     *   <li>quantity changes are folded per batch (in request order, so an AJUSTE resets
+     *       the running delta) and written with one set-based UPDATE,</li>
+     *   <li>movement rows go out through Hibernate JDBC batching.</li>
+     * </ul>
+     * A database failure still rolls back the whole upload.
+     */
+    @Transactional
+    public BulkStockMovementResult createBulk(List<CreateStockMovementRequest> requests) {
+        BulkStockMovementResult.ItemResult[] results = new BulkStockMovementResult.ItemResult[requests.size()];
+        Map<Integer, MovementType> candidates = new LinkedHashMap<>();
+        Set<UUID> referencedBatchIds = new HashSet<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            CreateStockMovementRequest request = requests.get(i);
+            String error = validate(request);
+            if (error != null) {
+                results[i] = BulkStockMovementResult.ItemResult.failed(i, error);
+                continue;
+            }
+            candidates.put(i, MovementType.valueOf(request.movementType()));
+            request.batchQuantities().forEach(bq -> referencedBatchIds.add(bq.batchId()));
+        }
+
+        Map<UUID, BigDecimal> projected = new HashMap<>();
+        stockBatchRepository.lockAllById(referencedBatchIds).forEach(b -> projected.put(b.getId(), b.getQuantity()));
+        Set<UUID> existingBatchIds = projected.keySet();
+        BatchHolds holds = stockReservationRepository.findHolds(existingBatchIds);
+
+        Map<UUID, BigDecimal> deltas = new HashMap<>();
+        Map<UUID, BigDecimal> overwrites = new HashMap<>();
+        List<Integer> accepted = new ArrayList<>();
+        for (Map.Entry<Integer, MovementType> candidate : candidates.entrySet()) {
+            int index = candidate.getKey();
+            MovementType movementType = candidate.getValue();
+            CreateStockMovementRequest request = requests.get(index);
+
+            Optional<UUID> missing = request.batchQuantities().stream()
+                    .map(CreateStockMovementRequest.BatchQuantity::batchId)
+                    .filter(id -> !existingBatchIds.contains(id))
+                    .findFirst();
+            if (missing.isPresent()) {
+                results[index] = BulkStockMovementResult.ItemResult.failed(index,
+                        new EntityNotFoundException("StockBatch", missing.get()).getMessage());
+                continue;
+            }
+            String shortage = project(movementType, request, projected, holds);
+            if (shortage != null) {
+                results[index] = BulkStockMovementResult.ItemResult.failed(index, shortage);
+                continue;
+            }
+
+            foldQuantityChanges(movementType, request, deltas, overwrites);
+            accepted.add(index);
+        }
+
+        Map<UUID, QuantityUpdate> newQuantities = stockBatchRepository.applyQuantityChanges(deltas, overwrites);
+        long depleted = newQuantities.values().stream().filter(u -> u.quantity().compareTo(BigDecimal.ZERO) <= 0).count();
+
+        EntityManager em = stockMovementRepository.getEntityManager();
+        int written = 0;
+        for (int index : accepted) {
+            CreateStockMovementRequest request = requests.get(index);
+            StockMovement movement = persistWithLines(request, candidates.get(index), newQuantities);
+            results[index] = BulkStockMovementResult.ItemResult.ok(index, movement.getId());
+
+            // Keep the persistence context small; row locks taken above are held until commit
+            if (++written % BULK_FLUSH_INTERVAL == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+
+        log.info("Bulk stock movements: {} accepted, {} rejected, {} batches updated ({} depleted)",
+                accepted.size(), requests.size() - accepted.size(), newQuantities.size(), depleted);
+
+        return BulkStockMovementResult.of(Arrays.asList(results));
+    }
+
+    /**
+     * Records movements for another service within its transaction, all or nothing.
+     * Quantity changes are folded per batch and written set-based, and movement rows go
+     * out through JDBC batching, so the statement count does not grow with each line.
+     * Stock is only taken from batches that still have enough no reservation holds (the
+     * caller releases its own first): net decrements go through
+     * {@link StockBatchRepository#decrementIfAvailable}, which checks and deducts in one
+     * statement, and if any batch falls short every short batch is reported and the
+     * caller's transaction rolls back. AJUSTE overwrites cannot be checked that way and
+     * are not accepted.
+     *
+     * @throws InsufficientStockException when a batch holds less than is taken from it
+     * @throws EntityNotFoundException    when a batch does not exist
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void createAll(List<CreateStockMovementRequest> requests) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        List<MovementType> movementTypes = new ArrayList<>(requests.size());
+        Map<UUID, BigDecimal> deltas = new HashMap<>();
+        for (CreateStockMovementRequest request : requests) {
+            MovementType movementType = MovementType.valueOf(request.movementType());
+            if (movementType.isSystemOnly() || movementType == MovementType.AJUSTE) {
+                throw new IllegalArgumentException(movementType + " movements cannot be recorded together");
+            }
+            movementTypes.add(movementType);
+            foldQuantityChanges(movementType, request, deltas, Map.of());
+        }
+
+        Map<UUID, BigDecimal> decrements = new HashMap<>();
+        Map<UUID, BigDecimal> increments = new HashMap<>();
+        deltas.forEach((batchId, delta) -> {
+            if (delta.signum() < 0) {
+                decrements.put(batchId, delta.negate());
+            } else {
+                increments.put(batchId, delta);
+            }
+        });
+        Map<UUID, QuantityUpdate> applied = new HashMap<>(stockBatchRepository.decrementIfAvailable(decrements));
+        if (applied.size() < decrements.size()) {
+            throw shortfall(decrements, applied.keySet());
+        }
+        applied.putAll(stockBatchRepository.applyQuantityChanges(increments, Map.of()));
+        deltas.keySet().stream()
+                .filter(id -> !applied.containsKey(id))
+                .findFirst()
+                .ifPresent(id -> {
+                    throw new EntityNotFoundException("StockBatch", id);
+                });
 
-        switch (movementType) {
-            case ENTRADA -> newQuantity = currentQuantity.add(movementQuantity);
-            case MUERTE, VENTA -> newQuantity = currentQuantity.subtract(movementQuantity);
-            case TRASPLANTE -> newQuantity = currentQuantity.subtract(movementQuantity);
-            case AJUSTE -> newQuantity = movementQuantity;
-            default -> throw new IllegalArgumentException("Unknown movement type: " + movementType);
+        for (int i = 0; i < requests.size(); i++) {
+            persistWithLines(requests.get(i), movementTypes.get(i), applied);
         }
 
-        batch.setQuantity(newQuantity);
+        log.debug("Recorded {} stock movement(s) over {} batch(es)", requests.size(), applied.size());
+    }
+
+    /** Builds the error for decrements that were not applied; only reached on failure. */
+    private RuntimeException shortfall(Map<UUID, BigDecimal> decrements, Set<UUID> applied) {
+        Set<UUID> failed = new HashSet<>(decrements.keySet());
+        failed.removeAll(applied);
+        Map<UUID, BigDecimal> onHand = stockBatchRepository.list("id in ?1", failed).stream()
+                .collect(Collectors.toMap(StockBatch::getId, StockBatch::getQuantity));
+        BatchHolds holds = stockReservationRepository.findHolds(onHand.keySet());
+
+        Map<UUID, BigDecimal> shortfalls = new TreeMap<>();
+        for (UUID batchId : failed) {
+            BigDecimal quantity = onHand.get(batchId);
+            if (quantity == null) {
+                return new EntityNotFoundException("StockBatch", batchId);
+            }
+            BigDecimal available = quantity.subtract(holds.heldForOthers(batchId, null, null)).max(BigDecimal.ZERO);
+            shortfalls.put(batchId, decrements.get(batchId).subtract(available));
+        }
+        return insufficient(shortfalls);
+    }
+
+    private static InsufficientStockException insufficient(Map<UUID, BigDecimal> shortfalls) {
+        String details = shortfalls.entrySet().stream()
+                .map(e -> "batch " + e.getKey() + " short by " + e.getValue().toPlainString())
+                .collect(Collectors.joining(", "));
+        return new InsufficientStockException("Insufficient stock: " + details, shortfalls);
+    }
+
+    /**
+     * Applies a bulk item to the running per-batch quantities if its debits fit in what
+     * each batch has left, less what documents other than the item's reference hold.
+     *
+     * @return why the item was rejected, or null when it was applied
+     */
+    private static String project(MovementType movementType, CreateStockMovementRequest request,
+                                  Map<UUID, BigDecimal> projected, BatchHolds holds) {
+        if (movementType == MovementType.AJUSTE) {
+            request.batchQuantities().forEach(bq -> projected.put(bq.batchId(), bq.quantity()));
+            return null;
+        }
+        Map<UUID, BigDecimal> changes = new LinkedHashMap<>();
+        request.batchQuantities().forEach(bq ->
+                changes.merge(bq.batchId(), signedDelta(movementType, bq.quantity()), BigDecimal::add));
+        if (movementType.lineDirection() == LineDirection.OUT) {
+            for (Map.Entry<UUID, BigDecimal> change : changes.entrySet()) {
+                BigDecimal available = projected.get(change.getKey())
+                        .subtract(holds.heldForOthers(change.getKey(), request.referenceType(), request.referenceId()));
+                if (available.add(change.getValue()).signum() < 0) {
+                    return "batchQuantities: batch " + change.getKey() + " has "
+                            + available.max(BigDecimal.ZERO).toPlainString() + " available, cannot take "
+                            + change.getValue().negate().toPlainString();
+                }
+            }
+        }
+        changes.forEach((batchId, delta) -> projected.merge(batchId, delta, BigDecimal::add));
+        return null;
+    }
+
+    /**
+     * Adds the request's effect to the per-batch changes. Requests are folded in order,
+     * so an AJUSTE resets whatever delta came before it.
+     */
+    private static void foldQuantityChanges(MovementType movementType, CreateStockMovementRequest request,
+                                            Map<UUID, BigDecimal> deltas, Map<UUID, BigDecimal> overwrites) {
+        for (CreateStockMovementRequest.BatchQuantity bq : request.batchQuantities()) {
+            if (movementType == MovementType.AJUSTE) {
+                overwrites.put(bq.batchId(), bq.quantity());
+                deltas.remove(bq.batchId());
+            } else {
+                deltas.merge(bq.batchId(), signedDelta(movementType, bq.quantity()), BigDecimal::add);
+            }
+        }
+    }
+
+    private StockMovement persistWithLines(CreateStockMovementRequest request, MovementType movementType,
+                                           Map<UUID, QuantityUpdate> updates) {
+        StockMovement movement = newMovement(request, movementType);
+        stockMovementRepository.persist(movement);
+        for (CreateStockMovementRequest.BatchQuantity bq : request.batchQuantities()) {
+            persistBatchMovement(movement, bq, updates.get(bq.batchId()).version());
+        }
+        return movement;
+    }
 
-        if (newQuantity.compareTo(BigDecimal.ZERO) <= 0) {
-            batch.setStatus(BatchStatus.DEPLETED);
-            log.info("Batch {} depleted after movement", batch.getBatchCode());
+    private String validate(CreateStockMovementRequest request) {
+        if (request == null) {
+            return "movement must not be null";
+        }
+        Set<ConstraintViolation<CreateStockMovementRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        try {
+            if (MovementType.valueOf(request.movementType()).isSystemOnly()) {
+                return "movementType: " + request.movementType() + " movements are recorded by the system";
+            }
+        } catch (IllegalArgumentException e) {
+            return "movementType: unknown value " + request.movementType();
         }
+        return null;
+    }
+
+    private StockMovement newMovement(CreateStockMovementRequest request, MovementType movementType) {
+        StockMovement movement = new StockMovement();
+        movement.setMovementType(movementType);
+        movement.setQuantity(request.quantity());
+        movement.setUnit(request.unit());
+        movement.setReferenceId(request.referenceId());
+        movement.setReferenceType(request.referenceType());
+        movement.setNotes(request.notes());
+        movement.setPerformedBy(request.performedBy());
+        movement.setPerformedAt(request.performedAt() != null ? request.performedAt() : Instant.now());
+        return movement;
+    }
+
+    private void persistBatchMovement(StockMovement movement, CreateStockMovementRequest.BatchQuantity bq,
+                                      long batchVersion) {
+        StockBatchMovement batchMovement = new StockBatchMovement();
+        batchMovement.setBatch(stockBatchRepository.getEntityManager().getReference(StockBatch.class, bq.batchId()));
+        batchMovement.setMovement(movement);
+        batchMovement.setQuantity(bq.quantity());
+        batchMovement.setDirection(movement.getMovementType().lineDirection());
+        batchMovement.setBatchVersion(batchVersion);
+        stockBatchMovementRepository.persist(batchMovement);
+    }
+
+    /** Signed quantity change for non-absolute movement types. */
+    private static BigDecimal signedDelta(MovementType movementType, BigDecimal quantity) {
+        return switch (movementType) {
+            case ENTRADA -> quantity;
+            case MUERTE, VENTA, TRASPLANTE -> quantity.negate();
+            case AJUSTE -> throw new IllegalArgumentException("AJUSTE sets an absolute quantity");
+            case VENCIMIENTO, CAMBIO_ESTADO -> throw new IllegalArgumentException(movementType + " does not change quantities");
+        };
     }
 }
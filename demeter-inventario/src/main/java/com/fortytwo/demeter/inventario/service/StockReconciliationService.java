@@ -0,0 +1,296 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fortytwo.demeter.common.model.UuidV7Generator;
+import com.fortytwo.demeter.common.tenant.TenantConnections;
+import com.fortytwo.demeter.inventario.dto.BatchDrift;
+import com.fortytwo.demeter.inventario.dto.ReconciliationSummary;
+import com.fortytwo.demeter.inventario.repository.StockBatchMovementRepository;
+import io.agroal.api.AgroalDataSource;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Recomputes what every batch of a tenant should hold from its movement ledger and
+ * reports (and optionally corrects) batches whose quantity has drifted.
+ *
+ * <p>The expected quantity is the last AJUSTE (or the batch's initial quantity when
+ * there is none) plus the signed change of every later line. Lines are ordered by
+ * the batch version each one was written with, which only moves under the batch's
+ * row lock, so a movement that waited on the lock sorts after the one holding it
+ * even if it was created first; lines that share a version (one bulk write, or rows
+ * from before V26) fall back to creation order. Batch ids are streamed from a server-side cursor and cut
+ * into chunks; each chunk runs on its own virtual thread with its own connection and
+ * transaction, at most {@code parallelism} at a time, so memory and connection use
+ * stay flat however many movements there are.
+ *
+ * <p>Correction sets the batch to the ledger value and records an AJUSTE line for it,
+ * guarded by the batch version so a batch moved since it was read is left alone.
+ *
+ * <p>Runs over plain JDBC with the tenant bound explicitly: chunk threads have no
+ * request to resolve a tenant from.
+ */
+@ApplicationScoped
+public class StockReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockReconciliationService.class);
+
+    private static final String REFERENCE_TYPE = "RECONCILIATION";
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @ConfigProperty(name = "demeter.inventory.reconciliation.chunk-size", defaultValue = "1000")
+    int chunkSize;
+
+    @ConfigProperty(name = "demeter.inventory.reconciliation.parallelism", defaultValue = "4")
+    int parallelism;
+
+    /**
+     * Reconciles every batch of {@code tenantId}, handing each drifted batch to
+     * {@code sink} as soon as its chunk is done. {@code sink} is never called
+     * concurrently.
+     */
+    public ReconciliationSummary reconcile(String tenantId, boolean correct, Consumer<BatchDrift> sink)
+            throws SQLException, InterruptedException {
+        UUID runId = UuidV7Generator.next();
+        Counters counters = new Counters();
+        Object sinkLock = new Object();
+        Consumer<BatchDrift> serialSink = drift -> {
+            synchronized (sinkLock) {
+                sink.accept(drift);
+            }
+        };
+
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Semaphore permits = new Semaphore(parallelism);
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                     Thread.ofVirtual().name("stock-reconciliation-", 0).factory());
+             Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            TenantConnections.bind(conn, tenantId);
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT id FROM stock_batches WHERE tenant_id = ? ORDER BY id")) {
+                ps.setString(1, tenantId);
+                ps.setFetchSize(chunkSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    List<UUID> chunk = new ArrayList<>(chunkSize);
+                    while (failure.get() == null && rs.next()) {
+                        chunk.add(rs.getObject(1, UUID.class));
+                        if (chunk.size() == chunkSize) {
+                            List<UUID> ids = List.copyOf(chunk);
+                            submit(executor, permits, failure,
+                                    () -> reconcileChunk(tenantId, ids, correct, runId, counters, serialSink));
+                            chunk.clear();
+                        }
+                    }
+                    if (failure.get() == null && !chunk.isEmpty()) {
+                        List<UUID> ids = List.copyOf(chunk);
+                        submit(executor, permits, failure,
+                                () -> reconcileChunk(tenantId, ids, correct, runId, counters, serialSink));
+                    }
+                }
+            }
+            conn.commit();
+        }
+
+        if (failure.get() != null) {
+            throw new SQLException("Reconciliation run " + runId + " failed", failure.get());
+        }
+        ReconciliationSummary summary = new ReconciliationSummary(runId, counters.checked.get(),
+                counters.drifted.get(), counters.corrected.get(), counters.unverifiable.get());
+        log.info("Reconciliation {} for tenant {}: {} checked, {} drifted, {} corrected, {} unverifiable",
+                runId, tenantId, summary.checked(), summary.drifted(), summary.corrected(), summary.unverifiable());
+        return summary;
+    }
+
+    /** Runs {@code chunk} on its own virtual thread once one of the permits is free. */
+    private static void submit(ExecutorService executor, Semaphore permits, AtomicReference<Exception> failure,
+                               ChunkTask chunk) throws InterruptedException {
+        permits.acquire();
+        executor.submit(() -> {
+            try {
+                chunk.run();
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    private void reconcileChunk(String tenantId, List<UUID> ids, boolean correct, UUID runId,
+                                Counters counters, Consumer<BatchDrift> sink) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                TenantConnections.bind(conn, tenantId);
+                List<Observed> drifted = new ArrayList<>();
+                Array idArray = conn.createArrayOf("uuid", ids.toArray());
+                try (PreparedStatement ps = conn.prepareStatement("""
+                        WITH lines AS (
+                            SELECT sbm.batch_id, sbm.id AS line_id, sbm.batch_version, m.created_at, sbm.direction,
+                                   %s AS change
+                              FROM stock_batch_movements sbm
+                              JOIN stock_movements m ON m.id = sbm.movement_id AND m.performed_at = sbm.movement_performed_at
+                             WHERE sbm.batch_id = ANY(?) AND m.tenant_id = ?
+                        ), last_adjust AS (
+                            SELECT DISTINCT ON (batch_id) batch_id, batch_version, created_at, line_id, change AS base
+                              FROM lines
+                             WHERE direction = 'SET'
+                             ORDER BY batch_id, batch_version DESC, created_at DESC, line_id DESC
+                        )
+                        SELECT b.id, b.batch_code, b.quantity, b.version,
+                               coalesce(a.base, b.initial_quantity)
+                                   + coalesce(sum(l.change) FILTER (WHERE a.batch_id IS NULL
+                                         OR (l.batch_version, l.created_at, l.line_id)
+                                            > (a.batch_version, a.created_at, a.line_id)), 0)
+                          FROM stock_batches b
+                          LEFT JOIN last_adjust a ON a.batch_id = b.id
+                          LEFT JOIN lines l ON l.batch_id = b.id
+                         WHERE b.id = ANY(?) AND b.tenant_id = ?
+                         GROUP BY b.id, b.batch_code, b.quantity, b.version, b.initial_quantity,
+                                  a.batch_id, a.base
+                        """.formatted(StockBatchMovementRepository.LINE_CHANGE))) {
+                    ps.setArray(1, idArray);
+                    ps.setString(2, tenantId);
+                    ps.setArray(3, idArray);
+                    ps.setString(4, tenantId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            counters.checked.incrementAndGet();
+                            BigDecimal expected = rs.getBigDecimal(5);
+                            if (expected == null) {
+                                counters.unverifiable.incrementAndGet();
+                            } else if (expected.compareTo(rs.getBigDecimal(3)) != 0) {
+                                drifted.add(new Observed(rs.getObject(1, UUID.class), rs.getString(2),
+                                        rs.getBigDecimal(3), rs.getLong(4), expected));
+                            }
+                        }
+                    }
+                }
+
+                Set<Observed> corrected = correct ? new HashSet<>(correct(conn, tenantId, drifted, runId)) : Set.of();
+                conn.commit();
+
+                counters.drifted.addAndGet(drifted.size());
+                counters.corrected.addAndGet(corrected.size());
+                for (Observed o : drifted) {
+                    sink.accept(new BatchDrift(o.batchId(), o.batchCode(), o.quantity(), o.expected(),
+                            o.quantity().subtract(o.expected()), corrected.contains(o)));
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Sets each drifted batch to its ledger value unless it changed since it was read,
+     * and records one AJUSTE per corrected batch with batched inserts.
+     */
+    private List<Observed> correct(Connection conn, String tenantId, List<Observed> drifted, UUID runId)
+            throws SQLException {
+        List<Observed> candidates = drifted.stream().filter(o -> o.expected().signum() >= 0).toList();
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        int[] updated;
+        try (PreparedStatement ps = conn.prepareStatement("""
+                UPDATE stock_batches
+                   SET quantity = ?,
+                       status = CASE WHEN ? <= 0 AND status = 'ACTIVE' THEN 'DEPLETED'
+                                     WHEN ? > 0 AND status = 'DEPLETED' THEN 'ACTIVE'
+                                     ELSE status END,
+                       updated_at = now(),
+                       version = version + 1
+                 WHERE id = ? AND tenant_id = ? AND version = ?
+                """)) {
+            for (Observed o : candidates) {
+                ps.setBigDecimal(1, o.expected());
+                ps.setBigDecimal(2, o.expected());
+                ps.setBigDecimal(3, o.expected());
+                ps.setObject(4, o.batchId());
+                ps.setString(5, tenantId);
+                ps.setLong(6, o.version());
+                ps.addBatch();
+            }
+            updated = ps.executeBatch();
+        }
+
+        List<Observed> corrected = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (updated[i] > 0) {
+                corrected.add(candidates.get(i));
+            }
+        }
+        if (corrected.isEmpty()) {
+            return corrected;
+        }
+
+        try (PreparedStatement movements = conn.prepareStatement("""
+                     INSERT INTO stock_movements
+                            (id, tenant_id, movement_type, quantity, reference_id, reference_type, notes, performed_at)
+                     VALUES (?, ?, 'AJUSTE', ?, ?, ?, ?, now())
+                     """);
+             PreparedStatement lines = conn.prepareStatement(
+                     """
+                     INSERT INTO stock_batch_movements (batch_id, movement_id, movement_performed_at, quantity,
+                                                        direction, batch_version)
+                     VALUES (?, ?, now(), ?, 'SET', ?)
+                     """)) {
+            for (Observed o : corrected) {
+                UUID movementId = UuidV7Generator.next();
+                movements.setObject(1, movementId);
+                movements.setString(2, tenantId);
+                movements.setBigDecimal(3, o.expected());
+                movements.setObject(4, runId);
+                movements.setString(5, REFERENCE_TYPE);
+                movements.setString(6, "Reconciled from " + o.quantity().toPlainString());
+                movements.addBatch();
+                lines.setObject(1, o.batchId());
+                lines.setObject(2, movementId);
+                lines.setBigDecimal(3, o.expected());
+                lines.setLong(4, o.version() + 1);
+                lines.addBatch();
+            }
+            movements.executeBatch();
+            lines.executeBatch();
+        }
+        return corrected;
+    }
+
+    @FunctionalInterface
+    private interface ChunkTask {
+        void run() throws SQLException;
+    }
+
+    private record Observed(UUID batchId, String batchCode, BigDecimal quantity, long version, BigDecimal expected) {}
+
+    private static final class Counters {
+        final AtomicLong checked = new AtomicLong();
+        final AtomicLong drifted = new AtomicLong();
+        final AtomicLong corrected = new AtomicLong();
+        final AtomicLong unverifiable = new AtomicLong();
+    }
+}
@@ -0,0 +1,219 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fortytwo.demeter.common.exception.EntityNotFoundException;
+import com.fortytwo.demeter.common.exception.InsufficientStockException;
+import com.fortytwo.demeter.common.exception.InvalidRequestException;
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.inventario.dto.BatchAvailability;
+import com.fortytwo.demeter.inventario.dto.ReservationLine;
+import com.fortytwo.demeter.inventario.model.StockReservation;
+import com.fortytwo.demeter.inventario.repository.StockReservationRepository;
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Available-to-promise holds on batch stock for pending documents. Reserving locks the
+ * batches and checks their quantity minus unexpired reservations, so two documents can
+ * never be promised the same units; holds end on {@link #release}, or on their own
+ * once the TTL passes (expired rows stop counting at once and are purged later).
+ *
+ * <p>Holds are binding, not advisory: every debit (movements, bulk uploads, transplants
+ * and sale completion) only takes units that no other document holds.
+ *
+ * <p>Availability reads go through {@link StockAvailabilityIndex}; reserving always
+ * checks the database.
+ */
+@ApplicationScoped
+public class StockReservationService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockReservationService.class);
+
+    private static final int MAX_AVAILABILITY_IDS = 500;
+
+    @Inject
+    StockReservationRepository stockReservationRepository;
+
+    @Inject
+    FefoAllocationService fefoAllocationService;
+
+    @Inject
+    StockAvailabilityIndex availabilityIndex;
+
+    @Inject
+    TenantContext tenantContext;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @ConfigProperty(name = "demeter.inventory.reservations.ttl", defaultValue = "30m")
+    Duration ttl;
+
+    /**
+     * Holds each line's quantity for {@code referenceType/referenceId}: of the line's batch,
+     * or for lines without one, of its product's batches split first-expiry-first-out.
+     * Every batch involved is locked up front in one id-ordered statement (see
+     * {@link FefoAllocationService#lock}), so reserving never waits while holding rows.
+     *
+     * @throws EntityNotFoundException    when a batch does not exist
+     * @throws InsufficientStockException listing every line the available stock cannot cover
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void reserve(String referenceType, UUID referenceId, List<ReservationLine> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        SortedMap<UUID, BigDecimal> requested = new TreeMap<>();
+        Set<UUID> fefoProducts = new HashSet<>();
+        for (ReservationLine line : lines) {
+            if (line.batchId() != null) {
+                requested.merge(line.batchId(), line.quantity(), BigDecimal::add);
+            } else {
+                fefoProducts.add(line.productId());
+            }
+        }
+
+        FefoAllocationService.Allocation stock = fefoAllocationService.lock(requested.keySet(), fefoProducts);
+        Map<UUID, BigDecimal> available = requested.isEmpty()
+                ? Map.of() : stockReservationRepository.lockAvailable(requested.keySet());
+        List<String> shortLines = new ArrayList<>();
+        Map<UUID, BigDecimal> shortfalls = new LinkedHashMap<>();
+        for (Map.Entry<UUID, BigDecimal> e : requested.entrySet()) {
+            BigDecimal batchAvailable = available.get(e.getKey());
+            if (batchAvailable == null) {
+                throw new EntityNotFoundException("StockBatch", e.getKey());
+            }
+            if (batchAvailable.compareTo(e.getValue()) < 0) {
+                shortLines.add("batch " + e.getKey() + ": requested " + e.getValue().toPlainString()
+                        + ", available " + batchAvailable.toPlainString());
+                shortfalls.put(e.getKey(), e.getValue().subtract(batchAvailable));
+            }
+            stock.take(e.getKey(), e.getValue());
+        }
+
+        List<ReservationLine> held = new ArrayList<>(lines.size());
+        for (ReservationLine line : lines) {
+            if (line.batchId() != null) {
+                held.add(line);
+                continue;
+            }
+            FefoAllocationService.Draw draw = stock.draw(line.productId(), line.quantity());
+            if (draw.isShort()) {
+                shortLines.add("product " + line.productId() + ": requested " + line.quantity().toPlainString()
+                        + ", short by " + draw.shortBy().toPlainString());
+                shortfalls.merge(line.productId(), draw.shortBy(), BigDecimal::add);
+            }
+            draw.batches().forEach(bq ->
+                    held.add(new ReservationLine(line.lineId(), line.productId(), bq.batchId(), bq.quantity())));
+        }
+        if (!shortLines.isEmpty()) {
+            throw new InsufficientStockException("Insufficient available stock for "
+                    + String.join("; ", shortLines), shortfalls);
+        }
+
+        Instant expiresAt = Instant.now().plus(ttl);
+        Set<UUID> heldBatchIds = new HashSet<>();
+        for (ReservationLine line : held) {
+            StockReservation reservation = new StockReservation();
+            reservation.setBatchId(line.batchId());
+            reservation.setReferenceType(referenceType);
+            reservation.setReferenceId(referenceId);
+            reservation.setReferenceLineId(line.lineId());
+            reservation.setQuantity(line.quantity());
+            reservation.setExpiresAt(expiresAt);
+            stockReservationRepository.persist(reservation);
+            heldBatchIds.add(line.batchId());
+        }
+        availabilityIndex.evictAfterCompletion(tenantContext.getCurrentTenantId(), heldBatchIds);
+        log.debug("Reserved {} batch(es) for {} {} until {}", heldBatchIds.size(), referenceType, referenceId, expiresAt);
+    }
+
+    /**
+     * Drops every hold of {@code referenceType/referenceId}; a no-op when there is none.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void release(String referenceType, UUID referenceId) {
+        List<UUID> batchIds = stockReservationRepository.deleteByReference(referenceType, referenceId);
+        availabilityIndex.evictAfterCompletion(tenantContext.getCurrentTenantId(), batchIds);
+        if (!batchIds.isEmpty()) {
+            log.debug("Released {} reservation(s) of {} {}", batchIds.size(), referenceType, referenceId);
+        }
+    }
+
+    /**
+     * @return availability of the requested batches in request order; unknown ids are left out
+     */
+    public List<BatchAvailability> findAvailability(List<UUID> batchIds) {
+        if (batchIds == null || batchIds.isEmpty()) {
+            throw new InvalidRequestException("At least one batchId is required");
+        }
+        if (batchIds.size() > MAX_AVAILABILITY_IDS) {
+            throw new InvalidRequestException("At most " + MAX_AVAILABILITY_IDS + " batchIds per request");
+        }
+        Map<UUID, BatchAvailability> found = availabilityIndex.get(
+                tenantContext.getCurrentTenantId(), batchIds, stockReservationRepository::findAvailability);
+        return batchIds.stream().distinct().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    @Scheduled(identity = "stock-reservation-purge",
+            every = "{demeter.inventory.reservations.purge-interval}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledPurge() {
+        try {
+            purgeExpired();
+        } catch (SQLException e) {
+            log.error("Stock reservation purge failed", e);
+        }
+    }
+
+    /**
+     * Deletes expired reservations of every tenant. Runs over plain JDBC: there is no
+     * request to resolve a tenant from.
+     *
+     * @return the number of reservations deleted
+     */
+    public int purgeExpired() throws SQLException {
+        Map<String, List<UUID>> batchesByTenant = new HashMap<>();
+        int purged = 0;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("""
+                     DELETE FROM stock_reservations
+                      WHERE expires_at <= now()
+                     RETURNING tenant_id, batch_id
+                     """);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                batchesByTenant.computeIfAbsent(rs.getString(1), t -> new ArrayList<>()).add(rs.getObject(2, UUID.class));
+                purged++;
+            }
+        }
+        batchesByTenant.forEach(availabilityIndex::evict);
+        if (purged > 0) {
+            log.info("Purged {} expired stock reservation(s) across {} tenant(s)", purged, batchesByTenant.size());
+        }
+        return purged;
+    }
+}
@@ -0,0 +1,247 @@
+package com.fortytwo.demeter.inventario.service;
+
+import com.fortytwo.demeter.common.exception.ConflictException;
+import com.fortytwo.demeter.common.exception.EntityNotFoundException;
+import com.fortytwo.demeter.common.exception.InsufficientStockException;
+import com.fortytwo.demeter.common.exception.InvalidRequestException;
+import com.fortytwo.demeter.inventario.dto.CreateStockMovementRequest;
+import com.fortytwo.demeter.inventario.dto.StockMovementDTO;
+import com.fortytwo.demeter.inventario.dto.TransplantRequest;
+import com.fortytwo.demeter.inventario.model.LineDirection;
+import com.fortytwo.demeter.inventario.model.MovementType;
+import com.fortytwo.demeter.inventario.model.StockBatch;
+import com.fortytwo.demeter.inventario.model.StockBatchMovement;
+import com.fortytwo.demeter.inventario.model.StockMovement;
+import com.fortytwo.demeter.inventario.repository.StockBatchLineageRepository;
+import com.fortytwo.demeter.inventario.repository.StockBatchMovementRepository;
+import com.fortytwo.demeter.inventario.repository.StockBatchRepository;
+import com.fortytwo.demeter.inventario.repository.StockMovementRepository;
+import com.fortytwo.demeter.inventario.repository.StockReservationRepository;
+import com.fortytwo.demeter.inventario.repository.StockReservationRepository.BatchHolds;
+import com.fortytwo.demeter.productos.model.Product;
+import com.fortytwo.demeter.productos.repository.ProductRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Multi-batch TRASPLANTE: debits the sources, credits or creates the destinations and
+ * links them all under one movement in a single transaction. Source lines are recorded
+ * as {@link LineDirection#OUT} and destination lines as {@link LineDirection#IN}, so the
+ * movement nets to zero. Every destination is recorded as a lineage child of every source.
+ * Sources can only give up units no reservation holds.
+ */
+@ApplicationScoped
+public class StockTransplantService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockTransplantService.class);
+
+    @Inject
+    StockBatchRepository stockBatchRepository;
+
+    @Inject
+    StockBatchLineageRepository stockBatchLineageRepository;
+
+    @Inject
+    StockMovementRepository stockMovementRepository;
+
+    @Inject
+    StockBatchMovementRepository stockBatchMovementRepository;
+
+    @Inject
+    StockReservationRepository stockReservationRepository;
+
+    @Inject
+    ProductRepository productRepository;
+
+    /**
+     * Sources and credited destinations are row-locked together in id order (the same
+     * order as every other movement path), their quantities are changed with one
+     * set-based UPDATE, and new batches and movement lines go out as batched inserts.
+     */
+    @Transactional
+    public StockMovementDTO transplant(TransplantRequest request) {
+        BigDecimal movedOut = sum(request.sources().stream().map(CreateStockMovementRequest.BatchQuantity::quantity).toList());
+        BigDecimal movedIn = sum(request.destinations().stream().map(TransplantRequest.Destination::quantity).toList());
+        if (movedOut.compareTo(movedIn) != 0) {
+            throw new InvalidRequestException("Sources total " + movedOut.toPlainString()
+                    + " but destinations total " + movedIn.toPlainString());
+        }
+
+        Set<UUID> sourceIds = new HashSet<>();
+        for (CreateStockMovementRequest.BatchQuantity source : request.sources()) {
+            if (!sourceIds.add(source.batchId())) {
+                throw new InvalidRequestException("Source batch " + source.batchId() + " is listed more than once");
+            }
+        }
+        Set<UUID> creditedIds = new HashSet<>();
+        Set<String> newCodes = new LinkedHashSet<>();
+        for (TransplantRequest.Destination destination : request.destinations()) {
+            if ((destination.batchId() == null) == (destination.batchCode() == null || destination.batchCode().isBlank())) {
+                throw new InvalidRequestException("Each destination needs exactly one of batchId or batchCode");
+            }
+            if (destination.batchId() != null) {
+                if (sourceIds.contains(destination.batchId()) || !creditedIds.add(destination.batchId())) {
+                    throw new InvalidRequestException("Destination batch " + destination.batchId()
+                            + " is also a source or listed more than once");
+                }
+            } else if (!newCodes.add(destination.batchCode())) {
+                throw new InvalidRequestException("Destination batch code " + destination.batchCode() + " is listed more than once");
+            }
+        }
+
+        Set<UUID> lockIds = new HashSet<>(sourceIds);
+        lockIds.addAll(creditedIds);
+        Map<UUID, StockBatch> locked = stockBatchRepository.lockAllById(lockIds).stream()
+                .collect(Collectors.toMap(StockBatch::getId, Function.identity()));
+        for (UUID id : lockIds) {
+            if (!locked.containsKey(id)) {
+                throw new EntityNotFoundException("StockBatch", id);
+            }
+        }
+
+        // Units other documents hold stay where they are
+        BatchHolds holds = stockReservationRepository.findHolds(sourceIds);
+        List<StockBatch> sources = new ArrayList<>();
+        for (CreateStockMovementRequest.BatchQuantity source : request.sources()) {
+            StockBatch batch = locked.get(source.batchId());
+            BigDecimal available = batch.getQuantity().subtract(holds.heldForOthers(batch.getId(), null, null));
+            if (available.compareTo(source.quantity()) < 0) {
+                throw new InsufficientStockException("Batch " + batch.getBatchCode() + " has "
+                        + available.max(BigDecimal.ZERO).toPlainString() + " available, cannot move "
+                        + source.quantity().toPlainString(),
+                        Map.of(batch.getId(), source.quantity().subtract(available.max(BigDecimal.ZERO))));
+            }
+            sources.add(batch);
+        }
+        for (UUID id : creditedIds) {
+            StockBatch batch = locked.get(id);
+            if (!request.warehouseId().equals(batch.getWarehouseId())
+                    || (request.binId() != null && !request.binId().equals(batch.getBinId()))) {
+                throw new InvalidRequestException("Destination batch " + batch.getBatchCode() + " is not at the target location");
+            }
+        }
+        if (!newCodes.isEmpty() && stockBatchRepository.count("batchCode in ?1", newCodes) > 0) {
+            throw new ConflictException("A destination batch code already exists");
+        }
+
+        Instant performedAt = request.performedAt() != null ? request.performedAt() : Instant.now();
+        String unit = request.unit() != null ? request.unit() : commonValue(sources, StockBatch::getUnit);
+
+        // New batches carry their final quantity on insert; only existing rows need the UPDATE
+        Map<UUID, BigDecimal> deltas = new HashMap<>();
+        request.sources().forEach(s -> deltas.put(s.batchId(), s.quantity().negate()));
+        List<StockBatch> created = new ArrayList<>();
+        List<CreateStockMovementRequest.BatchQuantity> credits = new ArrayList<>();
+        for (TransplantRequest.Destination destination : request.destinations()) {
+            if (destination.batchId() != null) {
+                deltas.put(destination.batchId(), destination.quantity());
+                credits.add(new CreateStockMovementRequest.BatchQuantity(destination.batchId(), destination.quantity()));
+                continue;
+            }
+            StockBatch batch = new StockBatch();
+            batch.setProduct(destinationProduct(destination, sources));
+            batch.setBatchCode(destination.batchCode());
+            batch.setQuantity(destination.quantity());
+            // The IN transplant line accounts for the whole quantity
+            batch.setInitialQuantity(BigDecimal.ZERO);
+            batch.setUnit(unit);
+            batch.setWarehouseId(request.warehouseId());
+            batch.setBinId(request.binId());
+            batch.setEntryDate(performedAt);
+            batch.setExpiryDate(sources.stream().map(StockBatch::getExpiryDate).filter(Objects::nonNull)
+                    .min(Comparator.naturalOrder()).orElse(null));
+            created.add(batch);
+        }
+        stockBatchRepository.persist(created);
+        Map<UUID, Long> versions = new HashMap<>();
+        stockBatchRepository.applyQuantityChanges(deltas, Map.of())
+                .forEach((id, update) -> versions.put(id, update.version()));
+        created.forEach(batch -> versions.put(batch.getId(), batch.getVersion()));
+
+        StockMovement movement = new StockMovement();
+        movement.setMovementType(MovementType.TRASPLANTE);
+        movement.setQuantity(movedOut);
+        movement.setUnit(unit);
+        movement.setNotes(request.notes());
+        movement.setPerformedBy(request.performedBy());
+        movement.setPerformedAt(performedAt);
+        stockMovementRepository.persist(movement);
+
+        Map<String, StockBatch> createdByCode = created.stream()
+                .collect(Collectors.toMap(StockBatch::getBatchCode, Function.identity()));
+        for (TransplantRequest.Destination destination : request.destinations()) {
+            if (destination.batchId() == null) {
+                credits.add(new CreateStockMovementRequest.BatchQuantity(
+                        createdByCode.get(destination.batchCode()).getId(), destination.quantity()));
+            }
+        }
+        request.sources().forEach(source -> addLine(movement, source, LineDirection.OUT, versions));
+        credits.forEach(credit -> addLine(movement, credit, LineDirection.IN, versions));
+        stockBatchMovementRepository.persist(movement.getBatchMovements());
+
+        // Lineage rows reference the new batches, so they go in after the flush
+        stockBatchRepository.flush();
+        List<UUID> childIds = credits.stream().map(CreateStockMovementRequest.BatchQuantity::batchId).toList();
+        stockBatchLineageRepository.linkLineage(sourceIds, childIds, movement.getId());
+
+        log.info("Transplanted {} from {} source batch(es) into {} destination batch(es) ({} new)",
+                movedOut, request.sources().size(), request.destinations().size(), created.size());
+        return StockMovementDTO.from(movement);
+    }
+
+    private void addLine(StockMovement movement, CreateStockMovementRequest.BatchQuantity line, LineDirection direction,
+                         Map<UUID, Long> versions) {
+        StockBatchMovement batchMovement = new StockBatchMovement();
+        batchMovement.setBatch(stockBatchRepository.getEntityManager().getReference(StockBatch.class, line.batchId()));
+        batchMovement.setMovement(movement);
+        batchMovement.setQuantity(line.quantity());
+        batchMovement.setDirection(direction);
+        batchMovement.setBatchVersion(versions.get(line.batchId()));
+        movement.getBatchMovements().add(batchMovement);
+    }
+
+    private Product destinationProduct(TransplantRequest.Destination destination, List<StockBatch> sources) {
+        if (destination.productId() != null) {
+            return productRepository.findByIdOptional(destination.productId())
+                    .orElseThrow(() -> new EntityNotFoundException("Product", destination.productId()));
+        }
+        Product product = commonValue(sources, StockBatch::getProduct);
+        if (product == null) {
+            throw new InvalidRequestException("Sources hold different products; destination "
+                    + destination.batchCode() + " needs a productId");
+        }
+        return product;
+    }
+
+    /** The value shared by all batches, or null when they differ. */
+    private static <T> T commonValue(List<StockBatch> batches, Function<StockBatch, T> getter) {
+        T first = getter.apply(batches.getFirst());
+        for (StockBatch batch : batches) {
+            if (!Objects.equals(first, getter.apply(batch))) {
+                return null;
+            }
+        }
+        return first;
+    }
+
+    private static BigDecimal sum(List<BigDecimal> quantities) {
+        return quantities.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
@@ -0,0 +1,29 @@
+package com.fortytwo.demeter.ventas.controller;
+
+import com.fortytwo.demeter.common.auth.RoleConstants;
+import com.fortytwo.demeter.ventas.dto.DemandForecastDTO;
+import com.fortytwo.demeter.ventas.service.DemandForecastService;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import java.util.List;
+import java.util.UUID;
+
+@Path("/api/v1/demand-forecasts")
+@Produces(MediaType.APPLICATION_JSON)
+public class DemandForecastController {
+
+    @Inject
+    DemandForecastService demandForecastService;
+
+    /**
+     * Smoothed daily demand and days of cover, e.g.
+     * {@code ?productId=...&productId=...}.
+     */
+    @GET
+    @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER, RoleConstants.VIEWER})
+    public List<DemandForecastDTO> list(@QueryParam("productId") List<UUID> productIds) {
+        return demandForecastService.findForecasts(productIds);
+    }
+}
@@ -2,6 +2,7 @@ package com.fortytwo.demeter.ventas.controller;
 
 import com.fortytwo.demeter.common.auth.RoleConstants;
 import com.fortytwo.demeter.common.dto.PagedResponse;
+import com.fortytwo.demeter.common.idempotency.Idempotent;
 import com.fortytwo.demeter.ventas.dto.*;
 import com.fortytwo.demeter.ventas.model.SaleStatus;
 import com.fortytwo.demeter.ventas.service.SaleService;
@@ -11,6 +12,7 @@ import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import java.net.URI;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
@@ -57,10 +59,11 @@ public class SaleController {
     }
 
     @POST
+    @Idempotent(location = "/api/v1/sales/{id}")
     @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR, RoleConstants.WORKER})
     public Response create(@Valid CreateSaleRequest request) {
         SaleDTO created = saleService.create(request);
-        return Response.status(Response.Status.CREATED).entity(created).build();
+        return Response.created(URI.create("/api/v1/sales/" + created.id())).entity(created).build();
     }
 
     @PUT
@@ -72,6 +75,7 @@ public class SaleController {
 
     @POST
     @Path("/{id}/complete")
+    @Idempotent
     @RolesAllowed({RoleConstants.ADMIN, RoleConstants.SUPERVISOR})
     public SaleDTO completeSale(@PathParam("id") UUID id) {
         return saleService.completeSale(id);
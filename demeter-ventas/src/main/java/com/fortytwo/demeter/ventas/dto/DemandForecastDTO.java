@@ -0,0 +1,19 @@
+package com.fortytwo.demeter.ventas.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * @param dailyDemand smoothed units sold per day, projected to today
+ * @param onHand ACTIVE stock of the product
+ * @param daysOfCover days {@code onHand} lasts at {@code dailyDemand}; null without demand
+ * @param lastSaleDay last day (UTC) a sale of the product completed
+ */
+public record DemandForecastDTO(
+    UUID productId,
+    BigDecimal dailyDemand,
+    BigDecimal onHand,
+    BigDecimal daysOfCover,
+    LocalDate lastSaleDay
+) {}
@@ -0,0 +1,35 @@
+package com.fortytwo.demeter.ventas.model;
+
+import com.fortytwo.demeter.common.model.BaseEntity;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Exponentially smoothed daily demand of a product. Sales of {@code openDay} are
+ * accumulated in {@code openDayQuantity} and folded into {@code level} once a later
+ * day sees a sale; written only by {@code DemandForecastRepository#recordDemand}. See V22.
+ */
+@Entity
+@Table(name = "product_demand_forecasts")
+public class ProductDemandForecast extends BaseEntity {
+
+    @Column(name = "product_id", nullable = false, updatable = false)
+    private UUID productId;
+
+    @Column(precision = 14, scale = 4)
+    private BigDecimal level;
+
+    @Column(name = "open_day", nullable = false)
+    private LocalDate openDay;
+
+    @Column(name = "open_day_quantity", nullable = false, precision = 12, scale = 2)
+    private BigDecimal openDayQuantity;
+
+    // Getters
+    public UUID getProductId() { return productId; }
+    public BigDecimal getLevel() { return level; }
+    public LocalDate getOpenDay() { return openDay; }
+    public BigDecimal getOpenDayQuantity() { return openDayQuantity; }
+}
@@ -40,6 +40,10 @@ public class Sale extends BaseEntity {
     @OneToMany(mappedBy = "sale", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<SaleItem> items = new ArrayList<>();
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     // Getters
     public String getSaleNumber() { return saleNumber; }
     public SaleStatus getStatus() { return status; }
@@ -50,6 +54,7 @@ public class Sale extends BaseEntity {
     public UUID getSoldBy() { return soldBy; }
     public Instant getSoldAt() { return soldAt; }
     public List<SaleItem> getItems() { return items; }
+    public long getVersion() { return version; }
 
     // Setters
     public void setSaleNumber(String saleNumber) { this.saleNumber = saleNumber; }
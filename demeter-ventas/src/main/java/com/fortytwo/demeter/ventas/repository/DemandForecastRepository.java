@@ -0,0 +1,87 @@
+package com.fortytwo.demeter.ventas.repository;
+
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.ventas.model.ProductDemandForecast;
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@ApplicationScoped
+public class DemandForecastRepository implements PanacheRepositoryBase<ProductDemandForecast, UUID> {
+
+    @Inject
+    TenantContext tenantContext;
+
+    /**
+     * Adds {@code quantity} sold on {@code day} to the product's forecast. A later day
+     * than the open one closes it: {@code level = alpha * openDayQuantity + (1 - alpha) * level},
+     * seeded with the first closed day, then decayed by {@code 1 - alpha} for each day
+     * without sales in between. Sales dated before the open day count towards it.
+     */
+    public void recordDemand(UUID productId, LocalDate day, BigDecimal quantity, BigDecimal alpha) {
+        var query = getEntityManager().createNativeQuery("""
+                INSERT INTO product_demand_forecasts AS f (tenant_id, product_id, open_day, open_day_quantity)
+                VALUES (:tenantId, :productId, :day, :quantity)
+                ON CONFLICT (tenant_id, product_id) DO UPDATE SET
+                    level = CASE WHEN EXCLUDED.open_day > f.open_day
+                                 THEN CASE WHEN f.level IS NULL THEN f.open_day_quantity
+                                           ELSE :alpha * f.open_day_quantity + (1 - :alpha) * f.level END
+                                      * power(1 - :alpha, EXCLUDED.open_day - f.open_day - 1)
+                                 ELSE f.level END,
+                    open_day_quantity = CASE WHEN EXCLUDED.open_day > f.open_day THEN EXCLUDED.open_day_quantity
+                                             ELSE f.open_day_quantity + EXCLUDED.open_day_quantity END,
+                    open_day = greatest(f.open_day, EXCLUDED.open_day),
+                    updated_at = now()
+                """);
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("productId", productId);
+        query.setParameter("day", day);
+        query.setParameter("quantity", quantity);
+        query.setParameter("alpha", alpha);
+        query.executeUpdate();
+    }
+
+    /**
+     * Forecast rows of the given products with their ACTIVE stock; products that never
+     * sold are absent.
+     */
+    public List<ForecastRow> findWithStock(Collection<UUID> productIds) {
+        var query = getEntityManager().createNativeQuery("""
+                SELECT f.product_id, f.level, f.open_day, f.open_day_quantity,
+                       (SELECT coalesce(sum(b.quantity), 0.00)
+                          FROM stock_batches b
+                         WHERE b.tenant_id = f.tenant_id AND b.product_id = f.product_id
+                           AND b.status = 'ACTIVE') AS on_hand
+                  FROM product_demand_forecasts f
+                 WHERE f.tenant_id = :tenantId AND f.product_id IN (:ids)
+                 ORDER BY f.product_id
+                """);
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("ids", productIds);
+        List<ForecastRow> rows = new ArrayList<>();
+        for (Object row : query.getResultList()) {
+            Object[] cols = (Object[]) row;
+            rows.add(new ForecastRow((UUID) cols[0], (BigDecimal) cols[1], toLocalDate(cols[2]),
+                    (BigDecimal) cols[3], (BigDecimal) cols[4]));
+        }
+        return rows;
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        return switch (value) {
+            case LocalDate date -> date;
+            case Date date -> date.toLocalDate();
+            default -> throw new IllegalStateException("Unexpected date type " + value.getClass());
+        };
+    }
+
+    public record ForecastRow(UUID productId, BigDecimal level, LocalDate openDay,
+                              BigDecimal openDayQuantity, BigDecimal onHand) {}
+}
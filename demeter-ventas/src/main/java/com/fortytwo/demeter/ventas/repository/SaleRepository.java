@@ -1,9 +1,11 @@
 package com.fortytwo.demeter.ventas.repository;
 
+import com.fortytwo.demeter.common.tenant.TenantContext;
 import com.fortytwo.demeter.ventas.model.Sale;
 import com.fortytwo.demeter.ventas.model.SaleStatus;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
@@ -12,6 +14,9 @@ import java.util.UUID;
 @ApplicationScoped
 public class SaleRepository implements PanacheRepositoryBase<Sale, UUID> {
 
+    @Inject
+    TenantContext tenantContext;
+
     public Optional<Sale> findBySaleNumber(String saleNumber) {
         return find("saleNumber", saleNumber).firstResultOptional();
     }
@@ -23,4 +28,25 @@ public class SaleRepository implements PanacheRepositoryBase<Sale, UUID> {
     public List<Sale> findByDateRange(Instant from, Instant to) {
         return find("soldAt >= ?1 and soldAt <= ?2", from, to).list();
     }
+
+    /**
+     * Reserves the next {@code blockSize} sale numbers of the current tenant, creating
+     * its counter at 1. The counter row stays locked until the transaction ends, so
+     * callers should reserve in a short transaction of their own.
+     *
+     * @return the first number of the block
+     */
+    public long reserveSaleNumbers(int blockSize) {
+        var query = getEntityManager().createNativeQuery("""
+                INSERT INTO sale_number_counters AS c (tenant_id, next_value)
+                VALUES (:tenantId, 1 + :blockSize)
+                ON CONFLICT (tenant_id) DO UPDATE SET
+                    next_value = c.next_value + :blockSize,
+                    updated_at = now()
+                RETURNING next_value - :blockSize
+                """);
+        query.setParameter("tenantId", tenantContext.getCurrentTenantId());
+        query.setParameter("blockSize", blockSize);
+        return ((Number) query.getSingleResult()).longValue();
+    }
 }
@@ -0,0 +1,92 @@
+package com.fortytwo.demeter.ventas.service;
+
+import com.fortytwo.demeter.common.exception.InvalidRequestException;
+import com.fortytwo.demeter.ventas.dto.DemandForecastDTO;
+import com.fortytwo.demeter.ventas.model.Sale;
+import com.fortytwo.demeter.ventas.model.SaleItem;
+import com.fortytwo.demeter.ventas.repository.DemandForecastRepository;
+import com.fortytwo.demeter.ventas.repository.DemandForecastRepository.ForecastRow;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Per-product daily demand, smoothed with factor {@code alpha} over UTC days. Completed
+ * sales update one forecast row per product in the completing transaction, so reading
+ * a forecast never touches the sales history.
+ *
+ * <p>Until a product has a full day behind it, its forecast is what sold so far today.
+ */
+@ApplicationScoped
+public class DemandForecastService {
+
+    private static final int MAX_PRODUCT_IDS = 500;
+
+    @Inject
+    DemandForecastRepository demandForecastRepository;
+
+    @ConfigProperty(name = "demeter.sales.forecast.alpha", defaultValue = "0.3")
+    BigDecimal alpha;
+
+    /** Counts the sale's items as demand of today. */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void recordSale(Sale sale) {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        SortedMap<UUID, BigDecimal> byProduct = new TreeMap<>();
+        for (SaleItem item : sale.getItems()) {
+            byProduct.merge(item.getProductId(), item.getQuantity(), BigDecimal::add);
+        }
+        // Product order keeps concurrent completions from deadlocking on forecast rows
+        byProduct.forEach((productId, quantity) ->
+                demandForecastRepository.recordDemand(productId, today, quantity, alpha));
+    }
+
+    /**
+     * Forecasts of the given products; products that never sold are absent.
+     */
+    public List<DemandForecastDTO> findForecasts(List<UUID> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            throw new InvalidRequestException("At least one productId is required");
+        }
+        if (productIds.size() > MAX_PRODUCT_IDS) {
+            throw new InvalidRequestException("At most " + MAX_PRODUCT_IDS + " productIds per request");
+        }
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        return demandForecastRepository.findWithStock(productIds).stream()
+                .map(row -> toDto(row, today))
+                .toList();
+    }
+
+    private DemandForecastDTO toDto(ForecastRow row, LocalDate today) {
+        BigDecimal demand = projectedDemand(row, today);
+        BigDecimal daysOfCover = demand.signum() > 0
+                ? row.onHand().divide(demand, 1, RoundingMode.HALF_UP)
+                : null;
+        return new DemandForecastDTO(row.productId(), demand.setScale(2, RoundingMode.HALF_UP),
+                row.onHand(), daysOfCover, row.openDay());
+    }
+
+    /** Applies the fold of {@link DemandForecastRepository#recordDemand} for the days since the open one. */
+    private BigDecimal projectedDemand(ForecastRow row, LocalDate today) {
+        if (!today.isAfter(row.openDay())) {
+            return row.level() != null ? row.level() : row.openDayQuantity();
+        }
+        BigDecimal decay = BigDecimal.ONE.subtract(alpha);
+        BigDecimal closed = row.level() == null
+                ? row.openDayQuantity()
+                : alpha.multiply(row.openDayQuantity()).add(decay.multiply(row.level()));
+        int idleDays = (int) ChronoUnit.DAYS.between(row.openDay(), today) - 1;
+        return closed.multiply(decay.pow(idleDays, MathContext.DECIMAL64));
+    }
+}
@@ -1,6 +1,8 @@
 package com.fortytwo.demeter.ventas.service;
 
+import com.fortytwo.demeter.common.exception.InsufficientStockException;
 import com.fortytwo.demeter.inventario.dto.CreateStockMovementRequest;
+import com.fortytwo.demeter.inventario.service.FefoAllocationService;
 import com.fortytwo.demeter.inventario.service.StockMovementService;
 import com.fortytwo.demeter.ventas.model.Sale;
 import com.fortytwo.demeter.ventas.model.SaleItem;
@@ -9,8 +11,15 @@ import jakarta.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 @ApplicationScoped
 public class SaleCompletionService {
@@ -20,37 +29,90 @@ public class SaleCompletionService {
     @Inject
     StockMovementService stockMovementService;
 
-    public void processStockMovements(Sale sale) {
-        log.info("Processing stock movements for sale: {}", sale.getSaleNumber());
+    @Inject
+    FefoAllocationService fefoAllocationService;
 
+    /**
+     * Records one VENTA movement per item. Every batch the sale may draw from is locked
+     * first, in one id-ordered statement: the batches items are pinned to and the
+     * sellable batches of the unbatched items' products. Unbatched items are then split
+     * over batches by FEFO, net of what pinned items and earlier items take from the same
+     * batches; all movements are written together through
+     * {@link StockMovementService#createAll}, so a long order costs a fixed number of
+     * statements rather than a lookup and update per line.
+     *
+     * @throws InsufficientStockException listing every item the stock cannot cover, pinned
+     *                                    or not; the caller's transaction rolls back
+     */
+    public void processStockMovements(Sale sale) {
+        Instant performedAt = Instant.now();
+        List<CreateStockMovementRequest> movements = new ArrayList<>(sale.getItems().size());
+        Set<UUID> pinnedBatchIds = new HashSet<>();
+        Set<UUID> fefoProductIds = new HashSet<>();
+        for (SaleItem item : sale.getItems()) {
+            if (item.getBatchId() != null) {
+                pinnedBatchIds.add(item.getBatchId());
+            } else {
+                fefoProductIds.add(item.getProductId());
+            }
+        }
+        FefoAllocationService.Allocation stock = fefoAllocationService.lock(pinnedBatchIds, fefoProductIds);
+        // Pinned items come first; FEFO only splits what they leave
         for (SaleItem item : sale.getItems()) {
-            if (item.getBatchId() == null) {
-                log.warn("Sale item {} has no batch assigned, skipping stock movement", item.getId());
-                continue;
+            if (item.getBatchId() != null) {
+                stock.take(item.getBatchId(), item.getQuantity());
             }
+        }
 
-            var batchQuantity = new CreateStockMovementRequest.BatchQuantity(
-                    item.getBatchId(),
-                    item.getQuantity()
-            );
+        List<String> shortItems = new ArrayList<>();
+        Map<UUID, BigDecimal> shortfalls = new LinkedHashMap<>();
+        for (SaleItem item : sale.getItems()) {
+            List<CreateStockMovementRequest.BatchQuantity> batchQuantities;
+            if (item.getBatchId() != null) {
+                BigDecimal batchShortBy = stock.overdrawn(item.getBatchId());
+                if (batchShortBy.signum() > 0) {
+                    shortItems.add("item " + item.getId() + " (product " + item.getProductId() + ", batch "
+                            + item.getBatchId() + ", batch short by " + batchShortBy.toPlainString() + ")");
+                    shortfalls.put(item.getBatchId(), batchShortBy);
+                }
+                batchQuantities = List.of(new CreateStockMovementRequest.BatchQuantity(
+                        item.getBatchId(),
+                        item.getQuantity()
+                ));
+            } else {
+                // FEFO split; the per-batch breakdown is recorded on the VENTA movement
+                FefoAllocationService.Draw draw = stock.draw(item.getProductId(), item.getQuantity());
+                if (draw.isShort()) {
+                    shortItems.add("item " + item.getId() + " (product " + item.getProductId()
+                            + ", short by " + draw.shortBy().toPlainString() + ")");
+                    shortfalls.merge(item.getProductId(), draw.shortBy(), BigDecimal::add);
+                }
+                batchQuantities = draw.batches();
+                if (batchQuantities.size() == 1) {
+                    item.setBatchId(batchQuantities.getFirst().batchId());
+                }
+            }
 
-            var request = new CreateStockMovementRequest(
+            movements.add(new CreateStockMovementRequest(
                     "VENTA",
                     item.getQuantity(),
                     null,
                     sale.getId(),
-                    "SALE",
+                    SaleService.REFERENCE_TYPE,
                     "Sale " + sale.getSaleNumber(),
                     sale.getSoldBy(),
-                    Instant.now(),
-                    List.of(batchQuantity)
-            );
+                    performedAt,
+                    batchQuantities
+            ));
+        }
 
-            stockMovementService.create(request);
-            log.debug("Stock movement created for product {} batch {} in sale {}",
-                    item.getProductId(), item.getBatchId(), sale.getSaleNumber());
+        if (!shortItems.isEmpty()) {
+            throw new InsufficientStockException("Sale " + sale.getSaleNumber()
+                    + " cannot be completed, insufficient stock for " + String.join("; ", shortItems), shortfalls);
         }
 
-        log.info("All stock movements processed for sale: {}", sale.getSaleNumber());
+        // Every batch is still locked, so the decrements cannot fall short of what was checked
+        stockMovementService.createAll(movements);
+        log.info("Recorded {} stock movement(s) for sale {}", movements.size(), sale.getSaleNumber());
     }
 }
@@ -0,0 +1,91 @@
+package com.fortytwo.demeter.ventas.service;
+
+import com.fortytwo.demeter.common.tenant.TenantContext;
+import com.fortytwo.demeter.ventas.repository.SaleRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-tenant sale numbers ({@code SALE-000042}) handed out hi/lo style: each instance
+ * reserves {@code block-size} numbers at a time from the tenant's V24 counter and
+ * serves them from an in-memory counter, so only one sale per block reaches the
+ * database for its number.
+ *
+ * <p>Numbers never repeat within a tenant. They are not gapless: numbers of a sale that
+ * rolls back, and whatever is left of a block when the instance stops, are skipped.
+ * With several instances each draws from its own block, so numbers ascend per
+ * instance rather than globally.
+ */
+@ApplicationScoped
+public class SaleNumberAllocator {
+
+    private static final Logger log = LoggerFactory.getLogger(SaleNumberAllocator.class);
+
+    static final String PREFIX = "SALE-";
+
+    @Inject
+    SaleRepository saleRepository;
+
+    @Inject
+    TenantContext tenantContext;
+
+    @ConfigProperty(name = "demeter.sales.number-block-size", defaultValue = "50")
+    int blockSize;
+
+    private final ConcurrentMap<String, Sequence> sequences = new ConcurrentHashMap<>();
+
+    /** The next sale number of the current tenant. */
+    public String next() {
+        String tenantId = tenantContext.getCurrentTenantId();
+        long value = sequences.computeIfAbsent(tenantId, Sequence::new).next();
+        return "%s%06d".formatted(PREFIX, value);
+    }
+
+    private final class Sequence {
+
+        private final String tenantId;
+        private volatile Block block = new Block(0, 0);
+
+        Sequence(String tenantId) {
+            this.tenantId = tenantId;
+        }
+
+        long next() {
+            while (true) {
+                Block current = block;
+                long value = current.next().getAndIncrement();
+                if (value < current.end()) {
+                    return value;
+                }
+                refill(current);
+            }
+        }
+
+        /**
+         * Reserves a new block once the current one runs out. The reservation commits on
+         * its own, so the counter row is not held for the rest of the caller's transaction.
+         */
+        private synchronized void refill(Block exhausted) {
+            if (block != exhausted) {
+                return;
+            }
+            long first = QuarkusTransaction.requiringNew().call(() -> saleRepository.reserveSaleNumbers(blockSize));
+            block = new Block(first, first + blockSize);
+            log.debug("Reserved sale numbers {} to {} for tenant {}", first, first + blockSize - 1, tenantId);
+        }
+    }
+
+    /** Numbers from {@code next} up to {@code end}, exclusive. */
+    private record Block(AtomicLong next, long end) {
+        Block(long first, long end) {
+            this(new AtomicLong(first), end);
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.fortytwo.demeter.ventas.service;
 
 import com.fortytwo.demeter.common.dto.PagedResponse;
 import com.fortytwo.demeter.common.exception.EntityNotFoundException;
+import com.fortytwo.demeter.common.retry.RetryOnConflict;
+import com.fortytwo.demeter.inventario.dto.ReservationLine;
+import com.fortytwo.demeter.inventario.service.StockReservationService;
 import com.fortytwo.demeter.ventas.dto.*;
 import com.fortytwo.demeter.ventas.model.Sale;
 import com.fortytwo.demeter.ventas.model.SaleItem;
@@ -18,19 +21,30 @@ import java.math.RoundingMode;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ThreadLocalRandom;
 
 @ApplicationScoped
 public class SaleService {
 
     private static final Logger log = LoggerFactory.getLogger(SaleService.class);
 
+    /** Reference type of the sale's stock reservations and VENTA movements. */
+    static final String REFERENCE_TYPE = "SALE";
+
     @Inject
     SaleRepository saleRepository;
 
     @Inject
     SaleCompletionService saleCompletionService;
 
+    @Inject
+    StockReservationService stockReservationService;
+
+    @Inject
+    DemandForecastService demandForecastService;
+
+    @Inject
+    SaleNumberAllocator saleNumberAllocator;
+
     public PagedResponse<SaleDTO> findAll(int page, int size) {
         var query = saleRepository.findAll();
         var sales = query.page(Page.of(page, size)).list();
@@ -60,7 +74,7 @@ public class SaleService {
     @Transactional
     public SaleDTO create(CreateSaleRequest request) {
         Sale sale = new Sale();
-        sale.setSaleNumber(generateSaleNumber());
+        sale.setSaleNumber(saleNumberAllocator.next());
         sale.setStatus(SaleStatus.PENDING);
         sale.setCustomerName(request.customerName());
         sale.setCustomerEmail(request.customerEmail());
@@ -90,6 +104,15 @@ public class SaleService {
         sale.setTotalAmount(totalAmount);
         saleRepository.persist(sale);
 
+        // Every item holds stock while the sale is pending: pinned items their batch,
+        // the rest the batches a FEFO pre-allocation picks. Completion releases the
+        // holds and draws FEFO again, so the promised units are still free by then
+        List<ReservationLine> reservations = sale.getItems().stream()
+                .map(item -> new ReservationLine(item.getId(), item.getProductId(),
+                        item.getBatchId(), item.getQuantity()))
+                .toList();
+        stockReservationService.reserve(REFERENCE_TYPE, sale.getId(), reservations);
+
         log.info("Sale created: {} with {} items, total: {}",
                 sale.getSaleNumber(), sale.getItems().size(), sale.getTotalAmount());
 
@@ -97,6 +120,7 @@ public class SaleService {
     }
 
     @Transactional
+    @RetryOnConflict
     public SaleDTO update(UUID id, UpdateSaleRequest request) {
         Sale sale = saleRepository.findByIdOptional(id)
                 .orElseThrow(() -> new EntityNotFoundException("Sale", id));
@@ -109,6 +133,7 @@ public class SaleService {
     }
 
     @Transactional
+    @RetryOnConflict
     public SaleDTO completeSale(UUID id) {
         Sale sale = saleRepository.findByIdOptional(id)
                 .orElseThrow(() -> new EntityNotFoundException("Sale", id));
@@ -119,13 +144,16 @@ public class SaleService {
         }
 
         sale.setStatus(SaleStatus.COMPLETED);
+        stockReservationService.release(REFERENCE_TYPE, sale.getId());
         saleCompletionService.processStockMovements(sale);
+        demandForecastService.recordSale(sale);
 
         log.info("Sale completed: {}", sale.getSaleNumber());
         return SaleDTO.from(sale);
     }
 
     @Transactional
+    @RetryOnConflict
     public SaleDTO cancelSale(UUID id) {
         Sale sale = saleRepository.findByIdOptional(id)
                 .orElseThrow(() -> new EntityNotFoundException("Sale", id));
@@ -136,6 +164,7 @@ public class SaleService {
         }
 
         sale.setStatus(SaleStatus.CANCELLED);
+        stockReservationService.release(REFERENCE_TYPE, sale.getId());
 
         log.info("Sale cancelled: {}", sale.getSaleNumber());
         return SaleDTO.from(sale);
@@ -145,12 +174,7 @@ public class SaleService {
     public void delete(UUID id) {
         Sale sale = saleRepository.findByIdOptional(id)
                 .orElseThrow(() -> new EntityNotFoundException("Sale", id));
+        stockReservationService.release(REFERENCE_TYPE, sale.getId());
         saleRepository.delete(sale);
     }
-
-    private String generateSaleNumber() {
-        long timestamp = Instant.now().toEpochMilli();
-        int random = ThreadLocalRandom.current().nextInt(1000, 9999);
-        return "SALE-" + timestamp + "-" + random;
-    }
 }